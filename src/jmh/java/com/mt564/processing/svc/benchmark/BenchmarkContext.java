@@ -0,0 +1,38 @@
+package com.mt564.processing.svc.benchmark;
+
+import com.mt564.processing.svc.Mt564DeltaTrackerApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Boots the real application context against a private in-memory H2 database for benchmarks.
+ * The web server, the scheduled feed pull and the Kafka listener are switched off.
+ */
+public final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start(String databaseName, String... extraProperties) {
+        String[] properties = {
+                "spring.datasource.url=jdbc:h2:mem:" + databaseName + ";DB_CLOSE_DELAY=-1",
+                "spring.datasource.username=sa",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.jpa.open-in-view=false",
+                "spring.jpa.properties.hibernate.jdbc.batch_size=500",
+                "spring.jpa.properties.hibernate.order_inserts=true",
+                "spring.jpa.properties.hibernate.order_updates=true",
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN",
+                "app.cron=-",
+                "app.kafka-listener-auto-startup=false"
+        };
+        return new SpringApplicationBuilder(Mt564DeltaTrackerApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .properties(properties)
+                .properties(extraProperties)
+                .run();
+    }
+}
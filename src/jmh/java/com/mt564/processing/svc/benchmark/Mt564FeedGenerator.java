@@ -0,0 +1,104 @@
+package com.mt564.processing.svc.benchmark;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic MT564 daily feed.
+ *
+ * The generator owns a universe of {@code size} events and remembers the revision of each one. Every call to
+ * {@link #nextFeed(double)} changes a {@code churn} fraction of the universe (0.0 = nothing, 1.0 = everything)
+ * and returns the full feed, so unchanged events are re-sent exactly as last persisted, like the real
+ * full-universe feed.
+ */
+public class Mt564FeedGenerator {
+
+    private static final String[] EVENT_TYPES = {"DVCA", "DVOP", "SPLF", "RHTS", "MEET", "BONU", "EXRI", "TEND"};
+    private static final String[] PROCESSING_STATUSES = {"COMP", "PREC", "INPR", "NOPR"};
+    private static final String[] STATUS_CODES = {"ENTL", "COMP", "PREU", "UNCO"};
+    private static final String[] SENDER_BICS = {
+            "BNPAFRPPXXX", "DEUTDEFFXXX", "CHASUS33XXX", "HSBCGB2LXXX", "CITIUS33XXX",
+            "BARCGB22XXX", "SOGEFRPPXXX", "UBSWCHZH80A", "CRESCHZZ80A", "MIDLGB22XXX"
+    };
+    private static final LocalDate BASE_DATE = LocalDate.of(2024, 1, 1);
+
+    private final int size;
+    private final long seed;
+    private final int[] revisions;
+    private final SplittableRandom churnRandom;
+
+    public Mt564FeedGenerator(int size, long seed) {
+        this.size = size;
+        this.seed = seed;
+        this.revisions = new int[size];
+        this.churnRandom = new SplittableRandom(seed);
+    }
+
+    /**
+     * @return the whole universe at its current revisions, without changing anything
+     */
+    public List<Mt564EventDto> currentFeed() {
+        return nextFeed(0.0);
+    }
+
+    /**
+     * Changes a churn fraction of the events and returns the whole universe.
+     */
+    public List<Mt564EventDto> nextFeed(double churn) {
+        List<Mt564EventDto> feed = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (churn > 0 && churnRandom.nextDouble() < churn) {
+                revisions[i]++;
+            }
+            feed.add(event(i, revisions[i]));
+        }
+        return feed;
+    }
+
+    public static <T> List<List<T>> batches(List<T> feed, int batchSize) {
+        List<List<T>> batches = new ArrayList<>((feed.size() + batchSize - 1) / batchSize);
+        for (int from = 0; from < feed.size(); from += batchSize) {
+            batches.add(feed.subList(from, Math.min(feed.size(), from + batchSize)));
+        }
+        return batches;
+    }
+
+    private Mt564EventDto event(int index, int revision) {
+        Random random = new Random(seed * 31 + index);
+        LocalDate recordDate = BASE_DATE.plusDays(random.nextInt(365));
+
+        Mt564EventDto dto = new Mt564EventDto();
+        dto.setEventReference(String.format("EVT%09d", index));
+        dto.setFinancialInstrumentId(String.format("US%010d", random.nextInt(1_000_000_000)));
+        dto.setSenderBic(SENDER_BICS[random.nextInt(SENDER_BICS.length)]);
+        dto.setRelatedMessageReference("REL" + index);
+        dto.setCorporateActionEventId("CA" + random.nextInt(10_000_000));
+        dto.setCorporateActionEventType(EVENT_TYPES[random.nextInt(EVENT_TYPES.length)]);
+        dto.setMandatoryVoluntaryIndicator(random.nextBoolean() ? "MAND" : "VOLU");
+        dto.setEventProcessingStatus(PROCESSING_STATUSES[(random.nextInt(PROCESSING_STATUSES.length) + revision) % PROCESSING_STATUSES.length]);
+        dto.setEventStatusCode(STATUS_CODES[random.nextInt(STATUS_CODES.length)]);
+        dto.setOfficialCorporateActionEventId("OFFI" + random.nextInt(10_000_000));
+        dto.setLinkEventId(random.nextInt(4) == 0 ? "LINK" + random.nextInt(100_000) : null);
+        dto.setSafekeepingAccount("SAFE" + random.nextInt(100_000));
+        dto.setPlaceOfSafekeeping(random.nextBoolean() ? "DTCYUS33" : "CEDELULL");
+        dto.setEventCreationDatetime(LocalDateTime.of(recordDate.minusDays(30), LocalTime.of(random.nextInt(24), random.nextInt(60))));
+        dto.setEffectiveDate(recordDate.plusDays(1));
+        dto.setRecordDate(recordDate);
+        dto.setExDate(recordDate.minusDays(1));
+        dto.setAnnouncementDate(recordDate.minusDays(30));
+        dto.setResponseDeadline(random.nextBoolean() ? recordDate.plusDays(10) : null);
+        dto.setGeneralMeetingDate(random.nextInt(5) == 0 ? recordDate.plusDays(20) : null);
+        dto.setNarrative("Cash dividend of " + random.nextInt(500) + " cents per share payable to holders of record"
+                + (revision > 0 ? " - amendment " + revision : ""));
+        dto.setMarketDisclosureFlag(random.nextBoolean());
+        dto.setUpdatedAt(LocalDateTime.now());
+        return dto;
+    }
+}
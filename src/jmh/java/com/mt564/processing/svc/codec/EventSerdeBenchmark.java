@@ -0,0 +1,65 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.benchmark.Mt564FeedGenerator;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kafka value serde cost per event, JSON against Mt564EventBinaryFormat. The encoded size of the feed in each
+ * format is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSerdeBenchmark {
+
+    private static final String TOPIC = "mt564-events";
+    private static final int EVENTS = 1024;
+
+    @Param({"json", "binary"})
+    private String format;
+
+    private List<Mt564EventDto> events;
+    private byte[][] encoded;
+    private Serializer<Mt564EventDto> serializer;
+    private final Deserializer<Mt564EventDto> deserializer = new Mt564EventDeserializer();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = new Mt564FeedGenerator(EVENTS, 42).currentFeed();
+        serializer = "binary".equals(format) ? new Mt564EventSerializer() : new JsonSerializer<>();
+        encoded = new byte[EVENTS][];
+        long bytes = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            encoded[i] = serializer.serialize(TOPIC, events.get(i));
+            bytes += encoded[i].length;
+        }
+        System.out.printf("%n%s: %d bytes per event%n", format, bytes / EVENTS);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void serialize(Blackhole blackhole) {
+        for (Mt564EventDto event : events) {
+            blackhole.consume(serializer.serialize(TOPIC, event));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void deserialize(Blackhole blackhole) {
+        for (byte[] data : encoded) {
+            blackhole.consume(deserializer.deserialize(TOPIC, data));
+        }
+    }
+}
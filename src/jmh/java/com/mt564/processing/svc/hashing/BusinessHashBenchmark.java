@@ -0,0 +1,88 @@
+package com.mt564.processing.svc.hashing;
+
+import com.mt564.processing.svc.benchmark.Mt564FeedGenerator;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Business hash cost per event: the engine in both modes against the original String.join implementation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BusinessHashBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    private List<Mt564EventDto> events;
+
+    @State(Scope.Benchmark)
+    public static class EngineMode {
+        @Param({"SHA_256", "MURMUR3_128"})
+        private BusinessHashMode mode;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        events = new Mt564FeedGenerator(EVENTS, 42).currentFeed();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void engine(EngineMode engineMode, Blackhole blackhole) {
+        for (Mt564EventDto event : events) {
+            blackhole.consume(BusinessHashEngine.hash(event, engineMode.mode));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void legacyStringJoin(Blackhole blackhole) throws NoSuchAlgorithmException {
+        for (Mt564EventDto event : events) {
+            blackhole.consume(legacyHash(event));
+        }
+    }
+
+    // Mt564EventDto.getBusinessHash() as it was before BusinessHashEngine, kept as the baseline.
+    private static String legacyHash(Mt564EventDto dto) throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        String input = String.join("|",
+                Optional.ofNullable(dto.getRelatedMessageReference()).orElse(""),
+                Optional.ofNullable(dto.getCorporateActionEventId()).orElse(""),
+                Optional.ofNullable(dto.getCorporateActionEventType()).orElse(""),
+                Optional.ofNullable(dto.getMandatoryVoluntaryIndicator()).orElse(""),
+                Optional.ofNullable(dto.getEventProcessingStatus()).orElse(""),
+                Optional.ofNullable(dto.getEventStatusCode()).orElse(""),
+                Optional.ofNullable(dto.getOfficialCorporateActionEventId()).orElse(""),
+                Optional.ofNullable(dto.getLinkEventId()).orElse(""),
+                Optional.ofNullable(dto.getSafekeepingAccount()).orElse(""),
+                Optional.ofNullable(dto.getPlaceOfSafekeeping()).orElse(""),
+                String.valueOf(dto.getEventCreationDatetime()),
+                String.valueOf(dto.getEffectiveDate()),
+                String.valueOf(dto.getRecordDate()),
+                String.valueOf(dto.getExDate()),
+                String.valueOf(dto.getAnnouncementDate()),
+                String.valueOf(dto.getResponseDeadline()),
+                String.valueOf(dto.getGeneralMeetingDate()),
+                Optional.ofNullable(dto.getNarrative()).orElse(""),
+                String.valueOf(dto.getMarketDisclosureFlag())
+        );
+        byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hashBytes) {
+            hexString.append(String.format("%02x", b));
+        }
+        return hexString.toString();
+    }
+}
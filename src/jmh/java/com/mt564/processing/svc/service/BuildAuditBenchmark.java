@@ -0,0 +1,57 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.benchmark.BenchmarkContext;
+import com.mt564.processing.svc.benchmark.Mt564FeedGenerator;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Audit snapshotting (serialise + persist) of one batch of changed events against H2.
+ * Every invocation writes the batch under a new version number so each audit row is a fresh insert.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class BuildAuditBenchmark {
+
+    @Param({"500"})
+    private int batchSize;
+
+    @Param({"json", "binary"})
+    private String snapshotCodec;
+
+    private ConfigurableApplicationContext context;
+    private Mt564EventBuildService buildService;
+    private List<Mt564Event> events;
+    private int version;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("audit", "app.audit.snapshot-codec=" + snapshotCodec);
+        buildService = context.getBean(Mt564EventBuildService.class);
+        events = new Mt564FeedGenerator(batchSize, 42).currentFeed().stream().map(Mt564Event::of).toList();
+    }
+
+    @Setup(Level.Invocation)
+    public void nextVersion() {
+        version++;
+        events.forEach(event -> event.setVersionNumber(version));
+    }
+
+    @Benchmark
+    public void buildAudit() {
+        buildService.buildAudit(events);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
@@ -0,0 +1,98 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.benchmark.BenchmarkContext;
+import com.mt564.processing.svc.benchmark.Mt564FeedGenerator;
+import com.mt564.processing.svc.model.dto.Mt564EventDelta;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delta reporting over an audit table seeded with one full feed plus {@code versions} churned re-sends.
+ * - getFieldLevelDeltas: the /api/events/delta workload over the whole seeded window (one op = one query)
+ * - computeDelta: the per-pair snapshot diff in isolation
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ComputeDeltaBenchmark {
+
+    @Param({"10000", "100000", "1000000", "5000000"})
+    private int size;
+
+    @Param({"0.01", "0.1", "1.0"})
+    private double churn;
+
+    @Param({"3"})
+    private int versions;
+
+    @Param({"json", "binary"})
+    private String snapshotCodec;
+
+    @Param({"false", "true"})
+    private boolean diffCapture;
+
+    private ConfigurableApplicationContext context;
+    private EventDeltaReportingService deltaService;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Mt564EventAudit previous;
+    private Mt564EventAudit current;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("delta", "app.audit.snapshot-codec=" + snapshotCodec,
+                "app.audit.diff-capture=" + diffCapture);
+        Mt564EventBuildService buildService = context.getBean(Mt564EventBuildService.class);
+        deltaService = context.getBean(EventDeltaReportingService.class);
+        Mt564EventAuditRepository auditRepository = context.getBean(Mt564EventAuditRepository.class);
+
+        from = LocalDateTime.now().minusMinutes(1);
+        Mt564FeedGenerator generator = new Mt564FeedGenerator(size, 42);
+        Mt564FeedGenerator.batches(generator.currentFeed(), 500).forEach(buildService::processDailyEvents);
+        for (int i = 0; i < versions; i++) {
+            Mt564FeedGenerator.batches(generator.nextFeed(churn), 500).forEach(buildService::processDailyEvents);
+        }
+        to = LocalDateTime.now().plusMinutes(1);
+
+        Mt564EventAudit anyChanged = null;
+        for (int page = 0; anyChanged == null; page++) {
+            List<Mt564EventAudit> audits = auditRepository.findAll(PageRequest.of(page, 1000)).getContent();
+            if (audits.isEmpty()) {
+                throw new IllegalStateException("No changed events were generated");
+            }
+            anyChanged = audits.stream().filter(audit -> audit.getId().getVersionNumber() > 0).findFirst().orElse(null);
+        }
+        Mt564EventAuditId id = anyChanged.getId();
+        current = anyChanged;
+        previous = auditRepository.findById(new Mt564EventAuditId(id.getEventReference(),
+                id.getFinancialInstrumentId(), id.getSenderBic(), id.getVersionNumber() - 1)).orElseThrow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Mt564EventDelta> getFieldLevelDeltas() {
+        return deltaService.getFieldLevelDeltas(from, to);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Mt564EventDelta computeDelta() {
+        return deltaService.computeDelta(previous, current);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
@@ -0,0 +1,78 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.benchmark.BenchmarkContext;
+import com.mt564.processing.svc.cache.BusinessHashIndex;
+import com.mt564.processing.svc.benchmark.Mt564FeedGenerator;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end ingest of one full daily feed through processDailyEvents, in Kafka-sized batches, against H2.
+ *
+ * The universe is loaded once per trial; every measured iteration then re-sends the whole universe with a
+ * {@code churn} fraction of changed events. One operation = one full feed, so events/s = size / score.
+ * Run with -Djmh.args="-p size=10000 ProcessDailyEvents -jvmArgsAppend -Dapp.hash-index.enabled=false" to
+ * measure the database change detection without the in-memory hash index.
+ * persistenceMode compares the JPA engine with the JDBC batch upsert engine (app.persistence.mode).
+ * The 1M and 5M sizes need a large heap, e.g. -Djmh.args="-p size=5000000 -jvmArgsAppend -Xmx16g".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+public class ProcessDailyEventsBenchmark {
+
+    @Param({"10000", "100000", "1000000", "5000000"})
+    private int size;
+
+    @Param({"0.0", "0.01", "0.1", "1.0"})
+    private double churn;
+
+    @Param({"500"})
+    private int batchSize;
+
+    @Param({"jpa", "jdbc"})
+    private String persistenceMode;
+
+    private ConfigurableApplicationContext context;
+    private Mt564EventBuildService buildService;
+    private BusinessHashIndex hashIndex;
+    private Mt564FeedGenerator generator;
+    private List<List<Mt564EventDto>> feedBatches;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("ingest", "app.persistence.mode=" + persistenceMode);
+        buildService = context.getBean(Mt564EventBuildService.class);
+        hashIndex = context.getBean(BusinessHashIndex.class);
+        generator = new Mt564FeedGenerator(size, 42);
+        Mt564FeedGenerator.batches(generator.currentFeed(), batchSize).forEach(buildService::processDailyEvents);
+    }
+
+    @Setup(Level.Iteration)
+    public void nextFeed() {
+        feedBatches = Mt564FeedGenerator.batches(generator.nextFeed(churn), batchSize);
+    }
+
+    @Benchmark
+    public void processDailyEvents() {
+        // same stages as the Kafka consumer: hash index pre-filter, then persistence of what is left
+        for (List<Mt564EventDto> batch : feedBatches) {
+            List<Mt564EventDto> changed = hashIndex.filterChanged(batch);
+            if (!changed.isEmpty()) {
+                buildService.processDailyEvents(changed);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+}
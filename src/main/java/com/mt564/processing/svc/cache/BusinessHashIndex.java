@@ -0,0 +1,390 @@
+package com.mt564.processing.svc.cache;
+
+import com.mt564.processing.svc.config.Mt564EventIdPartitioner;
+import com.mt564.processing.svc.hashing.HexCodec;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node-local index of the current business hash and version of every persisted MT564 event.
+ *
+ * It lets the Kafka consumer drop unchanged events of the full daily feed before any database or JPA work.
+ * The index is:
+ * - compact: the hash is kept as its first 128 bits in two longs instead of a 64 char hex String, and sender BICs
+ *   (a few hundred distinct values) are interned through a dictionary
+ * - bounded: an access-ordered LRU capped at app.hash-index.max-entries; evicted keys simply go back to the
+ *   database check
+ * - warm-loaded at startup by streaming mt564_events, and kept write-through by Mt564EventBuildService once the
+ *   writing transaction has committed
+ *
+ * The index only knows about writes made by this node. It relies on the feed being partitioned by event key
+ * (Mt564EventIdPartitioner) so that a given event is only written by the node consuming its partition; a miss or a
+ * differing hash always falls back to the database. A hit is only trusted if the entry was read or written after this
+ * node was last assigned the partition of the event (see HashIndexRebalanceListener): while another node owned it,
+ * that node may have written versions this index never saw, and an event reverting to the state indexed here would
+ * otherwise be dropped as unchanged. Older entries are dropped on lookup and the event goes to the database check,
+ * whose unchanged results re-populate the index.
+ *
+ * Mt564FileIngestJob writes outside the Kafka partitioning, so the indexes of the other nodes do not see its writes.
+ * After every batch it commits, it increments the generation of the index in mt564_job_state (see
+ * externalWriteCommitted()); every lookup first reads that generation by primary key, and once it moved no entry read
+ * before is trusted any more.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BusinessHashIndex {
+
+    private static final String WARM_UP_SQL =
+            "SELECT event_reference, financial_instrument_id, sender_bic, business_hash, version_number FROM mt564_events";
+
+    // row of mt564_job_state holding the cluster-wide generation of the indexes
+    static final String GENERATION_ROW = "mt564-hash-index";
+    private static final String GENERATION_SQL = "SELECT generation FROM mt564_job_state WHERE name = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.hash-index.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.hash-index.max-entries:2000000}")
+    private int maxEntries;
+
+    @Value("${app.hash-index.warm-up:true}")
+    private boolean warmUpEnabled;
+
+    private final Map<String, String> bicDictionary = new ConcurrentHashMap<>();
+
+    private final LinkedHashMap<Mt564EventId, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Mt564EventId, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    // logical clock of the index: entries remember when they were read, partitions when they were last assigned
+    private final AtomicLong clock = new AtomicLong();
+
+    // by partition of the events topic, the clock when this node was last assigned it; empty until the first assignment
+    private long[] assignedAt = new long[0];
+
+    // last generation read from mt564_job_state (null until the first read), and the clock when it was read
+    private Long generation;
+    private long generationAt;
+
+    private Counter hits;
+    private Counter changed;
+    private Counter misses;
+    private Counter evictions;
+
+    @PostConstruct
+    void registerMetrics() {
+        hits = meterRegistry.counter("mt564.hash_index.lookups", "result", "hit");
+        changed = meterRegistry.counter("mt564.hash_index.lookups", "result", "changed");
+        misses = meterRegistry.counter("mt564.hash_index.lookups", "result", "miss");
+        evictions = meterRegistry.counter("mt564.hash_index.evictions");
+        Gauge.builder("mt564.hash_index.size", entries, Map::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Removes the events whose business hash equals the indexed one.
+     *
+     * Lookup results are counted as:
+     * - hit: indexed with the same hash, the event is dropped
+     * - changed: indexed with a different hash, the event goes on to be updated
+     * - miss: not indexed (new, evicted, or read before the partition of the event was assigned to this node or
+     *   before the last write outside the Kafka partitioning), the event goes on to the database check
+     *
+     * @return the events that still need processing, in their original order
+     */
+    public List<Mt564EventDto> filterChanged(List<Mt564EventDto> dtos) {
+        if (!enabled) {
+            return dtos;
+        }
+        long currentGeneration = readGeneration();
+        // keys and hashes (the first call computes it) outside the lock, which all the listener consumers share
+        Mt564EventId[] ids = new Mt564EventId[dtos.size()];
+        Entry[] hashes = new Entry[dtos.size()];
+        for (int i = 0; i < ids.length; i++) {
+            Mt564EventDto dto = dtos.get(i);
+            ids[i] = Mt564EventId.of(dto.getEventReference(), dto.getFinancialInstrumentId(), dto.getSenderBic());
+            hashes[i] = Entry.of(dto.getBusinessHash());
+        }
+        List<Mt564EventDto> remaining = new ArrayList<>(dtos.size());
+        int hitCount = 0;
+        int changedCount = 0;
+        synchronized (entries) {
+            observeGeneration(currentGeneration, false);
+            for (int i = 0; i < ids.length; i++) {
+                Entry entry = entries.get(ids[i]);
+                if (entry != null && !isCurrent(ids[i], entry)) {
+                    entries.remove(ids[i]);
+                    entry = null;
+                }
+                if (entry == null) {
+                    remaining.add(dtos.get(i));
+                } else if (entry.matches(hashes[i])) {
+                    hitCount++;
+                } else {
+                    changedCount++;
+                    remaining.add(dtos.get(i));
+                }
+            }
+        }
+        hits.increment(hitCount);
+        changed.increment(changedCount);
+        misses.increment(dtos.size() - hitCount - changedCount);
+        return remaining;
+    }
+
+    /**
+     * Write-through of persisted events. Inside a transaction the index is only updated once it has committed, so a
+     * rolled back batch never leaves hashes in the index that the database does not have.
+     */
+    public void recordAfterCommit(List<Mt564Event> persistedEvents) {
+        if (!enabled || persistedEvents.isEmpty()) {
+            return;
+        }
+        long seenAt = clock.get();
+        afterCommit(() -> {
+            for (Mt564Event event : persistedEvents) {
+                Integer version = event.getVersionNumber();
+                put(event.getId(), event.getBusinessHash(), version == null ? 0 : version, seenAt, true);
+            }
+        });
+    }
+
+    /**
+     * Same as recordAfterCommit for the stored hash and version of events found unchanged by the database check, so
+     * that the index fills up again after a partition was assigned to this node.
+     */
+    public void recordUnchangedAfterCommit(Collection<Mt564EventHashView> unchanged) {
+        if (!enabled || unchanged.isEmpty()) {
+            return;
+        }
+        long seenAt = clock.get();
+        afterCommit(() -> {
+            for (Mt564EventHashView view : unchanged) {
+                Integer version = view.getVersionNumber();
+                put(view.getId(), view.getBusinessHash(), version == null ? 0 : version, seenAt, false);
+            }
+        });
+    }
+
+    /**
+     * Marks partitions of the events topic as (re)assigned to this node: the entries of their events read before now
+     * are no longer trusted. A change in the number of partitions moves events between partitions, so then no entry
+     * read before now is trusted.
+     *
+     * @param partitions     the partitions this node did not consume right before
+     * @param partitionCount the number of partitions of the events topic
+     */
+    public void partitionsAssigned(Collection<Integer> partitions, int partitionCount) {
+        if (!enabled || partitionCount <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            long now = clock.incrementAndGet();
+            if (assignedAt.length != partitionCount) {
+                assignedAt = new long[partitionCount];
+                Arrays.fill(assignedAt, now);
+            }
+            for (Integer partition : partitions) {
+                if (partition >= 0 && partition < partitionCount) {
+                    assignedAt[partition] = now;
+                }
+            }
+        }
+        log.info("Business hash index entries of partitions {} invalidated", partitions);
+    }
+
+    /**
+     * Marks a committed write made outside the Kafka partitioning (see Mt564FileIngestJob): increments the generation
+     * in mt564_job_state, so that every node stops trusting the entries it read before. Done even with the index
+     * disabled on this node, since other nodes may have it enabled.
+     */
+    public void externalWriteCommitted() {
+        if (jdbcTemplate.update("UPDATE mt564_job_state SET generation = COALESCE(generation, 0) + 1 WHERE name = ?",
+                GENERATION_ROW) == 1) {
+            return;
+        }
+        try {
+            jdbcTemplate.update("INSERT INTO mt564_job_state (name, generation) VALUES (?, 1)", GENERATION_ROW);
+        } catch (DataIntegrityViolationException ex) {
+            // another node created the row first
+            jdbcTemplate.update("UPDATE mt564_job_state SET generation = COALESCE(generation, 0) + 1 WHERE name = ?",
+                    GENERATION_ROW);
+        }
+    }
+
+    /**
+     * Streams mt564_events (key, hash and version only) into the index once the application is up.
+     * Runs in a read-only transaction so that drivers such as PostgreSQL honour the fetch size with a cursor.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        if (!enabled || !warmUpEnabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        // the rows are read after the current generation, which is the baseline of the later lookups
+        long currentGeneration = readGeneration();
+        synchronized (entries) {
+            observeGeneration(currentGeneration, true);
+        }
+        // rows of the warm-up are as old as the start of the query
+        long seenAt = clock.get();
+        int[] loaded = {0};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(WARM_UP_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(10_000);
+            statement.setMaxRows(maxEntries);
+            return statement;
+        }, (ResultSet rs) -> {
+            if (put(Mt564EventId.of(rs.getString(1), rs.getString(2), rs.getString(3)), rs.getString(4), rs.getInt(5), seenAt, false)) {
+                loaded[0]++;
+            }
+        });
+        log.info("Business hash index warmed up with [{}] events in [{}] ms", loaded[0], System.currentTimeMillis() - start);
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Inside a transaction, runs the update of the index once the transaction has committed.
+     */
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    private long readGeneration() {
+        List<Long> rows = jdbcTemplate.queryForList(GENERATION_SQL, Long.class, GENERATION_ROW);
+        return rows.isEmpty() || rows.get(0) == null ? 0 : rows.get(0);
+    }
+
+    /**
+     * Takes the generation read from mt564_job_state: once it moved, the entries read before are no longer trusted.
+     * The first generation read is the baseline. Called holding the lock of the entries.
+     */
+    private void observeGeneration(long currentGeneration, boolean baseline) {
+        if (generation == null || baseline) {
+            generation = currentGeneration;
+        } else if (generation != currentGeneration) {
+            generation = currentGeneration;
+            generationAt = clock.incrementAndGet();
+            log.info("Business hash index entries invalidated by a write outside the Kafka partitioning");
+        }
+    }
+
+    /**
+     * Whether the entry was read after the last write outside the Kafka partitioning seen by this node and after the
+     * partition of the event was last assigned to this node (always true until the first assignment, e.g. on a node
+     * that does not consume the events topic).
+     */
+    private boolean isCurrent(Mt564EventId id, Entry entry) {
+        return entry.seenAt >= generationAt && (assignedAt.length == 0
+                || entry.seenAt >= assignedAt[Mt564EventIdPartitioner.partition(id, assignedAt.length)]);
+    }
+
+    /**
+     * Adds or replaces an entry unless the index already holds a newer version of the event (a warm-up row read
+     * before a concurrent write-through must not overwrite it).
+     */
+    private boolean put(Mt564EventId id, String businessHash, int version, long seenAt, boolean writeThrough) {
+        if (businessHash == null || businessHash.length() < 32) {
+            return false;
+        }
+        Mt564EventId key = Mt564EventId.of(id.getEventReference(), id.getFinancialInstrumentId(), internBic(id.getSenderBic()));
+        Entry entry = new Entry(HexCodec.parseLong(businessHash, 0), HexCodec.parseLong(businessHash, 16), version, seenAt);
+        synchronized (entries) {
+            Entry current = entries.get(key);
+            if (current != null && isCurrent(key, current)
+                    && (current.version > version || (!writeThrough && current.version == version))) {
+                return false;
+            }
+            entries.put(key, entry);
+            return true;
+        }
+    }
+
+    private String internBic(String bic) {
+        return bic == null ? null : bicDictionary.computeIfAbsent(bic, b -> b);
+    }
+
+    private static final class Entry {
+        private final long hashHigh;
+        private final long hashLow;
+        private final int version;
+        private final long seenAt;
+
+        private Entry(long hashHigh, long hashLow, int version, long seenAt) {
+            this.hashHigh = hashHigh;
+            this.hashLow = hashLow;
+            this.version = version;
+            this.seenAt = seenAt;
+        }
+
+        /**
+         * @return the hash of an event to look up, null if it has none
+         */
+        private static Entry of(String businessHash) {
+            return businessHash == null || businessHash.length() < 32 ? null
+                    : new Entry(HexCodec.parseLong(businessHash, 0), HexCodec.parseLong(businessHash, 16), 0, 0);
+        }
+
+        private boolean matches(Entry hash) {
+            return hash != null && hash.hashHigh == hashHigh && hash.hashLow == hashLow;
+        }
+    }
+}
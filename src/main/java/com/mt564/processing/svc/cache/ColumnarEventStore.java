@@ -0,0 +1,600 @@
+package com.mt564.processing.svc.cache;
+
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventColumn;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Optional in-process columnar replica of mt564_events, used by CustomReportService to run saved reports without a
+ * database round trip.
+ *
+ * Every Mt564EventColumn is stored as one array indexed by row number:
+ * - DICTIONARY columns (sender BIC, event type / indicator / status codes) as int codes into a per-column dictionary,
+ *   with one bitmap (BitSet of rows) per distinct value, so an equality filter is a bitmap lookup
+ * - dates as epoch-day ints, date-times as epoch seconds and nanos, integers and booleans unboxed
+ * - other strings as String arrays
+ *
+ * A report is a filter + project scan: each equality filter produces a BitSet of the matching rows (bitmap lookup
+ * or a tight loop over the primitive array), the BitSets are and-ed, then only the selected columns of the remaining
+ * rows are materialised, with the value types JDBC returns (java.sql.Date / Timestamp).
+ *
+ * The replica is loaded at startup and fully reloaded every app.report.columnar.reload-interval, and kept
+ * write-through by Mt564EventBuildService once the writing transaction has committed. Between two reloads it only
+ * knows about writes made by this node. Any request it cannot answer (disabled, not loaded yet, unknown column, filter
+ * value it cannot compare) is left to the database.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ColumnarEventStore {
+
+    private static final Mt564EventColumn[] COLUMNS = Mt564EventColumn.values();
+
+    private static final String LOAD_SQL = Stream.of(COLUMNS).map(Mt564EventColumn::getColumnName)
+            .collect(Collectors.joining(", ", "SELECT ", " FROM mt564_events"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.report.columnar.enabled:false}")
+    private boolean enabled;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object reloadLock = new Object();
+
+    // null until the first load completed
+    private Table table;
+    // write-through events received while a reload runs, replayed on the reloaded table (guarded by lock)
+    private List<Mt564Event> pendingWrites;
+
+    private Counter served;
+    private Counter fallbacks;
+
+    @PostConstruct
+    void registerMetrics() {
+        served = meterRegistry.counter("mt564.report.columnar", "result", "served");
+        fallbacks = meterRegistry.counter("mt564.report.columnar", "result", "fallback");
+        Gauge.builder("mt564.report.columnar.rows", this, ColumnarEventStore::size).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return table == null ? 0 : table.size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void warmUp() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.report.columnar.reload-interval:PT30M}",
+            initialDelayString = "${app.report.columnar.reload-interval:PT30M}")
+    @Transactional(readOnly = true)
+    public void scheduledReload() {
+        if (enabled) {
+            reload();
+        }
+    }
+
+    /**
+     * Rebuilds the replica from mt564_events into a new table, streamed with a large fetch size, and swaps it in.
+     * Write-through events received meanwhile are replayed on the new table, so none is lost.
+     */
+    @Transactional(readOnly = true)
+    public void reload() {
+        synchronized (reloadLock) {
+            long start = System.currentTimeMillis();
+            lock.writeLock().lock();
+            try {
+                pendingWrites = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            Table fresh = new Table();
+            try {
+                jdbcTemplate.query(connection -> {
+                    PreparedStatement statement = connection.prepareStatement(LOAD_SQL, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                    statement.setFetchSize(10_000);
+                    return statement;
+                }, (ResultSet rs) -> {
+                    fresh.load(rs);
+                });
+            } catch (RuntimeException e) {
+                lock.writeLock().lock();
+                try {
+                    pendingWrites = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+
+            lock.writeLock().lock();
+            try {
+                pendingWrites.forEach(fresh::upsert);
+                pendingWrites = null;
+                table = fresh;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.info("Columnar event store loaded with [{}] events in [{}] ms", fresh.size, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Write-through of persisted events, applied once the transaction has committed (see BusinessHashIndex).
+     */
+    public void recordAfterCommit(List<Mt564Event> persistedEvents) {
+        if (!enabled || persistedEvents.isEmpty()) {
+            return;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    record(persistedEvents);
+                }
+            });
+        } else {
+            record(persistedEvents);
+        }
+    }
+
+    void record(List<Mt564Event> events) {
+        lock.writeLock().lock();
+        try {
+            if (table != null) {
+                events.forEach(table::upsert);
+            }
+            if (pendingWrites != null) {
+                pendingWrites.addAll(events);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Runs "SELECT columns FROM mt564_events WHERE filter_1 = :filter_1 AND ..." against the replica.
+     *
+     * @param columns the selected column names; the result rows are keyed by their canonical (lower case) name, like
+     *                the rows CustomReportService reads from the database
+     * @param filters equality filters by column name
+     * @return the rows, or empty when the query has to go to the database
+     */
+    public Optional<List<Map<String, Object>>> query(List<String> columns, Map<String, Object> filters) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        Mt564EventColumn[] projection = new Mt564EventColumn[columns.size()];
+        for (int i = 0; i < projection.length; i++) {
+            projection[i] = Mt564EventColumn.byName(columns.get(i));
+            if (projection[i] == null) {
+                return fallback("unknown column " + columns.get(i));
+            }
+        }
+        Map<Mt564EventColumn, Object> predicates = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> filter : filters.entrySet()) {
+            Mt564EventColumn column = Mt564EventColumn.byName(filter.getKey());
+            if (column == null) {
+                return fallback("unknown filter column " + filter.getKey());
+            }
+            predicates.put(column, filter.getValue());
+        }
+
+        lock.readLock().lock();
+        try {
+            if (table == null) {
+                return fallback("not loaded yet");
+            }
+            BitSet selected = new BitSet(table.size);
+            selected.set(0, table.size);
+            for (Map.Entry<Mt564EventColumn, Object> predicate : predicates.entrySet()) {
+                BitSet matching = table.column(predicate.getKey()).matching(predicate.getValue(), table.size);
+                if (matching == null) {
+                    return fallback("filter value " + predicate.getValue() + " on " + predicate.getKey().getColumnName());
+                }
+                selected.and(matching);
+            }
+
+            List<Map<String, Object>> rows = new ArrayList<>(selected.cardinality());
+            for (int row = selected.nextSetBit(0); row >= 0; row = selected.nextSetBit(row + 1)) {
+                Map<String, Object> values = new LinkedHashMap<>(projection.length * 4 / 3 + 1);
+                for (int i = 0; i < projection.length; i++) {
+                    values.put(projection[i].getColumnName(), table.column(projection[i]).read(row));
+                }
+                rows.add(values);
+            }
+            served.increment();
+            return Optional.of(rows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Optional<List<Map<String, Object>>> fallback(String reason) {
+        log.debug("Columnar event store falls back to the database: {}", reason);
+        fallbacks.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * One generation of the replica. Row numbers are stable, updates overwrite the row of the event in place.
+     */
+    static final class Table {
+
+        private final Map<Mt564EventId, Integer> rows = new HashMap<>();
+        private final Column[] columns = new Column[COLUMNS.length];
+        private int capacity = 1024;
+        private int size;
+
+        Table() {
+            for (Mt564EventColumn column : COLUMNS) {
+                columns[column.ordinal()] = Column.of(column.getKind(), capacity);
+            }
+        }
+
+        Column column(Mt564EventColumn column) {
+            return columns[column.ordinal()];
+        }
+
+        void load(ResultSet rs) throws SQLException {
+            Mt564EventId id = Mt564EventId.of(rs.getString(1), rs.getString(2), rs.getString(3));
+            int row = rows.computeIfAbsent(id, key -> append());
+            for (Mt564EventColumn column : COLUMNS) {
+                columns[column.ordinal()].set(row, rs.getObject(column.ordinal() + 1, column.getKind().getJavaType()));
+            }
+        }
+
+        /**
+         * Inserts or overwrites the row of the event, unless the replica already holds a newer version of it.
+         */
+        void upsert(Mt564Event event) {
+            Integer existing = rows.get(event.getId());
+            if (existing != null) {
+                Object stored = column(Mt564EventColumn.VERSION_NUMBER).read(existing);
+                if (stored != null && event.getVersionNumber() != null && (Integer) stored > event.getVersionNumber()) {
+                    return;
+                }
+            }
+            int row = existing != null ? existing : append();
+            if (existing == null) {
+                rows.put(event.getId(), row);
+            }
+            for (Mt564EventColumn column : COLUMNS) {
+                columns[column.ordinal()].set(row, column.get(event));
+            }
+        }
+
+        private int append() {
+            if (size == capacity) {
+                capacity *= 2;
+                for (Column column : columns) {
+                    column.grow(capacity);
+                }
+            }
+            return size++;
+        }
+    }
+
+    abstract static class Column {
+
+        static Column of(Mt564EventColumn.Kind kind, int capacity) {
+            return switch (kind) {
+                case STRING -> new StringColumn(capacity);
+                case DICTIONARY -> new DictionaryColumn(capacity);
+                case INTEGER -> new IntColumn(capacity);
+                case BOOLEAN -> new BooleanColumn();
+                case DATE -> new DateColumn(capacity);
+                case DATE_TIME -> new DateTimeColumn(capacity);
+            };
+        }
+
+        abstract void grow(int capacity);
+
+        abstract void set(int row, Object value);
+
+        /**
+         * The value of the row as JDBC returns it.
+         */
+        abstract Object read(int row);
+
+        /**
+         * The rows equal to the filter value with SQL semantics (a null value matches no row), or null when the value
+         * cannot be converted to the column type.
+         */
+        abstract BitSet matching(Object value, int size);
+    }
+
+    static final class StringColumn extends Column {
+        private String[] values;
+
+        StringColumn(int capacity) {
+            values = new String[capacity];
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        void set(int row, Object value) {
+            values[row] = (String) value;
+        }
+
+        Object read(int row) {
+            return values[row];
+        }
+
+        BitSet matching(Object value, int size) {
+            BitSet matching = new BitSet(size);
+            if (value != null) {
+                String expected = value.toString();
+                for (int row = 0; row < size; row++) {
+                    if (expected.equals(values[row])) {
+                        matching.set(row);
+                    }
+                }
+            }
+            return matching;
+        }
+    }
+
+    static final class DictionaryColumn extends Column {
+        private static final int NULL_CODE = -1;
+
+        private int[] codes;
+        private final List<String> dictionary = new ArrayList<>();
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<BitSet> bitmaps = new ArrayList<>();
+
+        DictionaryColumn(int capacity) {
+            codes = new int[capacity];
+            Arrays.fill(codes, NULL_CODE);
+        }
+
+        void grow(int capacity) {
+            int previous = codes.length;
+            codes = Arrays.copyOf(codes, capacity);
+            Arrays.fill(codes, previous, capacity, NULL_CODE);
+        }
+
+        void set(int row, Object value) {
+            if (codes[row] != NULL_CODE) {
+                bitmaps.get(codes[row]).clear(row);
+            }
+            if (value == null) {
+                codes[row] = NULL_CODE;
+                return;
+            }
+            int code = ids.computeIfAbsent((String) value, v -> {
+                dictionary.add(v);
+                bitmaps.add(new BitSet());
+                return dictionary.size() - 1;
+            });
+            codes[row] = code;
+            bitmaps.get(code).set(row);
+        }
+
+        Object read(int row) {
+            return codes[row] == NULL_CODE ? null : dictionary.get(codes[row]);
+        }
+
+        BitSet matching(Object value, int size) {
+            Integer code = value == null ? null : ids.get(value.toString());
+            return code == null ? new BitSet() : (BitSet) bitmaps.get(code).clone();
+        }
+    }
+
+    static final class IntColumn extends Column {
+        private int[] values;
+        private final BitSet nulls = new BitSet();
+
+        IntColumn(int capacity) {
+            values = new int[capacity];
+        }
+
+        void grow(int capacity) {
+            values = Arrays.copyOf(values, capacity);
+        }
+
+        void set(int row, Object value) {
+            nulls.set(row, value == null);
+            values[row] = value == null ? 0 : (Integer) value;
+        }
+
+        Object read(int row) {
+            return nulls.get(row) ? null : values[row];
+        }
+
+        BitSet matching(Object value, int size) {
+            BitSet matching = new BitSet(size);
+            if (value == null) {
+                return matching;
+            }
+            int expected;
+            try {
+                expected = value instanceof Number number ? Math.toIntExact(number.longValue()) : Integer.parseInt(value.toString().trim());
+            } catch (NumberFormatException | ArithmeticException e) {
+                return null;
+            }
+            if (value instanceof Number number && number.doubleValue() != expected) {
+                return null;
+            }
+            for (int row = 0; row < size; row++) {
+                if (values[row] == expected) {
+                    matching.set(row);
+                }
+            }
+            matching.andNot(nulls);
+            return matching;
+        }
+    }
+
+    static final class BooleanColumn extends Column {
+        private final BitSet values = new BitSet();
+        private final BitSet nulls = new BitSet();
+
+        void grow(int capacity) {
+        }
+
+        void set(int row, Object value) {
+            nulls.set(row, value == null);
+            values.set(row, Boolean.TRUE.equals(value));
+        }
+
+        Object read(int row) {
+            return nulls.get(row) ? null : values.get(row);
+        }
+
+        BitSet matching(Object value, int size) {
+            if (value == null) {
+                return new BitSet();
+            }
+            boolean expected;
+            if (value instanceof Boolean flag) {
+                expected = flag;
+            } else if ("true".equalsIgnoreCase(value.toString()) || "false".equalsIgnoreCase(value.toString())) {
+                expected = Boolean.parseBoolean(value.toString());
+            } else {
+                return null;
+            }
+            BitSet matching = (BitSet) values.clone();
+            if (!expected) {
+                matching.flip(0, size);
+                matching.andNot(nulls);
+            }
+            return matching;
+        }
+    }
+
+    static final class DateColumn extends Column {
+        private static final int NULL_DAY = Integer.MIN_VALUE;
+
+        private int[] epochDays;
+
+        DateColumn(int capacity) {
+            epochDays = new int[capacity];
+        }
+
+        void grow(int capacity) {
+            epochDays = Arrays.copyOf(epochDays, capacity);
+        }
+
+        void set(int row, Object value) {
+            epochDays[row] = value == null ? NULL_DAY : (int) ((LocalDate) value).toEpochDay();
+        }
+
+        Object read(int row) {
+            return epochDays[row] == NULL_DAY ? null : Date.valueOf(LocalDate.ofEpochDay(epochDays[row]));
+        }
+
+        BitSet matching(Object value, int size) {
+            BitSet matching = new BitSet(size);
+            if (value == null) {
+                return matching;
+            }
+            int expected;
+            try {
+                expected = (int) LocalDate.parse(value.toString().trim()).toEpochDay();
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+            for (int row = 0; row < size; row++) {
+                if (epochDays[row] == expected) {
+                    matching.set(row);
+                }
+            }
+            return matching;
+        }
+    }
+
+    static final class DateTimeColumn extends Column {
+        private long[] epochSeconds;
+        private int[] nanos;
+        private final BitSet nulls = new BitSet();
+
+        DateTimeColumn(int capacity) {
+            epochSeconds = new long[capacity];
+            nanos = new int[capacity];
+        }
+
+        void grow(int capacity) {
+            epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+            nanos = Arrays.copyOf(nanos, capacity);
+        }
+
+        void set(int row, Object value) {
+            nulls.set(row, value == null);
+            LocalDateTime dateTime = (LocalDateTime) value;
+            epochSeconds[row] = dateTime == null ? 0 : dateTime.toEpochSecond(ZoneOffset.UTC);
+            nanos[row] = dateTime == null ? 0 : dateTime.getNano();
+        }
+
+        Object read(int row) {
+            return nulls.get(row) ? null : Timestamp.valueOf(LocalDateTime.ofEpochSecond(epochSeconds[row], nanos[row], ZoneOffset.UTC));
+        }
+
+        BitSet matching(Object value, int size) {
+            BitSet matching = new BitSet(size);
+            if (value == null) {
+                return matching;
+            }
+            LocalDateTime expected;
+            try {
+                expected = LocalDateTime.parse(value.toString().trim());
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+            long seconds = expected.toEpochSecond(ZoneOffset.UTC);
+            int nano = expected.getNano();
+            for (int row = 0; row < size; row++) {
+                if (epochSeconds[row] == seconds && nanos[row] == nano) {
+                    matching.set(row);
+                }
+            }
+            matching.andNot(nulls);
+            return matching;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.mt564.processing.svc.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.model.dto.Mt564EventDelta;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Materialised field-level deltas per day bucket: the deltas whose newer version was written during that day
+ * (updatedAt in [day 00:00, next day 00:00[). Any range made of whole days is the concatenation of its day buckets,
+ * since the first version of a day is diffed against its predecessor from an earlier day.
+ *
+ * The cache is:
+ * - bounded: an access-ordered LRU on heap capped at app.delta.cache.max-deltas deltas in total
+ * - optionally backed by a disk tier (app.delta.cache.disk-dir), one JSON file per day, which survives heap eviction
+ *   and restarts
+ * - restricted to closed days: a day is only cached once it ended more than app.delta.cache.settle-time ago, so
+ *   writes still in flight on other nodes cannot be missed
+ * - invalidated per day once a transaction writing audit rows of that day commits (see invalidateAfterCommit),
+ *   a load racing with such a write is not stored
+ */
+@Component
+@Slf4j
+public class DeltaDayCache {
+
+    private static final TypeReference<List<Mt564EventDelta>> DELTA_LIST = new TypeReference<>() {
+    };
+
+    private final ObjectMapper objectMapper;
+
+    private final Counter hits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Counter invalidations;
+
+    @Value("${app.delta.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.delta.cache.max-deltas:500000}")
+    private long maxDeltas = 500_000;
+
+    @Value("${app.delta.cache.disk-dir:}")
+    private String diskDir = "";
+
+    @Value("${app.delta.cache.settle-time:PT5M}")
+    private Duration settleTime = Duration.ofMinutes(5);
+
+    private Clock clock = Clock.systemDefaultZone();
+
+    private final LinkedHashMap<LocalDate, List<Mt564EventDelta>> days = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+
+    // bumped by every invalidation of a day, a load only stores its result if the generation did not move meanwhile
+    private final Map<LocalDate, Long> generations = new ConcurrentHashMap<>();
+    private final Object diskLock = new Object();
+
+    public DeltaDayCache(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.hits = meterRegistry.counter("mt564.delta_cache.lookups", "result", "hit");
+        this.diskHits = meterRegistry.counter("mt564.delta_cache.lookups", "result", "disk");
+        this.misses = meterRegistry.counter("mt564.delta_cache.lookups", "result", "miss");
+        this.evictions = meterRegistry.counter("mt564.delta_cache.evictions");
+        this.invalidations = meterRegistry.counter("mt564.delta_cache.invalidations");
+        Gauge.builder("mt564.delta_cache.deltas", this, DeltaDayCache::weight).register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Whether the deltas of the day can be served from the cache: the day is over and settled.
+     */
+    public boolean isCacheable(LocalDate day) {
+        return enabled && !day.plusDays(1).atStartOfDay().plus(settleTime).isAfter(LocalDateTime.now(clock));
+    }
+
+    /**
+     * Returns the deltas of the day from heap, then disk, and otherwise from the loader, storing its result.
+     */
+    public List<Mt564EventDelta> get(LocalDate day, Supplier<List<Mt564EventDelta>> loader) {
+        synchronized (days) {
+            List<Mt564EventDelta> cached = days.get(day);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+        }
+        long generation = generations.getOrDefault(day, 0L);
+
+        List<Mt564EventDelta> fromDisk = readDisk(day);
+        if (fromDisk != null) {
+            diskHits.increment();
+            putHeap(day, generation, fromDisk);
+            return fromDisk;
+        }
+
+        misses.increment();
+        List<Mt564EventDelta> loaded = List.copyOf(loader.get());
+        putHeap(day, generation, loaded);
+        writeDisk(day, generation, loaded);
+        return loaded;
+    }
+
+    /**
+     * Drops the day buckets of the given audit write times once the writing transaction has committed (immediately
+     * outside a transaction), so that a rolled back write does not invalidate anything and a load reading the
+     * pre-commit state is not kept.
+     */
+    public void invalidateAfterCommit(Collection<LocalDateTime> updatedAts) {
+        if (!enabled || updatedAts.isEmpty()) {
+            return;
+        }
+        Set<LocalDate> affected = new HashSet<>();
+        for (LocalDateTime updatedAt : updatedAts) {
+            if (updatedAt != null) {
+                affected.add(updatedAt.toLocalDate());
+            }
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate(affected);
+                }
+            });
+        } else {
+            invalidate(affected);
+        }
+    }
+
+    public void invalidate(Collection<LocalDate> affected) {
+        for (LocalDate day : affected) {
+            synchronized (diskLock) {
+                generations.merge(day, 1L, Long::sum);
+                synchronized (days) {
+                    List<Mt564EventDelta> removed = days.remove(day);
+                    if (removed != null) {
+                        weight -= removed.size();
+                    }
+                }
+                if (diskPath(day) != null) {
+                    try {
+                        Files.deleteIfExists(diskPath(day));
+                    } catch (IOException e) {
+                        log.warn("Could not delete cached deltas [{}]", diskPath(day), e);
+                    }
+                }
+            }
+            invalidations.increment();
+        }
+    }
+
+    public long weight() {
+        synchronized (days) {
+            return weight;
+        }
+    }
+
+    private void putHeap(LocalDate day, long generation, List<Mt564EventDelta> deltas) {
+        if (deltas.size() > maxDeltas) {
+            return;
+        }
+        synchronized (days) {
+            if (generations.getOrDefault(day, 0L) != generation) {
+                return;
+            }
+            List<Mt564EventDelta> previous = days.put(day, deltas);
+            weight += deltas.size() - (previous == null ? 0 : previous.size());
+            Iterator<List<Mt564EventDelta>> eldest = days.values().iterator();
+            while (weight > maxDeltas && eldest.hasNext()) {
+                weight -= eldest.next().size();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    private List<Mt564EventDelta> readDisk(LocalDate day) {
+        Path path = diskPath(day);
+        if (path == null || !Files.exists(path)) {
+            return null;
+        }
+        try {
+            return List.copyOf(objectMapper.readValue(path.toFile(), DELTA_LIST));
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable cached deltas [{}]", path, e);
+            return null;
+        }
+    }
+
+    private void writeDisk(LocalDate day, long generation, List<Mt564EventDelta> deltas) {
+        Path path = diskPath(day);
+        if (path == null) {
+            return;
+        }
+        synchronized (diskLock) {
+            if (generations.getOrDefault(day, 0L) != generation) {
+                return;
+            }
+            try {
+                Files.createDirectories(path.getParent());
+                Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+                objectMapper.writeValue(tmp.toFile(), deltas);
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                log.warn("Could not write cached deltas [{}]", path, e);
+            }
+        }
+    }
+
+    private Path diskPath(LocalDate day) {
+        return diskDir == null || diskDir.isBlank() ? null : Path.of(diskDir, "mt564-deltas-" + day + ".json");
+    }
+}
@@ -0,0 +1,57 @@
+package com.mt564.processing.svc.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.listener.ConsumerAwareRebalanceListener;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Tells the BusinessHashIndex which partitions of the events topic a consumer of this node starts consuming, so that
+ * the entries of their events written meanwhile by another node are no longer trusted.
+ *
+ * With the eager rebalance protocol every partition is revoked and then assigned again; the partitions revoked from a
+ * consumer and assigned back to it in the same rebalance never left it, and keep their entries.
+ */
+@RequiredArgsConstructor
+public class HashIndexRebalanceListener implements ConsumerAwareRebalanceListener {
+
+    private final BusinessHashIndex hashIndex;
+
+    // by consumer, the partitions revoked in the rebalance in progress
+    private final Map<Consumer<?, ?>, Set<TopicPartition>> revoked = new ConcurrentHashMap<>();
+
+    @Override
+    public void onPartitionsRevokedAfterCommit(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        revoked.computeIfAbsent(consumer, c -> ConcurrentHashMap.newKeySet()).addAll(partitions);
+    }
+
+    @Override
+    public void onPartitionsLost(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        // another consumer may already be writing them, they are not kept even if assigned back
+        Set<TopicPartition> pending = revoked.get(consumer);
+        if (pending != null) {
+            pending.removeAll(partitions);
+        }
+    }
+
+    @Override
+    public void onPartitionsAssigned(Consumer<?, ?> consumer, Collection<TopicPartition> partitions) {
+        Set<TopicPartition> kept = revoked.remove(consumer);
+        Map<String, List<TopicPartition>> newlyAssigned = partitions.stream()
+                .filter(partition -> kept == null || !kept.contains(partition))
+                .collect(Collectors.groupingBy(TopicPartition::topic));
+        newlyAssigned.forEach((topic, topicPartitions) -> {
+            List<PartitionInfo> infos = consumer.partitionsFor(topic);
+            hashIndex.partitionsAssigned(topicPartitions.stream().map(TopicPartition::partition).toList(),
+                    infos == null ? 0 : infos.size());
+        });
+    }
+}
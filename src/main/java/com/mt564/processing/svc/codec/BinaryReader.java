@@ -0,0 +1,74 @@
+package com.mt564.processing.svc.codec;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the encodings written by {@link BinaryWriter}.
+ *
+ * @throws IllegalArgumentException from every read method when the input is truncated or malformed
+ */
+public final class BinaryReader {
+
+    private final byte[] buffer;
+    private final int limit;
+    private int position;
+
+    public BinaryReader(byte[] buffer) {
+        this(buffer, 0, buffer.length);
+    }
+
+    public BinaryReader(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public boolean hasRemaining() {
+        return position < limit;
+    }
+
+    public int readByte() {
+        require(1);
+        return buffer[position++] & 0xFF;
+    }
+
+    public long readVarLong() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            require(1);
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint at position " + position);
+    }
+
+    public int readVarInt() {
+        return (int) readVarLong();
+    }
+
+    public long readSignedVarLong() {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() {
+        int length = readVarInt();
+        require(length);
+        String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return value;
+    }
+
+    private void require(int bytes) {
+        if (bytes < 0 || position + bytes > limit) {
+            throw new IllegalArgumentException("Unexpected end of binary data at position " + position);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventField;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact snapshot format stored in the snapshot_data column:
+ *
+ *   byte    format version (1)
+ *   byte    flags, bit 0 set when the body is deflated
+ *   [varint length of the inflated body, when deflated]
+ *   body:
+ *     varint  number of fields (Mt564EventField count at write time)
+ *     bytes   null bitmap, one bit per field in Mt564EventField order
+ *     values  every non-null field in Mt564EventField order, see FieldValues
+ *
+ * The composite key is not repeated, it is part of the audit row id. Bodies shorter than
+ * app.audit.snapshot-compression-threshold, or that do not shrink, are stored uncompressed: a typical event is a
+ * few hundred bytes and deflating it costs more CPU than it saves space.
+ */
+@Component
+public class BinarySnapshotCodec implements SnapshotCodec {
+
+    static final int FORMAT_VERSION = 1;
+    private static final int FLAG_DEFLATED = 1;
+
+    private static final ThreadLocal<State> STATE = ThreadLocal.withInitial(State::new);
+
+    @Value("${app.audit.snapshot-compression-threshold:512}")
+    private int compressionThreshold = 512;
+
+    @Override
+    public SnapshotFormat format() {
+        return SnapshotFormat.BINARY;
+    }
+
+    @Override
+    public void encode(Mt564Event event, Mt564EventAudit audit) {
+        State state = STATE.get();
+        BinaryWriter body = state.body.reset();
+        int fieldCount = Mt564EventField.count();
+        body.writeVarInt(fieldCount);
+
+        int bitmapPosition = body.size();
+        int bitmapLength = (fieldCount + 7) / 8;
+        for (int i = 0; i < bitmapLength; i++) {
+            body.writeByte(0);
+        }
+        for (int i = 0; i < fieldCount; i++) {
+            Mt564EventField field = Mt564EventField.of(i);
+            Object value = field.get(event);
+            if (value == null) {
+                body.buffer()[bitmapPosition + i / 8] |= (byte) (1 << (i % 8));
+            } else {
+                FieldValues.write(body, field.getType(), value);
+            }
+        }
+
+        BinaryWriter out = state.out.reset();
+        out.writeByte(FORMAT_VERSION);
+        if (body.size() >= compressionThreshold && state.deflate(body)) {
+            out.writeByte(FLAG_DEFLATED);
+            out.writeVarInt(body.size());
+            out.writeBytes(state.deflated, 0, state.deflatedLength);
+        } else {
+            out.writeByte(0);
+            out.writeBytes(body.buffer(), 0, body.size());
+        }
+
+        audit.setSnapshot(null);
+        audit.setSnapshotData(out.toByteArray());
+        audit.setSnapshotFormat(SnapshotFormat.BINARY.getId());
+    }
+
+    @Override
+    public Object[] decode(Mt564EventAudit audit) throws IOException {
+        byte[] data = audit.getSnapshotData();
+        if (data == null || data.length < 2) {
+            throw new IOException("Missing binary snapshot for " + audit.getId());
+        }
+        if (data[0] != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary snapshot version [" + data[0] + "] for " + audit.getId());
+        }
+        try {
+            BinaryReader reader;
+            if ((data[1] & FLAG_DEFLATED) != 0) {
+                BinaryReader header = new BinaryReader(data, 2, data.length - 2);
+                int length = header.readVarInt();
+                byte[] inflated = STATE.get().inflate(data, header.position(), data.length - header.position(), length);
+                reader = new BinaryReader(inflated, 0, length);
+            } else {
+                reader = new BinaryReader(data, 2, data.length - 2);
+            }
+            return readBody(reader);
+        } catch (IllegalArgumentException | DataFormatException e) {
+            throw new IOException("Corrupted binary snapshot for " + audit.getId(), e);
+        }
+    }
+
+    private static Object[] readBody(BinaryReader reader) throws IOException {
+        int fieldCount = reader.readVarInt();
+        if (fieldCount > Mt564EventField.count()) {
+            throw new IOException("Binary snapshot has " + fieldCount + " fields, only "
+                    + Mt564EventField.count() + " are known");
+        }
+        byte[] bitmap = new byte[(fieldCount + 7) / 8];
+        for (int i = 0; i < bitmap.length; i++) {
+            bitmap[i] = (byte) reader.readByte();
+        }
+        // fields appended after the row was written stay null
+        Object[] values = new Object[Mt564EventField.count()];
+        for (int i = 0; i < fieldCount; i++) {
+            if ((bitmap[i / 8] & (1 << (i % 8))) == 0) {
+                values[i] = FieldValues.read(reader, Mt564EventField.of(i).getType());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Per-thread buffers and zlib streams, reset between rows instead of re-allocating the native state.
+     */
+    private static final class State {
+        private final BinaryWriter body = new BinaryWriter(1024);
+        private final BinaryWriter out = new BinaryWriter(1024);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        private final Inflater inflater = new Inflater(true);
+        private byte[] deflated = new byte[1024];
+        private int deflatedLength;
+
+        /**
+         * @return true if the deflated body is smaller than the raw one
+         */
+        boolean deflate(BinaryWriter body) {
+            if (deflated.length < body.size()) {
+                deflated = new byte[body.size()];
+            }
+            deflater.reset();
+            deflater.setInput(body.buffer(), 0, body.size());
+            deflater.finish();
+            deflatedLength = deflater.deflate(deflated, 0, body.size());
+            return deflater.finished() && deflatedLength < body.size();
+        }
+
+        byte[] inflate(byte[] data, int offset, int length, int inflatedLength) throws DataFormatException {
+            byte[] inflated = new byte[inflatedLength];
+            inflater.reset();
+            inflater.setInput(data, offset, length);
+            int read = inflater.inflate(inflated);
+            if (read != inflatedLength) {
+                throw new DataFormatException("Expected " + inflatedLength + " bytes, inflated " + read);
+            }
+            return inflated;
+        }
+    }
+}
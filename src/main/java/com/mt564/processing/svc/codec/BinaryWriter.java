@@ -0,0 +1,110 @@
+package com.mt564.processing.svc.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the primitive encodings shared by the binary formats of the application
+ * (audit snapshots, field diffs): unsigned LEB128 varints, zig-zag signed varints and length-prefixed UTF-8 strings.
+ *
+ * Not thread-safe. {@link #reset()} allows reusing the same instance for several records.
+ */
+public final class BinaryWriter {
+
+    private byte[] buffer;
+    private int position;
+
+    public BinaryWriter() {
+        this(256);
+    }
+
+    public BinaryWriter(int initialCapacity) {
+        this.buffer = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public BinaryWriter reset() {
+        position = 0;
+        return this;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    public byte[] buffer() {
+        return buffer;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    public void writeByte(int value) {
+        ensure(1);
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeBytes(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    /**
+     * Writes a non-negative value as an unsigned varint (7 bits per byte, low bits first).
+     */
+    public void writeVarLong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    public void writeVarInt(int value) {
+        writeVarLong(value & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Writes a signed value with zig-zag encoding so that small negative numbers stay short.
+     */
+    public void writeSignedVarLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes the UTF-8 byte length as a varint followed by the UTF-8 bytes. Null is not supported, callers
+     * record nulls separately (null bitmap or flag).
+     */
+    public void writeString(String value) {
+        int length = value.length();
+        // fast path for short ASCII values (a single length byte), which covers almost all SWIFT fields
+        if (length < 0x80 && isAscii(value)) {
+            ensure(1 + length);
+            buffer[position++] = (byte) length;
+            for (int i = 0; i < length; i++) {
+                buffer[position++] = (byte) value.charAt(i);
+            }
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(utf8.length);
+        writeBytes(utf8, 0, utf8.length);
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void ensure(int bytes) {
+        if (position + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + bytes));
+        }
+    }
+}
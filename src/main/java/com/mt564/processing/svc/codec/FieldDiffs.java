@@ -0,0 +1,114 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventField;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Write-time field diffs between two consecutive versions of an Mt564Event, stored in mt564_events_audit.diff_data:
+ *
+ *   byte    format version (1)
+ *   varint  number of changed fields
+ *   per changed field, in Mt564EventField order:
+ *     varint  field ordinal
+ *     byte    null flags, bit 0 old value is null, bit 1 new value is null
+ *     values  old then new value when not null, see FieldValues
+ */
+public final class FieldDiffs {
+
+    static final int FORMAT_VERSION = 1;
+    private static final int OLD_NULL = 1;
+    private static final int NEW_NULL = 2;
+
+    private static final ThreadLocal<BinaryWriter> WRITER = ThreadLocal.withInitial(() -> new BinaryWriter(512));
+
+    private FieldDiffs() {
+    }
+
+    /**
+     * Captures the current field values of the event, to be compared with its next version.
+     */
+    public static Object[] capture(Mt564Event event) {
+        Object[] values = new Object[Mt564EventField.count()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Mt564EventField.of(i).get(event);
+        }
+        return values;
+    }
+
+    /**
+     * Encodes the fields of the event that differ from the previously captured values.
+     */
+    public static byte[] encode(Object[] previous, Mt564Event current) {
+        BinaryWriter writer = WRITER.get().reset();
+        writer.writeByte(FORMAT_VERSION);
+        Object[] values = capture(current);
+        int changed = Mt564EventComparator.diff(previous, values);
+        writer.writeVarInt(Integer.bitCount(changed));
+        for (; changed != 0; changed &= changed - 1) {
+            int i = Integer.numberOfTrailingZeros(changed);
+            Mt564EventField.Type type = Mt564EventField.of(i).getType();
+            writer.writeVarInt(i);
+            writer.writeByte((previous[i] == null ? OLD_NULL : 0) | (values[i] == null ? NEW_NULL : 0));
+            if (previous[i] != null) {
+                FieldValues.write(writer, type, previous[i]);
+            }
+            if (values[i] != null) {
+                FieldValues.write(writer, type, values[i]);
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decodes a diff into the delta report representation: property name to {old, new} rendered the way
+     * JsonNode.asText() renders JSON snapshot values.
+     *
+     * @throws IllegalArgumentException if the diff is corrupted or written by a newer format version
+     */
+    public static Map<String, Object[]> decode(byte[] diff) {
+        BinaryReader reader = open(diff);
+        int changed = reader.readVarInt();
+        Map<String, Object[]> diffs = new LinkedHashMap<>();
+        for (int i = 0; i < changed; i++) {
+            Mt564EventField field = Mt564EventField.of(reader.readVarInt());
+            int nulls = reader.readByte();
+            Object oldValue = (nulls & OLD_NULL) != 0 ? null : FieldValues.read(reader, field.getType());
+            Object newValue = (nulls & NEW_NULL) != 0 ? null : FieldValues.read(reader, field.getType());
+            diffs.put(field.getPropertyName(), new Object[]{Mt564EventField.render(oldValue), Mt564EventField.render(newValue)});
+        }
+        return diffs;
+    }
+
+    /**
+     * Replays a diff on the field values of the version it was captured from, turning them into the values of the
+     * version that carries the diff.
+     *
+     * @param values the field values indexed by Mt564EventField ordinal, updated in place
+     * @throws IllegalArgumentException if the diff is corrupted or written by a newer format version
+     */
+    public static void apply(byte[] diff, Object[] values) {
+        BinaryReader reader = open(diff);
+        int changed = reader.readVarInt();
+        for (int i = 0; i < changed; i++) {
+            int ordinal = reader.readVarInt();
+            Mt564EventField.Type type = Mt564EventField.of(ordinal).getType();
+            int nulls = reader.readByte();
+            if ((nulls & OLD_NULL) == 0) {
+                FieldValues.read(reader, type);
+            }
+            values[ordinal] = (nulls & NEW_NULL) != 0 ? null : FieldValues.read(reader, type);
+        }
+    }
+
+    private static BinaryReader open(byte[] diff) {
+        BinaryReader reader = new BinaryReader(diff);
+        int version = reader.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported field diff version [" + version + "]");
+        }
+        return reader;
+    }
+}
@@ -0,0 +1,45 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.entity.Mt564EventField;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Binary encoding of non-null Mt564EventField values:
+ * - STRING: varint UTF-8 length + UTF-8 bytes
+ * - INTEGER: zig-zag varint
+ * - BOOLEAN: one byte, 0 or 1
+ * - DATE: zig-zag varint epoch day
+ * - DATE_TIME: zig-zag varint epoch second (UTC, i.e. the local fields as-is) + varint nano of second
+ */
+public final class FieldValues {
+
+    private FieldValues() {
+    }
+
+    public static void write(BinaryWriter writer, Mt564EventField.Type type, Object value) {
+        switch (type) {
+            case STRING -> writer.writeString((String) value);
+            case INTEGER -> writer.writeSignedVarLong((Integer) value);
+            case BOOLEAN -> writer.writeByte((Boolean) value ? 1 : 0);
+            case DATE -> writer.writeSignedVarLong(((LocalDate) value).toEpochDay());
+            case DATE_TIME -> {
+                LocalDateTime dateTime = (LocalDateTime) value;
+                writer.writeSignedVarLong(dateTime.toEpochSecond(ZoneOffset.UTC));
+                writer.writeVarInt(dateTime.getNano());
+            }
+        }
+    }
+
+    public static Object read(BinaryReader reader, Mt564EventField.Type type) {
+        return switch (type) {
+            case STRING -> reader.readString();
+            case INTEGER -> (int) reader.readSignedVarLong();
+            case BOOLEAN -> reader.readByte() != 0;
+            case DATE -> LocalDate.ofEpochDay(reader.readSignedVarLong());
+            case DATE_TIME -> LocalDateTime.ofEpochSecond(reader.readSignedVarLong(), reader.readVarInt(), ZoneOffset.UTC);
+        };
+    }
+}
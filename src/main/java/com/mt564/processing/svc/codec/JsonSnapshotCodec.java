@@ -0,0 +1,41 @@
+package com.mt564.processing.svc.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventField;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Historical snapshot format: the Jackson JSON of the whole entity in the snapshot column.
+ */
+@Component
+@RequiredArgsConstructor
+public class JsonSnapshotCodec implements SnapshotCodec {
+
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public SnapshotFormat format() {
+        return SnapshotFormat.JSON;
+    }
+
+    @Override
+    public void encode(Mt564Event event, Mt564EventAudit audit) throws IOException {
+        audit.setSnapshot(objectMapper.writeValueAsString(event));
+        audit.setSnapshotFormat(SnapshotFormat.JSON.getId());
+    }
+
+    @Override
+    public Object[] decode(Mt564EventAudit audit) throws IOException {
+        Mt564Event event = objectMapper.readValue(audit.getSnapshot(), Mt564Event.class);
+        Object[] values = new Object[Mt564EventField.count()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = Mt564EventField.of(i).get(event);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,138 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.entity.Mt564EventField.Type;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Compact binary format of an Mt564EventDto as a Kafka record value:
+ *
+ *   byte    magic (0xB5, never the first byte of a UTF-8 JSON document)
+ *   byte    format version (1)
+ *   varint  number of fields (FIELDS count at write time)
+ *   bytes   null bitmap, one bit per field in FIELDS order
+ *   values  every non-null field in FIELDS order, see FieldValues (dates as epoch days)
+ *
+ * Fields are only ever appended, so the values of the fields a reader knows come first: a record written with more
+ * fields than the reader knows is read without them, the trailing bytes are ignored. Producers may therefore append
+ * fields before consumers are upgraded, provided the consumers already run this reader; a change of the encoding of
+ * existing fields needs a new format version, which consumers must be able to read before producers write it.
+ *
+ * A typical event takes well under half of its JSON size. Records are not compressed one by one: the producer
+ * compresses whole batches (app.kafka.producer.compression-type), which also shares the redundancy between events.
+ */
+public final class Mt564EventBinaryFormat {
+
+    public static final byte MAGIC = (byte) 0xB5;
+    static final int FORMAT_VERSION = 1;
+
+    /**
+     * Fields of the format, in wire order: constants must only ever be appended.
+     */
+    private static final Field[] FIELDS = {
+            string(Mt564EventDto::getEventReference, Mt564EventDto::setEventReference),
+            string(Mt564EventDto::getFinancialInstrumentId, Mt564EventDto::setFinancialInstrumentId),
+            string(Mt564EventDto::getSenderBic, Mt564EventDto::setSenderBic),
+            string(Mt564EventDto::getRelatedMessageReference, Mt564EventDto::setRelatedMessageReference),
+            string(Mt564EventDto::getCorporateActionEventId, Mt564EventDto::setCorporateActionEventId),
+            string(Mt564EventDto::getCorporateActionEventType, Mt564EventDto::setCorporateActionEventType),
+            string(Mt564EventDto::getMandatoryVoluntaryIndicator, Mt564EventDto::setMandatoryVoluntaryIndicator),
+            string(Mt564EventDto::getEventProcessingStatus, Mt564EventDto::setEventProcessingStatus),
+            string(Mt564EventDto::getEventStatusCode, Mt564EventDto::setEventStatusCode),
+            string(Mt564EventDto::getOfficialCorporateActionEventId, Mt564EventDto::setOfficialCorporateActionEventId),
+            string(Mt564EventDto::getLinkEventId, Mt564EventDto::setLinkEventId),
+            string(Mt564EventDto::getSafekeepingAccount, Mt564EventDto::setSafekeepingAccount),
+            string(Mt564EventDto::getPlaceOfSafekeeping, Mt564EventDto::setPlaceOfSafekeeping),
+            dateTime(Mt564EventDto::getEventCreationDatetime, Mt564EventDto::setEventCreationDatetime),
+            date(Mt564EventDto::getEffectiveDate, Mt564EventDto::setEffectiveDate),
+            date(Mt564EventDto::getRecordDate, Mt564EventDto::setRecordDate),
+            date(Mt564EventDto::getExDate, Mt564EventDto::setExDate),
+            date(Mt564EventDto::getAnnouncementDate, Mt564EventDto::setAnnouncementDate),
+            date(Mt564EventDto::getResponseDeadline, Mt564EventDto::setResponseDeadline),
+            date(Mt564EventDto::getGeneralMeetingDate, Mt564EventDto::setGeneralMeetingDate),
+            string(Mt564EventDto::getNarrative, Mt564EventDto::setNarrative),
+            new Field(Type.BOOLEAN, Mt564EventDto::getMarketDisclosureFlag, (e, v) -> e.setMarketDisclosureFlag((Boolean) v)),
+            dateTime(Mt564EventDto::getCreatedAt, Mt564EventDto::setCreatedAt),
+            dateTime(Mt564EventDto::getUpdatedAt, Mt564EventDto::setUpdatedAt)
+    };
+
+    private static final ThreadLocal<BinaryWriter> WRITER = ThreadLocal.withInitial(() -> new BinaryWriter(1024));
+
+    private Mt564EventBinaryFormat() {
+    }
+
+    public static boolean isBinary(byte[] data) {
+        return data != null && data.length > 0 && data[0] == MAGIC;
+    }
+
+    public static byte[] encode(Mt564EventDto event) {
+        BinaryWriter writer = WRITER.get().reset();
+        writer.writeByte(MAGIC);
+        writer.writeByte(FORMAT_VERSION);
+        writer.writeVarInt(FIELDS.length);
+
+        int bitmapPosition = writer.size();
+        int bitmapLength = (FIELDS.length + 7) / 8;
+        for (int i = 0; i < bitmapLength; i++) {
+            writer.writeByte(0);
+        }
+        for (int i = 0; i < FIELDS.length; i++) {
+            Object value = FIELDS[i].getter.apply(event);
+            if (value == null) {
+                writer.buffer()[bitmapPosition + i / 8] |= (byte) (1 << (i % 8));
+            } else {
+                FieldValues.write(writer, FIELDS[i].type, value);
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the data is not a valid event of a known format version, fields unknown to
+     *                                  this reader aside
+     */
+    public static Mt564EventDto decode(byte[] data) {
+        if (!isBinary(data) || data.length < 3) {
+            throw new IllegalArgumentException("Not a binary MT564 event");
+        }
+        if (data[1] != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported binary MT564 event version [" + data[1] + "]");
+        }
+        BinaryReader reader = new BinaryReader(data, 2, data.length - 2);
+        int fieldCount = reader.readVarInt();
+        if (fieldCount < 0 || (fieldCount + 7L) / 8 > data.length) {
+            throw new IllegalArgumentException("Malformed binary MT564 event, [" + fieldCount + "] fields");
+        }
+        byte[] bitmap = new byte[(fieldCount + 7) / 8];
+        for (int i = 0; i < bitmap.length; i++) {
+            bitmap[i] = (byte) reader.readByte();
+        }
+        // fields appended after the record was written stay null, those appended after this reader are skipped
+        Mt564EventDto event = new Mt564EventDto();
+        for (int i = 0; i < Math.min(fieldCount, FIELDS.length); i++) {
+            if ((bitmap[i / 8] & (1 << (i % 8))) == 0) {
+                FIELDS[i].setter.accept(event, FieldValues.read(reader, FIELDS[i].type));
+            }
+        }
+        return event;
+    }
+
+    private static Field string(Function<Mt564EventDto, String> getter, BiConsumer<Mt564EventDto, String> setter) {
+        return new Field(Type.STRING, getter::apply, (e, v) -> setter.accept(e, (String) v));
+    }
+
+    private static Field date(Function<Mt564EventDto, LocalDate> getter, BiConsumer<Mt564EventDto, LocalDate> setter) {
+        return new Field(Type.DATE, getter::apply, (e, v) -> setter.accept(e, (LocalDate) v));
+    }
+
+    private static Field dateTime(Function<Mt564EventDto, LocalDateTime> getter, BiConsumer<Mt564EventDto, LocalDateTime> setter) {
+        return new Field(Type.DATE_TIME, getter::apply, (e, v) -> setter.accept(e, (LocalDateTime) v));
+    }
+
+    private record Field(Type type, Function<Mt564EventDto, Object> getter, BiConsumer<Mt564EventDto, Object> setter) {
+    }
+}
@@ -0,0 +1,173 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventField;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hand-specialised comparison of MT564 events over the fixed Mt564EventField schema, without reflection, JSON trees
+ * or boxing of the values being compared.
+ *
+ * Results are changed-field bitmasks: bit i is set when Mt564EventField.of(i) differs. The ordinal order is the
+ * snapshot order, so iterating the set bits from the lowest one yields the fields in delta report order.
+ */
+public final class Mt564EventComparator {
+
+    static {
+        if (Mt564EventField.count() > Integer.SIZE) {
+            throw new ExceptionInInitializerError("Mt564EventField no longer fits an int bitmask");
+        }
+    }
+
+    // ISO 15022 qualifier / code values (DVCA, MAND, COMP, ...) are 4 characters; the bound keeps junk out of the pool
+    private static final int MAX_CODE_LENGTH = 4;
+    private static final int MAX_INTERNED_CODES = 4096;
+    private static final ConcurrentHashMap<String, String> CODES = new ConcurrentHashMap<>();
+
+    private Mt564EventComparator() {
+    }
+
+    public static int bit(Mt564EventField field) {
+        return 1 << field.ordinal();
+    }
+
+    public static boolean isChanged(int mask, Mt564EventField field) {
+        return (mask & bit(field)) != 0;
+    }
+
+    /**
+     * The fields of the entity that differ from the DTO, among the ones an update copies from the feed (everything
+     * but versionNumber and createdAt, which are owned by the database row).
+     */
+    public static int diff(Mt564Event existing, Mt564EventDto dto) {
+        int mask = 0;
+        mask |= differs(existing.getBusinessHash(), dto.getBusinessHash(), Mt564EventField.BUSINESS_HASH);
+        mask |= differs(existing.getRelatedMessageReference(), dto.getRelatedMessageReference(), Mt564EventField.RELATED_MESSAGE_REFERENCE);
+        mask |= differs(existing.getCorporateActionEventId(), dto.getCorporateActionEventId(), Mt564EventField.CORPORATE_ACTION_EVENT_ID);
+        mask |= differs(existing.getCorporateActionEventType(), dto.getCorporateActionEventType(), Mt564EventField.CORPORATE_ACTION_EVENT_TYPE);
+        mask |= differs(existing.getMandatoryVoluntaryIndicator(), dto.getMandatoryVoluntaryIndicator(), Mt564EventField.MANDATORY_VOLUNTARY_INDICATOR);
+        mask |= differs(existing.getEventProcessingStatus(), dto.getEventProcessingStatus(), Mt564EventField.EVENT_PROCESSING_STATUS);
+        mask |= differs(existing.getEventStatusCode(), dto.getEventStatusCode(), Mt564EventField.EVENT_STATUS_CODE);
+        mask |= differs(existing.getOfficialCorporateActionEventId(), dto.getOfficialCorporateActionEventId(), Mt564EventField.OFFICIAL_CORPORATE_ACTION_EVENT_ID);
+        mask |= differs(existing.getLinkEventId(), dto.getLinkEventId(), Mt564EventField.LINK_EVENT_ID);
+        mask |= differs(existing.getSafekeepingAccount(), dto.getSafekeepingAccount(), Mt564EventField.SAFEKEEPING_ACCOUNT);
+        mask |= differs(existing.getPlaceOfSafekeeping(), dto.getPlaceOfSafekeeping(), Mt564EventField.PLACE_OF_SAFEKEEPING);
+        mask |= differs(existing.getEventCreationDatetime(), dto.getEventCreationDatetime(), Mt564EventField.EVENT_CREATION_DATETIME);
+        mask |= differs(existing.getEffectiveDate(), dto.getEffectiveDate(), Mt564EventField.EFFECTIVE_DATE);
+        mask |= differs(existing.getRecordDate(), dto.getRecordDate(), Mt564EventField.RECORD_DATE);
+        mask |= differs(existing.getExDate(), dto.getExDate(), Mt564EventField.EX_DATE);
+        mask |= differs(existing.getAnnouncementDate(), dto.getAnnouncementDate(), Mt564EventField.ANNOUNCEMENT_DATE);
+        mask |= differs(existing.getResponseDeadline(), dto.getResponseDeadline(), Mt564EventField.RESPONSE_DEADLINE);
+        mask |= differs(existing.getGeneralMeetingDate(), dto.getGeneralMeetingDate(), Mt564EventField.GENERAL_MEETING_DATE);
+        mask |= differs(existing.getNarrative(), dto.getNarrative(), Mt564EventField.NARRATIVE);
+        mask |= differs(existing.getMarketDisclosureFlag(), dto.getMarketDisclosureFlag(), Mt564EventField.MARKET_DISCLOSURE_FLAG);
+        mask |= differs(existing.getUpdatedAt(), dto.getUpdatedAt(), Mt564EventField.UPDATED_AT);
+        return mask;
+    }
+
+    /**
+     * Applies the DTO on top of the entity, calling only the setters of the fields that differ (see diff()). Code
+     * values are interned so the entities of a batch share one instance per code.
+     *
+     * @return the changed-field bitmask
+     */
+    public static int copyChanged(Mt564Event existing, Mt564EventDto dto) {
+        int mask = diff(existing, dto);
+        if (isChanged(mask, Mt564EventField.BUSINESS_HASH)) existing.setBusinessHash(dto.getBusinessHash());
+        if (isChanged(mask, Mt564EventField.RELATED_MESSAGE_REFERENCE)) existing.setRelatedMessageReference(dto.getRelatedMessageReference());
+        if (isChanged(mask, Mt564EventField.CORPORATE_ACTION_EVENT_ID)) existing.setCorporateActionEventId(dto.getCorporateActionEventId());
+        if (isChanged(mask, Mt564EventField.CORPORATE_ACTION_EVENT_TYPE)) existing.setCorporateActionEventType(code(dto.getCorporateActionEventType()));
+        if (isChanged(mask, Mt564EventField.MANDATORY_VOLUNTARY_INDICATOR)) existing.setMandatoryVoluntaryIndicator(code(dto.getMandatoryVoluntaryIndicator()));
+        if (isChanged(mask, Mt564EventField.EVENT_PROCESSING_STATUS)) existing.setEventProcessingStatus(code(dto.getEventProcessingStatus()));
+        if (isChanged(mask, Mt564EventField.EVENT_STATUS_CODE)) existing.setEventStatusCode(code(dto.getEventStatusCode()));
+        if (isChanged(mask, Mt564EventField.OFFICIAL_CORPORATE_ACTION_EVENT_ID)) existing.setOfficialCorporateActionEventId(dto.getOfficialCorporateActionEventId());
+        if (isChanged(mask, Mt564EventField.LINK_EVENT_ID)) existing.setLinkEventId(dto.getLinkEventId());
+        if (isChanged(mask, Mt564EventField.SAFEKEEPING_ACCOUNT)) existing.setSafekeepingAccount(dto.getSafekeepingAccount());
+        if (isChanged(mask, Mt564EventField.PLACE_OF_SAFEKEEPING)) existing.setPlaceOfSafekeeping(dto.getPlaceOfSafekeeping());
+        if (isChanged(mask, Mt564EventField.EVENT_CREATION_DATETIME)) existing.setEventCreationDatetime(dto.getEventCreationDatetime());
+        if (isChanged(mask, Mt564EventField.EFFECTIVE_DATE)) existing.setEffectiveDate(dto.getEffectiveDate());
+        if (isChanged(mask, Mt564EventField.RECORD_DATE)) existing.setRecordDate(dto.getRecordDate());
+        if (isChanged(mask, Mt564EventField.EX_DATE)) existing.setExDate(dto.getExDate());
+        if (isChanged(mask, Mt564EventField.ANNOUNCEMENT_DATE)) existing.setAnnouncementDate(dto.getAnnouncementDate());
+        if (isChanged(mask, Mt564EventField.RESPONSE_DEADLINE)) existing.setResponseDeadline(dto.getResponseDeadline());
+        if (isChanged(mask, Mt564EventField.GENERAL_MEETING_DATE)) existing.setGeneralMeetingDate(dto.getGeneralMeetingDate());
+        if (isChanged(mask, Mt564EventField.NARRATIVE)) existing.setNarrative(dto.getNarrative());
+        if (isChanged(mask, Mt564EventField.MARKET_DISCLOSURE_FLAG)) existing.setMarketDisclosureFlag(dto.getMarketDisclosureFlag());
+        if (isChanged(mask, Mt564EventField.UPDATED_AT)) existing.setUpdatedAt(dto.getUpdatedAt());
+        return mask;
+    }
+
+    /**
+     * The fields that differ between two sets of values indexed by Mt564EventField ordinal, as captured by
+     * FieldDiffs.capture() or decoded by a SnapshotCodec.
+     */
+    public static int diff(Object[] values1, Object[] values2) {
+        int mask = 0;
+        for (int i = 0; i < values1.length; i++) {
+            Object v1 = values1[i];
+            Object v2 = values2[i];
+            boolean same = switch (Mt564EventField.of(i).getType()) {
+                case DATE -> sameDate((LocalDate) v1, (LocalDate) v2);
+                case DATE_TIME -> sameDateTime((LocalDateTime) v1, (LocalDateTime) v2);
+                default -> Objects.equals(v1, v2);
+            };
+            if (!same) {
+                mask |= 1 << i;
+            }
+        }
+        return mask;
+    }
+
+    private static int differs(String a, String b, Mt564EventField field) {
+        return Objects.equals(a, b) ? 0 : bit(field);
+    }
+
+    private static int differs(LocalDate a, LocalDate b, Mt564EventField field) {
+        return sameDate(a, b) ? 0 : bit(field);
+    }
+
+    private static int differs(LocalDateTime a, LocalDateTime b, Mt564EventField field) {
+        return sameDateTime(a, b) ? 0 : bit(field);
+    }
+
+    private static int differs(Boolean a, Boolean b, Mt564EventField field) {
+        return Objects.equals(a, b) ? 0 : bit(field);
+    }
+
+    private static boolean sameDate(LocalDate a, LocalDate b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.toEpochDay() == b.toEpochDay();
+    }
+
+    private static boolean sameDateTime(LocalDateTime a, LocalDateTime b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return sameDate(a.toLocalDate(), b.toLocalDate()) && a.toLocalTime().toNanoOfDay() == b.toLocalTime().toNanoOfDay();
+    }
+
+    /**
+     * Canonical instance of a short code value. Longer values, and new codes once the pool is full, are returned as-is.
+     */
+    static String code(String value) {
+        if (value == null || value.length() > MAX_CODE_LENGTH) {
+            return value;
+        }
+        String pooled = CODES.get(value);
+        if (pooled != null) {
+            return pooled;
+        }
+        if (CODES.size() >= MAX_INTERNED_CODES) {
+            return value;
+        }
+        pooled = CODES.putIfAbsent(value, value);
+        return pooled != null ? pooled : value;
+    }
+}
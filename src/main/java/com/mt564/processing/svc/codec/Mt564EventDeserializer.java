@@ -0,0 +1,43 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.springframework.kafka.support.serializer.JsonDeserializer;
+
+/**
+ * Kafka value deserializer reading Mt564EventDto in Mt564EventBinaryFormat as well as in JSON, told apart by the first
+ * byte of the value. Consumers read both formats while producers move from JSON to binary, and the records written
+ * in JSON before stay readable.
+ */
+public class Mt564EventDeserializer implements Deserializer<Mt564EventDto> {
+
+    // the type is fixed, so the type headers written by the JSON serializer are not needed
+    private final JsonDeserializer<Mt564EventDto> json = new JsonDeserializer<>(Mt564EventDto.class, false);
+
+    @Override
+    public Mt564EventDto deserialize(String topic, byte[] data) {
+        return deserialize(topic, null, data);
+    }
+
+    @Override
+    public Mt564EventDto deserialize(String topic, Headers headers, byte[] data) {
+        if (data == null) {
+            return null;
+        }
+        if (!Mt564EventBinaryFormat.isBinary(data)) {
+            return json.deserialize(topic, headers, data);
+        }
+        try {
+            return Mt564EventBinaryFormat.decode(data);
+        } catch (IllegalArgumentException e) {
+            throw new SerializationException("Can't deserialize binary MT564 event from topic [" + topic + "]", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        json.close();
+    }
+}
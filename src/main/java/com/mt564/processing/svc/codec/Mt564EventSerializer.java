@@ -0,0 +1,16 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * Kafka value serializer writing Mt564EventDto in Mt564EventBinaryFormat, selected with
+ * app.kafka.producer.value-format=binary.
+ */
+public class Mt564EventSerializer implements Serializer<Mt564EventDto> {
+
+    @Override
+    public byte[] serialize(String topic, Mt564EventDto event) {
+        return event == null ? null : Mt564EventBinaryFormat.encode(event);
+    }
+}
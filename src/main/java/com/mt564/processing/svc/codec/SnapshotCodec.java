@@ -0,0 +1,26 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+
+import java.io.IOException;
+
+/**
+ * Encodes the state of an Mt564Event into an audit row and reads it back for delta computation.
+ */
+public interface SnapshotCodec {
+
+    SnapshotFormat format();
+
+    /**
+     * Writes the snapshot of the event, and the snapshot format, into the given audit row.
+     */
+    void encode(Mt564Event event, Mt564EventAudit audit) throws IOException;
+
+    /**
+     * Reads the snapshot of the audit row.
+     *
+     * @return the field values indexed by Mt564EventField ordinal
+     */
+    Object[] decode(Mt564EventAudit audit) throws IOException;
+}
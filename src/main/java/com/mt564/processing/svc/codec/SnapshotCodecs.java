@@ -0,0 +1,55 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * Picks the codec used to write new audit snapshots (app.audit.snapshot-codec: json or binary) and the codec
+ * needed to read any existing row, whatever format it was written with.
+ */
+@Component
+@RequiredArgsConstructor
+public class SnapshotCodecs {
+
+    private final JsonSnapshotCodec jsonCodec;
+    private final BinarySnapshotCodec binaryCodec;
+
+    @Value("${app.audit.snapshot-codec:json}")
+    private String writeCodec = "json";
+
+    public SnapshotCodec writer() {
+        return SnapshotFormat.valueOf(writeCodec.toUpperCase(Locale.ROOT)) == SnapshotFormat.BINARY ? binaryCodec : jsonCodec;
+    }
+
+    /**
+     * @throws IllegalStateException for diff-only rows, which carry no snapshot: their values are rebuilt from the
+     *                               nearest keyframe and the diffs after it (see EventDeltaReportingService)
+     */
+    public SnapshotCodec reader(Mt564EventAudit audit) {
+        return switch (SnapshotFormat.fromId(audit.getSnapshotFormat())) {
+            case JSON -> jsonCodec;
+            case BINARY -> binaryCodec;
+            case DIFF_ONLY -> throw new IllegalStateException("Audit " + audit.getId() + " has no snapshot, only a field diff");
+        };
+    }
+
+    public static boolean isJson(Mt564EventAudit audit) {
+        return SnapshotFormat.fromId(audit.getSnapshotFormat()) == SnapshotFormat.JSON;
+    }
+
+    public static boolean isDiffOnly(Mt564EventAudit audit) {
+        return SnapshotFormat.fromId(audit.getSnapshotFormat()) == SnapshotFormat.DIFF_ONLY;
+    }
+
+    /**
+     * @return the field values of the audit snapshot indexed by Mt564EventField ordinal
+     */
+    public Object[] decode(Mt564EventAudit audit) throws IOException {
+        return reader(audit).decode(audit);
+    }
+}
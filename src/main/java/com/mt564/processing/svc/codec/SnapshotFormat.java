@@ -0,0 +1,38 @@
+package com.mt564.processing.svc.codec;
+
+/**
+ * Encoding of an audit snapshot, recorded per row in mt564_events_audit.snapshot_format.
+ * Ids are persisted: never reuse or renumber them.
+ */
+public enum SnapshotFormat {
+
+    /** Jackson JSON of the whole entity in the snapshot column. Also every row with a null snapshot_format. */
+    JSON((short) 0),
+    /** Compact field-ordered binary in the snapshot_data column, see BinarySnapshotCodec. */
+    BINARY((short) 1),
+    /** No snapshot, the version is only recorded as a field diff (diff_data) between two keyframes. */
+    DIFF_ONLY((short) 2);
+
+    private final short id;
+
+    SnapshotFormat(short id) {
+        this.id = id;
+    }
+
+    public short getId() {
+        return id;
+    }
+
+    public static SnapshotFormat fromId(Short id) {
+        if (id == null || id == JSON.id) {
+            return JSON;
+        }
+        if (id == BINARY.id) {
+            return BINARY;
+        }
+        if (id == DIFF_ONLY.id) {
+            return DIFF_ONLY;
+        }
+        throw new IllegalArgumentException("Unknown snapshot format [" + id + "]");
+    }
+}
@@ -0,0 +1,26 @@
+package com.mt564.processing.svc.config;
+
+import com.mt564.processing.svc.hashing.BusinessHashEngine;
+import com.mt564.processing.svc.hashing.BusinessHashMode;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class BusinessHashConfig {
+
+    @Value("${app.business-hash.mode:SHA_256}")
+    private BusinessHashMode mode;
+
+    /**
+     * Applies the configured hash mode to BusinessHashEngine. The engine is static because the hash is
+     * computed from the DTO itself (Mt564EventDto.getBusinessHash), outside of any Spring bean.
+     */
+    @PostConstruct
+    public void configureBusinessHash() {
+        BusinessHashEngine.setDefaultMode(mode);
+        log.info("Business hash mode set to [{}]", mode);
+    }
+}
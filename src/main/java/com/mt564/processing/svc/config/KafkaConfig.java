@@ -1,30 +1,109 @@
 package com.mt564.processing.svc.config;
 
-import com.fasterxml.jackson.databind.JsonDeserializer;
-import com.fasterxml.jackson.databind.JsonSerializer;
-import com.fasterxml.jackson.databind.deser.std.StringDeserializer;
-import com.fasterxml.jackson.databind.ser.std.StringSerializer;
+import com.mt564.processing.svc.cache.BusinessHashIndex;
+import com.mt564.processing.svc.cache.HashIndexRebalanceListener;
+import com.mt564.processing.svc.codec.Mt564EventDeserializer;
+import com.mt564.processing.svc.codec.Mt564EventSerializer;
 import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
 import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringDeserializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
 import org.springframework.kafka.core.*;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.ExponentialBackOff;
 
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * Kafka producer and batch consumer of the MT564 events topic, configured through app.kafka.*.
+ *
+ * - The producer partitions by Mt564EventId (see Mt564EventIdPartitioner), so every version of an event lands on the
+ *   same partition, is consumed in order by a single listener thread and processed in the same batch partition.
+ * - The producer batches by size and linger time and compresses whole batches. Values are written in JSON or in
+ *   Mt564EventBinaryFormat (app.kafka.producer.value-format); the consumer reads both. A value that cannot be read
+ *   does not fail the poll: ErrorHandlingDeserializer hands it to the listener, which dead-letters it.
+ * - The listener runs one consumer per partition of the topic, up to app.kafka.listener.concurrency, and commits
+ *   the offsets of a batch itself once the batch is processed (see Mt564EventsKafkaBatchProcessor).
+ * - A poll returns up to app.kafka.consumer.max-poll-records records; the broker holds a fetch until
+ *   fetch-min-bytes (the expected size of a full batch) are available or fetch-max-wait elapsed, so batches are
+ *   large under load and latency stays bounded when the topic is quiet.
+ */
 @Configuration
+@Slf4j
 public class KafkaConfig {
 
+    @Value("${app.kafka.bootstrap-servers:localhost:9092}")
+    private String bootstrapServers = "localhost:9092";
+
+    // partitions of app.kafka-topic, the upper bound of useful listener concurrency
+    @Value("${app.kafka.topic-partitions:12}")
+    private int topicPartitions = 12;
+
+    @Value("${app.kafka.producer.acks:all}")
+    private String acks = "all";
+
+    @Value("${app.kafka.producer.linger-ms:20}")
+    private int lingerMs = 20;
+
+    @Value("${app.kafka.producer.batch-size:131072}")
+    private int batchSize = 128 * 1024;
+
+    @Value("${app.kafka.producer.compression-type:lz4}")
+    private String compressionType = "lz4";
+
+    // json or binary (Mt564EventBinaryFormat), consumers read both
+    @Value("${app.kafka.producer.value-format:json}")
+    private String valueFormat = "json";
+
+    @Value("${app.kafka.consumer.group-id:mt564-group}")
+    private String groupId = "mt564-group";
+
+    @Value("${app.kafka.consumer.max-poll-records:500}")
+    private int maxPollRecords = 500;
+
+    // average serialized size of an event, sizes the fetches of a full batch
+    @Value("${app.kafka.consumer.avg-record-bytes:1024}")
+    private int avgRecordBytes = 1024;
+
+    // 0 derives it from max-poll-records and avg-record-bytes
+    @Value("${app.kafka.consumer.fetch-min-bytes:0}")
+    private int fetchMinBytes;
+
+    @Value("${app.kafka.consumer.fetch-max-wait-ms:500}")
+    private int fetchMaxWaitMs = 500;
+
+    // must cover the processing of a full batch, or the consumer is evicted from the group
+    @Value("${app.kafka.consumer.max-poll-interval-ms:300000}")
+    private int maxPollIntervalMs = 300_000;
+
+    // 0 runs one consumer per partition
+    @Value("${app.kafka.listener.concurrency:0}")
+    private int concurrency;
+
+    @Value("${app.kafka.listener.poll-timeout-ms:3000}")
+    private long pollTimeoutMs = 3000;
+
+    // backoff between deliveries of a batch that failed for a reason other than its data, retried until it succeeds
+    @Value("${app.kafka.listener.retry-backoff:PT1S}")
+    private Duration retryBackoff = Duration.ofSeconds(1);
+
+    @Value("${app.kafka.listener.max-retry-backoff:PT1M}")
+    private Duration maxRetryBackoff = Duration.ofMinutes(1);
+
     @Bean
     public ProducerFactory<String, Mt564EventDto> producerFactory() {
-        Map<String, Object> config = new HashMap<>();
-        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
-        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
-        return new DefaultKafkaProducerFactory<>(config);
+        return new DefaultKafkaProducerFactory<>(producerProperties());
     }
 
     @Bean
@@ -34,25 +113,84 @@ public class KafkaConfig {
 
     @Bean
     public ConsumerFactory<String, Mt564EventDto> getConsumerFactory() {
-        Map<String, Object> consumerProps = new HashMap<>();
-        consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, "localhost:9092");
-        consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, "mt564-group");
-        consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
-        consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, JsonDeserializer.class);
-        consumerProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, 100); // ✅ batch size
-        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-        return new DefaultKafkaConsumerFactory<>(consumerProps);
+        return new DefaultKafkaConsumerFactory<>(consumerProperties());
     }
+
     @Bean
     public ConcurrentKafkaListenerContainerFactory<String, Mt564EventDto> kafkaBatchListenerContainerFactory(
-            ConsumerFactory<String, Mt564EventDto> consumerFactory) {
+            ConsumerFactory<String, Mt564EventDto> consumerFactory, BusinessHashIndex hashIndex) {
 
         ConcurrentKafkaListenerContainerFactory<String, Mt564EventDto> factory =
                 new ConcurrentKafkaListenerContainerFactory<>();
         factory.setConsumerFactory(consumerFactory);
         factory.setBatchListener(true); // Enable batch mode
-        factory.getContainerProperties().setPollTimeout(3000);
+        factory.setConcurrency(listenerConcurrency());
+        factory.getContainerProperties().setPollTimeout(pollTimeoutMs);
+        // offsets are committed by the listener once the transactions of the batch committed
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        // entries of the hash index are not trusted for partitions another node consumed meanwhile
+        factory.getContainerProperties().setConsumerRebalanceListener(new HashIndexRebalanceListener(hashIndex));
+        // poison events are dead-lettered by the listener, what reaches the container is retried rather than dropped
+        ExponentialBackOff backOff = new ExponentialBackOff(retryBackoff.toMillis(), 2);
+        backOff.setMaxInterval(maxRetryBackoff.toMillis());
+        factory.setCommonErrorHandler(new DefaultErrorHandler(backOff));
+        log.info("Kafka batch listener with [{}] consumers for [{}] partitions, up to [{}] records per poll",
+                listenerConcurrency(), topicPartitions, maxPollRecords);
         return factory;
     }
 
+    Map<String, Object> producerProperties() {
+        Map<String, Object> config = new HashMap<>();
+        config.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        config.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
+        config.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+                "binary".equalsIgnoreCase(valueFormat) ? Mt564EventSerializer.class : JsonSerializer.class);
+        config.put(ProducerConfig.PARTITIONER_CLASS_CONFIG, Mt564EventIdPartitioner.class);
+        config.put(ProducerConfig.ACKS_CONFIG, acks);
+        config.put(ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        config.put(ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        config.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        return config;
+    }
+
+    Map<String, Object> consumerProperties() {
+        Map<String, Object> consumerProps = new HashMap<>();
+        consumerProps.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        consumerProps.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        consumerProps.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class);
+        // a corrupt or unreadable value would otherwise fail every poll of its partition
+        consumerProps.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ErrorHandlingDeserializer.class);
+        consumerProps.put(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS, Mt564EventDeserializer.class);
+        consumerProps.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+        consumerProps.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, effectiveFetchMinBytes());
+        consumerProps.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, fetchMaxWaitMs);
+        // a partition fetch holds at least a full batch, so a single busy partition still fills the poll
+        consumerProps.put(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG,
+                Math.max(ConsumerConfig.DEFAULT_MAX_PARTITION_FETCH_BYTES, batchBytes()));
+        consumerProps.put(ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG, maxPollIntervalMs);
+        consumerProps.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        consumerProps.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        return consumerProps;
+    }
+
+    /**
+     * Consumers of the listener: app.kafka.listener.concurrency, or one per partition when not set. Never more than
+     * the partitions of the topic, since a consumer without a partition sits idle.
+     */
+    int listenerConcurrency() {
+        int partitions = Math.max(1, topicPartitions);
+        return concurrency > 0 ? Math.min(concurrency, partitions) : partitions;
+    }
+
+    /**
+     * fetch.min.bytes: app.kafka.consumer.fetch-min-bytes, or the expected size of a full poll capped at 1 MiB, since
+     * compressed batches make the record size an estimate and the wait is bounded by fetch-max-wait anyway.
+     */
+    int effectiveFetchMinBytes() {
+        return fetchMinBytes > 0 ? fetchMinBytes : (int) Math.min(batchBytes(), 1024 * 1024);
+    }
+
+    private int batchBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, (long) maxPollRecords * avgRecordBytes);
+    }
 }
@@ -0,0 +1,55 @@
+package com.mt564.processing.svc.config;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import org.apache.kafka.clients.producer.Partitioner;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.utils.Utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Kafka partitioner of the MT564 events topic: the partition is a murmur2 hash of the Mt564EventId of the event
+ * (eventReference, financialInstrumentId, senderBic), so every version of an event goes to the same partition
+ * whatever the record key.
+ *
+ * Records whose value is not an Mt564EventDto fall back to the hash of the key bytes, like the default partitioner
+ * for keyed records.
+ */
+public class Mt564EventIdPartitioner implements Partitioner {
+
+    @Override
+    public int partition(String topic, Object key, byte[] keyBytes, Object value, byte[] valueBytes, Cluster cluster) {
+        int partitions = cluster.partitionsForTopic(topic).size();
+        if (value instanceof Mt564EventDto event) {
+            return partition(event, partitions);
+        }
+        if (keyBytes == null) {
+            return 0;
+        }
+        return Utils.toPositive(Utils.murmur2(keyBytes)) % partitions;
+    }
+
+    public static int partition(Mt564EventDto event, int partitions) {
+        return partition(Mt564EventId.of(event.getEventReference(), event.getFinancialInstrumentId(), event.getSenderBic()),
+                partitions);
+    }
+
+    /**
+     * Partition of the event among the given number of partitions.
+     */
+    public static int partition(Mt564EventId id, int partitions) {
+        // the separator cannot appear in a reference, an ISIN or a BIC
+        String key = id.getEventReference() + '|' + id.getFinancialInstrumentId() + '|' + id.getSenderBic();
+        return Utils.toPositive(Utils.murmur2(key.getBytes(StandardCharsets.UTF_8))) % partitions;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void configure(Map<String, ?> configs) {
+    }
+}
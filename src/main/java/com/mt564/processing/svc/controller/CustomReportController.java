@@ -5,14 +5,37 @@ import com.mt564.processing.svc.model.dto.CustomReportRequest;
 import com.mt564.processing.svc.model.entity.CustomReportConfig;
 import com.mt564.processing.svc.repository.CustomReportConfigRepository;
 import com.mt564.processing.svc.service.CustomReportService;
+import com.mt564.processing.svc.model.dto.IndexAdvice;
+import com.mt564.processing.svc.model.dto.ReportFilter;
+import com.mt564.processing.svc.model.dto.ReportJobStatus;
+import com.mt564.processing.svc.model.dto.ReportPage;
+import com.mt564.processing.svc.service.ReportFormat;
+import com.mt564.processing.svc.service.ReportIndexAdvisor;
+import com.mt564.processing.svc.service.ReportJobService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 @RestController
+@Slf4j
 @RequestMapping("/api/reports/custom")
 public class CustomReportController {
 
@@ -22,9 +45,18 @@ public class CustomReportController {
     @Autowired
     private CustomReportService customReportService;
 
+    @Autowired
+    private ReportIndexAdvisor reportIndexAdvisor;
+
+    @Autowired
+    private ReportJobService reportJobService;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Value("${app.report.max-page-size:10000}")
+    private int maxPageSize = 10_000;
+
     /*
     Frontend UI :
     - Text Box to name the report
@@ -35,7 +67,11 @@ public class CustomReportController {
               "columns": ["event_reference", "financial_instrument_id", "sender_bic", "record_date", "ex_date"],
               "filters": {
                 "corporate_action_event_type": "DIV"
-              }
+              },
+              "conditions": [
+                {"column": "record_date", "operator": "BETWEEN", "from": "2025-06-01", "to": "2025-06-30"},
+                {"column": "response_deadline", "operator": "IS_NULL"}
+              ]
         }
      */
     @PostMapping("/save")
@@ -45,12 +81,23 @@ public class CustomReportController {
         config.setSelectedColumns(String.join(",", request.getColumns()));
 
         try {
-            config.setFilterConditions(objectMapper.writeValueAsString(request.getFilters()));
+            if (request.getConditions() == null || request.getConditions().isEmpty()) {
+                config.setFilterConditions(objectMapper.writeValueAsString(request.getFilters()));
+            } else {
+                List<ReportFilter> filters = new ArrayList<>();
+                if (request.getFilters() != null) {
+                    request.getFilters().forEach((column, value) -> filters.add(ReportFilter.eq(column, value)));
+                }
+                filters.addAll(request.getConditions());
+                config.setFilterConditions(objectMapper.writeValueAsString(filters));
+            }
         } catch (Exception e) {
             throw new RuntimeException("Error serializing filters");
         }
 
         config.setCreatedAt(LocalDateTime.now());
+        // rejects unknown columns and filter values that do not fit their column before anything is saved
+        customReportService.compile(config);
         return configRepository.save(config);
     }
 
@@ -58,4 +105,125 @@ public class CustomReportController {
     public List<Map<String, Object>> executeCustomReport(@PathVariable Long id) {
         return customReportService.executeReport(id);
     }
-}
\ No newline at end of file
+
+    /**
+     * Lists the indexes recommended on mt564_events for the filters of the saved reports.
+     */
+    @GetMapping("/index-advice")
+    public List<IndexAdvice> indexAdvice() {
+        return reportIndexAdvisor.advise();
+    }
+
+    /**
+     * Streams the whole report as CSV or NDJSON, written row by row as the database returns them.
+     */
+    @GetMapping("/{id}/stream")
+    public ResponseEntity<StreamingResponseBody> streamCustomReport(@PathVariable Long id,
+                                                                    @RequestParam(value = "format", defaultValue = "csv") String format) {
+        ReportFormat reportFormat;
+        try {
+            reportFormat = ReportFormat.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> {
+            try {
+                long rows = customReportService.streamReport(id, reportFormat, out);
+                log.info("Streamed custom report [{}] [{}] rows [{}]", id, reportFormat, rows);
+            } catch (RuntimeException ex) {
+                log.error("Error Streaming Custom Report [{}] [{}]", id, ex.getMessage(), ex);
+                throw ex;
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.parseMediaType(reportFormat.getContentType()));
+        if (reportFormat == ReportFormat.CSV) {
+            response.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"report-" + id + ".csv\"");
+        }
+        return response.body(body);
+    }
+
+    /**
+     * Returns one page of the report in primary key order. The continuationToken of a page fetches the next one,
+     * it is null on the last page.
+     */
+    @GetMapping("/{id}/page")
+    public ResponseEntity<ReportPage> pageCustomReport(@PathVariable Long id,
+                                                       @RequestParam(value = "continuationToken", required = false) String continuationToken,
+                                                       @RequestParam(value = "limit", defaultValue = "1000") int limit) {
+        if (limit <= 0 || limit > maxPageSize) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(customReportService.pageReport(id, continuationToken, limit));
+        } catch (IllegalArgumentException ex) {
+            log.warn("Invalid continuation token [{}] for custom report [{}]", continuationToken, id);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Submits the report as an asynchronous job, whose result is then downloaded from /jobs/{jobId}/result.
+     * An equivalent job (same report and format, queued, running or done on unchanged data) is returned instead of
+     * starting a new one.
+     * Jobs live on the node that accepted them: the status and result requests must reach the same node, see
+     * ReportJobService.
+     */
+    @PostMapping("/{id}/jobs")
+    public ResponseEntity<ReportJobStatus> submitCustomReportJob(@PathVariable Long id,
+                                                                 @RequestParam(value = "format", defaultValue = "csv") String format) {
+        ReportFormat reportFormat;
+        try {
+            reportFormat = ReportFormat.valueOf(format.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            ReportJobStatus job = reportJobService.submit(id, reportFormat);
+            return ResponseEntity.accepted().location(URI.create("/api/reports/custom/jobs/" + job.getJobId())).body(job);
+        } catch (IllegalStateException ex) {
+            log.warn("Rejected custom report job for report [{}] [{}]", id, ex.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<ReportJobStatus> customReportJobStatus(@PathVariable String jobId) {
+        return ResponseEntity.of(reportJobService.status(jobId));
+    }
+
+    /**
+     * Downloads the result of a completed job: the spooled gzip file as-is (Content-Encoding: gzip) to clients that
+     * accept gzip, decompressed on the fly otherwise.
+     */
+    @GetMapping("/jobs/{jobId}/result")
+    public ResponseEntity<StreamingResponseBody> customReportJobResult(@PathVariable String jobId,
+                                                                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Optional<ReportJobStatus> status = reportJobService.status(jobId);
+        if (status.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (status.get().getState() != ReportJobStatus.State.DONE) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        Optional<Path> file = reportJobService.resultFile(jobId);
+        if (file.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.GONE).build();
+        }
+
+        ReportFormat reportFormat = ReportFormat.valueOf(status.get().getFormat());
+        boolean gzip = acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+        StreamingResponseBody body = out -> {
+            try (InputStream in = gzip ? Files.newInputStream(file.get()) : new GZIPInputStream(Files.newInputStream(file.get()), 64 * 1024)) {
+                in.transferTo(out);
+            }
+        };
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(reportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"report-" + status.get().getReportId() + "."
+                        + reportFormat.name().toLowerCase(Locale.ROOT) + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip").contentLength(status.get().getCompressedBytes());
+        }
+        return response.body(body);
+    }
+}
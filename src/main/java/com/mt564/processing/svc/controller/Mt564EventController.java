@@ -1,18 +1,26 @@
 package com.mt564.processing.svc.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.mt564.processing.svc.model.dto.DeltaCursor;
 import com.mt564.processing.svc.model.dto.Mt564EventDelta;
 import com.mt564.processing.svc.service.EventDeltaReportingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 @Slf4j
 @RestController
@@ -20,8 +28,13 @@ import java.util.List;
 @RequiredArgsConstructor
 class Mt564EventController {
 
+    static final String NDJSON = "application/x-ndjson";
+
     @Autowired
     EventDeltaReportingService eventDeltaReportingService;
+    @Autowired
+    ObjectMapper objectMapper;
+
     /**
      * API to retrieve field-level changes for MT564 events within a specified date range.
      *
@@ -72,6 +85,76 @@ class Mt564EventController {
         }
     }
 
+    /**
+     * Streaming variant of the delta API for large date ranges, with bounded memory on the server.
+     *
+     * Input: either a date range (fromDate and toDate), or the continuationToken returned by a previous call
+     * (the range is then taken from the token), and the maximum number of deltas to return (limit).
+     *
+     * Output: newline-delimited JSON (application/x-ndjson). Every line but the last one is an Mt564EventDelta as
+     * returned by /api/events/delta, in (eventReference, financialInstrumentId, senderBic, versionTo) order. The last
+     * line is a control record carrying the token to resume from, or null when the range is complete:
+     *
+     * {"eventReference":"EVT001","financialInstrumentId":"ABC123","senderBic":"BNPAFRPPXXX","versionFrom":2,...}
+     * {"eventReference":"EVT002","financialInstrumentId":"XYZ789","senderBic":"BNPAFRPPXXX","versionFrom":0,...}
+     * {"continuationToken":"AQ..."}
+     *
+     * A client that lost the connection can resume from the last token it received.
+     */
+    @GetMapping(value = "/delta/stream", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamFieldLevelDeltas(
+            @RequestParam(value = "fromDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "toDate", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "continuationToken", required = false) String continuationToken,
+            @RequestParam(value = "limit", defaultValue = "10000") int limit) {
+        DeltaCursor cursor;
+        LocalDateTime fromTime;
+        LocalDateTime toTime;
+        try {
+            cursor = continuationToken == null ? null : DeltaCursor.fromToken(continuationToken);
+        } catch (IllegalArgumentException ex) {
+            log.warn("Invalid continuation token [{}]", continuationToken);
+            return ResponseEntity.badRequest().build();
+        }
+        if (cursor != null) {
+            fromTime = cursor.getFrom();
+            toTime = cursor.getTo();
+            if ((from != null && !from.atStartOfDay().equals(fromTime)) || (to != null && !to.plusDays(1).atStartOfDay().equals(toTime))) {
+                return ResponseEntity.badRequest().build();
+            }
+        } else if (from != null && to != null) {
+            fromTime = from.atStartOfDay();
+            toTime = to.plusDays(1).atStartOfDay();
+        } else {
+            return ResponseEntity.badRequest().build();
+        }
+        if (limit <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        ObjectWriter writer = objectMapper.writer();
+        StreamingResponseBody body = out -> {
+            try {
+                DeltaCursor next = eventDeltaReportingService.streamFieldLevelDeltas(fromTime, toTime, cursor, limit, delta -> {
+                    try {
+                        out.write(writer.writeValueAsBytes(delta));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                out.write(writer.writeValueAsBytes(objectMapper.createObjectNode()
+                        .put("continuationToken", next == null ? null : next.toToken())));
+                out.write('\n');
+            } catch (RuntimeException ex) {
+                log.error("Error Streaming MT564 Events Delta [{}] [{}] [{}]", fromTime, toTime, ex.getMessage(), ex);
+                throw ex;
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+
+
 
 
 }
@@ -0,0 +1,274 @@
+package com.mt564.processing.svc.hashing;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Computes the business hash of an MT564 event without building the intermediate joined String.
+ *
+ * The hash input is exactly the byte sequence the original implementation produced with
+ * String.join("|", ...).getBytes(UTF_8), i.e.:
+ * - String attributes are written as-is, null written as an empty string
+ * - Date / date-time attributes and the disclosure flag are written as String.valueOf(..), null written as "null"
+ * - attributes are separated by '|'
+ *
+ * Instead of allocating that String, every attribute is UTF-8 encoded straight into a thread-local byte buffer
+ * which is flushed into a thread-local digest (SHA-256 or MurmurHash3 128). Dates are written digit by digit in
+ * the same format as LocalDate/LocalDateTime.toString(), so existing business_hash values stay valid in SHA_256 mode.
+ *
+ * The process-wide mode is configured through app.business-hash.mode (see BusinessHashConfig).
+ */
+public final class BusinessHashEngine {
+
+    private static final int BUFFER_SIZE = 1024;
+    private static final byte SEPARATOR = '|';
+    private static final byte[] NULL_LITERAL = {'n', 'u', 'l', 'l'};
+    private static final byte[] TRUE_LITERAL = {'t', 'r', 'u', 'e'};
+    private static final byte[] FALSE_LITERAL = {'f', 'a', 'l', 's', 'e'};
+
+    private static volatile BusinessHashMode defaultMode = BusinessHashMode.SHA_256;
+
+    private static final ThreadLocal<HashState> STATE = ThreadLocal.withInitial(() -> new HashState(BUFFER_SIZE));
+
+    private BusinessHashEngine() {
+    }
+
+    public static BusinessHashMode getDefaultMode() {
+        return defaultMode;
+    }
+
+    public static void setDefaultMode(BusinessHashMode mode) {
+        defaultMode = mode == null ? BusinessHashMode.SHA_256 : mode;
+    }
+
+    /**
+     * Hashes the business attributes of the given DTO using the configured default mode.
+     */
+    public static String hash(Mt564EventDto dto) {
+        return hash(dto, defaultMode);
+    }
+
+    public static String hash(Mt564EventDto dto, BusinessHashMode mode) {
+        return STATE.get().hash(dto, mode);
+    }
+
+    /**
+     * Per-thread reusable buffers and digests. Package-private so tests can exercise small buffer sizes.
+     */
+    static final class HashState {
+
+        private final byte[] buffer;
+        private final MessageDigest sha256;
+        private final Murmur3x64Digest murmur = new Murmur3x64Digest();
+        private final byte[] digestOut = new byte[32];
+        private final char[] hexOut = new char[64];
+        private BusinessHashMode mode;
+        private int position;
+
+        HashState(int bufferSize) {
+            // the buffer must always fit the longest single write (a date-time tail is 19 bytes)
+            this.buffer = new byte[Math.max(bufferSize, 32)];
+            try {
+                this.sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("SHA-256 Algorithm not found", e);
+            }
+        }
+
+        String hash(Mt564EventDto dto, BusinessHashMode mode) {
+            this.mode = mode;
+            this.position = 0;
+            sha256.reset();
+            murmur.reset();
+
+            writeString(dto.getRelatedMessageReference());
+            separator();
+            writeString(dto.getCorporateActionEventId());
+            separator();
+            writeString(dto.getCorporateActionEventType());
+            separator();
+            writeString(dto.getMandatoryVoluntaryIndicator());
+            separator();
+            writeString(dto.getEventProcessingStatus());
+            separator();
+            writeString(dto.getEventStatusCode());
+            separator();
+            writeString(dto.getOfficialCorporateActionEventId());
+            separator();
+            writeString(dto.getLinkEventId());
+            separator();
+            writeString(dto.getSafekeepingAccount());
+            separator();
+            writeString(dto.getPlaceOfSafekeeping());
+            separator();
+            writeDateTime(dto.getEventCreationDatetime());
+            separator();
+            writeDate(dto.getEffectiveDate());
+            separator();
+            writeDate(dto.getRecordDate());
+            separator();
+            writeDate(dto.getExDate());
+            separator();
+            writeDate(dto.getAnnouncementDate());
+            separator();
+            writeDate(dto.getResponseDeadline());
+            separator();
+            writeDate(dto.getGeneralMeetingDate());
+            separator();
+            writeString(dto.getNarrative());
+            separator();
+            writeBoolean(dto.getMarketDisclosureFlag());
+
+            flush();
+            int digestLength;
+            if (mode == BusinessHashMode.MURMUR3_128) {
+                murmur.digest(digestOut);
+                digestLength = Murmur3x64Digest.DIGEST_LENGTH;
+            } else {
+                try {
+                    digestLength = sha256.digest(digestOut, 0, digestOut.length);
+                } catch (DigestException e) {
+                    throw new IllegalStateException("SHA-256 digest failed", e);
+                }
+            }
+            int chars = HexCodec.encode(digestOut, digestLength, hexOut);
+            return new String(hexOut, 0, chars);
+        }
+
+        private void separator() {
+            ensure(1);
+            buffer[position++] = SEPARATOR;
+        }
+
+        /**
+         * UTF-8 encodes the value the same way String.getBytes(UTF_8) does, including the replacement of
+         * unpaired surrogates with '?'.
+         */
+        private void writeString(String value) {
+            if (value == null) {
+                return;
+            }
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                ensure(4);
+                if (c < 0x80) {
+                    buffer[position++] = (byte) c;
+                } else if (c < 0x800) {
+                    buffer[position++] = (byte) (0xc0 | (c >> 6));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3f));
+                } else if (Character.isSurrogate(c)) {
+                    char low;
+                    if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(low = value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, low);
+                        buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+                        buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                        buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                        buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+                        i++;
+                    } else {
+                        buffer[position++] = '?';
+                    }
+                } else {
+                    buffer[position++] = (byte) (0xe0 | (c >> 12));
+                    buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                    buffer[position++] = (byte) (0x80 | (c & 0x3f));
+                }
+            }
+        }
+
+        private void writeBoolean(Boolean value) {
+            writeAscii(value == null ? NULL_LITERAL : value ? TRUE_LITERAL : FALSE_LITERAL);
+        }
+
+        // Mirrors LocalDate.toString() for years 0..9999; anything else falls back to toString().
+        private void writeDate(LocalDate date) {
+            if (date == null) {
+                writeAscii(NULL_LITERAL);
+                return;
+            }
+            int year = date.getYear();
+            if (year < 0 || year > 9999) {
+                writeString(date.toString());
+                return;
+            }
+            ensure(10);
+            writeDigits(year, 4);
+            buffer[position++] = '-';
+            writeDigits(date.getMonthValue(), 2);
+            buffer[position++] = '-';
+            writeDigits(date.getDayOfMonth(), 2);
+        }
+
+        // Mirrors LocalDateTime.toString(): date 'T' HH:mm[:ss[.SSS|.SSSSSS|.SSSSSSSSS]]
+        private void writeDateTime(LocalDateTime dateTime) {
+            if (dateTime == null) {
+                writeAscii(NULL_LITERAL);
+                return;
+            }
+            writeDate(dateTime.toLocalDate());
+            LocalTime time = dateTime.toLocalTime();
+            int second = time.getSecond();
+            int nano = time.getNano();
+
+            ensure(19);
+            buffer[position++] = 'T';
+            writeDigits(time.getHour(), 2);
+            buffer[position++] = ':';
+            writeDigits(time.getMinute(), 2);
+            if (second > 0 || nano > 0) {
+                buffer[position++] = ':';
+                writeDigits(second, 2);
+                if (nano > 0) {
+                    buffer[position++] = '.';
+                    if (nano % 1000_000 == 0) {
+                        writeDigits(nano / 1000_000, 3);
+                    } else if (nano % 1000 == 0) {
+                        writeDigits(nano / 1000, 6);
+                    } else {
+                        writeDigits(nano, 9);
+                    }
+                }
+            }
+        }
+
+        private void writeDigits(int value, int width) {
+            for (int i = position + width - 1; i >= position; i--) {
+                buffer[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            position += width;
+        }
+
+        private void writeAscii(byte[] literal) {
+            ensure(literal.length);
+            System.arraycopy(literal, 0, buffer, position, literal.length);
+            position += literal.length;
+        }
+
+        private void ensure(int bytes) {
+            if (position + bytes > buffer.length) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (position == 0) {
+                return;
+            }
+            if (mode == BusinessHashMode.MURMUR3_128) {
+                murmur.update(buffer, 0, position);
+            } else {
+                sha256.update(buffer, 0, position);
+            }
+            position = 0;
+        }
+    }
+}
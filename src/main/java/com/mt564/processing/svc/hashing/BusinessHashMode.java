@@ -0,0 +1,14 @@
+package com.mt564.processing.svc.hashing;
+
+/**
+ * Hash functions supported by {@link BusinessHashEngine}.
+ *
+ * SHA_256 is the historical format of the business_hash column (64 hex chars) and must stay the default
+ * for as long as rows hashed with it exist. MURMUR3_128 is a much cheaper non-cryptographic alternative
+ * (32 hex chars); switching to it makes every stored hash look "changed" once, so it is only meant for
+ * fresh environments or after a planned re-baseline.
+ */
+public enum BusinessHashMode {
+    SHA_256,
+    MURMUR3_128
+}
@@ -0,0 +1,63 @@
+package com.mt564.processing.svc.hashing;
+
+/**
+ * Lookup-table based hex encoding used for business hashes.
+ * Replaces the per-byte String.format("%02x") loop which allocated a Formatter for every byte.
+ */
+public final class HexCodec {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private HexCodec() {
+    }
+
+    /**
+     * Writes the lower-case hex representation of bytes[0..len) into out, starting at index 0.
+     *
+     * @return the number of chars written (always 2 * len)
+     */
+    public static int encode(byte[] bytes, int len, char[] out) {
+        for (int i = 0, j = 0; i < len; i++) {
+            int b = bytes[i] & 0xff;
+            out[j++] = HEX[b >>> 4];
+            out[j++] = HEX[b & 0x0f];
+        }
+        return len * 2;
+    }
+
+    public static String encode(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        encode(bytes, bytes.length, out);
+        return new String(out);
+    }
+
+    /**
+     * Parses 16 hex chars of s starting at offset into a long (big-endian, i.e. the first char is the
+     * most significant nibble).
+     *
+     * @throws IllegalArgumentException if a char is not a hex digit or the string is too short
+     */
+    public static long parseLong(CharSequence s, int offset) {
+        if (s.length() < offset + 16) {
+            throw new IllegalArgumentException("Hex value too short: " + s);
+        }
+        long value = 0;
+        for (int i = offset; i < offset + 16; i++) {
+            value = (value << 4) | nibble(s.charAt(i));
+        }
+        return value;
+    }
+
+    private static int nibble(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        throw new IllegalArgumentException("Invalid hex char: " + c);
+    }
+}
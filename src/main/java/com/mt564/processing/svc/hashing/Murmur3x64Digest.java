@@ -0,0 +1,142 @@
+package com.mt564.processing.svc.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Streaming, reusable MurmurHash3 x64 128-bit (seed 0). Output bytes are h1 followed by h2, both
+ * little-endian, which is the same layout Guava's Hashing.murmur3_128() produces.
+ *
+ * Not thread-safe; {@link BusinessHashEngine} keeps one instance per thread.
+ */
+final class Murmur3x64Digest {
+
+    static final int DIGEST_LENGTH = 16;
+
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final byte[] tail = new byte[16];
+    private int tailLength;
+    private long h1;
+    private long h2;
+    private long length;
+
+    void reset() {
+        h1 = 0;
+        h2 = 0;
+        length = 0;
+        tailLength = 0;
+    }
+
+    void update(byte[] input, int offset, int len) {
+        length += len;
+        int pos = offset;
+        int end = offset + len;
+
+        // complete a partially filled block from the previous call first
+        if (tailLength > 0) {
+            int take = Math.min(16 - tailLength, len);
+            System.arraycopy(input, pos, tail, tailLength, take);
+            tailLength += take;
+            pos += take;
+            if (tailLength < 16) {
+                return;
+            }
+            mixBlock(tail, 0);
+            tailLength = 0;
+        }
+
+        while (end - pos >= 16) {
+            mixBlock(input, pos);
+            pos += 16;
+        }
+
+        if (pos < end) {
+            tailLength = end - pos;
+            System.arraycopy(input, pos, tail, 0, tailLength);
+        }
+    }
+
+    /**
+     * Finishes the hash, writes 16 bytes into out and resets this digest for reuse.
+     */
+    void digest(byte[] out) {
+        long k1 = 0;
+        long k2 = 0;
+        switch (tailLength) {
+            case 15: k2 ^= (long) (tail[14] & 0xff) << 48;
+            case 14: k2 ^= (long) (tail[13] & 0xff) << 40;
+            case 13: k2 ^= (long) (tail[12] & 0xff) << 32;
+            case 12: k2 ^= (long) (tail[11] & 0xff) << 24;
+            case 11: k2 ^= (long) (tail[10] & 0xff) << 16;
+            case 10: k2 ^= (long) (tail[9] & 0xff) << 8;
+            case 9:
+                k2 ^= tail[8] & 0xff;
+                k2 *= C2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= C1;
+                h2 ^= k2;
+            case 8: k1 ^= (long) (tail[7] & 0xff) << 56;
+            case 7: k1 ^= (long) (tail[6] & 0xff) << 48;
+            case 6: k1 ^= (long) (tail[5] & 0xff) << 40;
+            case 5: k1 ^= (long) (tail[4] & 0xff) << 32;
+            case 4: k1 ^= (long) (tail[3] & 0xff) << 24;
+            case 3: k1 ^= (long) (tail[2] & 0xff) << 16;
+            case 2: k1 ^= (long) (tail[1] & 0xff) << 8;
+            case 1:
+                k1 ^= tail[0] & 0xff;
+                k1 *= C1;
+                k1 = Long.rotateLeft(k1, 31);
+                k1 *= C2;
+                h1 ^= k1;
+            default:
+                break;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        LONG_LE.set(out, 0, h1);
+        LONG_LE.set(out, 8, h2);
+        reset();
+    }
+
+    private void mixBlock(byte[] block, int offset) {
+        long k1 = (long) LONG_LE.get(block, offset);
+        long k2 = (long) LONG_LE.get(block, offset + 8);
+
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
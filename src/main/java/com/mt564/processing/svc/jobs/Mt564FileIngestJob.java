@@ -0,0 +1,428 @@
+package com.mt564.processing.svc.jobs;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.mt564.processing.svc.cache.BusinessHashIndex;
+import com.mt564.processing.svc.model.dto.FileIngestReport;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.service.BatchDuplicateCollapser;
+import com.mt564.processing.svc.service.DeadLetterService;
+import com.mt564.processing.svc.service.PartitionedEventProcessingService;
+import com.mt564.processing.svc.service.PoisonRecordIsolator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Bulk ingest of the daily full feed from a local NDJSON file (one Mt564EventDto per line), gzipped or not, straight
+ * into the database without going through Kafka. Meant for the end-of-day reconciliation, where the feed arrives as a
+ * file rather than through the REST API of Mt564StreamingScheduler.
+ *
+ * - A plain file is memory-mapped and cut into chunks of about app.file-ingest.chunk-bytes on line boundaries; a
+ *   gzipped file is decompressed by one reader and cut the same way.
+ * - Chunks are parsed in parallel on app.file-ingest.parallelism threads, line by line with Jackson's streaming
+ *   JsonParser straight into Mt564EventDto. At most parallelism + 1 chunks are read ahead of the database, so the
+ *   memory used does not depend on the size of the file.
+ * - Parsed chunks are persisted in file order, in batches of app.file-ingest.batch-size events, through the hash
+ *   index and PartitionedEventProcessingService like a Kafka batch; a batch that fails because of its data goes
+ *   through PoisonRecordIsolator. Lines that are not valid events are dead-lettered with their position.
+ * - The copies of an event within a chunk are collapsed first, the copy kept being chosen by
+ *   app.processing.duplicates.policy (latest updatedAt by default, see BatchDuplicateCollapser), not by its position
+ *   in the file. Copies in different chunks are written one after the other, the one of the later chunk last.
+ * - The persisted count of a chunk is the number of events committed, without those found unchanged by the hash index
+ *   or dead-lettered.
+ * - These writes bypass the Kafka partitioning, so every batch moves the cluster-wide generation of the hash index
+ *   (see BusinessHashIndex.externalWriteCommitted()).
+ * - The parse and persist throughput of every chunk is logged and returned in the FileIngestReport.
+ */
+@Service
+@Slf4j
+public class Mt564FileIngestJob {
+
+    static final String DEAD_LETTER_SOURCE = "file";
+
+    @Value("${app.file-ingest.path:}")
+    private String path = "";
+
+    @Value("${app.file-ingest.chunk-bytes:16777216}")
+    private int chunkBytes = 16 * 1024 * 1024;
+
+    // 0 uses the number of cores
+    @Value("${app.file-ingest.parallelism:0}")
+    private int parallelism;
+
+    @Value("${app.file-ingest.batch-size:5000}")
+    private int batchSize = 5000;
+
+    private final ObjectReader reader;
+    private final JsonFactory jsonFactory;
+    private final PartitionedEventProcessingService eventService;
+    private final BusinessHashIndex hashIndex;
+    private final BatchDuplicateCollapser duplicateCollapser;
+    private final PoisonRecordIsolator poisonRecordIsolator;
+    private final DeadLetterService deadLetterService;
+    private final Counter parsedEvents;
+    private final Counter badLines;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public Mt564FileIngestJob(ObjectMapper objectMapper,
+                              PartitionedEventProcessingService eventService,
+                              BusinessHashIndex hashIndex,
+                              BatchDuplicateCollapser duplicateCollapser,
+                              PoisonRecordIsolator poisonRecordIsolator,
+                              DeadLetterService deadLetterService,
+                              MeterRegistry meterRegistry) {
+        this.reader = objectMapper.readerFor(Mt564EventDto.class);
+        this.jsonFactory = objectMapper.getFactory();
+        this.eventService = eventService;
+        this.hashIndex = hashIndex;
+        this.duplicateCollapser = duplicateCollapser;
+        this.poisonRecordIsolator = poisonRecordIsolator;
+        this.deadLetterService = deadLetterService;
+        this.parsedEvents = meterRegistry.counter("mt564.file_ingest.events");
+        this.badLines = meterRegistry.counter("mt564.file_ingest.bad_lines");
+    }
+
+    /**
+     * Ingests the file at app.file-ingest.path on the app.file-ingest.cron schedule (disabled by default). A run
+     * still in progress when the next one fires makes it skip.
+     */
+    @Scheduled(cron = "${app.file-ingest.cron:-}")
+    public void ingestConfiguredFile() {
+        Path file = Path.of(path);
+        if (path.isBlank() || !Files.isRegularFile(file)) {
+            log.warn("MT564 feed file [{}] not found, file ingest skipped", path);
+            return;
+        }
+        try {
+            ingest(file);
+        } catch (IOException | RuntimeException ex) {
+            log.error("Error Ingesting MT564 feed file [{}] [{}]", file, ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Ingests an NDJSON feed file, gzipped when its name ends with .gz.
+     *
+     * @return the statistics of the ingest, per chunk
+     * @throws IllegalStateException if an ingest is already running
+     * @throws IOException           if the file cannot be read
+     * @throws RuntimeException      if a batch failed for a reason other than its data (see PoisonRecordIsolator);
+     *                               the batches before it are committed
+     */
+    public FileIngestReport ingest(Path file) throws IOException {
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("An MT564 file ingest is already running");
+        }
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService parsers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "mt564-file-parser-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        FileIngestReport report = new FileIngestReport();
+        report.setFile(file.toString());
+        log.info("MT564 file ingest of [{}] started with [{}] parser threads", file, threads);
+
+        try (ChunkSource chunks = file.getFileName().toString().endsWith(".gz") ? new GzipChunks(file) : new MappedChunks(file)) {
+            // parsed ahead of the database by at most threads + 1 chunks, persisted in file order
+            Deque<Future<ParsedChunk>> window = new ArrayDeque<>();
+            while (true) {
+                while (window.size() <= threads) {
+                    Chunk chunk = chunks.next();
+                    if (chunk == null) {
+                        break;
+                    }
+                    window.add(parsers.submit(() -> parse(chunk)));
+                }
+                if (window.isEmpty()) {
+                    break;
+                }
+                persist(file, await(window.poll()), report);
+            }
+        } finally {
+            parsers.shutdownNow();
+            running.set(false);
+        }
+
+        report.setElapsedMillis((System.nanoTime() - start) / 1_000_000);
+        log.info("MT564 file ingest of [{}] completed: [{}] bytes, [{}] events, [{}] persisted, [{}] bad lines, "
+                        + "[{}] dead-lettered in [{}] ms ([{}] events/s)", file, report.getBytes(), report.getEvents(),
+                report.getPersisted(), report.getBadLines(), report.getDeadLettered(), report.getElapsedMillis(),
+                Math.round(report.getEventsPerSecond()));
+        return report;
+    }
+
+    /**
+     * Parses the lines of a chunk; blank lines are ignored and invalid ones kept aside.
+     */
+    ParsedChunk parse(Chunk chunk) throws IOException {
+        long start = System.nanoTime();
+        ByteBuffer data = chunk.data;
+        List<Mt564EventDto> events = new ArrayList<>();
+        List<BadLine> bad = new ArrayList<>();
+        byte[] line = new byte[4096];
+        long lines = 0;
+        int lineStart = 0;
+        int limit = data.limit();
+        for (int i = 0; i <= limit; i++) {
+            if (i < limit && data.get(i) != '\n') {
+                continue;
+            }
+            int length = i - lineStart;
+            if (length > 0 || i < limit) {
+                lines++;
+            }
+            if (length > line.length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            data.get(lineStart, line, 0, length);
+            if (!isBlank(line, length)) {
+                try (JsonParser parser = jsonFactory.createParser(line, 0, length)) {
+                    events.add(reader.readValue(parser));
+                } catch (IOException e) {
+                    bad.add(new BadLine(chunk.offset + lineStart, new String(line, 0, length, StandardCharsets.UTF_8), e));
+                }
+            }
+            lineStart = i + 1;
+        }
+        return new ParsedChunk(chunk, lines, events, bad, System.nanoTime() - start);
+    }
+
+    private void persist(Path file, ParsedChunk parsed, FileIngestReport report) {
+        long start = System.nanoTime();
+        long persisted = 0;
+        long deadLettered = 0;
+        for (BadLine badLine : parsed.badLines) {
+            deadLetterService.record(DEAD_LETTER_SOURCE, file.getFileName() + "@" + badLine.offset, badLine.text, badLine.error, 1);
+            deadLettered++;
+        }
+        // collapsed before the hash index, so that a stale copy is never written once the winning copy is unchanged
+        List<Mt564EventDto> events = duplicateCollapser.collapse(parsed.events);
+        for (int from = 0; from < events.size(); from += batchSize) {
+            List<Mt564EventDto> batch = events.subList(from, Math.min(events.size(), from + batchSize));
+            List<Mt564EventDto> changed = hashIndex.filterChanged(batch);
+            if (changed.isEmpty()) {
+                continue;
+            }
+            try {
+                eventService.process(changed);
+                persisted += changed.size();
+            } catch (RuntimeException ex) {
+                // the partitions committed before the failure are in the hash index by now
+                int poison = poisonRecordIsolator.isolate(hashIndex.filterChanged(changed), null, ex);
+                deadLettered += poison;
+                persisted += changed.size() - poison;
+            } finally {
+                // the indexes of the other nodes stop trusting what they read before these writes
+                hashIndex.externalWriteCommitted();
+            }
+        }
+
+        Chunk chunk = parsed.chunk;
+        FileIngestReport.Chunk stats = new FileIngestReport.Chunk(chunk.index, chunk.offset, chunk.data.limit(), parsed.lines,
+                parsed.events.size(), persisted, parsed.badLines.size(), deadLettered, parsed.parseNanos / 1_000_000,
+                (System.nanoTime() - start) / 1_000_000);
+        report.getChunks().add(stats);
+        report.setBytes(report.getBytes() + stats.getBytes());
+        report.setLines(report.getLines() + stats.getLines());
+        report.setEvents(report.getEvents() + stats.getEvents());
+        report.setPersisted(report.getPersisted() + persisted);
+        report.setBadLines(report.getBadLines() + stats.getBadLines());
+        report.setDeadLettered(report.getDeadLettered() + deadLettered);
+        parsedEvents.increment(stats.getEvents());
+        badLines.increment(stats.getBadLines());
+        log.info("Chunk [{}] of [{}]: [{}] bytes, [{}] events parsed in [{}] ms ([{}] events/s, [{}] MB/s), [{}] persisted "
+                        + "in [{}] ms ([{}] events/s), [{}] bad lines, [{}] dead-lettered", chunk.index, file.getFileName(),
+                stats.getBytes(), stats.getEvents(), stats.getParseMillis(), Math.round(stats.getParseEventsPerSecond()),
+                Math.round(stats.getParseMegabytesPerSecond()), persisted, stats.getPersistMillis(),
+                Math.round(stats.getPersistEventsPerSecond()), stats.getBadLines(), deadLettered);
+    }
+
+    private static ParsedChunk await(Future<ParsedChunk> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    private static boolean isBlank(byte[] line, int length) {
+        for (int i = 0; i < length; i++) {
+            if (line[i] != ' ' && line[i] != '\t' && line[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A run of whole lines of the file, starting at the given position of the (decompressed) file.
+     */
+    record Chunk(int index, long offset, ByteBuffer data) {
+    }
+
+    record ParsedChunk(Chunk chunk, long lines, List<Mt564EventDto> events, List<BadLine> badLines, long parseNanos) {
+    }
+
+    private record BadLine(long offset, String text, Throwable error) {
+    }
+
+    private interface ChunkSource extends Closeable {
+        /**
+         * @return the next chunk, or null at the end of the file
+         */
+        Chunk next() throws IOException;
+    }
+
+    /**
+     * Chunks of a plain file, mapped one by one: a chunk ends after the last line feed of its chunk-bytes window (or
+     * of a larger window when a single line is longer than that).
+     */
+    private final class MappedChunks implements ChunkSource {
+        private final FileChannel channel;
+        private final long size;
+        private long position;
+        private int index;
+
+        private MappedChunks(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.size = channel.size();
+        }
+
+        @Override
+        public Chunk next() throws IOException {
+            if (position >= size) {
+                return null;
+            }
+            long window = chunkBytes;
+            while (true) {
+                int length = (int) Math.min(Math.min(window, size - position), Integer.MAX_VALUE - 8);
+                ByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = length;
+                if (position + length < size) {
+                    end = lastLineFeed(mapped, length) + 1;
+                    if (end == 0) {
+                        if (length >= Integer.MAX_VALUE - 8) {
+                            throw new IOException("Line longer than 2 GB at position " + position);
+                        }
+                        window *= 2;
+                        continue;
+                    }
+                }
+                Chunk chunk = new Chunk(index++, position, mapped.slice(0, end));
+                position += end;
+                return chunk;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // mapped buffers stay valid once the channel is closed
+            channel.close();
+        }
+
+        private static int lastLineFeed(ByteBuffer buffer, int length) {
+            for (int i = length - 1; i >= 0; i--) {
+                if (buffer.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Chunks of a gzipped file, decompressed in sequence: a chunk ends after the last line feed of the chunk-bytes
+     * read, the rest is carried over to the next chunk.
+     */
+    private final class GzipChunks implements ChunkSource {
+        private final InputStream in;
+        private byte[] carry = new byte[0];
+        private long position;
+        private int index;
+        private boolean eof;
+
+        private GzipChunks(Path file) throws IOException {
+            this.in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024), 64 * 1024);
+        }
+
+        @Override
+        public Chunk next() throws IOException {
+            if (eof && carry.length == 0) {
+                return null;
+            }
+            byte[] buffer = Arrays.copyOf(carry, Math.max(chunkBytes, carry.length * 2));
+            int length = carry.length;
+            int end = -1;
+            while (end < 0 && !eof) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                int read = in.readNBytes(buffer, length, buffer.length - length);
+                if (read == 0) {
+                    eof = true;
+                }
+                length += read;
+                if (length == buffer.length || eof) {
+                    for (int i = length - 1; i >= 0; i--) {
+                        if (buffer[i] == '\n') {
+                            end = i + 1;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (end < 0) {
+                // last line without a line feed
+                end = length;
+            }
+            carry = Arrays.copyOfRange(buffer, end, length);
+            Chunk chunk = new Chunk(index++, position, ByteBuffer.wrap(buffer, 0, end).slice());
+            position += end;
+            return chunk.data.limit() == 0 ? next() : chunk;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -1,7 +1,15 @@
 package com.mt564.processing.svc.jobs;
 
 import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.service.DeadLetterService;
+import com.mt564.processing.svc.service.JobStateService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.SerializationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
@@ -9,25 +17,107 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Service
 @Slf4j
 public class Mt564StreamingScheduler {
 
+    static final String DEAD_LETTER_SOURCE = "ingest";
+
+    // name of the job in mt564_job_state
+    static final String JOB_NAME = "mt564-feed-pull";
+
     @Value("${app.mt564-endpoint}")
     private String endpoint;
 
     @Value("${app.kafka-topic}")
     private String kafkaTopic;
 
+    // unacknowledged sends at a time, upstream demand follows the acknowledgements
+    @Value("${app.ingest.max-in-flight:256}")
+    private int maxInFlight = 256;
+
+    @Value("${app.ingest.send-retries:3}")
+    private int sendRetries = 3;
+
+    @Value("${app.ingest.retry-backoff:PT0.5S}")
+    private Duration retryBackoff = Duration.ofMillis(500);
+
+    @Value("${app.ingest.max-retry-backoff:PT10S}")
+    private Duration maxRetryBackoff = Duration.ofSeconds(10);
+
+    // what to do when the cron fires while a run is in flight: skip, or queue (at most) one run after it
+    @Value("${app.ingest.overlap:skip}")
+    private String overlap = "skip";
+
+    @Value("${app.ingest.cluster-lock.enabled:false}")
+    private boolean clusterLock;
+
+    @Value("${app.ingest.cluster-lock.lease:PT10M}")
+    private Duration lease = Duration.ofMinutes(10);
+
+    @Value("${app.ingest.incremental.enabled:false}")
+    private boolean incremental;
+
+    @Value("${app.ingest.incremental.param:updatedSince}")
+    private String watermarkParam = "updatedSince";
+
+    // the watermark sent is this much older than the greatest updatedAt received, for events the source commits late
+    @Value("${app.ingest.incremental.overlap:PT1M}")
+    private Duration watermarkOverlap = Duration.ofMinutes(1);
+
     @Autowired
     private final WebClient webClient;
     private final KafkaTemplate<String, Mt564EventDto> kafkaTemplate;
+    private final DeadLetterService deadLetterService;
+    private final JobStateService jobStateService;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean rerunRequested = new AtomicBoolean();
+
+    private final Counter sent;
+    private final Counter deadLettered;
+    private final Counter retries;
+    private final Timer ackLatency;
+    private final Timer eventLag;
+    private final Timer runDuration;
+    private final Counter skippedRuns;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double lastRunThroughput;
 
     public Mt564StreamingScheduler(WebClient webClient,
-                                   KafkaTemplate<String, Mt564EventDto> kafkaTemplate) {
+                                   KafkaTemplate<String, Mt564EventDto> kafkaTemplate,
+                                   DeadLetterService deadLetterService,
+                                   JobStateService jobStateService,
+                                   MeterRegistry meterRegistry) {
         this.webClient = webClient;
         this.kafkaTemplate = kafkaTemplate;
+        this.deadLetterService = deadLetterService;
+        this.jobStateService = jobStateService;
+        this.sent = meterRegistry.counter("mt564.ingest.events", "result", "sent");
+        this.deadLettered = meterRegistry.counter("mt564.ingest.events", "result", "dead_lettered");
+        this.retries = meterRegistry.counter("mt564.ingest.retries");
+        this.ackLatency = meterRegistry.timer("mt564.ingest.send.latency");
+        this.eventLag = meterRegistry.timer("mt564.ingest.event.lag");
+        this.runDuration = meterRegistry.timer("mt564.ingest.run.duration");
+        this.skippedRuns = meterRegistry.counter("mt564.ingest.runs.skipped");
+        Gauge.builder("mt564.ingest.in_flight", inFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("mt564.ingest.last_run.throughput", this, s -> s.lastRunThroughput).baseUnit("events/s").register(meterRegistry);
     }
 
     /**
@@ -35,36 +125,250 @@ public class Mt564StreamingScheduler {
      *
      * This method performs the following actions:
      * - Logs the start of the scheduled job.
-     * - Sends an HTTP GET request to the configured endpoint using WebClient.
+     * - Skips the run if the previous one is still in flight, or with app.ingest.overlap=queue starts (at most) one
+     *   run right after it, so the feed is never published twice concurrently.
+     * - With app.ingest.cluster-lock.enabled, takes the lease of the job in mt564_job_state and skips the run if
+     *   another node holds it; the lease is renewed while the run lasts and released at its end. A renewal that
+     *   fails, or finds the lease taken by another node, aborts the run.
+     * - Sends an HTTP GET request to the configured endpoint using WebClient, with app.ingest.incremental.enabled the
+     *   high-watermark of the last successful run as app.ingest.incremental.param, so only events updated since are
+     *   streamed rather than the whole daily universe.
      * - Accepts the response as a stream of MT564EventDto objects (NDJSON or JSON).
-     * - For each event received:
-     *   - Publishes the event to the configured Kafka topic using the event reference as the key.
-     *   - Logs the Kafka publishing action for traceability.
+     * - Publishes the events to the configured Kafka topic with backpressure (see publish()).
      * - Handles any errors encountered during the fetch or streaming process.
-     * - Logs completion once all events have been processed and sent.
+     * - Once the run succeeded, moves the watermark to the greatest updatedAt received and logs the statistics of
+     *   the run.
      *
      * This method is non-blocking and reactive. It uses WebClient to stream the events
      * and publishes them asynchronously to Kafka using KafkaTemplate.
      *
      * I have built this job assuming that the MT564 Events data are fed via a Asynchronous Rest API. This job would
-     * would change if the data is fed via batch file/object store or via any messaging interface.
+     * would change if the data is fed via batch file/object store or via any messaging interface (a local feed file is
+     * loaded by Mt564FileIngestJob).
      */
 
     @Scheduled(cron = "${app.cron}")
     public void fetchAndStreamEvents() {
-        log.info("Scheduled job started: Fetching MT564 events");
+        if (!running.compareAndSet(false, true)) {
+            skippedRuns.increment();
+            if ("queue".equalsIgnoreCase(overlap)) {
+                rerunRequested.set(true);
+                log.info("Previous MT564 ingest run still in flight, run queued after it");
+            } else {
+                log.info("Previous MT564 ingest run still in flight, run skipped");
+            }
+            return;
+        }
+        boolean locked = false;
+        LocalDateTime since;
+        try {
+            if (clusterLock) {
+                if (!jobStateService.tryLock(JOB_NAME, lease)) {
+                    skippedRuns.increment();
+                    log.info("MT564 ingest run skipped, held by another node");
+                    finishRun(false, null);
+                    return;
+                }
+                locked = true;
+            }
+            since = incremental ? jobStateService.watermark(JOB_NAME).map(w -> w.minus(watermarkOverlap)).orElse(null) : null;
+        } catch (RuntimeException ex) {
+            log.error("Error starting MT564 ingest run", ex);
+            finishRun(locked, null);
+            return;
+        }
+        log.info("Scheduled job started: Fetching MT564 events{}", since == null ? "" : " updated since " + since);
+
+        // signals an error, cancelling the run, once the lease could not be renewed
+        Sinks.Empty<Void> leaseLost = Sinks.empty();
+        Disposable heartbeat = locked
+                ? Flux.interval(lease.dividedBy(3), Schedulers.boundedElastic())
+                .subscribe(tick -> {
+                    if (!jobStateService.tryLock(JOB_NAME, lease)) {
+                        log.error("MT564 ingest lease taken by another node, run aborted");
+                        leaseLost.tryEmitError(new IllegalStateException("MT564 ingest lease lost"));
+                    }
+                }, error -> {
+                    log.error("Error renewing the MT564 ingest lease, run aborted", error);
+                    leaseLost.tryEmitError(error);
+                })
+                : null;
+        boolean release = locked;
+
+        LocalDateTime updatedSince = since;
+        // deferred, a request that cannot even be built still ends the run below
+        Mono.defer(() -> publish(fetch(updatedSince)))
+                .or(leaseLost.asMono().then(Mono.empty()))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(run -> {
+                    if (incremental && run.maxUpdatedAt.get() != null) {
+                        jobStateService.advanceWatermark(JOB_NAME, run.maxUpdatedAt.get());
+                    }
+                })
+                .doFinally(signal -> finishRun(release, heartbeat))
+                .subscribe(
+                        run -> log.info("Completed streaming MT564 events to Kafka {}", run),
+                        error -> log.error("Error fetching or processing events", error));
+    }
 
-        webClient.get()
-                .uri(endpoint)
+    /**
+     * Streams the events of the endpoint, only those updated since the given time when not null.
+     */
+    Flux<Mt564EventDto> fetch(LocalDateTime since) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromUriString(endpoint);
+        if (since != null) {
+            uri.queryParam(watermarkParam, since);
+        }
+        return webClient.get()
+                .uri(uri.build().toUri())
                 .accept(MediaType.APPLICATION_NDJSON) // or MediaType.APPLICATION_JSON
                 .retrieve()
-                .bodyToFlux(Mt564EventDto.class)
-                .doOnNext(dto -> {
-                    kafkaTemplate.send(kafkaTopic, dto.getEventReference(), dto);
-                    log.debug("Published to Kafka: {}", dto.getEventReference());
+                .bodyToFlux(Mt564EventDto.class);
+    }
+
+    private void finishRun(boolean locked, Disposable heartbeat) {
+        if (heartbeat != null) {
+            heartbeat.dispose();
+        }
+        if (locked) {
+            try {
+                jobStateService.unlock(JOB_NAME);
+            } catch (RuntimeException ex) {
+                log.warn("Could not release the MT564 ingest lease, it expires in [{}]", lease, ex);
+            }
+        }
+        running.set(false);
+        if (rerunRequested.getAndSet(false)) {
+            fetchAndStreamEvents();
+        }
+    }
+
+    /**
+     * Publishes the events to Kafka with backpressure.
+     *
+     * This method:
+     * - Sends at most app.ingest.max-in-flight events without acknowledgement: flatMap requests that many events
+     *   from upstream and one more per acknowledged (or dead-lettered) event, so a fast endpoint is read only as fast
+     *   as the producer acknowledges and the producer buffer cannot fill up.
+     * - Retries a failed send app.ingest.send-retries times with exponential backoff, unless the record itself was
+     *   rejected (serialization, size), which no retry can fix.
+     * - Hands the events that still failed to DeadLetterService, off the event loop, and carries on with the run.
+     * - Records the acknowledgement latency, the lag of every event since its creation and the run throughput.
+     *
+     * If the upstream fails midway, the events already received are still sent before the error is signalled.
+     *
+     * @return the statistics of the run, once every event is acknowledged or dead-lettered
+     */
+    Mono<IngestRun> publish(Flux<Mt564EventDto> events) {
+        return Mono.defer(() -> {
+            IngestRun run = new IngestRun();
+            return events
+                    .doOnNext(dto -> {
+                        run.received.incrementAndGet();
+                        if (dto.getUpdatedAt() != null) {
+                            run.maxUpdatedAt.accumulateAndGet(dto.getUpdatedAt(),
+                                    (max, updatedAt) -> max == null || updatedAt.isAfter(max) ? updatedAt : max);
+                        }
+                    })
+                    .flatMapDelayError(dto -> send(dto, run), maxInFlight, 1)
+                    .then(Mono.fromSupplier(() -> complete(run)))
+                    .doOnError(error -> log.error("MT564 ingest run failed {}", complete(run)));
+        });
+    }
+
+    private Mono<Void> send(Mt564EventDto dto, IngestRun run) {
+        AtomicInteger attempts = new AtomicInteger();
+        return Mono.defer(() -> {
+                    attempts.incrementAndGet();
+                    long start = System.nanoTime();
+                    // partitioned by Mt564EventId, see Mt564EventIdPartitioner; a send that throws before returning
+                    // its future still signals an error, so the in-flight gauge is decremented for every increment
+                    return Mono.fromFuture(() -> kafkaTemplate.send(kafkaTopic, dto.getEventReference(), dto))
+                            .doOnSubscribe(subscription -> inFlight.incrementAndGet())
+                            .doOnSuccess(result -> run.recordAck(ackLatency, System.nanoTime() - start))
+                            .doFinally(signal -> inFlight.decrementAndGet());
                 })
-                .doOnError(error -> log.error("Error fetching or processing events", error))
-                .doOnComplete(() -> log.info("Completed streaming MT564 events to Kafka"))
-                .subscribe();
+                .retryWhen(Retry.backoff(sendRetries, retryBackoff)
+                        .maxBackoff(maxRetryBackoff)
+                        .filter(Mt564StreamingScheduler::isRetriable)
+                        .doBeforeRetry(signal -> {
+                            retries.increment();
+                            run.retries.incrementAndGet();
+                        })
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .doOnSuccess(result -> {
+                    sent.increment();
+                    run.sent.incrementAndGet();
+                    if (dto.getEventCreationDatetime() != null) {
+                        Duration lag = Duration.between(dto.getEventCreationDatetime(), LocalDateTime.now());
+                        if (!lag.isNegative()) {
+                            eventLag.record(lag);
+                            run.maxEventLagMillis.accumulateAndGet(lag.toMillis(), Math::max);
+                        }
+                    }
+                })
+                .then()
+                .onErrorResume(error -> Mono.<Void>fromRunnable(() -> {
+                            deadLetterService.record(DEAD_LETTER_SOURCE, dto.getEventReference(), dto, error, attempts.get());
+                            deadLettered.increment();
+                            run.deadLettered.incrementAndGet();
+                        })
+                        .subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private IngestRun complete(IngestRun run) {
+        run.complete();
+        runDuration.record(run.elapsedNanos, TimeUnit.NANOSECONDS);
+        lastRunThroughput = run.throughput();
+        return run;
+    }
+
+    /**
+     * Whether a failed send may succeed when retried: anything but the record itself being rejected.
+     */
+    static boolean isRetriable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SerializationException || cause instanceof RecordTooLargeException) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Statistics of one ingest run.
+     */
+    static final class IngestRun {
+        private final long start = System.nanoTime();
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong sent = new AtomicLong();
+        final AtomicLong deadLettered = new AtomicLong();
+        final AtomicLong retries = new AtomicLong();
+        final AtomicLong maxAckLatencyNanos = new AtomicLong();
+        final AtomicLong maxEventLagMillis = new AtomicLong();
+        // greatest updatedAt received, the watermark of the next incremental run
+        final AtomicReference<LocalDateTime> maxUpdatedAt = new AtomicReference<>();
+        private volatile long elapsedNanos;
+
+        private void recordAck(Timer timer, long latencyNanos) {
+            timer.record(latencyNanos, TimeUnit.NANOSECONDS);
+            maxAckLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+        }
+
+        private void complete() {
+            elapsedNanos = System.nanoTime() - start;
+        }
+
+        double throughput() {
+            return elapsedNanos == 0 ? 0 : sent.get() * 1e9 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("received [%d] sent [%d] dead-lettered [%d] retries [%d] in [%d] ms ([%.0f] events/s),"
+                            + " max ack latency [%d] ms, max event lag [%d] ms",
+                    received.get(), sent.get(), deadLettered.get(), retries.get(), elapsedNanos / 1_000_000, throughput(),
+                    maxAckLatencyNanos.get() / 1_000_000, maxEventLagMillis.get());
+        }
     }
 }
@@ -9,5 +9,8 @@ import java.util.Map;
 public class CustomReportRequest {
     private String reportName;
     private List<String> columns;
+    // equality filters by column name
     private Map<String, Object> filters;
-}
\ No newline at end of file
+    // typed filters (IN, BETWEEN, PREFIX, IS_NULL, ...), combined with the equality filters
+    private List<ReportFilter> conditions;
+}
@@ -0,0 +1,69 @@
+package com.mt564.processing.svc.model.dto;
+
+import com.mt564.processing.svc.codec.BinaryReader;
+import com.mt564.processing.svc.codec.BinaryWriter;
+import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * Resume position of a streamed delta report: the requested range and the last audit version (in
+ * eventReference, financialInstrumentId, senderBic, versionNumber order) whose delta has been delivered.
+ *
+ * Exchanged with clients as an opaque URL-safe Base64 continuation token.
+ */
+@Getter
+@AllArgsConstructor
+public class DeltaCursor {
+
+    private static final int TOKEN_VERSION = 1;
+
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final String eventReference;
+    private final String financialInstrumentId;
+    private final String senderBic;
+    private final int versionNumber;
+
+    public static DeltaCursor at(LocalDateTime from, LocalDateTime to, Mt564EventAuditId id) {
+        return new DeltaCursor(from, to, id.getEventReference(), id.getFinancialInstrumentId(), id.getSenderBic(),
+                id.getVersionNumber());
+    }
+
+    public String toToken() {
+        BinaryWriter writer = new BinaryWriter(128);
+        writer.writeByte(TOKEN_VERSION);
+        writeDateTime(writer, from);
+        writeDateTime(writer, to);
+        writer.writeString(eventReference);
+        writer.writeString(financialInstrumentId);
+        writer.writeString(senderBic);
+        writer.writeSignedVarLong(versionNumber);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(writer.toByteArray());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static DeltaCursor fromToken(String token) {
+        BinaryReader reader = new BinaryReader(Base64.getUrlDecoder().decode(token));
+        if (reader.readByte() != TOKEN_VERSION) {
+            throw new IllegalArgumentException("Unsupported continuation token");
+        }
+        return new DeltaCursor(readDateTime(reader), readDateTime(reader), reader.readString(), reader.readString(),
+                reader.readString(), (int) reader.readSignedVarLong());
+    }
+
+    private static void writeDateTime(BinaryWriter writer, LocalDateTime value) {
+        writer.writeSignedVarLong(value.toEpochSecond(ZoneOffset.UTC));
+        writer.writeVarInt(value.getNano());
+    }
+
+    private static LocalDateTime readDateTime(BinaryReader reader) {
+        return LocalDateTime.ofEpochSecond(reader.readSignedVarLong(), reader.readVarInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,65 @@
+package com.mt564.processing.svc.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of the ingest of an NDJSON feed file (see Mt564FileIngestJob), with the parse and persist throughput of
+ * every chunk of the file.
+ */
+@Data
+@NoArgsConstructor
+public class FileIngestReport {
+
+    private String file;
+    private long bytes;
+    private long lines;
+    private long events;
+    // events left after the hash index, i.e. sent to the database
+    private long persisted;
+    private long badLines;
+    private long deadLettered;
+    private long elapsedMillis;
+    private List<Chunk> chunks = new ArrayList<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Chunk {
+        private int index;
+        // position of the chunk in the (decompressed) file
+        private long offset;
+        private long bytes;
+        private long lines;
+        private long events;
+        private long persisted;
+        private long badLines;
+        private long deadLettered;
+        private long parseMillis;
+        private long persistMillis;
+
+        public double getParseEventsPerSecond() {
+            return perSecond(events, parseMillis);
+        }
+
+        public double getParseMegabytesPerSecond() {
+            return perSecond(bytes, parseMillis) / (1024 * 1024);
+        }
+
+        public double getPersistEventsPerSecond() {
+            return perSecond(persisted, persistMillis);
+        }
+    }
+
+    public double getEventsPerSecond() {
+        return perSecond(events, elapsedMillis);
+    }
+
+    private static double perSecond(long count, long millis) {
+        return count * 1000.0 / Math.max(1, millis);
+    }
+}
@@ -0,0 +1,24 @@
+package com.mt564.processing.svc.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Set;
+
+/**
+ * Index recommended on an mt564_events column that saved custom reports filter on.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexAdvice {
+    private String column;
+    private String indexName;
+    // number of saved reports filtering on the column
+    private int reports;
+    private Set<ReportFilter.Operator> operators;
+    // whether a matching index already exists
+    private boolean indexed;
+    private String ddl;
+}
@@ -1,14 +1,11 @@
 package com.mt564.processing.svc.model.dto;
 
+import com.mt564.processing.svc.hashing.BusinessHashEngine;
 import lombok.*;
 import org.codehaus.jackson.annotate.JsonIgnore;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.util.Optional;
 
 @Getter
 @Setter
@@ -50,41 +47,121 @@ public class Mt564EventDto {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
+    // Memoized business hash, reset by every setter of a hashed attribute. Being an initialized final field it is
+    // left out of the Lombok builder / all-args constructor.
+    @Getter(AccessLevel.NONE)
+    private final transient HashMemo hashMemo = new HashMemo();
+
+    /**
+     * Returns the business hash of this event, computed once by BusinessHashEngine and memoized until
+     * one of the hashed attributes is modified.
+     */
     @JsonIgnore
     public String getBusinessHash() {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-
-            String input = String.join("|",
-                    Optional.ofNullable(getRelatedMessageReference()).orElse(""),
-                    Optional.ofNullable(getCorporateActionEventId()).orElse(""),
-                    Optional.ofNullable(getCorporateActionEventType()).orElse(""),
-                    Optional.ofNullable(getMandatoryVoluntaryIndicator()).orElse(""),
-                    Optional.ofNullable(getEventProcessingStatus()).orElse(""),
-                    Optional.ofNullable(getEventStatusCode()).orElse(""),
-                    Optional.ofNullable(getOfficialCorporateActionEventId()).orElse(""),
-                    Optional.ofNullable(getLinkEventId()).orElse(""),
-                    Optional.ofNullable(getSafekeepingAccount()).orElse(""),
-                    Optional.ofNullable(getPlaceOfSafekeeping()).orElse(""),
-                    String.valueOf(getEventCreationDatetime()),
-                    String.valueOf(getEffectiveDate()),
-                    String.valueOf(getRecordDate()),
-                    String.valueOf(getExDate()),
-                    String.valueOf(getAnnouncementDate()),
-                    String.valueOf(getResponseDeadline()),
-                    String.valueOf(getGeneralMeetingDate()),
-                    Optional.ofNullable(getNarrative()).orElse(""),
-                    String.valueOf(getMarketDisclosureFlag())
-            );
-
-            byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
-            StringBuilder hexString = new StringBuilder();
-            for (byte b : hashBytes) {
-                hexString.append(String.format("%02x", b));
-            }
-            return hexString.toString();
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 Algorithm not found", e);
+        String hash = hashMemo.value;
+        if (hash == null) {
+            hash = BusinessHashEngine.hash(this);
+            hashMemo.value = hash;
         }
+        return hash;
+    }
+
+    public void setRelatedMessageReference(String relatedMessageReference) {
+        this.relatedMessageReference = relatedMessageReference;
+        hashMemo.value = null;
+    }
+
+    public void setCorporateActionEventId(String corporateActionEventId) {
+        this.corporateActionEventId = corporateActionEventId;
+        hashMemo.value = null;
+    }
+
+    public void setCorporateActionEventType(String corporateActionEventType) {
+        this.corporateActionEventType = corporateActionEventType;
+        hashMemo.value = null;
+    }
+
+    public void setMandatoryVoluntaryIndicator(String mandatoryVoluntaryIndicator) {
+        this.mandatoryVoluntaryIndicator = mandatoryVoluntaryIndicator;
+        hashMemo.value = null;
+    }
+
+    public void setEventProcessingStatus(String eventProcessingStatus) {
+        this.eventProcessingStatus = eventProcessingStatus;
+        hashMemo.value = null;
+    }
+
+    public void setEventStatusCode(String eventStatusCode) {
+        this.eventStatusCode = eventStatusCode;
+        hashMemo.value = null;
+    }
+
+    public void setOfficialCorporateActionEventId(String officialCorporateActionEventId) {
+        this.officialCorporateActionEventId = officialCorporateActionEventId;
+        hashMemo.value = null;
+    }
+
+    public void setLinkEventId(String linkEventId) {
+        this.linkEventId = linkEventId;
+        hashMemo.value = null;
+    }
+
+    public void setSafekeepingAccount(String safekeepingAccount) {
+        this.safekeepingAccount = safekeepingAccount;
+        hashMemo.value = null;
+    }
+
+    public void setPlaceOfSafekeeping(String placeOfSafekeeping) {
+        this.placeOfSafekeeping = placeOfSafekeeping;
+        hashMemo.value = null;
+    }
+
+    public void setEventCreationDatetime(LocalDateTime eventCreationDatetime) {
+        this.eventCreationDatetime = eventCreationDatetime;
+        hashMemo.value = null;
+    }
+
+    public void setEffectiveDate(LocalDate effectiveDate) {
+        this.effectiveDate = effectiveDate;
+        hashMemo.value = null;
+    }
+
+    public void setRecordDate(LocalDate recordDate) {
+        this.recordDate = recordDate;
+        hashMemo.value = null;
+    }
+
+    public void setExDate(LocalDate exDate) {
+        this.exDate = exDate;
+        hashMemo.value = null;
+    }
+
+    public void setAnnouncementDate(LocalDate announcementDate) {
+        this.announcementDate = announcementDate;
+        hashMemo.value = null;
+    }
+
+    public void setResponseDeadline(LocalDate responseDeadline) {
+        this.responseDeadline = responseDeadline;
+        hashMemo.value = null;
+    }
+
+    public void setGeneralMeetingDate(LocalDate generalMeetingDate) {
+        this.generalMeetingDate = generalMeetingDate;
+        hashMemo.value = null;
+    }
+
+    public void setNarrative(String narrative) {
+        this.narrative = narrative;
+        hashMemo.value = null;
+    }
+
+    public void setMarketDisclosureFlag(Boolean marketDisclosureFlag) {
+        this.marketDisclosureFlag = marketDisclosureFlag;
+        hashMemo.value = null;
+    }
+
+    private static final class HashMemo {
+        private String value;
     }
 }
@@ -0,0 +1,18 @@
+package com.mt564.processing.svc.model.dto;
+
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Projection of the change-detection columns of mt564_events (key, business_hash, version_number).
+ * Loaded instead of the full Mt564Event so unchanged events never hydrate the narrative LOB nor enter the
+ * persistence context.
+ */
+@Getter
+@AllArgsConstructor
+public class Mt564EventHashView {
+    private Mt564EventId id;
+    private String businessHash;
+    private Integer versionNumber;
+}
@@ -0,0 +1,47 @@
+package com.mt564.processing.svc.model.dto;
+
+import com.mt564.processing.svc.codec.BinaryReader;
+import com.mt564.processing.svc.codec.BinaryWriter;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.Base64;
+
+/**
+ * Resume position of a paged custom report: the report and the primary key (eventReference, financialInstrumentId,
+ * senderBic) of the last row returned.
+ *
+ * Exchanged with clients as an opaque URL-safe Base64 continuation token.
+ */
+@Getter
+@AllArgsConstructor
+public class ReportCursor {
+
+    private static final int TOKEN_VERSION = 1;
+
+    private final long reportId;
+    private final String eventReference;
+    private final String financialInstrumentId;
+    private final String senderBic;
+
+    public String toToken() {
+        BinaryWriter writer = new BinaryWriter(128);
+        writer.writeByte(TOKEN_VERSION);
+        writer.writeSignedVarLong(reportId);
+        writer.writeString(eventReference);
+        writer.writeString(financialInstrumentId);
+        writer.writeString(senderBic);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(writer.toByteArray());
+    }
+
+    /**
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static ReportCursor fromToken(String token) {
+        BinaryReader reader = new BinaryReader(Base64.getUrlDecoder().decode(token));
+        if (reader.readByte() != TOKEN_VERSION) {
+            throw new IllegalArgumentException("Unsupported continuation token");
+        }
+        return new ReportCursor(reader.readSignedVarLong(), reader.readString(), reader.readString(), reader.readString());
+    }
+}
@@ -0,0 +1,51 @@
+package com.mt564.processing.svc.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * One typed filter condition of a custom report, on a column of mt564_events.
+ *
+ * Examples:
+ *         {"column": "corporate_action_event_type", "operator": "IN", "values": ["DVCA", "INTR"]}
+ *         {"column": "record_date", "operator": "BETWEEN", "from": "2025-06-01", "to": "2025-06-30"}
+ *         {"column": "ex_date", "operator": "BETWEEN", "from": "2025-06-01"}
+ *         {"column": "safekeeping_account", "operator": "PREFIX", "value": "ACC-12"}
+ *         {"column": "response_deadline", "operator": "IS_NULL"}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReportFilter {
+
+    public enum Operator {
+        /** column = value */
+        EQ,
+        /** column IN (values) */
+        IN,
+        /** from <= column <= to, either bound may be omitted */
+        BETWEEN,
+        /** column starts with value (text columns only) */
+        PREFIX,
+        /** column IS NULL */
+        IS_NULL,
+        /** column IS NOT NULL */
+        IS_NOT_NULL
+    }
+
+    private String column;
+    private Operator operator;
+    private Object value;
+    private List<Object> values;
+    private Object from;
+    private Object to;
+
+    public static ReportFilter eq(String column, Object value) {
+        return new ReportFilter(column, Operator.EQ, value, null, null, null);
+    }
+}
@@ -0,0 +1,32 @@
+package com.mt564.processing.svc.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * State of an asynchronous custom report job, as returned by /api/reports/custom/jobs/{jobId}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportJobStatus {
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED
+    }
+
+    private String jobId;
+    private Long reportId;
+    private String format;
+    private State state;
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    // rows written and size of the compressed result, once DONE
+    private long rows;
+    private long compressedBytes;
+    private String error;
+}
@@ -0,0 +1,21 @@
+package com.mt564.processing.svc.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/* Paged Custom Report Response Body Object.
+ *   ReportPage - an object containing:
+ *     - the rows of the page, in mt564_events primary key order
+ *     - the token to pass back for the next page, null on the last page
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportPage {
+    private List<Map<String, Object>> rows;
+    private String continuationToken;
+}
@@ -0,0 +1,43 @@
+package com.mt564.processing.svc.model.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * An MT564 event that could not be delivered or processed after retries, kept for inspection and replay.
+ */
+@Entity
+@Table(name = "mt564_dead_letters", indexes = @Index(name = "idx_mt564_dead_letters_created_at", columnList = "created_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Mt564DeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // stage that gave up on the event, e.g. "ingest" (endpoint to Kafka)
+    @Column(length = 32)
+    private String source;
+
+    private String messageKey;
+
+    // the event as JSON
+    @Lob
+    @Column(columnDefinition = "TEXT")
+    private String payload;
+
+    @Column(length = 2000)
+    private String error;
+
+    private Integer attempts;
+
+    private LocalDateTime createdAt;
+}
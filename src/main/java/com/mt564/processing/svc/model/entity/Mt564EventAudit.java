@@ -9,7 +9,7 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "mt564_events_audit")
+@Table(name = "mt564_events_audit", indexes = @Index(name = "idx_mt564_events_audit_updated_at", columnList = "updated_at"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -21,7 +21,19 @@ public class Mt564EventAudit {
     private String businessHash;
     private LocalDateTime updatedAt;
 
+    // JSON snapshot, written by the JSON codec (and by every row older than the snapshot codecs)
     @Lob
     @Column(columnDefinition = "TEXT")
     private String snapshot;
+
+    // Id of the SnapshotFormat the row was written with, null for rows older than the snapshot codecs (JSON)
+    private Short snapshotFormat;
+
+    // Binary snapshot, written by the binary codec instead of snapshot
+    @Column(length = 1048576)
+    private byte[] snapshotData;
+
+    // Changed fields against the previous version (see FieldDiffs), written on updates when diff capture is enabled
+    @Column(length = 1048576)
+    private byte[] diffData;
 }
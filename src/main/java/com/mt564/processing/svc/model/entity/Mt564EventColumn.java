@@ -0,0 +1,93 @@
+package com.mt564.processing.svc.model.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Catalogue of the columns of the mt564_events table, in DDL order, as they can be selected and filtered on by
+ * custom reports. Unlike {@link Mt564EventField} it includes the key columns and names columns by their SQL name.
+ */
+public enum Mt564EventColumn {
+
+    EVENT_REFERENCE("event_reference", Kind.STRING, e -> e.getId().getEventReference()),
+    FINANCIAL_INSTRUMENT_ID("financial_instrument_id", Kind.STRING, e -> e.getId().getFinancialInstrumentId()),
+    SENDER_BIC("sender_bic", Kind.DICTIONARY, e -> e.getId().getSenderBic()),
+    VERSION_NUMBER("version_number", Kind.INTEGER, Mt564Event::getVersionNumber),
+    BUSINESS_HASH("business_hash", Kind.STRING, Mt564Event::getBusinessHash),
+    RELATED_MESSAGE_REFERENCE("related_message_reference", Kind.STRING, Mt564Event::getRelatedMessageReference),
+    CORPORATE_ACTION_EVENT_ID("corporate_action_event_id", Kind.STRING, Mt564Event::getCorporateActionEventId),
+    CORPORATE_ACTION_EVENT_TYPE("corporate_action_event_type", Kind.DICTIONARY, Mt564Event::getCorporateActionEventType),
+    MANDATORY_VOLUNTARY_INDICATOR("mandatory_voluntary_indicator", Kind.DICTIONARY, Mt564Event::getMandatoryVoluntaryIndicator),
+    EVENT_PROCESSING_STATUS("event_processing_status", Kind.DICTIONARY, Mt564Event::getEventProcessingStatus),
+    EVENT_STATUS_CODE("event_status_code", Kind.DICTIONARY, Mt564Event::getEventStatusCode),
+    OFFICIAL_CORPORATE_ACTION_EVENT_ID("official_corporate_action_event_id", Kind.STRING, Mt564Event::getOfficialCorporateActionEventId),
+    LINK_EVENT_ID("link_event_id", Kind.STRING, Mt564Event::getLinkEventId),
+    SAFEKEEPING_ACCOUNT("safekeeping_account", Kind.STRING, Mt564Event::getSafekeepingAccount),
+    PLACE_OF_SAFEKEEPING("place_of_safekeeping", Kind.STRING, Mt564Event::getPlaceOfSafekeeping),
+    EVENT_CREATION_DATETIME("event_creation_datetime", Kind.DATE_TIME, Mt564Event::getEventCreationDatetime),
+    EFFECTIVE_DATE("effective_date", Kind.DATE, Mt564Event::getEffectiveDate),
+    RECORD_DATE("record_date", Kind.DATE, Mt564Event::getRecordDate),
+    EX_DATE("ex_date", Kind.DATE, Mt564Event::getExDate),
+    ANNOUNCEMENT_DATE("announcement_date", Kind.DATE, Mt564Event::getAnnouncementDate),
+    RESPONSE_DEADLINE("response_deadline", Kind.DATE, Mt564Event::getResponseDeadline),
+    GENERAL_MEETING_DATE("general_meeting_date", Kind.DATE, Mt564Event::getGeneralMeetingDate),
+    NARRATIVE("narrative", Kind.STRING, Mt564Event::getNarrative),
+    MARKET_DISCLOSURE_FLAG("market_disclosure_flag", Kind.BOOLEAN, Mt564Event::getMarketDisclosureFlag),
+    CREATED_AT("created_at", Kind.DATE_TIME, Mt564Event::getCreatedAt),
+    UPDATED_AT("updated_at", Kind.DATE_TIME, Mt564Event::getUpdatedAt);
+
+    /**
+     * Storage kind of a column. DICTIONARY columns are low-cardinality codes.
+     */
+    public enum Kind {
+        STRING(String.class), DICTIONARY(String.class), INTEGER(Integer.class), BOOLEAN(Boolean.class),
+        DATE(LocalDate.class), DATE_TIME(LocalDateTime.class);
+
+        private final Class<?> javaType;
+
+        Kind(Class<?> javaType) {
+            this.javaType = javaType;
+        }
+
+        public Class<?> getJavaType() {
+            return javaType;
+        }
+    }
+
+    private static final Map<String, Mt564EventColumn> BY_NAME = Stream.of(values())
+            .collect(Collectors.toMap(Mt564EventColumn::getColumnName, c -> c));
+
+    private final String columnName;
+    private final Kind kind;
+    private final Function<Mt564Event, Object> getter;
+
+    Mt564EventColumn(String columnName, Kind kind, Function<Mt564Event, Object> getter) {
+        this.columnName = columnName;
+        this.kind = kind;
+        this.getter = getter;
+    }
+
+    /**
+     * @return the column with the given SQL name (case-insensitive, surrounding blanks ignored), or null
+     */
+    public static Mt564EventColumn byName(String columnName) {
+        return columnName == null ? null : BY_NAME.get(columnName.trim().toLowerCase(Locale.ROOT));
+    }
+
+    public String getColumnName() {
+        return columnName;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Object get(Mt564Event event) {
+        return getter.apply(event);
+    }
+}
@@ -0,0 +1,97 @@
+package com.mt564.processing.svc.model.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Catalogue of the non-key attributes of {@link Mt564Event}, in entity declaration order (which is also the order
+ * Jackson serialises them in). The ordinal is part of the binary audit formats: constants must only ever be appended.
+ */
+public enum Mt564EventField {
+
+    VERSION_NUMBER("versionNumber", Type.INTEGER, Mt564Event::getVersionNumber, (e, v) -> e.setVersionNumber((Integer) v)),
+    BUSINESS_HASH("businessHash", Type.STRING, Mt564Event::getBusinessHash, (e, v) -> e.setBusinessHash((String) v)),
+    RELATED_MESSAGE_REFERENCE("relatedMessageReference", Type.STRING, Mt564Event::getRelatedMessageReference, (e, v) -> e.setRelatedMessageReference((String) v)),
+    CORPORATE_ACTION_EVENT_ID("corporateActionEventId", Type.STRING, Mt564Event::getCorporateActionEventId, (e, v) -> e.setCorporateActionEventId((String) v)),
+    CORPORATE_ACTION_EVENT_TYPE("corporateActionEventType", Type.STRING, Mt564Event::getCorporateActionEventType, (e, v) -> e.setCorporateActionEventType((String) v)),
+    MANDATORY_VOLUNTARY_INDICATOR("mandatoryVoluntaryIndicator", Type.STRING, Mt564Event::getMandatoryVoluntaryIndicator, (e, v) -> e.setMandatoryVoluntaryIndicator((String) v)),
+    EVENT_PROCESSING_STATUS("eventProcessingStatus", Type.STRING, Mt564Event::getEventProcessingStatus, (e, v) -> e.setEventProcessingStatus((String) v)),
+    EVENT_STATUS_CODE("eventStatusCode", Type.STRING, Mt564Event::getEventStatusCode, (e, v) -> e.setEventStatusCode((String) v)),
+    OFFICIAL_CORPORATE_ACTION_EVENT_ID("officialCorporateActionEventId", Type.STRING, Mt564Event::getOfficialCorporateActionEventId, (e, v) -> e.setOfficialCorporateActionEventId((String) v)),
+    LINK_EVENT_ID("linkEventId", Type.STRING, Mt564Event::getLinkEventId, (e, v) -> e.setLinkEventId((String) v)),
+    SAFEKEEPING_ACCOUNT("safekeepingAccount", Type.STRING, Mt564Event::getSafekeepingAccount, (e, v) -> e.setSafekeepingAccount((String) v)),
+    PLACE_OF_SAFEKEEPING("placeOfSafekeeping", Type.STRING, Mt564Event::getPlaceOfSafekeeping, (e, v) -> e.setPlaceOfSafekeeping((String) v)),
+    EVENT_CREATION_DATETIME("eventCreationDatetime", Type.DATE_TIME, Mt564Event::getEventCreationDatetime, (e, v) -> e.setEventCreationDatetime((LocalDateTime) v)),
+    EFFECTIVE_DATE("effectiveDate", Type.DATE, Mt564Event::getEffectiveDate, (e, v) -> e.setEffectiveDate((LocalDate) v)),
+    RECORD_DATE("recordDate", Type.DATE, Mt564Event::getRecordDate, (e, v) -> e.setRecordDate((LocalDate) v)),
+    EX_DATE("exDate", Type.DATE, Mt564Event::getExDate, (e, v) -> e.setExDate((LocalDate) v)),
+    ANNOUNCEMENT_DATE("announcementDate", Type.DATE, Mt564Event::getAnnouncementDate, (e, v) -> e.setAnnouncementDate((LocalDate) v)),
+    RESPONSE_DEADLINE("responseDeadline", Type.DATE, Mt564Event::getResponseDeadline, (e, v) -> e.setResponseDeadline((LocalDate) v)),
+    GENERAL_MEETING_DATE("generalMeetingDate", Type.DATE, Mt564Event::getGeneralMeetingDate, (e, v) -> e.setGeneralMeetingDate((LocalDate) v)),
+    NARRATIVE("narrative", Type.STRING, Mt564Event::getNarrative, (e, v) -> e.setNarrative((String) v)),
+    MARKET_DISCLOSURE_FLAG("marketDisclosureFlag", Type.BOOLEAN, Mt564Event::getMarketDisclosureFlag, (e, v) -> e.setMarketDisclosureFlag((Boolean) v)),
+    CREATED_AT("createdAt", Type.DATE_TIME, Mt564Event::getCreatedAt, (e, v) -> e.setCreatedAt((LocalDateTime) v)),
+    UPDATED_AT("updatedAt", Type.DATE_TIME, Mt564Event::getUpdatedAt, (e, v) -> e.setUpdatedAt((LocalDateTime) v));
+
+    public enum Type {
+        STRING, INTEGER, BOOLEAN, DATE, DATE_TIME
+    }
+
+    private static final Mt564EventField[] VALUES = values();
+
+    private final String propertyName;
+    private final Type type;
+    private final Function<Mt564Event, Object> getter;
+    private final BiConsumer<Mt564Event, Object> setter;
+
+    Mt564EventField(String propertyName, Type type, Function<Mt564Event, Object> getter, BiConsumer<Mt564Event, Object> setter) {
+        this.propertyName = propertyName;
+        this.type = type;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public static Mt564EventField of(int ordinal) {
+        return VALUES[ordinal];
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
+
+    /**
+     * JSON property name of the field, as found in JSON audit snapshots and in delta reports.
+     */
+    public String getPropertyName() {
+        return propertyName;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Object get(Mt564Event event) {
+        return getter.apply(event);
+    }
+
+    public void set(Mt564Event event, Object value) {
+        setter.accept(event, value);
+    }
+
+    /**
+     * Renders a value exactly like JsonNode.asText() renders it when read back from a JSON snapshot, so that deltas
+     * computed from binary snapshots are identical to the ones computed from JSON snapshots.
+     */
+    public static String render(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime);
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,41 @@
+package com.mt564.processing.svc.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Cluster-wide state of a scheduled job: the lease of the node running it and the high-watermark of its last
+ * successful run.
+ */
+@Entity
+@Table(name = "mt564_job_state")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Mt564JobState {
+
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    // node holding the lease, until lockedUntil
+    @Column(length = 128)
+    private String lockOwner;
+
+    private LocalDateTime lockedUntil;
+
+    // greatest updatedAt of the events handled by the last successful run
+    private LocalDateTime watermark;
+
+    // incremented by every write the node-local caches cannot see, see BusinessHashIndex
+    private Long generation;
+}
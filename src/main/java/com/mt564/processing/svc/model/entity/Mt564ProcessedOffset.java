@@ -0,0 +1,28 @@
+package com.mt564.processing.svc.model.entity;
+
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Kafka record whose event was processed, written in the transaction that wrote the event to mt564_events (see
+ * ProcessedOffsetLedger).
+ */
+@Entity
+@Table(name = "mt564_processed_offsets")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class Mt564ProcessedOffset {
+    @EmbeddedId
+    private Mt564ProcessedOffsetId id;
+
+    private LocalDateTime processedAt;
+}
@@ -0,0 +1,20 @@
+package com.mt564.processing.svc.model.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Mt564ProcessedOffsetId implements Serializable {
+    @Column(length = 249)
+    private String topic;
+    private int kafkaPartition;
+    private long kafkaOffset;
+}
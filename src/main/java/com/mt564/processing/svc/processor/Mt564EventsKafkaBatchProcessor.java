@@ -1,13 +1,24 @@
 package com.mt564.processing.svc.processor;
 
+import com.mt564.processing.svc.cache.BusinessHashIndex;
 import com.mt564.processing.svc.model.dto.Mt564EventDto;
-import com.mt564.processing.svc.service.Mt564EventBuildService;
+import com.mt564.processing.svc.service.BatchDuplicateCollapser;
+import com.mt564.processing.svc.service.DeadLetterService;
+import com.mt564.processing.svc.service.PartitionedEventProcessingService;
+import com.mt564.processing.svc.service.PoisonRecordIsolator;
+import com.mt564.processing.svc.service.ProcessedOffsetLedger;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.log.LogAccessor;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.serializer.DeserializationException;
+import org.springframework.kafka.support.serializer.SerializationUtils;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -21,12 +32,34 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class Mt564EventsKafkaBatchProcessor {
 
-    private final Mt564EventBuildService eventService;
+    static final String DEAD_LETTER_SOURCE = "consumer";
+
+    private static final LogAccessor LOG_ACCESSOR = new LogAccessor(Mt564EventsKafkaBatchProcessor.class);
+
+    private final PartitionedEventProcessingService eventService;
+    private final BusinessHashIndex hashIndex;
+    private final BatchDuplicateCollapser duplicateCollapser;
+    private final ProcessedOffsetLedger offsetLedger;
+    private final PoisonRecordIsolator poisonRecordIsolator;
+    private final DeadLetterService deadLetterService;
+
+    @Value("${app.kafka.ledger.enabled:true}")
+    private boolean ledgerEnabled = true;
 
     /**
      * Listens to the Kafka topic 'mt564-events' and consumes messages in batches.
-     * Each message is deserialized into Mt564EventDto.
-     * The batch is then passed to the service layer for processing and persistence.
+     * Each message is deserialized into Mt564EventDto; the records whose value cannot be read (corrupt, or written in a
+     * format version this consumer does not know) are dead-lettered with their raw bytes and left out of the batch.
+     * With app.kafka.ledger.enabled, the records already processed (a batch delivered again after a crash or a failed
+     * partition) are skipped first, see ProcessedOffsetLedger.
+     * The copies of an event are collapsed into one next (see BatchDuplicateCollapser), then the events whose
+     * business hash matches the in-memory BusinessHashIndex are dropped without any database round trip; collapsing
+     * first means a stale copy is never written once the copy winning the collapse is known unchanged. the rest of the batch is then passed to the service layer for processing and persistence, each
+     * transaction recording the offsets of its records in the ledger.
+     * When the batch fails because of its data, its events not committed yet are bisected into transactions until
+     * the poison ones are found and dead-lettered, see PoisonRecordIsolator; the good ones are committed.
+     * The offsets of the batch are committed to Kafka only once every event of the batch is committed or
+     * dead-lettered; any other failure leaves them uncommitted and the batch is delivered again.
      *
      * We are using this approach to:
      * - Isolate the consumption of events from the rest-api from the processing service executions.
@@ -36,16 +69,63 @@ public class Mt564EventsKafkaBatchProcessor {
     @KafkaListener(
             topics = "${app.kafka-topic}",
             containerFactory = "kafkaBatchListenerContainerFactory",
-            groupId = "mt564-event-processor-group"
+            groupId = "mt564-event-processor-group",
+            autoStartup = "${app.kafka-listener-auto-startup:true}"
     )
-    public void consumeBatch(List<ConsumerRecord<String, Mt564EventDto>> records) {
+    public void consumeBatch(List<ConsumerRecord<String, Mt564EventDto>> records, Acknowledgment acknowledgment) {
         log.info("Received batch with {} records", records.size());
 
-        List<Mt564EventDto> events = records.stream()
+        List<ConsumerRecord<String, Mt564EventDto>> readable = readableRecords(records);
+        ProcessedOffsetLedger.ConsumedOffsets offsets = ledgerEnabled ? offsetLedger.track(readable) : null;
+        List<Mt564EventDto> changedEvents = pendingEvents(readable, offsets);
+        if (changedEvents.isEmpty()) {
+            log.info("All [{}] records of the batch are unchanged or already processed", readable.size());
+        } else {
+            try {
+                eventService.process(changedEvents, offsets);
+            } catch (RuntimeException ex) {
+                // the transactions committed before the failure are in the ledger and the hash index by now
+                ProcessedOffsetLedger.ConsumedOffsets remaining = ledgerEnabled ? offsetLedger.track(readable) : null;
+                poisonRecordIsolator.isolate(pendingEvents(readable, remaining), remaining, ex);
+            }
+        }
+        acknowledgment.acknowledge();
+    }
+
+    /**
+     * The records with a value, after dead-lettering those whose value could not be deserialized (see
+     * ErrorHandlingDeserializer in KafkaConfig). A dead letter that cannot be stored fails the batch, which is then
+     * delivered again rather than acknowledged.
+     */
+    private List<ConsumerRecord<String, Mt564EventDto>> readableRecords(List<ConsumerRecord<String, Mt564EventDto>> records) {
+        List<ConsumerRecord<String, Mt564EventDto>> readable = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, Mt564EventDto> record : records) {
+            if (record.value() != null) {
+                readable.add(record);
+                continue;
+            }
+            DeserializationException error = SerializationUtils.getExceptionFromHeader(record,
+                    SerializationUtils.VALUE_DESERIALIZER_EXCEPTION_HEADER, LOG_ACCESSOR);
+            if (error == null) {
+                log.warn("Skipped record without value [{}-{}@{}]", record.topic(), record.partition(), record.offset());
+                continue;
+            }
+            deadLetterService.store(DEAD_LETTER_SOURCE, record.topic() + "-" + record.partition() + "@" + record.offset(),
+                    error.getData(), error.getCause() != null ? error.getCause() : error, 1);
+        }
+        return readable;
+    }
+
+    /**
+     * The events of the records not processed yet (all records without a ledger), their copies collapsed, that are not
+     * known unchanged.
+     */
+    private List<Mt564EventDto> pendingEvents(List<ConsumerRecord<String, Mt564EventDto>> records,
+                                              ProcessedOffsetLedger.ConsumedOffsets offsets) {
+        List<Mt564EventDto> events = (offsets != null ? offsets.getRecords() : records).stream()
                 .map(ConsumerRecord::value)
                 .collect(Collectors.toList());
-
-        eventService.processDailyEvents(events);
+        return hashIndex.filterChanged(duplicateCollapser.collapse(events));
     }
 
 }
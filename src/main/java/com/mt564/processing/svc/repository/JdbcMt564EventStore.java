@@ -0,0 +1,337 @@
+package com.mt564.processing.svc.repository;
+
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Persistence engine writing mt564_events and mt564_events_audit with multi-row JDBC batches.
+ *
+ * Compared with the JPA engine it avoids merge() on an assigned @EmbeddedId (SELECT before every INSERT) and
+ * one-row statements: every event of a batch goes through a single batched upsert statement.
+ * - postgres: INSERT ... ON CONFLICT DO UPDATE ... WHERE version_number = :expectedVersion
+ * - h2:       MERGE INTO ... USING ... WHEN MATCHED AND version_number = :expectedVersion
+ * In both cases a row whose stored version is not the one the event was read with is left untouched and reports an
+ * update count of 0, which is raised as an optimistic locking failure (the same outcome as a stale JPA @Version).
+ * Drivers rewriting batches into a single statement (PostgreSQL reWriteBatchedInserts) report SUCCESS_NO_INFO instead
+ * of per-row counts; the rows of such a batch are read back in the same transaction and any row not holding the version
+ * and business hash just written is raised as an optimistic locking failure as well.
+ *
+ * Events loaded by this engine are plain objects, they never enter the JPA persistence context.
+ * Enabled with app.persistence.mode=jdbc; app.persistence.jdbc-dialect selects the upsert flavour (auto|postgres|h2).
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.mode", havingValue = "jdbc")
+@RequiredArgsConstructor
+@Slf4j
+public class JdbcMt564EventStore implements Mt564EventStore {
+
+    private static final String KEY_COLUMNS = "event_reference, financial_instrument_id, sender_bic";
+
+    private static final String[] DATA_COLUMNS = {
+            "version_number", "business_hash", "related_message_reference", "corporate_action_event_id",
+            "corporate_action_event_type", "mandatory_voluntary_indicator", "event_processing_status",
+            "event_status_code", "official_corporate_action_event_id", "link_event_id", "safekeeping_account",
+            "place_of_safekeeping", "event_creation_datetime", "effective_date", "record_date", "ex_date",
+            "announcement_date", "response_deadline", "general_meeting_date", "narrative", "market_disclosure_flag",
+            "updated_at"
+    };
+
+    private static final String SELECT_EVENTS = "SELECT " + KEY_COLUMNS + ", " + String.join(", ", DATA_COLUMNS)
+            + ", created_at FROM mt564_events WHERE (" + KEY_COLUMNS + ") IN (:ids)";
+
+    private static final String SELECT_HASH_VIEWS = "SELECT " + KEY_COLUMNS + ", business_hash, version_number "
+            + "FROM mt564_events WHERE (" + KEY_COLUMNS + ") IN (:ids)";
+
+    private static final String INSERT_AUDIT = "INSERT INTO mt564_events_audit "
+            + "(event_reference, financial_instrument_id, sender_bic, version_number, business_hash, updated_at, snapshot, "
+            + "snapshot_format, snapshot_data, diff_data) "
+            + "VALUES (:eventReference, :financialInstrumentId, :senderBic, :versionNumber, :businessHash, :updatedAt, %s, "
+            + ":snapshotFormat, :snapshotData, :diffData)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Value("${app.persistence.jdbc-dialect:auto}")
+    private String dialect;
+
+    @Value("${app.persistence.jdbc-batch-size:500}")
+    private int batchSize;
+
+    private String upsertSql;
+    private String insertAuditSql;
+
+    @PostConstruct
+    void init() {
+        String resolved = "auto".equalsIgnoreCase(dialect) ? detectDialect() : dialect.toLowerCase(Locale.ROOT);
+        switch (resolved) {
+            case "postgres" -> {
+                upsertSql = postgresUpsert();
+                // snapshot is a JSONB column, a VARCHAR bind needs an explicit cast
+                insertAuditSql = INSERT_AUDIT.formatted("CAST(:snapshot AS jsonb)");
+            }
+            case "h2" -> {
+                upsertSql = h2Merge();
+                insertAuditSql = INSERT_AUDIT.formatted(":snapshot");
+            }
+            default -> throw new IllegalStateException("Unsupported app.persistence.jdbc-dialect [" + resolved + "]");
+        }
+        log.info("JDBC batch persistence enabled with dialect [{}] and batch size [{}]", resolved, batchSize);
+    }
+
+    @Override
+    public List<Mt564EventHashView> findHashViewsByIdIn(Collection<Mt564EventId> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SELECT_HASH_VIEWS, new MapSqlParameterSource("ids", keyTuples(ids)), (rs, rowNum) ->
+                new Mt564EventHashView(Mt564EventId.of(rs.getString(1), rs.getString(2), rs.getString(3)),
+                        rs.getString(4), rs.getInt(5)));
+    }
+
+    @Override
+    public List<Mt564Event> findAllByIdIn(Collection<Mt564EventId> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return jdbcTemplate.query(SELECT_EVENTS, new MapSqlParameterSource("ids", keyTuples(ids)), EVENT_ROW_MAPPER);
+    }
+
+    /**
+     * New events (null version) are written with version 0, existing ones with version + 1 provided the stored version
+     * is still the one they were loaded with. Timestamps follow the entity callbacks: created_at on insert only,
+     * updated_at on every write.
+     */
+    @Override
+    public List<Mt564Event> saveEvents(List<Mt564Event> events) {
+        LocalDateTime now = LocalDateTime.now();
+        SqlParameterSource[] batch = new SqlParameterSource[events.size()];
+        for (int i = 0; i < events.size(); i++) {
+            Mt564Event event = events.get(i);
+            Integer expectedVersion = event.getVersionNumber();
+            if (expectedVersion == null) {
+                event.setCreatedAt(now);
+            }
+            event.setUpdatedAt(now);
+            batch[i] = eventParameters(event, expectedVersion, expectedVersion == null ? 0 : expectedVersion + 1);
+        }
+
+        int[] counts = executeBatch(upsertSql, batch);
+        List<Integer> unverified = new ArrayList<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0) {
+                throw new ObjectOptimisticLockingFailureException(Mt564Event.class, events.get(i).getId());
+            }
+            if (counts[i] == Statement.SUCCESS_NO_INFO) {
+                unverified.add(i);
+            }
+        }
+        verifyWritten(unverified, batch, events);
+        for (int i = 0; i < events.size(); i++) {
+            events.get(i).setVersionNumber((Integer) batch[i].getValue("versionNumber"));
+        }
+        return events;
+    }
+
+    /**
+     * This method:
+     * - reads back the version and business hash of the rows the driver reported SUCCESS_NO_INFO for
+     * - fails with an optimistic locking failure on the first row the guarded upsert skipped
+     */
+    private void verifyWritten(List<Integer> unverified, SqlParameterSource[] batch, List<Mt564Event> events) {
+        if (unverified.isEmpty()) {
+            return;
+        }
+        Map<Mt564EventId, Mt564EventHashView> stored = new HashMap<>();
+        for (int from = 0; from < unverified.size(); from += batchSize) {
+            List<Mt564EventId> ids = unverified.subList(from, Math.min(unverified.size(), from + batchSize)).stream()
+                    .map(i -> events.get(i).getId()).toList();
+            findHashViewsByIdIn(ids).forEach(view -> stored.put(view.getId(), view));
+        }
+        for (int i : unverified) {
+            Mt564Event event = events.get(i);
+            Mt564EventHashView view = stored.get(event.getId());
+            if (view == null || !batch[i].getValue("versionNumber").equals(view.getVersionNumber())
+                    || !Objects.equals(event.getBusinessHash(), view.getBusinessHash())) {
+                throw new ObjectOptimisticLockingFailureException(Mt564Event.class, event.getId());
+            }
+        }
+    }
+
+    @Override
+    public void saveAudits(List<Mt564EventAudit> audits) {
+        SqlParameterSource[] batch = audits.stream().map(audit -> new MapSqlParameterSource()
+                .addValue("eventReference", audit.getId().getEventReference(), Types.VARCHAR)
+                .addValue("financialInstrumentId", audit.getId().getFinancialInstrumentId(), Types.VARCHAR)
+                .addValue("senderBic", audit.getId().getSenderBic(), Types.VARCHAR)
+                .addValue("versionNumber", audit.getId().getVersionNumber(), Types.INTEGER)
+                .addValue("businessHash", audit.getBusinessHash(), Types.VARCHAR)
+                .addValue("updatedAt", audit.getUpdatedAt(), Types.TIMESTAMP)
+                .addValue("snapshot", audit.getSnapshot(), Types.VARCHAR)
+                .addValue("snapshotFormat", audit.getSnapshotFormat(), Types.SMALLINT)
+                .addValue("snapshotData", audit.getSnapshotData(), Types.VARBINARY)
+                .addValue("diffData", audit.getDiffData(), Types.VARBINARY)
+        ).toArray(SqlParameterSource[]::new);
+        executeBatch(insertAuditSql, batch);
+    }
+
+    private int[] executeBatch(String sql, SqlParameterSource[] batch) {
+        int[] counts = new int[batch.length];
+        for (int from = 0; from < batch.length; from += batchSize) {
+            int to = Math.min(batch.length, from + batchSize);
+            SqlParameterSource[] chunk = from == 0 && to == batch.length ? batch : Arrays.copyOfRange(batch, from, to);
+            int[] chunkCounts = jdbcTemplate.batchUpdate(sql, chunk);
+            System.arraycopy(chunkCounts, 0, counts, from, chunkCounts.length);
+        }
+        return counts;
+    }
+
+    private static MapSqlParameterSource eventParameters(Mt564Event event, Integer expectedVersion, int newVersion) {
+        return new MapSqlParameterSource()
+                .addValue("eventReference", event.getId().getEventReference(), Types.VARCHAR)
+                .addValue("financialInstrumentId", event.getId().getFinancialInstrumentId(), Types.VARCHAR)
+                .addValue("senderBic", event.getId().getSenderBic(), Types.VARCHAR)
+                .addValue("expectedVersion", expectedVersion, Types.INTEGER)
+                .addValue("versionNumber", newVersion, Types.INTEGER)
+                .addValue("businessHash", event.getBusinessHash(), Types.VARCHAR)
+                .addValue("relatedMessageReference", event.getRelatedMessageReference(), Types.VARCHAR)
+                .addValue("corporateActionEventId", event.getCorporateActionEventId(), Types.VARCHAR)
+                .addValue("corporateActionEventType", event.getCorporateActionEventType(), Types.VARCHAR)
+                .addValue("mandatoryVoluntaryIndicator", event.getMandatoryVoluntaryIndicator(), Types.VARCHAR)
+                .addValue("eventProcessingStatus", event.getEventProcessingStatus(), Types.VARCHAR)
+                .addValue("eventStatusCode", event.getEventStatusCode(), Types.VARCHAR)
+                .addValue("officialCorporateActionEventId", event.getOfficialCorporateActionEventId(), Types.VARCHAR)
+                .addValue("linkEventId", event.getLinkEventId(), Types.VARCHAR)
+                .addValue("safekeepingAccount", event.getSafekeepingAccount(), Types.VARCHAR)
+                .addValue("placeOfSafekeeping", event.getPlaceOfSafekeeping(), Types.VARCHAR)
+                .addValue("eventCreationDatetime", event.getEventCreationDatetime(), Types.TIMESTAMP)
+                .addValue("effectiveDate", event.getEffectiveDate(), Types.DATE)
+                .addValue("recordDate", event.getRecordDate(), Types.DATE)
+                .addValue("exDate", event.getExDate(), Types.DATE)
+                .addValue("announcementDate", event.getAnnouncementDate(), Types.DATE)
+                .addValue("responseDeadline", event.getResponseDeadline(), Types.DATE)
+                .addValue("generalMeetingDate", event.getGeneralMeetingDate(), Types.DATE)
+                .addValue("narrative", event.getNarrative(), Types.VARCHAR)
+                .addValue("marketDisclosureFlag", event.getMarketDisclosureFlag(), Types.BOOLEAN)
+                .addValue("createdAt", event.getCreatedAt(), Types.TIMESTAMP)
+                .addValue("updatedAt", event.getUpdatedAt(), Types.TIMESTAMP);
+    }
+
+    private static List<Object[]> keyTuples(Collection<Mt564EventId> ids) {
+        List<Object[]> tuples = new ArrayList<>(ids.size());
+        for (Mt564EventId id : ids) {
+            tuples.add(new Object[]{id.getEventReference(), id.getFinancialInstrumentId(), id.getSenderBic()});
+        }
+        return tuples;
+    }
+
+    private static String postgresUpsert() {
+        StringBuilder updates = new StringBuilder();
+        for (String column : DATA_COLUMNS) {
+            updates.append(updates.length() == 0 ? "" : ", ").append(column).append(" = EXCLUDED.").append(column);
+        }
+        return "INSERT INTO mt564_events (" + KEY_COLUMNS + ", " + String.join(", ", DATA_COLUMNS) + ", created_at) "
+                + "VALUES (" + insertValues() + ") "
+                + "ON CONFLICT (" + KEY_COLUMNS + ") DO UPDATE SET " + updates
+                + " WHERE mt564_events.version_number = :expectedVersion";
+    }
+
+    private static String h2Merge() {
+        StringBuilder updates = new StringBuilder();
+        for (String column : DATA_COLUMNS) {
+            updates.append(updates.length() == 0 ? "" : ", ").append("t.").append(column).append(" = :").append(toParameter(column));
+        }
+        return "MERGE INTO mt564_events t "
+                + "USING (SELECT CAST(:eventReference AS VARCHAR(35)) AS event_reference, "
+                + "CAST(:financialInstrumentId AS VARCHAR(35)) AS financial_instrument_id, "
+                + "CAST(:senderBic AS VARCHAR(11)) AS sender_bic) s "
+                + "ON (t.event_reference = s.event_reference AND t.financial_instrument_id = s.financial_instrument_id "
+                + "AND t.sender_bic = s.sender_bic) "
+                + "WHEN MATCHED AND t.version_number = :expectedVersion THEN UPDATE SET " + updates + " "
+                + "WHEN NOT MATCHED THEN INSERT (" + KEY_COLUMNS + ", " + String.join(", ", DATA_COLUMNS) + ", created_at) "
+                + "VALUES (" + insertValues() + ")";
+    }
+
+    private static String insertValues() {
+        StringBuilder values = new StringBuilder(":eventReference, :financialInstrumentId, :senderBic");
+        for (String column : DATA_COLUMNS) {
+            values.append(", :").append(toParameter(column));
+        }
+        return values.append(", :createdAt").toString();
+    }
+
+    private static String toParameter(String column) {
+        return JdbcUtils.convertUnderscoreNameToPropertyName(column);
+    }
+
+    private String detectDialect() {
+        String product = jdbcTemplate.getJdbcTemplate().execute(
+                (Connection connection) -> connection.getMetaData().getDatabaseProductName());
+        String normalised = product == null ? "" : product.toLowerCase(Locale.ROOT);
+        if (normalised.contains("postgres")) {
+            return "postgres";
+        }
+        if (normalised.contains("h2")) {
+            return "h2";
+        }
+        return normalised;
+    }
+
+    private static final RowMapper<Mt564Event> EVENT_ROW_MAPPER = (rs, rowNum) -> Mt564Event.builder()
+            .id(Mt564EventId.of(rs.getString("event_reference"), rs.getString("financial_instrument_id"), rs.getString("sender_bic")))
+            .versionNumber((Integer) rs.getObject("version_number"))
+            .businessHash(rs.getString("business_hash"))
+            .relatedMessageReference(rs.getString("related_message_reference"))
+            .corporateActionEventId(rs.getString("corporate_action_event_id"))
+            .corporateActionEventType(rs.getString("corporate_action_event_type"))
+            .mandatoryVoluntaryIndicator(rs.getString("mandatory_voluntary_indicator"))
+            .eventProcessingStatus(rs.getString("event_processing_status"))
+            .eventStatusCode(rs.getString("event_status_code"))
+            .officialCorporateActionEventId(rs.getString("official_corporate_action_event_id"))
+            .linkEventId(rs.getString("link_event_id"))
+            .safekeepingAccount(rs.getString("safekeeping_account"))
+            .placeOfSafekeeping(rs.getString("place_of_safekeeping"))
+            .eventCreationDatetime(toLocalDateTime(rs.getTimestamp("event_creation_datetime")))
+            .effectiveDate(rs.getObject("effective_date", LocalDate.class))
+            .recordDate(rs.getObject("record_date", LocalDate.class))
+            .exDate(rs.getObject("ex_date", LocalDate.class))
+            .announcementDate(rs.getObject("announcement_date", LocalDate.class))
+            .responseDeadline(rs.getObject("response_deadline", LocalDate.class))
+            .generalMeetingDate(rs.getObject("general_meeting_date", LocalDate.class))
+            .narrative(rs.getString("narrative"))
+            .marketDisclosureFlag((Boolean) rs.getObject("market_disclosure_flag"))
+            .createdAt(toLocalDateTime(rs.getTimestamp("created_at")))
+            .updatedAt(toLocalDateTime(rs.getTimestamp("updated_at")))
+            .build();
+
+    private static LocalDateTime toLocalDateTime(Timestamp timestamp) {
+        return timestamp == null ? null : timestamp.toLocalDateTime();
+    }
+}
@@ -0,0 +1,50 @@
+package com.mt564.processing.svc.repository;
+
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Default persistence engine based on the Spring Data JPA repositories.
+ */
+@Component
+@ConditionalOnProperty(name = "app.persistence.mode", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaMt564EventStore implements Mt564EventStore {
+
+    private final Mt564EventRepository eventRepository;
+    private final Mt564EventAuditRepository auditRepository;
+
+    @Override
+    public List<Mt564EventHashView> findHashViewsByIdIn(Collection<Mt564EventId> ids) {
+        return eventRepository.findHashViewsByIdIn(ids);
+    }
+
+    @Override
+    public List<Mt564Event> findAllByIdIn(Collection<Mt564EventId> ids) {
+        return eventRepository.findAllByIdIn(ids);
+    }
+
+    /**
+     * Flushes right away: Hibernate only increments the @Version of updated entities at flush time, and the audit
+     * rows written next are keyed by that version.
+     */
+    @Override
+    public List<Mt564Event> saveEvents(List<Mt564Event> events) {
+        List<Mt564Event> persistedEvents = eventRepository.saveAll(events);
+        eventRepository.flush();
+        return persistedEvents;
+    }
+
+    @Override
+    public void saveAudits(List<Mt564EventAudit> audits) {
+        auditRepository.saveAllAndFlush(audits);
+    }
+}
@@ -0,0 +1,6 @@
+package com.mt564.processing.svc.repository;
+
+import com.mt564.processing.svc.model.entity.Mt564DeadLetter;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface Mt564DeadLetterRepository extends JpaRepository<Mt564DeadLetter, Long> {}
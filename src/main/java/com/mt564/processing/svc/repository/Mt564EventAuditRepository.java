@@ -2,13 +2,88 @@ package com.mt564.processing.svc.repository;
 
 import com.mt564.processing.svc.model.entity.Mt564EventAudit;
 import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface Mt564EventAuditRepository extends JpaRepository<Mt564EventAudit, Mt564EventAuditId> {
+
+    /**
+     * Select clause of the queries read by the delta reports: the audits are built as plain objects rather than
+     * managed entities, so a long report (the NDJSON stream runs on the request's EntityManager when open-in-view is
+     * on) never accumulates the rows it has read in the persistence context.
+     */
+    String DETACHED_AUDIT = "select new com.mt564.processing.svc.model.entity.Mt564EventAudit("
+            + "a.id, a.businessHash, a.updatedAt, a.snapshot, a.snapshotFormat, a.snapshotData, a.diffData)";
+
     List<Mt564EventAudit> findByUpdatedAtBetween(LocalDateTime from, LocalDateTime to);
-}
\ No newline at end of file
+
+    /**
+     * Write time of the latest audit. Every write to mt564_events adds an audit, so together with
+     * countByUpdatedAtGreaterThanEqual this tells whether mt564_events changed, through the updated_at index.
+     */
+    @Query("select max(a.updatedAt) from Mt564EventAudit a")
+    LocalDateTime findMaxUpdatedAt();
+
+    long countByUpdatedAtGreaterThanEqual(LocalDateTime since);
+
+    /**
+     * Keyset page of the audits updated in [from, to], in (eventReference, financialInstrumentId, senderBic,
+     * versionNumber) order, strictly after the given position. Use empty strings and -1 for the first page.
+     * Only Pageable.getPageSize() is meant to be used, the position replaces the offset. Not managed, see
+     * DETACHED_AUDIT.
+     */
+    @Query(DETACHED_AUDIT + " from Mt564EventAudit a where a.updatedAt between :from and :to and ("
+            + " a.id.eventReference > :ref"
+            + " or (a.id.eventReference = :ref and a.id.financialInstrumentId > :fi)"
+            + " or (a.id.eventReference = :ref and a.id.financialInstrumentId = :fi and a.id.senderBic > :bic)"
+            + " or (a.id.eventReference = :ref and a.id.financialInstrumentId = :fi and a.id.senderBic = :bic"
+            + "     and a.id.versionNumber > :version))"
+            + " order by a.id.eventReference, a.id.financialInstrumentId, a.id.senderBic, a.id.versionNumber")
+    List<Mt564EventAudit> findPageAfter(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                        @Param("ref") String eventReference, @Param("fi") String financialInstrumentId,
+                                        @Param("bic") String senderBic, @Param("version") int versionNumber,
+                                        Pageable page);
+
+    /**
+     * Audits of the given versions, read through the primary key: used to fetch the version preceding the first one
+     * of a [from, to] window, one row per event whatever the length of its history. A version missing from the result
+     * is looked up with findLatestBefore(). Not managed, see DETACHED_AUDIT.
+     */
+    @Query(DETACHED_AUDIT + " from Mt564EventAudit a where a.id in :ids")
+    List<Mt564EventAudit> findByIds(@Param("ids") Collection<Mt564EventAuditId> ids);
+
+    /**
+     * The greatest audited version of the event below the given one, read through the primary key: the predecessor of
+     * a version when the audit history of the event has a gap. Not managed, see DETACHED_AUDIT.
+     */
+    @Query(DETACHED_AUDIT + " from Mt564EventAudit a where a.id.eventReference = :ref and a.id.financialInstrumentId = :fi"
+            + " and a.id.senderBic = :bic and a.id.versionNumber ="
+            + " (select max(p.id.versionNumber) from Mt564EventAudit p where p.id.eventReference = :ref"
+            + "  and p.id.financialInstrumentId = :fi and p.id.senderBic = :bic and p.id.versionNumber < :version)")
+    Optional<Mt564EventAudit> findLatestBefore(@Param("ref") String eventReference, @Param("fi") String financialInstrumentId,
+                                               @Param("bic") String senderBic, @Param("version") int versionNumber);
+
+    /**
+     * The versions needed to rebuild a diff-only version: the nearest version at or below it that carries a snapshot
+     * (a keyframe), then every version after it up to the given one, in version order. Read through the primary key.
+     * Not managed, see DETACHED_AUDIT.
+     */
+    @Query(DETACHED_AUDIT + " from Mt564EventAudit a where a.id.eventReference = :ref and a.id.financialInstrumentId = :fi"
+            + " and a.id.senderBic = :bic and a.id.versionNumber <= :version and a.id.versionNumber >="
+            + " (select max(k.id.versionNumber) from Mt564EventAudit k where k.id.eventReference = :ref"
+            + "  and k.id.financialInstrumentId = :fi and k.id.senderBic = :bic and k.id.versionNumber <= :version"
+            + "  and (k.snapshotFormat is null or k.snapshotFormat <> :diffOnly))"
+            + " order by a.id.versionNumber")
+    List<Mt564EventAudit> findKeyframeChain(@Param("ref") String eventReference, @Param("fi") String financialInstrumentId,
+                                            @Param("bic") String senderBic, @Param("version") int versionNumber,
+                                            @Param("diffOnly") short diffOnlyFormat);
+}
@@ -1,6 +1,27 @@
 package com.mt564.processing.svc.repository;
 
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
 import com.mt564.processing.svc.model.entity.Mt564Event;
 import com.mt564.processing.svc.model.entity.Mt564EventId;
 import org.springframework.data.jpa.repository.JpaRepository;
-public interface Mt564EventRepository extends JpaRepository<Mt564Event, Mt564EventId> {}
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface Mt564EventRepository extends JpaRepository<Mt564Event, Mt564EventId> {
+
+    /**
+     * Returns only (id, businessHash, versionNumber) of the existing events among the given keys.
+     */
+    @Query("select new com.mt564.processing.svc.model.dto.Mt564EventHashView(e.id, e.businessHash, e.versionNumber) "
+            + "from Mt564Event e where e.id in :ids")
+    List<Mt564EventHashView> findHashViewsByIdIn(@Param("ids") Collection<Mt564EventId> ids);
+
+    /**
+     * Loads full entities in a single query. findAllById falls back to one findById per key for composite ids.
+     */
+    @Query("select e from Mt564Event e where e.id in :ids")
+    List<Mt564Event> findAllByIdIn(@Param("ids") Collection<Mt564EventId> ids);
+}
@@ -0,0 +1,39 @@
+package com.mt564.processing.svc.repository;
+
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Persistence engine used by Mt564EventBuildService for mt564_events and mt564_events_audit.
+ *
+ * Selected with app.persistence.mode:
+ * - jpa (default): Spring Data repositories, see JpaMt564EventStore
+ * - jdbc: multi-row JDBC batches with native upserts, see JdbcMt564EventStore
+ */
+public interface Mt564EventStore {
+
+    /**
+     * Returns (id, businessHash, versionNumber) of the existing events among the given keys.
+     */
+    List<Mt564EventHashView> findHashViewsByIdIn(Collection<Mt564EventId> ids);
+
+    /**
+     * Loads the full events for the given keys.
+     */
+    List<Mt564Event> findAllByIdIn(Collection<Mt564EventId> ids);
+
+    /**
+     * Inserts new events (null version) and updates existing ones with an optimistic version check.
+     *
+     * @return the persisted events, carrying the version number they were written with
+     * @throws org.springframework.dao.OptimisticLockingFailureException if an event was modified concurrently
+     */
+    List<Mt564Event> saveEvents(List<Mt564Event> events);
+
+    void saveAudits(List<Mt564EventAudit> audits);
+}
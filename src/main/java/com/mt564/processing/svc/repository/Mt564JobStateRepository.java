@@ -0,0 +1,53 @@
+package com.mt564.processing.svc.repository;
+
+import com.mt564.processing.svc.model.entity.Mt564JobState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+public interface Mt564JobStateRepository extends JpaRepository<Mt564JobState, String> {
+
+    /**
+     * Takes or extends the lease of the job if it is free, expired or already held by the owner.
+     *
+     * @return 1 if the lease is now held by the owner, 0 otherwise (or if the job has no row yet)
+     */
+    @Modifying
+    @Transactional
+    @Query("update Mt564JobState s set s.lockOwner = :owner, s.lockedUntil = :until where s.name = :name"
+            + " and (s.lockOwner is null or s.lockOwner = :owner or s.lockedUntil is null or s.lockedUntil < :now)")
+    int tryLock(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now,
+                @Param("until") LocalDateTime until);
+
+    /**
+     * Creates the row of a job with its lease held by the owner. Fails with a key violation if another node created
+     * it meanwhile.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "insert into mt564_job_state (name, lock_owner, locked_until) values (:name, :owner, :until)", nativeQuery = true)
+    int insertLocked(@Param("name") String name, @Param("owner") String owner, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Transactional
+    @Query("update Mt564JobState s set s.lockOwner = null, s.lockedUntil = null where s.name = :name and s.lockOwner = :owner")
+    int unlock(@Param("name") String name, @Param("owner") String owner);
+
+    /**
+     * Moves the watermark of the job forward only, so that a late run cannot move it back.
+     */
+    @Modifying
+    @Transactional
+    @Query("update Mt564JobState s set s.watermark = :watermark where s.name = :name"
+            + " and (s.watermark is null or s.watermark < :watermark)")
+    int advanceWatermark(@Param("name") String name, @Param("watermark") LocalDateTime watermark);
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into mt564_job_state (name, watermark) values (:name, :watermark)", nativeQuery = true)
+    int insertWatermark(@Param("name") String name, @Param("watermark") LocalDateTime watermark);
+}
@@ -0,0 +1,116 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Batch pre-stage collapsing several copies of the same event (same Mt564EventId) into one, so that a batch never
+ * builds two entities, two writes or two audit versions for the same row.
+ *
+ * - A copy carrying the same business hash as the copy already kept is dropped straight away (no timestamp checks).
+ * - Otherwise the copy to keep is chosen by app.processing.duplicates.policy, see {@link DuplicatePolicy}.
+ * - The surviving copy takes the position of the first occurrence, the order of the batch is otherwise kept.
+ *
+ * Collapsed copies are counted in mt564.batch.duplicates (kind=identical|superseded) to expose feed amplification
+ * from upstream.
+ */
+@Component
+@Slf4j
+public class BatchDuplicateCollapser {
+
+    /**
+     * Which copy of a duplicated event wins. Ties (or missing timestamps on both sides) go to the copy received last.
+     */
+    public enum DuplicatePolicy {
+        /** Latest updatedAt, then latest eventCreationDatetime. */
+        LATEST_UPDATED_AT(Comparator.comparing(Mt564EventDto::getUpdatedAt, NULLS_FIRST)
+                .thenComparing(Mt564EventDto::getEventCreationDatetime, NULLS_FIRST)),
+        /** Latest eventCreationDatetime, then latest updatedAt. */
+        LATEST_EVENT_CREATION(Comparator.comparing(Mt564EventDto::getEventCreationDatetime, NULLS_FIRST)
+                .thenComparing(Mt564EventDto::getUpdatedAt, NULLS_FIRST)),
+        /** Last copy in batch order, regardless of timestamps. */
+        LAST_IN_BATCH((a, b) -> 0);
+
+        private final Comparator<Mt564EventDto> recency;
+
+        DuplicatePolicy(Comparator<Mt564EventDto> recency) {
+            this.recency = recency;
+        }
+    }
+
+    private static final Comparator<LocalDateTime> NULLS_FIRST = Comparator.nullsFirst(Comparator.naturalOrder());
+
+    private final Counter identical;
+    private final Counter superseded;
+
+    @Value("${app.processing.duplicates.policy:LATEST_UPDATED_AT}")
+    private DuplicatePolicy policy = DuplicatePolicy.LATEST_UPDATED_AT;
+
+    public BatchDuplicateCollapser(MeterRegistry meterRegistry) {
+        this.identical = meterRegistry.counter("mt564.batch.duplicates", "kind", "identical");
+        this.superseded = meterRegistry.counter("mt564.batch.duplicates", "kind", "superseded");
+    }
+
+    /**
+     * Returns the batch with at most one copy per Mt564EventId. The input list itself is returned when it holds
+     * no duplicate.
+     */
+    public List<Mt564EventDto> collapse(List<Mt564EventDto> events) {
+        if (events.size() < 2) {
+            return events;
+        }
+        Map<Mt564EventId, Integer> positions = new HashMap<>(events.size() * 4 / 3 + 1);
+        List<Mt564EventDto> kept = null;
+        int identicalCount = 0;
+        int supersededCount = 0;
+
+        for (int i = 0; i < events.size(); i++) {
+            Mt564EventDto dto = events.get(i);
+            Mt564EventId id = Mt564EventId.of(dto.getEventReference(), dto.getFinancialInstrumentId(), dto.getSenderBic());
+            Integer position = positions.get(id);
+            if (position == null) {
+                if (kept != null) {
+                    positions.put(id, kept.size());
+                    kept.add(dto);
+                } else {
+                    positions.put(id, i);
+                }
+                continue;
+            }
+            if (kept == null) {
+                // first duplicate: from here on the output differs from the input
+                kept = new ArrayList<>(events.subList(0, i));
+            }
+            Mt564EventDto current = kept.get(position);
+            if (current.getBusinessHash().equals(dto.getBusinessHash())) {
+                identicalCount++;
+            } else {
+                supersededCount++;
+                if (policy.recency.compare(dto, current) >= 0) {
+                    kept.set(position, dto);
+                }
+            }
+        }
+
+        if (kept == null) {
+            return events;
+        }
+        identical.increment(identicalCount);
+        superseded.increment(supersededCount);
+        log.info("Collapsed [{}] duplicate records of a batch of [{}] ([{}] identical, [{}] superseded, policy {})",
+                identicalCount + supersededCount, events.size(), identicalCount, supersededCount, policy);
+        return kept;
+    }
+}
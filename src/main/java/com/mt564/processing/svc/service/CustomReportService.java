@@ -1,18 +1,41 @@
 package com.mt564.processing.svc.service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.ColumnarEventStore;
+import com.mt564.processing.svc.model.dto.ReportCursor;
+import com.mt564.processing.svc.model.dto.ReportFilter;
+import com.mt564.processing.svc.model.dto.ReportPage;
 import com.mt564.processing.svc.model.entity.CustomReportConfig;
 import com.mt564.processing.svc.repository.CustomReportConfigRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.PreparedStatementCreatorFactory;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterUtils;
+import org.springframework.jdbc.core.namedparam.ParsedSql;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -22,16 +45,22 @@ class CustomReportService {
     private final CustomReportConfigRepository configRepository;
     private final NamedParameterJdbcTemplate jdbcTemplate;
     private final ObjectMapper objectMapper;
+    private final ColumnarEventStore columnarStore;
+
+    // compiled plans by report id, see ReportPlan
+    private final Map<Long, ReportPlan> plans = new ConcurrentHashMap<>();
+
+    @Value("${app.report.stream-fetch-size:1000}")
+    private int streamFetchSize = 1000;
 
     /**
      * Executes a dynamic report based on a saved custom report configuration.
      *
      * This method:
-     * - Retrieves the report configuration by its ID.
-     * - Parses the selected columns and filter conditions from the configuration.
-     * - Builds a dynamic SQL SELECT query using the selected columns.
-     * - Adds WHERE clause conditions based on the filters, using named parameters.
-     * - Executes the query using NamedParameterJdbcTemplate.
+     * - Takes the compiled ReportPlan of the report from the plan cache, or compiles it on first use (see plan()).
+     * - Runs the report as a filter + project scan of the in-memory ColumnarEventStore when it is enabled and able
+     *   to answer (equality filters only); otherwise falls back to the database as follows.
+     * - Executes the plan SQL using NamedParameterJdbcTemplate, with the filter values bound as typed parameters.
      *
      * Example:
      *         {
@@ -43,39 +72,192 @@ class CustomReportService {
      *         }
      * it generates and runs:
      * SELECT event_reference, financial_instrument_id, sender_bic, record_date, ex_date
-     *      FROM mt564_event
+     *      FROM mt564_events
      *      WHERE corporate_action_event_type = :corporate_action_event_type
      *
+     * and typed filters (see ReportFilter) such as
+     *         [{"column": "corporate_action_event_type", "operator": "IN", "values": ["DVCA", "INTR"]},
+     *          {"column": "record_date", "operator": "BETWEEN", "from": "2025-06-01", "to": "2025-06-30"}]
+     * compile to
+     *      WHERE corporate_action_event_type IN (:corporate_action_event_type)
+     *        AND record_date >= :record_date_from AND record_date <= :record_date_to
+     *
      * @param id the ID of the custom report configuration to execute
-     * @return list of result rows, where each row is a map of column names to values
-     * @throws RuntimeException if the report config is not found or filter JSON is invalid
+     * @return list of result rows, where each row is a map of the canonical (lower case) column names to values,
+     *         whether the rows come from the columnar replica or from the database
+     * @throws RuntimeException if the report config is not found, refers to unknown columns or filter JSON is invalid
      */
     public List<Map<String, Object>> executeReport(Long id) {
-        CustomReportConfig config = configRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Report config not found"));
+        ReportPlan plan = plan(id);
 
-        List<String> columns = Arrays.asList(config.getSelectedColumns().split(","));
-        String selectClause = String.join(", ", columns);
+        Optional<Map<String, Object>> equalities = plan.equalityFilterValues();
+        if (equalities.isPresent()) {
+            Optional<List<Map<String, Object>>> replicaRows = columnarStore.query(plan.getColumns(), equalities.get());
+            if (replicaRows.isPresent()) {
+                return replicaRows.get();
+            }
+        }
 
-        StringBuilder query = new StringBuilder("SELECT ").append(selectClause)
-                .append(" FROM mt564_event");
+        return jdbcTemplate.query(plan.getSql(), plan.parameters(), (rs, rowNum) -> row(rs, plan.getColumns()));
+    }
 
-        Map<String, Object> filters;
+    /**
+     * Streams all the rows of a report to the output, with constant memory whatever the size of the report.
+     *
+     * This method:
+     * - Takes the compiled ReportPlan of the report (see plan()).
+     * - Runs the plan SQL in a read-only transaction with a JDBC fetch size of app.report.stream-fetch-size, so that
+     *   drivers such as PostgreSQL read the rows through a cursor rather than loading the whole result.
+     * - Hands every row of the ResultSet to a RowCallbackHandler that writes it straight to the output in the
+     *   requested format (CSV or NDJSON, see ReportFormat); no intermediate row map or list is built.
+     *
+     * @return the number of rows written
+     * @throws RuntimeException if the report config is not found or invalid, or the output fails
+     */
+    @Transactional(readOnly = true)
+    public long streamReport(Long id, ReportFormat format, OutputStream out) {
+        ReportPlan plan = plan(id);
+        long[] rows = {0};
         try {
-            filters = objectMapper.readValue(config.getFilterConditions(), new TypeReference<>() {});
-        } catch (Exception e) {
-            throw new RuntimeException("Invalid filter JSON");
+            ReportFormat.RowWriter writer = format.open(out, plan.getColumns(), objectMapper);
+            query(plan.getSql(), plan.parameters(), streamFetchSize, rs -> {
+                try {
+                    writer.write(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            });
+            writer.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
+        return rows[0];
+    }
 
-        if (!filters.isEmpty()) {
-            query.append(" WHERE ");
-            List<String> conditions = new ArrayList<>();
-            for (String key : filters.keySet()) {
-                conditions.add(key + " = :" + key);
+    /**
+     * Returns one page of a report, for API consumers that page through large reports.
+     *
+     * This method:
+     * - Takes the compiled ReportPlan of the report (see plan()).
+     * - Decodes the continuation token, if any, into the primary key of the last row of the previous page.
+     * - Runs the keyset page query of the plan: the rows after that key, in (event_reference, financial_instrument_id,
+     *   sender_bic) order, so every page is an index range scan however deep the client pages, and rows inserted or
+     *   updated meanwhile never shift the following pages.
+     * - Reads one row more than requested to know whether a next page exists.
+     *
+     * @param continuationToken the token of the previous page, or null for the first page
+     * @param pageSize          the maximum number of rows of the page
+     * @return the rows of the page and the token of the next page (null on the last page)
+     * @throws IllegalArgumentException if the token is malformed or was issued for another report
+     */
+    public ReportPage pageReport(Long id, String continuationToken, int pageSize) {
+        ReportCursor after = continuationToken == null ? null : ReportCursor.fromToken(continuationToken);
+        if (after != null && after.getReportId() != id) {
+            throw new IllegalArgumentException("Continuation token issued for report " + after.getReportId());
+        }
+        ReportPlan plan = plan(id);
+        int[] keyPositions = plan.keyPositions();
+
+        List<Map<String, Object>> rows = new ArrayList<>(Math.min(pageSize, 10_000));
+        String[] lastKey = new String[3];
+        MapSqlParameterSource parameters = after == null
+                ? plan.pageParameters("", "", "", pageSize + 1)
+                : plan.pageParameters(after.getEventReference(), after.getFinancialInstrumentId(), after.getSenderBic(), pageSize + 1);
+        boolean[] more = {false};
+        jdbcTemplate.query(plan.getPageSql(), parameters, (ResultSet rs) -> {
+            if (rows.size() == pageSize) {
+                more[0] = true;
+                return;
+            }
+            rows.add(row(rs, plan.getColumns()));
+            for (int i = 0; i < keyPositions.length; i++) {
+                lastKey[i] = rs.getString(keyPositions[i]);
             }
-            query.append(String.join(" AND ", conditions));
+        });
+
+        String next = more[0] ? new ReportCursor(id, lastKey[0], lastKey[1], lastKey[2]).toToken() : null;
+        return new ReportPage(rows, next);
+    }
+
+    /**
+     * The selected columns of the current row, keyed by their canonical name rather than by the label the database
+     * reports (upper case on H2 and Oracle).
+     */
+    private static Map<String, Object> row(ResultSet rs, List<String> columns) throws SQLException {
+        Map<String, Object> row = new LinkedHashMap<>(columns.size() * 4 / 3 + 1);
+        for (int i = 0; i < columns.size(); i++) {
+            row.put(columns.get(i), JdbcUtils.getResultSetValue(rs, i + 1));
         }
+        return row;
+    }
+
+    /**
+     * Runs a named-parameter query with the given JDBC fetch size, handing each row to the handler.
+     */
+    private void query(String sql, MapSqlParameterSource parameters, int fetchSize, RowCallbackHandler handler) {
+        ParsedSql parsedSql = NamedParameterUtils.parseSqlStatement(sql);
+        PreparedStatementCreatorFactory factory = new PreparedStatementCreatorFactory(
+                NamedParameterUtils.substituteNamedParameters(parsedSql, parameters),
+                NamedParameterUtils.buildSqlParameterList(parsedSql, parameters));
+        PreparedStatementCreator creator = factory.newPreparedStatementCreator(
+                NamedParameterUtils.buildValueArray(parsedSql, parameters, null));
+        jdbcTemplate.getJdbcOperations().query(connection -> {
+            PreparedStatement statement = creator.createPreparedStatement(connection);
+            statement.setFetchSize(fetchSize);
+            return statement;
+        }, handler);
+    }
+
+    /**
+     * Returns the cached plan of the report, compiling it on first use. Saved configurations are never modified (/save
+     * always inserts a new one), so a cached plan stays valid on every node for the life of the report.
+     *
+     * This method:
+     * - Retrieves the report configuration by its ID.
+     * - Splits the selected columns and parses the filter conditions JSON.
+     * - Validates both against the mt564_events column catalogue and builds the SQL once (see ReportPlan.compile()).
+     */
+    ReportPlan plan(Long id) {
+        ReportPlan cached = plans.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        CustomReportConfig config = configRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Report config not found"));
+        ReportPlan plan = compile(config);
+        plans.put(id, plan);
+        return plan;
+    }
 
-        return jdbcTemplate.queryForList(query.toString(), new MapSqlParameterSource(filters));
+    /**
+     * Validates a report configuration by compiling it.
+     *
+     * The filter conditions JSON is either an array of typed filters (see ReportFilter) or, as saved by earlier
+     * versions, an object of equality filters by column name.
+     *
+     * @throws RuntimeException if the configuration refers to unknown columns or its filter JSON is invalid
+     */
+    public ReportPlan compile(CustomReportConfig config) {
+        List<String> columns = Arrays.asList(config.getSelectedColumns().split(","));
+        return ReportPlan.compile(config.getId(), columns, readFilters(config.getFilterConditions()));
+    }
+
+    private List<ReportFilter> readFilters(String filterConditions) {
+        try {
+            JsonNode json = filterConditions == null ? null : objectMapper.readTree(filterConditions);
+            if (json == null || json.isNull() || json.isMissingNode()) {
+                return List.of();
+            }
+            if (json.isArray()) {
+                return objectMapper.convertValue(json, new TypeReference<List<ReportFilter>>() {});
+            }
+            Map<String, Object> equalities = objectMapper.convertValue(json, new TypeReference<Map<String, Object>>() {});
+            List<ReportFilter> filters = new ArrayList<>(equalities.size());
+            equalities.forEach((column, value) -> filters.add(ReportFilter.eq(column, value)));
+            return filters;
+        } catch (Exception e) {
+            throw new RuntimeException("Invalid filter JSON");
+        }
     }
-}
\ No newline at end of file
+}
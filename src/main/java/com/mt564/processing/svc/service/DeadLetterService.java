@@ -0,0 +1,76 @@
+package com.mt564.processing.svc.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.model.entity.Mt564DeadLetter;
+import com.mt564.processing.svc.repository.Mt564DeadLetterRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+
+/**
+ * Keeps the MT564 events given up on after retries in the mt564_dead_letters table, so that no event is silently
+ * lost. The table lives in the database rather than in Kafka, so it also takes events that failed because Kafka
+ * itself was unavailable.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DeadLetterService {
+
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final Mt564DeadLetterRepository deadLetterRepository;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Stores a dead letter. Never throws: if the dead letter itself cannot be stored, the event is logged in full
+     * instead.
+     *
+     * @param source   stage that gave up on the event
+     * @param key      message key of the event
+     * @param payload  the event, stored as JSON
+     * @param error    the last failure
+     * @param attempts number of attempts made
+     */
+    public void record(String source, String key, Object payload, Throwable error, int attempts) {
+        try {
+            store(source, key, payload, error, attempts);
+        } catch (RuntimeException ex) {
+            log.error("Error Dead-lettering MT564 event [{}] from [{}] [{}] payload [{}]", key, source, ex.getMessage(),
+                    payload, ex);
+        }
+    }
+
+    /**
+     * Stores a dead letter, for the callers that must not give up on the event unless it was stored (see record()).
+     *
+     * @throws RuntimeException if the dead letter cannot be stored
+     */
+    public void store(String source, String key, Object payload, Throwable error, int attempts) {
+        meterRegistry.counter("mt564.dead_letters", "source", source).increment();
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalArgumentException("Dead letter payload cannot be serialized", ex);
+        }
+        deadLetterRepository.save(Mt564DeadLetter.builder()
+                .source(source)
+                .messageKey(key)
+                .payload(json)
+                .error(truncate(String.valueOf(error)))
+                .attempts(attempts)
+                .createdAt(LocalDateTime.now())
+                .build());
+        log.warn("Dead-lettered MT564 event [{}] from [{}] after [{}] attempts [{}]", key, source, attempts, String.valueOf(error));
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+}
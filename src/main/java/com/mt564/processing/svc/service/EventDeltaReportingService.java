@@ -3,16 +3,29 @@ package com.mt564.processing.svc.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.DeltaDayCache;
+import com.mt564.processing.svc.codec.FieldDiffs;
+import com.mt564.processing.svc.codec.Mt564EventComparator;
+import com.mt564.processing.svc.codec.SnapshotCodecs;
+import com.mt564.processing.svc.codec.SnapshotFormat;
+import com.mt564.processing.svc.model.dto.DeltaCursor;
 import com.mt564.processing.svc.model.dto.Mt564EventDelta;
 import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import com.mt564.processing.svc.model.entity.Mt564EventField;
 import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,14 +38,72 @@ public class EventDeltaReportingService {
     @Autowired
     private final ObjectMapper objectMapper;
 
+    private final SnapshotCodecs snapshotCodecs;
+
+    private final DeltaDayCache deltaCache;
+
+    @Value("${app.delta.stream-page-size:1000}")
+    private int streamPageSize = 1000;
+
+    // events per predecessor query, keeps the IN list within the database bind limits
+    private static final int PREDECESSOR_BATCH_SIZE = 1000;
+
+    /**
+     * Retrieves all field-level changes (deltas) in MT564 events between the given timestamps, served per day from
+     * the DeltaDayCache when it is enabled.
+     *
+     * This method performs the following steps:
+     * - Splits the range into day buckets.
+     * - Takes every day fully covered by the range and already settled from the cache (computed and stored on a miss).
+     * - Computes the remaining parts of the range (partial first / last day, days still open) directly, merging
+     *   adjacent ones into a single computeFieldLevelDeltas() call.
+     *
+     * Day buckets compose exactly because the first version of every bucket is diffed against its predecessor, so
+     * the result holds the same deltas as one computation over the whole range.
+     */
+    public List<Mt564EventDelta> getFieldLevelDeltas(LocalDateTime from, LocalDateTime to) {
+        if (!deltaCache.isEnabled() || from == null || to == null) {
+            return computeFieldLevelDeltas(from, to);
+        }
+        List<Mt564EventDelta> deltas = new ArrayList<>();
+        LocalDateTime liveFrom = null;
+        LocalDateTime liveTo = null;
+        for (LocalDate day = from.toLocalDate(); !day.isAfter(to.toLocalDate()); day = day.plusDays(1)) {
+            LocalDateTime dayStart = day.atStartOfDay();
+            LocalDateTime dayEnd = day.plusDays(1).atStartOfDay().minusNanos(1);
+            LocalDateTime segmentFrom = from.isAfter(dayStart) ? from : dayStart;
+            LocalDateTime segmentTo = to.isBefore(dayEnd) ? to : dayEnd;
+            if (segmentFrom.isAfter(segmentTo)) {
+                continue;
+            }
+            if (segmentFrom.equals(dayStart) && segmentTo.equals(dayEnd) && deltaCache.isCacheable(day)) {
+                if (liveFrom != null) {
+                    deltas.addAll(computeFieldLevelDeltas(liveFrom, liveTo));
+                    liveFrom = null;
+                }
+                deltas.addAll(deltaCache.get(day, () -> computeFieldLevelDeltas(dayStart, dayEnd)));
+            } else {
+                liveFrom = liveFrom == null ? segmentFrom : liveFrom;
+                liveTo = segmentTo;
+            }
+        }
+        if (liveFrom != null) {
+            deltas.addAll(computeFieldLevelDeltas(liveFrom, liveTo));
+        }
+        return deltas;
+    }
+
     /**
-     * Retrieves all field-level changes (deltas) in MT564 events between the given timestamps.
+     * Computes all field-level changes (deltas) in MT564 events between the given timestamps.
      *
      * This method performs the following steps:
      * - Fetches all audit records updated between the given 'from' and 'to' timestamps.
      * - Groups the audit records by a composite key made up of eventReference, financialInstrumentId, and senderBic.
      * - Within each group, it sorts the records by version number to establish a timeline of changes.
-     * - Iterates over each adjacent pair of versions and computes field-level differences using computeDelta().
+     * - Fetches, in batched primary key reads, the version immediately preceding the first one of each group, so that
+     *   the first change inside the window is reported too (see predecessorsOf()).
+     * - Iterates over each adjacent pair of versions and computes field-level differences: read directly from the
+     *   diff captured at write time when the newer version has one, otherwise using computeDelta().
      * - If any changes are found between a pair, the corresponding Mt564EventDelta is added to the result list.
      *
      * Parameters:
@@ -43,42 +114,218 @@ public class EventDeltaReportingService {
      *   A list of Mt564EventDelta objects, each representing the set of fields that changed
      *   between two versions of an MT564 event within the given time range.
      */
-    public List<Mt564EventDelta> getFieldLevelDeltas(LocalDateTime from, LocalDateTime to) {
+    List<Mt564EventDelta> computeFieldLevelDeltas(LocalDateTime from, LocalDateTime to) {
 
         // Fetch all audit records updated between the given 'from' and 'to' timestamps.
         List<Mt564EventAudit> audits = auditRepo.findByUpdatedAtBetween(from, to);
 
         // Group the audit records by a composite key made up of eventReference, financialInstrumentId, and senderBic.
         Map<String, List<Mt564EventAudit>> groupedAudits = audits.stream()
-                .collect(Collectors.groupingBy(a -> a.getId().getEventReference()
-                        + "|" + a.getId().getFinancialInstrumentId()
-                        + "|" + a.getId().getSenderBic()));
+                .collect(Collectors.groupingBy(EventDeltaReportingService::keyOf));
 
-        List<Mt564EventDelta> deltas = new ArrayList<>();
+        // Within each group, sort the records by version number to establish a timeline of changes.
+        List<Mt564EventAudit> firstVersions = new ArrayList<>(groupedAudits.size());
         for (List<Mt564EventAudit> versions : groupedAudits.values()) {
-            // Within each group, sort the records by version number to establish a timeline of changes.
             versions.sort(Comparator.comparing(a -> a.getId().getVersionNumber()));
+            firstVersions.add(versions.get(0));
+        }
+
+        // Fetch the versions preceding the window, one row per event.
+        Map<String, Mt564EventAudit> predecessors = predecessorsOf(firstVersions);
+
+        List<Mt564EventDelta> deltas = new ArrayList<>();
+        for (Map.Entry<String, List<Mt564EventAudit>> group : groupedAudits.entrySet()) {
             // Iterate over each adjacent pair of versions and compute field-level differences using computeDelta()
-            for (int i = 1; i < versions.size(); i++) {
-                Mt564EventAudit prev = versions.get(i - 1);
-                Mt564EventAudit curr = versions.get(i);
-                Mt564EventDelta delta = computeDelta(prev, curr);
-                // If any changes are found between a pair, the corresponding Mt564EventDelta is added to the result list.
-                if (!delta.getChangedFields().isEmpty()) {
-                    deltas.add(delta);
+            Mt564EventAudit prev = predecessors.get(group.getKey());
+            for (Mt564EventAudit curr : group.getValue()) {
+                if (prev != null) {
+                    Mt564EventDelta delta = deltaOf(prev, curr);
+                    // If any changes are found between a pair, the corresponding Mt564EventDelta is added to the result list.
+                    if (!delta.getChangedFields().isEmpty()) {
+                        deltas.add(delta);
+                    }
                 }
+                prev = curr;
             }
         }
 
         return deltas;
     }
 
+    /**
+     * Streams the field-level changes between the given timestamps with bounded memory.
+     *
+     * This method performs the following steps:
+     * - Reads the audit records updated between 'from' and 'to' in keyset pages of app.delta.stream-page-size rows,
+     *   ordered by eventReference, financialInstrumentId, senderBic and version number, so that all versions of an
+     *   event arrive one after the other.
+     * - Keeps only the previous audit record in memory, and computes the delta of every adjacent pair of versions of
+     *   the same event as getFieldLevelDeltas() does (same pairs, same values, in key order), including the pair made
+     *   of the first version in the window and its predecessor, fetched with one query per page.
+     * - Hands every non-empty delta to the sink as soon as it is computed.
+     * - Stops once 'limit' deltas have been delivered and returns the position to resume from.
+     *
+     * Parameters:
+     *   from   - the start of the date-time range (inclusive)
+     *   to     - the end of the date-time range (inclusive)
+     *   after  - the cursor returned by a previous call for the same range, or null to start from the beginning
+     *   limit  - the maximum number of deltas to deliver
+     *   sink   - receives the deltas in order
+     *
+     * Returns:
+     *   The cursor to pass back to continue the report, or null when the whole range has been delivered.
+     */
+    public DeltaCursor streamFieldLevelDeltas(LocalDateTime from, LocalDateTime to, DeltaCursor after, int limit,
+                                              Consumer<Mt564EventDelta> sink) {
+        // The last delivered version is read again, as the predecessor of the next one, but not reported twice.
+        String ref = after == null ? "" : after.getEventReference();
+        String fi = after == null ? "" : after.getFinancialInstrumentId();
+        String bic = after == null ? "" : after.getSenderBic();
+        int version = after == null ? -1 : after.getVersionNumber() - 1;
+
+        Mt564EventAudit prev = null;
+        boolean resumed = after != null;
+        int delivered = 0;
+        while (true) {
+            List<Mt564EventAudit> page = auditRepo.findPageAfter(from, to, ref, fi, bic, version, PageRequest.of(0, streamPageSize));
+            Map<String, Mt564EventAudit> predecessors = predecessorsOf(firstVersions(page, prev, resumed));
+            for (Mt564EventAudit curr : page) {
+                if (prev == null || !sameEvent(prev, curr)) {
+                    prev = resumed ? null : predecessors.get(keyOf(curr));
+                }
+                resumed = false;
+                if (prev != null) {
+                    Mt564EventDelta delta = deltaOf(prev, curr);
+                    if (!delta.getChangedFields().isEmpty()) {
+                        sink.accept(delta);
+                        if (++delivered >= limit) {
+                            return DeltaCursor.at(from, to, curr.getId());
+                        }
+                    }
+                }
+                prev = curr;
+            }
+            if (page.size() < streamPageSize) {
+                return null;
+            }
+            ref = prev.getId().getEventReference();
+            fi = prev.getId().getFinancialInstrumentId();
+            bic = prev.getId().getSenderBic();
+            version = prev.getId().getVersionNumber();
+        }
+    }
+
+    /**
+     * The rows of a keyset page that start a new event. When resuming, the first row of the stream is the last
+     * delivered version, its delta has already been reported.
+     */
+    private static List<Mt564EventAudit> firstVersions(List<Mt564EventAudit> page, Mt564EventAudit prev, boolean resumed) {
+        List<Mt564EventAudit> firstVersions = new ArrayList<>();
+        for (Mt564EventAudit curr : page) {
+            if ((prev == null && !resumed) || (prev != null && !sameEvent(prev, curr))) {
+                firstVersions.add(curr);
+            }
+            prev = curr;
+            resumed = false;
+        }
+        return firstVersions;
+    }
+
+    /**
+     * Fetches the version immediately preceding each of the given first-in-window versions.
+     *
+     * This method performs the following steps:
+     * - Skips the events whose first version in the window is their initial version, they have no predecessor.
+     * - Reads version (first - 1) of the remaining events by primary key, PREDECESSOR_BATCH_SIZE events at a time:
+     *   one row per event, never the rest of its history.
+     * - For the events where that version has no audit (a gap in their history), reads the greatest audited version
+     *   below the first one instead, one primary key range read per event.
+     *
+     * Returns:
+     *   The predecessors by event key (see keyOf()).
+     */
+    Map<String, Mt564EventAudit> predecessorsOf(Collection<Mt564EventAudit> firstVersions) {
+        List<Mt564EventAuditId> ids = new ArrayList<>();
+        for (Mt564EventAudit first : firstVersions) {
+            Mt564EventAuditId id = first.getId();
+            if (id.getVersionNumber() > 0) {
+                ids.add(new Mt564EventAuditId(id.getEventReference(), id.getFinancialInstrumentId(), id.getSenderBic(),
+                        id.getVersionNumber() - 1));
+            }
+        }
+        if (ids.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<String, Mt564EventAudit> predecessors = new HashMap<>();
+        for (int start = 0; start < ids.size(); start += PREDECESSOR_BATCH_SIZE) {
+            List<Mt564EventAuditId> batch = ids.subList(start, Math.min(start + PREDECESSOR_BATCH_SIZE, ids.size()));
+            for (Mt564EventAudit predecessor : auditRepo.findByIds(batch)) {
+                predecessors.put(keyOf(predecessor), predecessor);
+            }
+        }
+        if (predecessors.size() < ids.size()) {
+            for (Mt564EventAuditId id : ids) {
+                String key = keyOf(id);
+                if (!predecessors.containsKey(key)) {
+                    log.warn("Audit version [{}] of [{}] is missing, reporting against the latest version before it",
+                            id.getVersionNumber(), key);
+                    auditRepo.findLatestBefore(id.getEventReference(), id.getFinancialInstrumentId(), id.getSenderBic(),
+                            id.getVersionNumber() + 1).ifPresent(predecessor -> predecessors.put(key, predecessor));
+                }
+            }
+        }
+        log.debug("Fetched {} predecessor versions for {} events", predecessors.size(), ids.size());
+        return predecessors;
+    }
+
+    private static String keyOf(Mt564EventAudit audit) {
+        return keyOf(audit.getId());
+    }
+
+    private static String keyOf(Mt564EventAuditId id) {
+        return id.getEventReference()
+                + "|" + id.getFinancialInstrumentId()
+                + "|" + id.getSenderBic();
+    }
+
+    private static boolean sameEvent(Mt564EventAudit a, Mt564EventAudit b) {
+        return a.getId().getEventReference().equals(b.getId().getEventReference())
+                && a.getId().getFinancialInstrumentId().equals(b.getId().getFinancialInstrumentId())
+                && a.getId().getSenderBic().equals(b.getId().getSenderBic());
+    }
+
+    private Mt564EventDelta deltaOf(Mt564EventAudit prev, Mt564EventAudit curr) {
+        return hasDiffFrom(prev, curr) ? diffDelta(prev, curr) : computeDelta(prev, curr);
+    }
+
+    /**
+     * A captured diff is relative to the immediately preceding version only.
+     */
+    private static boolean hasDiffFrom(Mt564EventAudit prev, Mt564EventAudit curr) {
+        return curr.getDiffData() != null && curr.getId().getVersionNumber() == prev.getId().getVersionNumber() + 1;
+    }
+
+    /**
+     * Builds the delta of a version from the field diff captured when it was written, without reading any snapshot.
+     */
+    Mt564EventDelta diffDelta(Mt564EventAudit prev, Mt564EventAudit curr) {
+        try {
+            return toDelta(prev, curr, FieldDiffs.decode(curr.getDiffData()));
+        } catch (Exception e) {
+            throw new RuntimeException("Delta comparison failed", e);
+        }
+    }
+
     /**
      * Computes the field-level differences between two versions of an Mt564EventAudit snapshot.
      *
      * This method parses the JSON snapshots from both audit versions, compares their fields,
      * and identifies the ones that have changed. It records the old and new values of those fields
      * and returns an Mt564EventDelta object encapsulating the differences.
+     * When either version was written with another snapshot codec (see SnapshotCodecs), both are decoded into
+     * Mt564EventField values instead and compared field by field, without any JSON parsing for binary rows.
+     * A diff-only version (app.audit.diff-capture between keyframes) is rebuilt first, see snapshotValues().
      *
      * Parameters:
      *   v1 - the earlier version of the audit snapshot
@@ -94,7 +341,10 @@ public class EventDeltaReportingService {
      * Throws:
      *   RuntimeException if snapshot parsing or comparison fails
      */
-    private Mt564EventDelta computeDelta(Mt564EventAudit v1, Mt564EventAudit v2) {
+    Mt564EventDelta computeDelta(Mt564EventAudit v1, Mt564EventAudit v2) {
+        if (!SnapshotCodecs.isJson(v1) || !SnapshotCodecs.isJson(v2)) {
+            return computeFieldDelta(v1, v2);
+        }
         try {
             JsonNode node1 = objectMapper.readTree(v1.getSnapshot());
             JsonNode node2 = objectMapper.readTree(v2.getSnapshot());
@@ -115,19 +365,78 @@ public class EventDeltaReportingService {
                 }
             }
 
-            return Mt564EventDelta.builder()
-                    .eventReference(v1.getId().getEventReference())
-                    .financialInstrumentId(v1.getId().getFinancialInstrumentId())
-                    .senderBic(v1.getId().getSenderBic())
-                    .versionFrom(v1.getId().getVersionNumber())
-                    .versionTo(v2.getId().getVersionNumber())
-                    .changedFields(diffs)
-                    .timestamp(v2.getUpdatedAt())
-                    .build();
+            return toDelta(v1, v2, diffs);
 
         } catch (Exception e) {
             throw new RuntimeException("Delta comparison failed", e);
         }
     }
 
+    /**
+     * Field-by-field comparison of two decoded snapshots with the typed Mt564EventComparator. Values are rendered the way JsonNode.asText() renders them
+     * so that the report does not depend on the format the versions were stored with.
+     */
+    private Mt564EventDelta computeFieldDelta(Mt564EventAudit v1, Mt564EventAudit v2) {
+        try {
+            Object[] values1 = snapshotValues(v1);
+            Object[] values2 = snapshotValues(v2);
+
+            // only the changed fields are rendered, in ordinal (snapshot) order
+            Map<String, Object[]> diffs = new LinkedHashMap<>();
+            for (int mask = Mt564EventComparator.diff(values1, values2); mask != 0; mask &= mask - 1) {
+                int i = Integer.numberOfTrailingZeros(mask);
+                diffs.put(Mt564EventField.of(i).getPropertyName(), new Object[]{
+                        Mt564EventField.render(values1[i]),
+                        Mt564EventField.render(values2[i])
+                });
+            }
+            return toDelta(v1, v2, diffs);
+
+        } catch (Exception e) {
+            throw new RuntimeException("Delta comparison failed", e);
+        }
+    }
+
+    /**
+     * Field values of an audit version. A diff-only version carries no snapshot: it is rebuilt from the nearest
+     * keyframe at or below it, replaying the diff of every version in between.
+     *
+     * @throws IllegalStateException if the versions between the keyframe and the audit do not all carry a diff
+     */
+    Object[] snapshotValues(Mt564EventAudit audit) throws IOException {
+        if (!SnapshotCodecs.isDiffOnly(audit)) {
+            return snapshotCodecs.decode(audit);
+        }
+        Mt564EventAuditId id = audit.getId();
+        List<Mt564EventAudit> chain = auditRepo.findKeyframeChain(id.getEventReference(), id.getFinancialInstrumentId(),
+                id.getSenderBic(), id.getVersionNumber(), SnapshotFormat.DIFF_ONLY.getId());
+        if (chain.isEmpty() || SnapshotCodecs.isDiffOnly(chain.get(0))) {
+            throw new IllegalStateException("No keyframe at or below audit " + id);
+        }
+        Object[] values = snapshotCodecs.decode(chain.get(0));
+        int version = chain.get(0).getId().getVersionNumber();
+        for (Mt564EventAudit next : chain.subList(1, chain.size())) {
+            if (next.getId().getVersionNumber() != ++version || next.getDiffData() == null) {
+                throw new IllegalStateException("Audit " + id + " cannot be rebuilt, version [" + version + "] has no diff");
+            }
+            FieldDiffs.apply(next.getDiffData(), values);
+        }
+        if (version != id.getVersionNumber()) {
+            throw new IllegalStateException("Audit " + id + " cannot be rebuilt, versions stop at [" + version + "]");
+        }
+        return values;
+    }
+
+    private static Mt564EventDelta toDelta(Mt564EventAudit v1, Mt564EventAudit v2, Map<String, Object[]> diffs) {
+        return Mt564EventDelta.builder()
+                .eventReference(v1.getId().getEventReference())
+                .financialInstrumentId(v1.getId().getFinancialInstrumentId())
+                .senderBic(v1.getId().getSenderBic())
+                .versionFrom(v1.getId().getVersionNumber())
+                .versionTo(v2.getId().getVersionNumber())
+                .changedFields(diffs)
+                .timestamp(v2.getUpdatedAt())
+                .build();
+    }
+
 }
@@ -0,0 +1,92 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.entity.Mt564JobState;
+import com.mt564.processing.svc.repository.Mt564JobStateRepository;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Cluster coordination of scheduled jobs through the mt564_job_state table: a lease that at most one node holds at a
+ * time, and the high-watermark of the last successful run.
+ *
+ * A lease expires on its own, so a node that dies while holding it blocks the job for at most one lease; the
+ * holder renews it while the job runs. Expiry is compared with the clock of the node taking the lease, so the lease
+ * must be much longer than the clock skew between nodes.
+ */
+@Service
+@Slf4j
+public class JobStateService {
+
+    private final Mt564JobStateRepository jobStateRepository;
+
+    @Getter
+    private final String owner;
+
+    public JobStateService(Mt564JobStateRepository jobStateRepository) {
+        this.jobStateRepository = jobStateRepository;
+        this.owner = hostName() + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * Takes the lease of the job for the given duration, or extends it if this node already holds it.
+     *
+     * @return whether this node now holds the lease
+     */
+    public boolean tryLock(String job, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        if (jobStateRepository.tryLock(job, owner, now, now.plus(lease)) == 1) {
+            return true;
+        }
+        if (jobStateRepository.existsById(job)) {
+            return false;
+        }
+        try {
+            return jobStateRepository.insertLocked(job, owner, now.plus(lease)) == 1;
+        } catch (DataIntegrityViolationException ex) {
+            // another node created the row first
+            return false;
+        }
+    }
+
+    /**
+     * Releases the lease of the job if this node holds it.
+     */
+    public void unlock(String job) {
+        jobStateRepository.unlock(job, owner);
+    }
+
+    public Optional<LocalDateTime> watermark(String job) {
+        return jobStateRepository.findById(job).map(Mt564JobState::getWatermark);
+    }
+
+    /**
+     * Moves the watermark of the job forward to the given value; a lower value is ignored.
+     */
+    public void advanceWatermark(String job, LocalDateTime watermark) {
+        if (jobStateRepository.advanceWatermark(job, watermark) == 1 || jobStateRepository.existsById(job)) {
+            return;
+        }
+        try {
+            jobStateRepository.insertWatermark(job, watermark);
+        } catch (DataIntegrityViolationException ex) {
+            jobStateRepository.advanceWatermark(job, watermark);
+        }
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
@@ -1,24 +1,34 @@
 package com.mt564.processing.svc.service;
 
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.BusinessHashIndex;
+import com.mt564.processing.svc.cache.ColumnarEventStore;
+import com.mt564.processing.svc.cache.DeltaDayCache;
+import com.mt564.processing.svc.codec.FieldDiffs;
+import com.mt564.processing.svc.codec.Mt564EventComparator;
+import com.mt564.processing.svc.codec.SnapshotCodec;
+import com.mt564.processing.svc.codec.SnapshotCodecs;
+import com.mt564.processing.svc.codec.SnapshotFormat;
 import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
 import com.mt564.processing.svc.model.entity.Mt564Event;
 import com.mt564.processing.svc.model.entity.Mt564EventAudit;
 import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
 import com.mt564.processing.svc.model.entity.Mt564EventId;
-import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
-import com.mt564.processing.svc.repository.Mt564EventRepository;
+import com.mt564.processing.svc.repository.Mt564EventStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,19 +36,51 @@ import java.util.stream.Collectors;
 @Slf4j
 public class Mt564EventBuildService {
 
+    // Composite keys are bound as 3 parameters each; 1000 keys keeps every statement well under driver limits.
+    private static final int IN_CLAUSE_CHUNK_SIZE = 1000;
+
+    @Autowired
+    private final Mt564EventStore eventStore;
     @Autowired
-    private final Mt564EventRepository eventRepository;
+    private final SnapshotCodecs snapshotCodecs;
     @Autowired
-    private final Mt564EventAuditRepository auditRepository;
+    private final BusinessHashIndex hashIndex;
     @Autowired
-    private final ObjectMapper objectMapper;
+    private final DeltaDayCache deltaCache;
+    @Autowired
+    private final ColumnarEventStore columnarStore;
+
+    @Value("${app.audit.diff-capture:false}")
+    private boolean diffCapture;
+
+    @Value("${app.audit.keyframe-interval:10}")
+    private int keyframeInterval = 10;
 
     /**
      * Process daily full feed of MT564 events. Persist only new and changed (insert/update) into the mt564_events table
      * as well as the mt564_events_audit table which stores the whole entity object in json format.
+     *
+     * The batch holds at most one copy of every event, collapsed by the caller (see BatchDuplicateCollapser).
+     *
+     * Change detection runs in two passes so that unchanged events (the vast majority of a full feed) cost a
+     * single narrow read:
+     * - Pass 1 loads only (id, businessHash, versionNumber) of the existing events and classifies each DTO as
+     *   new, changed or unchanged. Unchanged events are dropped here and never enter the persistence context.
+     * - Pass 2 loads the full entities for the changed keys only and applies the DTO on top of them. With
+     *   app.audit.diff-capture the field values of the loaded entity are captured first, so the audit of the new
+     *   version can record the changed fields directly.
      */
     @Transactional
-    public void processDailyEvents(List<Mt564EventDto> dailyDtos) {
+    public void processDailyEvents(List<Mt564EventDto> batch) {
+        processDailyEvents(batch, null);
+    }
+
+    /**
+     * Same as processDailyEvents(batch), and records in the ProcessedOffsetLedger the Kafka offsets of the events of the
+     * batch in the same transaction, so that the offsets are recorded if and only if the events are committed.
+     */
+    @Transactional
+    public void processDailyEvents(List<Mt564EventDto> dailyDtos, ProcessedOffsetLedger.ConsumedOffsets offsets) {
 
         // Extract composite keys from input list
         Set<Mt564EventId> inputIds = dailyDtos.stream()
@@ -49,24 +91,24 @@ public class Mt564EventBuildService {
                 ))
                 .collect(Collectors.toSet());
 
-        // Fetch existing events from DB by composite keys
-        Map<Mt564EventId, Mt564Event> existingEvents = eventRepository.findAllById(inputIds).stream()
-                .collect(Collectors.toMap(Mt564Event::getId, e -> e));
+        // Pass 1: fetch only the stored business hash (and version) of the existing events
+        Map<Mt564EventId, Mt564EventHashView> existingHashes = inChunks(inputIds, eventStore::findHashViewsByIdIn).stream()
+                .collect(Collectors.toMap(Mt564EventHashView::getId, v -> v));
 
         List<Mt564Event> entitiesToSave = new ArrayList<>();
+        Map<Mt564EventId, Mt564EventDto> changedDtos = new LinkedHashMap<>();
+        List<Mt564EventHashView> unchanged = new ArrayList<>();
 
         dailyDtos.forEach(dto -> {
             Mt564EventId id = Mt564EventId.of(dto.getEventReference(), dto.getFinancialInstrumentId(), dto.getSenderBic());
 
-            // Standard Hibernate Entity Upsert process.
-            //   If Entity exists and any attribute has changed, then update the attributes
-            //   if not, then create new entity.
-            Optional.ofNullable(existingEvents.get(id)).ifPresentOrElse(
+            Optional.ofNullable(existingHashes.get(id)).ifPresentOrElse(
                     existing -> {
                         if (hasChanged(dto, existing)) {
-                            // Existing event has changed — update
-                            Mt564Event updated = copyMT564Fields(existing, dto);
-                            entitiesToSave.add(updated);
+                            // Existing event has changed — full entity is loaded in pass 2
+                            changedDtos.put(id, dto);
+                        } else {
+                            unchanged.add(existing);
                         }
                     },
                     () -> {
@@ -76,79 +118,125 @@ public class Mt564EventBuildService {
             );
         });
 
+        // Pass 2: Standard Hibernate Entity update, only for the events whose business hash differs.
+        Map<Mt564EventId, Object[]> previousValues = new HashMap<>();
+        if (!changedDtos.isEmpty()) {
+            inChunks(changedDtos.keySet(), eventStore::findAllByIdIn).forEach(existing -> {
+                if (diffCapture) {
+                    previousValues.put(existing.getId(), FieldDiffs.capture(existing));
+                }
+                entitiesToSave.add(copyMT564Fields(existing, changedDtos.get(existing.getId())));
+            });
+        }
+
         if (CollectionUtils.isNotEmpty(entitiesToSave)) {
-            // Bulk save new and updated entities
-            List<Mt564Event> persistedEvents = eventRepository.saveAll(entitiesToSave);
+            // Bulk save new and updated entities (JPA or JDBC batch upsert depending on app.persistence.mode)
+            List<Mt564Event> persistedEvents = eventStore.saveEvents(entitiesToSave);
             // Bulk save Audits JSON Objects for the persisted Events. This will be later used by the API to return Delta changes.
-            buildAudit(persistedEvents);
+            buildAudit(persistedEvents, previousValues);
+            // Keep the in-memory hash index in line with the table once this transaction commits.
+            hashIndex.recordAfterCommit(persistedEvents);
+            // Same for the columnar replica used by the custom reports.
+            columnarStore.recordAfterCommit(persistedEvents);
+        }
+        // Unchanged events missed by the hash index, e.g. after their partition moved to this node.
+        hashIndex.recordUnchangedAfterCommit(unchanged);
+        if (offsets != null) {
+            offsets.record(dailyDtos);
         }
     }
 
+    /**
+     * Runs an IN-list query per chunk of keys so very large batches stay below database bind-parameter limits.
+     */
+    private static <T> List<T> inChunks(Collection<Mt564EventId> ids, Function<List<Mt564EventId>, List<T>> query) {
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Mt564EventId> idList = new ArrayList<>(ids);
+        if (idList.size() <= IN_CLAUSE_CHUNK_SIZE) {
+            return query.apply(idList);
+        }
+        List<T> results = new ArrayList<>(idList.size());
+        for (int from = 0; from < idList.size(); from += IN_CLAUSE_CHUNK_SIZE) {
+            results.addAll(query.apply(idList.subList(from, Math.min(idList.size(), from + IN_CLAUSE_CHUNK_SIZE))));
+        }
+        return results;
+    }
+
 
     /**
      * Builds and persists audit entries for a list of MT564 event entities.
      *
      * This method performs the following steps:
      * - Iterates over each MT564 event in the provided list.
-     * - Converts each event entity to a JSON snapshot using ObjectMapper.
+     * - Encodes each event entity into a snapshot with the codec selected by app.audit.snapshot-codec
+     *   (JSON text, or compact binary; see SnapshotCodecs).
      * - Constructs an Mt564EventAudit object containing:
      *     - A composite audit ID (eventReference, financialInstrumentId, senderBic, versionNumber)
      *     - The business hash from the event
      *     - The current timestamp as the update time
-     *     - The serialized snapshot of the event entity
-     * - Filters out any failed conversions (null values due to JSON processing exceptions).
-     * - Persists all valid audit records to the audit repository using saveAllAndFlush.
+     *     - The encoded snapshot of the event entity and its snapshot format
+     * - For updated events whose previous field values were captured (app.audit.diff-capture), also stores the
+     *   changed fields as a diff, and skips the full snapshot unless the version is a keyframe (a multiple of
+     *   app.audit.keyframe-interval). Inserts always carry a full snapshot.
+     * - Throws an UncheckedIOException when an event cannot be encoded, rolling the event back with its audit; the
+     *   batch then goes through PoisonRecordIsolator, which dead-letters the event.
+     * - Persists all valid audit records in one batch through the configured Mt564EventStore.
+     * - Invalidates the cached deltas of the day the audits were written in, once the transaction commits.
      *
      * This function is essential for tracking historical changes to MT564 events
      * and enabling delta comparison between versions.
      *
      * @param persistedEvents the list of MT564 event entities that were newly persisted or updated.
+     * @param previousValues  the field values of updated events before the update, by event id (may be empty)
      */
-    private void buildAudit(List<Mt564Event> persistedEvents) {
+    void buildAudit(List<Mt564Event> persistedEvents, Map<Mt564EventId, Object[]> previousValues) {
+        SnapshotCodec codec = snapshotCodecs.writer();
         List<Mt564EventAudit> audits = persistedEvents.stream().map(mt564Event -> {
             try {
-                String snapshotJson = objectMapper.writeValueAsString(mt564Event);
-                return Mt564EventAudit.builder()
+                Mt564EventAudit audit = Mt564EventAudit.builder()
                         .id(new Mt564EventAuditId(mt564Event.getId().getEventReference(), mt564Event.getId().getFinancialInstrumentId(), mt564Event.getId().getSenderBic(), mt564Event.getVersionNumber()))
                         .businessHash(mt564Event.getBusinessHash())
                         .updatedAt(LocalDateTime.now())
-                        .snapshot(snapshotJson)
                         .build();
-            } catch (JsonProcessingException e) {
-                log.error("Json Processing Exception Encountered for [{}]", mt564Event);
-                return null;
+                Object[] previous = previousValues.get(mt564Event.getId());
+                if (previous != null) {
+                    audit.setDiffData(FieldDiffs.encode(previous, mt564Event));
+                }
+                if (previous != null && keyframeInterval > 1 && mt564Event.getVersionNumber() % keyframeInterval != 0) {
+                    audit.setSnapshotFormat(SnapshotFormat.DIFF_ONLY.getId());
+                } else {
+                    codec.encode(mt564Event, audit);
+                }
+                return audit;
+            } catch (IOException e) {
+                // fails the transaction: an event version is never committed without its audit
+                throw new UncheckedIOException("Snapshot encoding (" + codec.format() + ") failed for " + mt564Event.getId(), e);
             }
-        }).filter(Objects::nonNull).toList();
-        auditRepository.saveAllAndFlush(audits);
+        }).toList();
+        eventStore.saveAudits(audits);
+        deltaCache.invalidateAfterCommit(audits.stream().map(Mt564EventAudit::getUpdatedAt).toList());
+    }
+
+    void buildAudit(List<Mt564Event> persistedEvents) {
+        buildAudit(persistedEvents, Collections.emptyMap());
     }
 
-    private boolean hasChanged(Mt564EventDto dto, Mt564Event entity) {
+    private boolean hasChanged(Mt564EventDto dto, Mt564EventHashView existing) {
         String incomingHash = dto.getBusinessHash();
-        return !incomingHash.equals(entity.getBusinessHash());
+        return !incomingHash.equals(existing.getBusinessHash());
     }
 
-    private Mt564Event copyMT564Fields(Mt564Event existingEntity,Mt564EventDto updatedDto) {
-        existingEntity.setRelatedMessageReference(updatedDto.getRelatedMessageReference());
-        existingEntity.setCorporateActionEventId(updatedDto.getCorporateActionEventId());
-        existingEntity.setCorporateActionEventType(updatedDto.getCorporateActionEventType());
-        existingEntity.setMandatoryVoluntaryIndicator(updatedDto.getMandatoryVoluntaryIndicator());
-        existingEntity.setEventProcessingStatus(updatedDto.getEventProcessingStatus());
-        existingEntity.setEventStatusCode(updatedDto.getEventStatusCode());
-        existingEntity.setOfficialCorporateActionEventId(updatedDto.getOfficialCorporateActionEventId());
-        existingEntity.setLinkEventId(updatedDto.getLinkEventId());
-        existingEntity.setSafekeepingAccount(updatedDto.getSafekeepingAccount());
-        existingEntity.setPlaceOfSafekeeping(updatedDto.getPlaceOfSafekeeping());
-        existingEntity.setEventCreationDatetime(updatedDto.getEventCreationDatetime());
-        existingEntity.setEffectiveDate(updatedDto.getEffectiveDate());
-        existingEntity.setRecordDate(updatedDto.getRecordDate());
-        existingEntity.setExDate(updatedDto.getExDate());
-        existingEntity.setAnnouncementDate(updatedDto.getAnnouncementDate());
-        existingEntity.setResponseDeadline(updatedDto.getResponseDeadline());
-        existingEntity.setGeneralMeetingDate(updatedDto.getGeneralMeetingDate());
-        existingEntity.setNarrative(updatedDto.getNarrative());
-        existingEntity.setMarketDisclosureFlag(updatedDto.getMarketDisclosureFlag());
-        existingEntity.setBusinessHash(updatedDto.getBusinessHash());
-        existingEntity.setUpdatedAt(updatedDto.getUpdatedAt());
+    /**
+     * Applies the feed values on top of the loaded entity, touching only the fields that actually differ
+     * (see Mt564EventComparator).
+     */
+    private Mt564Event copyMT564Fields(Mt564Event existingEntity, Mt564EventDto updatedDto) {
+        int changed = Mt564EventComparator.copyChanged(existingEntity, updatedDto);
+        if (log.isTraceEnabled()) {
+            log.trace("Event {} changed fields {}", existingEntity.getId(), Integer.toBinaryString(changed));
+        }
         return existingEntity;
     }
 
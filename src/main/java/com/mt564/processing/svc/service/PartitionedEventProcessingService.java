@@ -0,0 +1,211 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Entry point for persisting a batch of MT564 events, optionally split across cores.
+ *
+ * With app.processing.parallel.enabled=false (default), or for batches smaller than one chunk, the whole batch goes
+ * through Mt564EventBuildService.processDailyEvents in a single transaction as before.
+ *
+ * Otherwise the batch is processed as follows:
+ * - Every event is assigned to a partition by hash of its Mt564EventId, so a given event (and any duplicate of it
+ *   in the batch) always lands in the same partition and no two workers ever write the same row: optimistic
+ *   version conflicts cannot happen within a batch.
+ * - Each partition is cut into chunks of app.processing.parallel.chunk-size events, processed one after the other by
+ *   one worker of a bounded pool, every chunk in its own transaction (processDailyEvents is called through the
+ *   Spring proxy from the worker thread).
+ * - Results and failures are collected per partition. A failed chunk stops its partition only; once every partition
+ *   is done the failures are raised together so the caller (the Kafka container) retries the batch. Chunks already
+ *   committed are unchanged on the retry and cost a hash comparison only.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionedEventProcessingService {
+
+    private final Mt564EventBuildService buildService;
+
+    @Value("${app.processing.parallel.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.processing.parallel.partitions:0}")
+    private int partitions;
+
+    @Value("${app.processing.parallel.chunk-size:5000}")
+    private int chunkSize;
+
+    @Value("${app.processing.parallel.threads:0}")
+    private int threads;
+
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void init() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        partitions = partitions > 0 ? partitions : cores;
+        threads = threads > 0 ? threads : Math.min(partitions, cores);
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        // Bounded queue; when it is full the submitting thread processes the partition itself.
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(partitions),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mt564-partition-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+        log.info("Partitioned processing enabled with [{}] partitions, [{}] threads and chunks of [{}] events",
+                partitions, threads, chunkSize);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Persists the given events, in parallel partitions when enabled. The copies of an event must have been collapsed
+     * into one by the caller (see BatchDuplicateCollapser), before the hash index filters the batch.
+     *
+     * @return the outcome of every partition (a single partition when the batch is processed sequentially)
+     * @throws RuntimeException if one or more partitions failed, once all partitions have completed
+     */
+    public List<PartitionResult> process(List<Mt564EventDto> events) {
+        return process(events, null);
+    }
+
+    /**
+     * Same as process(events), each transaction recording the Kafka offsets of its events in the ProcessedOffsetLedger
+     * (when offsets is not null).
+     */
+    public List<PartitionResult> process(List<Mt564EventDto> events, ProcessedOffsetLedger.ConsumedOffsets offsets) {
+        if (!enabled || events.size() <= chunkSize) {
+            long start = System.nanoTime();
+            processChunk(events, offsets);
+            return List.of(new PartitionResult(0, events.size(), 1, elapsedMillis(start), null));
+        }
+
+        List<List<Mt564EventDto>> partitioned = partition(events, partitions);
+        List<CompletableFuture<PartitionResult>> futures = new ArrayList<>(partitioned.size());
+        for (int p = 0; p < partitioned.size(); p++) {
+            List<Mt564EventDto> partitionEvents = partitioned.get(p);
+            if (partitionEvents.isEmpty()) {
+                continue;
+            }
+            int partition = p;
+            futures.add(CompletableFuture.supplyAsync(() -> processPartition(partition, partitionEvents, offsets), executor));
+        }
+
+        List<PartitionResult> results = futures.stream().map(CompletableFuture::join).toList();
+        List<PartitionResult> failed = results.stream().filter(PartitionResult::isFailed).toList();
+        if (!failed.isEmpty()) {
+            RuntimeException exception = new RuntimeException("Processing failed for " + failed.size() + " of "
+                    + results.size() + " partitions: " + failed.stream().map(r -> String.valueOf(r.getPartition())).toList());
+            failed.forEach(r -> exception.addSuppressed(r.getFailure()));
+            throw exception;
+        }
+        log.info("Processed [{}] events in [{}] partitions", events.size(), results.size());
+        return results;
+    }
+
+    private PartitionResult processPartition(int partition, List<Mt564EventDto> events,
+                                             ProcessedOffsetLedger.ConsumedOffsets offsets) {
+        long start = System.nanoTime();
+        int chunks = 0;
+        int processed = 0;
+        try {
+            for (int from = 0; from < events.size(); from += chunkSize) {
+                List<Mt564EventDto> chunk = events.subList(from, Math.min(events.size(), from + chunkSize));
+                processChunk(chunk, offsets);
+                chunks++;
+                processed += chunk.size();
+            }
+            return new PartitionResult(partition, processed, chunks, elapsedMillis(start), null);
+        } catch (RuntimeException e) {
+            log.error("Partition [{}] failed after [{}] committed chunks of [{}] events", partition, chunks, events.size(), e);
+            return new PartitionResult(partition, processed, chunks, elapsedMillis(start), e);
+        }
+    }
+
+    /**
+     * Splits the events into partitionCount lists by hash of their composite key, keeping the input order
+     * within each partition.
+     */
+    static List<List<Mt564EventDto>> partition(List<Mt564EventDto> events, int partitionCount) {
+        List<List<Mt564EventDto>> partitioned = new ArrayList<>(partitionCount);
+        for (int i = 0; i < partitionCount; i++) {
+            partitioned.add(new ArrayList<>(events.size() / partitionCount + 1));
+        }
+        for (Mt564EventDto dto : events) {
+            Mt564EventId id = Mt564EventId.of(dto.getEventReference(), dto.getFinancialInstrumentId(), dto.getSenderBic());
+            partitioned.get(partitionOf(id, partitionCount)).add(dto);
+        }
+        return partitioned;
+    }
+
+    private void processChunk(List<Mt564EventDto> chunk, ProcessedOffsetLedger.ConsumedOffsets offsets) {
+        if (offsets == null) {
+            buildService.processDailyEvents(chunk);
+        } else {
+            buildService.processDailyEvents(chunk, offsets);
+        }
+    }
+
+    /**
+     * Mt564EventId.hashCode() is a polynomial of the key parts, and event references and instrument ids of one feed
+     * tend to share their varying suffix, which leaves the low bits almost constant. The hash is therefore mixed
+     * (MurmurHash3 finalizer) before taking the modulo.
+     */
+    static int partitionOf(Mt564EventId id, int partitionCount) {
+        int h = id.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, partitionCount);
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    /**
+     * Outcome of one partition: number of events committed, number of committed chunks, and the failure, if any,
+     * that stopped the partition.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class PartitionResult {
+        private final int partition;
+        private final int processedEvents;
+        private final int chunks;
+        private final long durationMillis;
+        private final RuntimeException failure;
+
+        public boolean isFailed() {
+            return failure != null;
+        }
+    }
+}
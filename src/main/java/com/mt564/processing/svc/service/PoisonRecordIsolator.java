@@ -0,0 +1,158 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Isolates the poison events of a batch whose processing failed, so that one bad event does not block the batch.
+ *
+ * The batch is split in halves, each processed in its own transaction; a half that fails is split again, down to
+ * single events. The good events are committed and each poison event is found in about log2(batch size)
+ * transactions, then kept in mt564_dead_letters with its cause (see DeadLetterService) instead of being delivered
+ * again and again.
+ *
+ * Failures that do not depend on the data (database unavailable, lock or serialization conflicts) are not
+ * isolated: they are thrown back so that the batch is delivered again later, rather than dead-lettering good events.
+ * Neither is a dead letter that cannot be stored: the poison event would otherwise be acknowledged and lost.
+ */
+@Service
+@Slf4j
+public class PoisonRecordIsolator {
+
+    static final String DEAD_LETTER_SOURCE = "consumer";
+
+    private final Mt564EventBuildService buildService;
+    private final BatchDuplicateCollapser duplicateCollapser;
+    private final DeadLetterService deadLetterService;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter deadLettered;
+    private final Counter transactions;
+
+    public PoisonRecordIsolator(Mt564EventBuildService buildService,
+                                BatchDuplicateCollapser duplicateCollapser,
+                                DeadLetterService deadLetterService,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry) {
+        this.buildService = buildService;
+        this.duplicateCollapser = duplicateCollapser;
+        this.deadLetterService = deadLetterService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.deadLettered = meterRegistry.counter("mt564.consumer.poison", "result", "dead_lettered");
+        this.transactions = meterRegistry.counter("mt564.consumer.poison.transactions");
+    }
+
+    /**
+     * Processes the events of a failed batch, dead-lettering the poison ones.
+     *
+     * This method:
+     * - Throws the failure back if it does not depend on the data.
+     * - Collapses the copies of an event, so that they are never split apart.
+     * - Bisects the batch until every event is committed or dead-lettered.
+     *
+     * @param events  the events of the batch not committed yet
+     * @param offsets the ledger of the batch, recording the offsets of the committed and dead-lettered events; may be
+     *                null
+     * @param failure the failure of the batch
+     * @return the number of events dead-lettered
+     * @throws RuntimeException the failure, or a later one, that does not depend on the data, or the failure to store a
+     *                          dead letter
+     */
+    public int isolate(List<Mt564EventDto> events, ProcessedOffsetLedger.ConsumedOffsets offsets, RuntimeException failure) {
+        if (isTransient(failure)) {
+            throw failure;
+        }
+        List<Mt564EventDto> collapsed = duplicateCollapser.collapse(events);
+        log.warn("Isolating poison events of a failed batch of [{}] events [{}]", collapsed.size(), failure.getMessage());
+        AtomicInteger attempts = new AtomicInteger();
+        int poison = bisect(collapsed, offsets, failure, 1, attempts);
+        log.warn("Dead-lettered [{}] poison events of [{}] in [{}] transactions", poison, collapsed.size(), attempts.get());
+        return poison;
+    }
+
+    /**
+     * @param failedTransactions the number of failed transactions that held these events: the batch, then every half
+     *                           holding them that failed in turn
+     */
+    private int bisect(List<Mt564EventDto> events, ProcessedOffsetLedger.ConsumedOffsets offsets, RuntimeException failure,
+                       int failedTransactions, AtomicInteger attempts) {
+        if (events.size() == 1) {
+            deadLetter(events.get(0), offsets, failure, failedTransactions);
+            return 1;
+        }
+        int poison = 0;
+        int middle = events.size() / 2;
+        for (List<Mt564EventDto> half : List.of(events.subList(0, middle), events.subList(middle, events.size()))) {
+            try {
+                attempts.incrementAndGet();
+                transactions.increment();
+                buildService.processDailyEvents(half, offsets);
+            } catch (RuntimeException ex) {
+                if (isTransient(ex)) {
+                    throw ex;
+                }
+                poison += bisect(half, offsets, ex, failedTransactions + 1, attempts);
+            }
+        }
+        return poison;
+    }
+
+    /**
+     * Dead-letters the event and, in the same transaction, records its offsets so that it is not delivered again.
+     * A failure is thrown back, so that the batch is not acknowledged and the event is delivered again.
+     */
+    private void deadLetter(Mt564EventDto event, ProcessedOffsetLedger.ConsumedOffsets offsets, RuntimeException failure,
+                            int failedTransactions) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                deadLetterService.store(DEAD_LETTER_SOURCE, event.getEventReference(), event, rootCause(failure),
+                        failedTransactions);
+                if (offsets != null) {
+                    offsets.record(List.of(event));
+                }
+            });
+        } catch (RuntimeException ex) {
+            log.error("Error Dead-lettering poison MT564 event [{}] [{}]", event.getEventReference(), ex.getMessage(), ex);
+            throw ex;
+        }
+        deadLettered.increment();
+    }
+
+    /**
+     * Whether the failure comes from the database or the concurrency rather than from the events, so that the same
+     * events may succeed later.
+     */
+    static boolean isTransient(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException || cause instanceof CannotCreateTransactionException) {
+                return true;
+            }
+            for (Throwable suppressed : cause.getSuppressed()) {
+                if (isTransient(suppressed)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static Throwable rootCause(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,147 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Ledger of the Kafka records processed into mt564_events, in the mt564_processed_offsets table.
+ *
+ * The offsets of the records of a transaction are inserted in that same transaction, so a record is in the ledger if
+ * and only if its event was committed. Kafka offsets are committed after the whole batch, so after a crash or a
+ * failed partition the batch is delivered again: the records already in the ledger are skipped before any hashing or
+ * event read, and only the rest is processed. Two consumers processing the same record (after a rebalance) collide
+ * on the primary key of the ledger and the second transaction rolls back.
+ *
+ * The rows below the first offset Kafka delivers for a partition are committed in Kafka and dropped.
+ */
+@Service
+@Slf4j
+public class ProcessedOffsetLedger {
+
+    private static final String INSERT = "INSERT INTO mt564_processed_offsets (topic, kafka_partition, kafka_offset, processed_at)"
+            + " VALUES (?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Counter skipped;
+
+    public ProcessedOffsetLedger(JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.skipped = meterRegistry.counter("mt564.kafka.records.replayed");
+    }
+
+    /**
+     * Starts the processing of a batch of records.
+     *
+     * This method:
+     * - Drops the ledger rows of each partition below the first offset of the batch.
+     * - Reads the offsets of the batch already in the ledger, with one range query per partition.
+     * - Returns the other records, with the offsets to record as their events are processed.
+     */
+    public ConsumedOffsets track(List<ConsumerRecord<String, Mt564EventDto>> records) {
+        Map<TopicPartition, long[]> ranges = new LinkedHashMap<>();
+        for (ConsumerRecord<String, Mt564EventDto> record : records) {
+            long[] range = ranges.computeIfAbsent(new TopicPartition(record.topic(), record.partition()),
+                    tp -> new long[]{Long.MAX_VALUE, Long.MIN_VALUE});
+            range[0] = Math.min(range[0], record.offset());
+            range[1] = Math.max(range[1], record.offset());
+        }
+
+        Map<TopicPartition, Set<Long>> processed = new HashMap<>();
+        ranges.forEach((tp, range) -> {
+            jdbcTemplate.update("DELETE FROM mt564_processed_offsets WHERE topic = ? AND kafka_partition = ? AND kafka_offset < ?",
+                    tp.topic(), tp.partition(), range[0]);
+            processed.put(tp, new HashSet<>(jdbcTemplate.queryForList("SELECT kafka_offset FROM mt564_processed_offsets"
+                            + " WHERE topic = ? AND kafka_partition = ? AND kafka_offset BETWEEN ? AND ?",
+                    Long.class, tp.topic(), tp.partition(), range[0], range[1])));
+        });
+
+        List<ConsumerRecord<String, Mt564EventDto>> pending = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, Mt564EventDto> record : records) {
+            if (!processed.get(new TopicPartition(record.topic(), record.partition())).contains(record.offset())) {
+                pending.add(record);
+            }
+        }
+        if (pending.size() < records.size()) {
+            skipped.increment(records.size() - pending.size());
+            log.info("Skipped [{}] records of the batch already processed", records.size() - pending.size());
+        }
+        return new ConsumedOffsets(pending);
+    }
+
+    /**
+     * Records in the ledger the offsets of the records of the given events, in the current transaction.
+     */
+    void record(ConsumedOffsets offsets, Collection<Mt564EventDto> events) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Processed offsets must be recorded in the transaction of the events");
+        }
+        List<Object[]> rows = new ArrayList<>();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Mt564EventDto event : events) {
+            for (ConsumerRecord<String, Mt564EventDto> record : offsets.recordsOf(idOf(event))) {
+                rows.add(new Object[]{record.topic(), record.partition(), record.offset(), now});
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT, rows);
+        }
+    }
+
+    private static Mt564EventId idOf(Mt564EventDto event) {
+        return Mt564EventId.of(event.getEventReference(), event.getFinancialInstrumentId(), event.getSenderBic());
+    }
+
+    /**
+     * The records of a batch not processed yet, by Mt564EventId. All copies of an event are processed together (see
+     * BatchDuplicateCollapser), so the transaction writing an event records the offsets of all of its records.
+     */
+    public final class ConsumedOffsets {
+
+        private final List<ConsumerRecord<String, Mt564EventDto>> records;
+        private final Map<Mt564EventId, List<ConsumerRecord<String, Mt564EventDto>>> byEvent = new HashMap<>();
+
+        private ConsumedOffsets(List<ConsumerRecord<String, Mt564EventDto>> records) {
+            this.records = records;
+            records.forEach(record -> byEvent.computeIfAbsent(idOf(record.value()), id -> new ArrayList<>()).add(record));
+        }
+
+        /**
+         * @return the records of the batch not processed yet
+         */
+        public List<ConsumerRecord<String, Mt564EventDto>> getRecords() {
+            return records;
+        }
+
+        /**
+         * Records the offsets of the records of the given events in the current transaction.
+         *
+         * @throws IllegalStateException if no transaction is active
+         */
+        public void record(Collection<Mt564EventDto> events) {
+            ProcessedOffsetLedger.this.record(this, events);
+        }
+
+        private List<ConsumerRecord<String, Mt564EventDto>> recordsOf(Mt564EventId id) {
+            return byEvent.getOrDefault(id, List.of());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.mt564.processing.svc.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Output formats of streamed custom reports. Rows are written straight from the ResultSet, one at a time, with the
+ * column values read like the JSON report API reads them (LOBs as strings).
+ */
+public enum ReportFormat {
+
+    /**
+     * RFC 4180 CSV with a header line. Nulls are empty fields, timestamps are ISO local date-times.
+     */
+    CSV("text/csv") {
+        @Override
+        public RowWriter open(OutputStream out, List<String> columns, ObjectMapper objectMapper) throws IOException {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 16 * 1024);
+            writeLine(writer, columns.toArray());
+            Object[] values = new Object[columns.size()];
+            return new RowWriter() {
+                @Override
+                public void write(ResultSet rs) throws SQLException, IOException {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = JdbcUtils.getResultSetValue(rs, i + 1);
+                    }
+                    writeLine(writer, values);
+                }
+
+                @Override
+                public void finish() throws IOException {
+                    writer.flush();
+                }
+            };
+        }
+    },
+
+    /**
+     * One JSON object per line, with the same value rendering as the JSON report API.
+     */
+    NDJSON("application/x-ndjson") {
+        @Override
+        public RowWriter open(OutputStream out, List<String> columns, ObjectMapper objectMapper) throws IOException {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generator.setRootValueSeparator(null);
+            return new RowWriter() {
+                @Override
+                public void write(ResultSet rs) throws SQLException, IOException {
+                    generator.writeStartObject();
+                    for (int i = 0; i < columns.size(); i++) {
+                        generator.writeFieldName(columns.get(i));
+                        generator.writeObject(JdbcUtils.getResultSetValue(rs, i + 1));
+                    }
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+
+                @Override
+                public void finish() throws IOException {
+                    generator.flush();
+                }
+            };
+        }
+    };
+
+    /**
+     * Writes the rows of one report execution.
+     */
+    public interface RowWriter {
+        /**
+         * Writes the current row of the ResultSet, whose columns are the report columns in order.
+         */
+        void write(ResultSet rs) throws SQLException, IOException;
+
+        /**
+         * Flushes buffered output. The stream itself is left open.
+         */
+        void finish() throws IOException;
+    }
+
+    private final String contentType;
+
+    ReportFormat(String contentType) {
+        this.contentType = contentType;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Starts the output (CSV header line) and returns the writer of the rows.
+     */
+    public abstract RowWriter open(OutputStream out, List<String> columns, ObjectMapper objectMapper) throws IOException;
+
+    private static void writeLine(Writer writer, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            Object value = values[i];
+            if (value != null) {
+                writeField(writer, value instanceof Timestamp timestamp ? timestamp.toLocalDateTime().toString() : value.toString());
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    private static void writeField(Writer writer, String value) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+}
@@ -0,0 +1,172 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.IndexAdvice;
+import com.mt564.processing.svc.model.dto.ReportFilter;
+import com.mt564.processing.svc.model.entity.CustomReportConfig;
+import com.mt564.processing.svc.model.entity.Mt564EventColumn;
+import com.mt564.processing.svc.repository.CustomReportConfigRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.*;
+
+/**
+ * Recommends, and optionally creates, indexes on the mt564_events columns that saved custom reports filter on most.
+ *
+ * Every report filter compiles to a predicate on the bare column (see ReportPlan), so a single-column B-tree index
+ * serves it. On PostgreSQL a PREFIX filter (LIKE 'prefix%') can only use an index built with varchar_pattern_ops
+ * unless the database uses the C collation, so prefix-filtered columns get such an index there.
+ *
+ * IS_NULL filters count only where a B-tree index stores null keys (PostgreSQL, H2); Oracle leaves the rows whose
+ * indexed columns are all null out of the index. The DDL says IF NOT EXISTS only on the databases that accept it.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ReportIndexAdvisor {
+
+    private static final String TABLE = "mt564_events";
+
+    // operators an index on the column can serve, plus IS_NULL where null keys are indexed
+    private static final Set<ReportFilter.Operator> INDEXABLE = EnumSet.of(ReportFilter.Operator.EQ,
+            ReportFilter.Operator.IN, ReportFilter.Operator.BETWEEN, ReportFilter.Operator.PREFIX);
+
+    private final CustomReportConfigRepository configRepository;
+    private final CustomReportService customReportService;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${app.report.index-advisor.min-reports:2}")
+    private int minReports = 2;
+
+    @Value("${app.report.index-advisor.auto-create:false}")
+    private boolean autoCreate;
+
+    /**
+     * Recommends indexes for the columns filtered on by saved reports.
+     *
+     * This method:
+     * - Compiles every saved report configuration (invalid ones are skipped).
+     * - Counts, per column, the reports with an indexable filter on it (not IS_NOT_NULL, not on boolean columns, and
+     *   IS_NULL only on a database that indexes null keys).
+     * - Keeps the columns filtered on by at least app.report.index-advisor.min-reports reports, most used first.
+     * - Flags those already leading an index of mt564_events (as reported by the JDBC metadata).
+     *
+     * @return the recommended indexes, with their DDL
+     */
+    public List<IndexAdvice> advise() {
+        return advise(existingIndexes());
+    }
+
+    List<IndexAdvice> advise(ExistingIndexes existing) {
+        Map<Mt564EventColumn, Integer> reports = new EnumMap<>(Mt564EventColumn.class);
+        Map<Mt564EventColumn, Set<ReportFilter.Operator>> operators = new EnumMap<>(Mt564EventColumn.class);
+        for (CustomReportConfig config : configRepository.findAll()) {
+            ReportPlan plan;
+            try {
+                plan = customReportService.compile(config);
+            } catch (RuntimeException ex) {
+                log.warn("Index advisor skips invalid custom report [{}] [{}]", config.getId(), ex.getMessage());
+                continue;
+            }
+            Set<Mt564EventColumn> filtered = EnumSet.noneOf(Mt564EventColumn.class);
+            for (ReportPlan.FilterBinder filter : plan.filters()) {
+                boolean indexable = INDEXABLE.contains(filter.operator())
+                        || (filter.operator() == ReportFilter.Operator.IS_NULL && existing.nullsIndexed);
+                if (indexable && filter.column().getKind() != Mt564EventColumn.Kind.BOOLEAN) {
+                    filtered.add(filter.column());
+                    operators.computeIfAbsent(filter.column(), c -> EnumSet.noneOf(ReportFilter.Operator.class))
+                            .add(filter.operator());
+                }
+            }
+            filtered.forEach(column -> reports.merge(column, 1, Integer::sum));
+        }
+
+        List<IndexAdvice> advice = new ArrayList<>();
+        reports.forEach((column, count) -> {
+            if (count < minReports) {
+                return;
+            }
+            boolean pattern = existing.postgres && operators.get(column).contains(ReportFilter.Operator.PREFIX);
+            String indexName = "idx_" + TABLE + "_" + column.getColumnName() + (pattern ? "_pattern" : "");
+            boolean indexed = existing.names.contains(indexName)
+                    || (!pattern && existing.leadingColumns.contains(column.getColumnName()));
+            String ddl = "CREATE INDEX " + (existing.postgres ? "CONCURRENTLY " : "")
+                    + (existing.ifNotExists ? "IF NOT EXISTS " : "") + indexName
+                    + " ON " + TABLE + " (" + column.getColumnName() + (pattern ? " varchar_pattern_ops" : "") + ")";
+            advice.add(new IndexAdvice(column.getColumnName(), indexName, count, operators.get(column), indexed, ddl));
+        });
+        advice.sort(Comparator.comparingInt(IndexAdvice::getReports).reversed().thenComparing(IndexAdvice::getColumn));
+        return advice;
+    }
+
+    /**
+     * Creates the recommended indexes that do not exist yet, when app.report.index-advisor.auto-create is set;
+     * otherwise only logs them. On PostgreSQL the indexes are built CONCURRENTLY so that ingestion is not blocked.
+     *
+     * @return the recommended indexes that were missing
+     */
+    @Scheduled(fixedDelayString = "${app.report.index-advisor.interval:PT1H}",
+            initialDelayString = "${app.report.index-advisor.interval:PT1H}")
+    public List<IndexAdvice> provision() {
+        List<IndexAdvice> missing = advise().stream().filter(advice -> !advice.isIndexed()).toList();
+        for (IndexAdvice advice : missing) {
+            if (!autoCreate) {
+                log.info("Recommended index for custom reports ({} reports filter on {}): {}",
+                        advice.getReports(), advice.getColumn(), advice.getDdl());
+                continue;
+            }
+            try {
+                long start = System.nanoTime();
+                jdbcTemplate.execute(advice.getDdl());
+                log.info("Created index [{}] for custom reports in {} ms", advice.getIndexName(), (System.nanoTime() - start) / 1_000_000);
+            } catch (RuntimeException ex) {
+                log.error("Error creating index [{}] [{}]", advice.getIndexName(), ex.getMessage(), ex);
+            }
+        }
+        return missing;
+    }
+
+    private ExistingIndexes existingIndexes() {
+        return jdbcTemplate.execute((ConnectionCallback<ExistingIndexes>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            ExistingIndexes existing = new ExistingIndexes(metaData.getDatabaseProductName());
+            String table = metaData.storesUpperCaseIdentifiers() ? TABLE.toUpperCase(Locale.ROOT) : TABLE;
+            try (ResultSet rs = metaData.getIndexInfo(connection.getCatalog(), null, table, false, true)) {
+                while (rs.next()) {
+                    String name = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (name != null) {
+                        existing.names.add(name.toLowerCase(Locale.ROOT));
+                    }
+                    if (column != null && rs.getShort("ORDINAL_POSITION") == 1) {
+                        existing.leadingColumns.add(column.toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            return existing;
+        });
+    }
+
+    static final class ExistingIndexes {
+        private final boolean postgres;
+        // whether B-tree indexes store null keys and CREATE INDEX accepts IF NOT EXISTS
+        private final boolean nullsIndexed;
+        private final boolean ifNotExists;
+        private final Set<String> names = new HashSet<>();
+        private final Set<String> leadingColumns = new HashSet<>();
+
+        ExistingIndexes(String databaseProductName) {
+            String product = databaseProductName.toLowerCase(Locale.ROOT);
+            this.postgres = product.contains("postgres");
+            this.nullsIndexed = postgres || product.equals("h2");
+            this.ifNotExists = postgres || product.equals("h2");
+        }
+    }
+}
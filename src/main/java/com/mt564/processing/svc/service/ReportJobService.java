@@ -0,0 +1,295 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.ReportJobStatus;
+import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Runs custom reports asynchronously and spools their results to local gzip files, so that large reports neither
+ * hold a servlet thread nor depend on the HTTP timeout.
+ *
+ * - Jobs run on a bounded pool (app.report.jobs.threads workers, app.report.jobs.queue-capacity waiting jobs); a
+ *   submission beyond that is rejected rather than queued without limit.
+ * - At most app.report.jobs.per-report-concurrency jobs of the same report run or wait at a time.
+ * - A job writes the report through CustomReportService.streamReport, so its memory use does not depend on the size
+ *   of the report, into app.report.jobs.spool-dir.
+ * - A submission for a report and format that already has a job queued or running gets that job back, and one that
+ *   has a completed result gets it back as long as mt564_events did not change since (see DataVersion).
+ * - Jobs and their files are dropped app.report.jobs.retention after they finished.
+ *
+ * Jobs and their results are local to the node that ran them: with several nodes behind a load balancer, the status
+ * and result requests of a job must be routed to the node that accepted its submission (sticky sessions on the
+ * jobs endpoints), any other node answers 404. The spool directory is node-local too and must not be shared, since
+ * a node clears it on startup. Equivalent jobs are only reused within a node.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReportJobService {
+
+    private final CustomReportService customReportService;
+    private final Mt564EventAuditRepository auditRepository;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.report.jobs.threads:4}")
+    private int threads = 4;
+
+    @Value("${app.report.jobs.queue-capacity:100}")
+    private int queueCapacity = 100;
+
+    @Value("${app.report.jobs.per-report-concurrency:1}")
+    private int perReportConcurrency = 1;
+
+    @Value("${app.report.jobs.spool-dir:}")
+    private String spoolDir = "";
+
+    @Value("${app.report.jobs.retention:PT24H}")
+    private Duration retention = Duration.ofHours(24);
+
+    // audits written this long before the latest one are assumed committed, see DataVersion
+    @Value("${app.report.jobs.settle-time:PT5M}")
+    private Duration settleTime = Duration.ofMinutes(5);
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final Map<Long, Semaphore> permits = new ConcurrentHashMap<>();
+
+    private ThreadPoolExecutor executor;
+    private Path spool;
+
+    private Counter submitted;
+    private Counter reused;
+    private Counter rejected;
+    private Counter failed;
+
+    @PostConstruct
+    void init() throws IOException {
+        spool = spoolDir == null || spoolDir.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "mt564-report-jobs") : Path.of(spoolDir);
+        Files.createDirectories(spool);
+        // results of a previous run are unreachable, their jobs are gone
+        try (DirectoryStream<Path> stale = Files.newDirectoryStream(spool, "*.{gz,tmp}")) {
+            for (Path file : stale) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "mt564-report-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        submitted = meterRegistry.counter("mt564.report.jobs", "result", "submitted");
+        reused = meterRegistry.counter("mt564.report.jobs", "result", "reused");
+        rejected = meterRegistry.counter("mt564.report.jobs", "result", "rejected");
+        failed = meterRegistry.counter("mt564.report.jobs", "result", "failed");
+        Gauge.builder("mt564.report.jobs.queued", executor, e -> e.getQueue().size()).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Submits a report job, or returns an equivalent job.
+     *
+     * This method:
+     * - Checks the report compiles (unknown reports and invalid configurations fail here, not in the job).
+     * - Reads the current DataVersion of mt564_events.
+     * - Returns the job of the same report and format that is queued or running, or that completed at that same data
+     *   version with its result still spooled.
+     * - Otherwise takes a permit of the report and queues a new job on the pool.
+     *
+     * @return the status of the new or reused job
+     * @throws IllegalStateException if the report already has its maximum of jobs in flight or the queue is full
+     * @throws RuntimeException      if the report config is not found or invalid
+     */
+    public ReportJobStatus submit(Long reportId, ReportFormat format) {
+        customReportService.plan(reportId);
+        DataVersion version = currentVersion();
+
+        synchronized (jobs) {
+            for (Job job : jobs.values()) {
+                if (!job.reportId.equals(reportId) || job.format != format) {
+                    continue;
+                }
+                if (job.state == ReportJobStatus.State.QUEUED || job.state == ReportJobStatus.State.RUNNING
+                        || (job.state == ReportJobStatus.State.DONE && job.version.equals(version) && Files.exists(job.file))) {
+                    reused.increment();
+                    return job.status();
+                }
+            }
+
+            Semaphore reportPermits = permits.computeIfAbsent(reportId, id -> new Semaphore(perReportConcurrency));
+            if (!reportPermits.tryAcquire()) {
+                rejected.increment();
+                throw new IllegalStateException("Too many jobs in flight for report " + reportId);
+            }
+            Job job = new Job(UUID.randomUUID().toString(), reportId, format, version);
+            jobs.put(job.id, job);
+            try {
+                executor.execute(() -> run(job, reportPermits));
+            } catch (RejectedExecutionException ex) {
+                jobs.remove(job.id);
+                reportPermits.release();
+                rejected.increment();
+                throw new IllegalStateException("Report job queue is full");
+            }
+            submitted.increment();
+            log.info("Submitted custom report job [{}] for report [{}] [{}]", job.id, reportId, format);
+            return job.status();
+        }
+    }
+
+    public Optional<ReportJobStatus> status(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(Job::status);
+    }
+
+    /**
+     * @return the gzip file holding the result of the job, when the job is DONE and its result was not dropped
+     */
+    public Optional<Path> resultFile(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null || job.state != ReportJobStatus.State.DONE || !Files.exists(job.file)) {
+            return Optional.empty();
+        }
+        return Optional.of(job.file);
+    }
+
+    /**
+     * Drops the jobs finished more than app.report.jobs.retention ago, with their spooled results.
+     */
+    @Scheduled(fixedDelayString = "${app.report.jobs.cleanup-interval:PT10M}",
+            initialDelayString = "${app.report.jobs.cleanup-interval:PT10M}")
+    public void cleanup() {
+        LocalDateTime expiry = LocalDateTime.now().minus(retention);
+        synchronized (jobs) {
+            jobs.values().removeIf(job -> {
+                if (job.finishedAt == null || job.finishedAt.isAfter(expiry)) {
+                    return false;
+                }
+                deleteQuietly(job.file);
+                return true;
+            });
+        }
+    }
+
+    private void run(Job job, Semaphore reportPermits) {
+        job.startedAt = LocalDateTime.now();
+        job.state = ReportJobStatus.State.RUNNING;
+        ReportJobStatus.State outcome = ReportJobStatus.State.FAILED;
+        Path tmp = spool.resolve(job.id + ".tmp");
+        try {
+            try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 64 * 1024), 64 * 1024)) {
+                job.rows = customReportService.streamReport(job.reportId, job.format, out);
+            }
+            Files.move(tmp, job.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            job.compressedBytes = Files.size(job.file);
+            outcome = ReportJobStatus.State.DONE;
+            log.info("Custom report job [{}] wrote [{}] rows, [{}] compressed bytes", job.id, job.rows, job.compressedBytes);
+        } catch (IOException | RuntimeException ex) {
+            deleteQuietly(tmp);
+            job.error = ex.getMessage();
+            failed.increment();
+            log.error("Error Executing Custom Report Job [{}] [{}] [{}]", job.id, job.reportId, ex.getMessage(), ex);
+        } finally {
+            // the permit is back before the job is seen as finished
+            reportPermits.release();
+            job.finishedAt = LocalDateTime.now();
+            job.state = outcome;
+        }
+    }
+
+    /**
+     * Version of the content of mt564_events, see DataVersion.
+     */
+    DataVersion currentVersion() {
+        LocalDateTime latest = auditRepository.findMaxUpdatedAt();
+        if (latest == null) {
+            return new DataVersion(null, 0);
+        }
+        LocalDateTime since = latest.minus(settleTime);
+        return new DataVersion(since, auditRepository.countByUpdatedAtGreaterThanEqual(since));
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete spooled report [{}]", file, e);
+        }
+    }
+
+    /**
+     * Version of the content of mt564_events: the number of audits written in the settle time before the latest one.
+     * Every write to mt564_events adds an audit with the write time, so any write committed later with a write time
+     * after that window start increases the count (a transaction is assumed to commit within the settle time).
+     * Read through the index on mt564_events_audit.updated_at.
+     */
+    record DataVersion(LocalDateTime since, long audits) {
+    }
+
+    private final class Job {
+        private final String id;
+        private final Long reportId;
+        private final ReportFormat format;
+        private final DataVersion version;
+        private final Path file;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+
+        private volatile ReportJobStatus.State state = ReportJobStatus.State.QUEUED;
+        private volatile LocalDateTime startedAt;
+        private volatile LocalDateTime finishedAt;
+        private volatile long rows;
+        private volatile long compressedBytes;
+        private volatile String error;
+
+        private Job(String id, Long reportId, ReportFormat format, DataVersion version) {
+            this.id = id;
+            this.reportId = reportId;
+            this.format = format;
+            this.version = version;
+            this.file = spool.resolve(id + "." + format.name().toLowerCase(Locale.ROOT) + ".gz");
+        }
+
+        private ReportJobStatus status() {
+            return new ReportJobStatus(id, reportId, format.name(), state, submittedAt, startedAt, finishedAt, rows,
+                    compressedBytes, error);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.ReportFilter;
+import com.mt564.processing.svc.model.entity.Mt564EventColumn;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Immutable, validated form of a saved CustomReportConfig: the selected columns checked against the mt564_events
+ * catalogue (Mt564EventColumn), one typed binder per filter and the final SQL.
+ *
+ * Every filter compiles to a sargable predicate on the bare column (=, IN, >= / <=, LIKE 'prefix%', IS NULL), so an
+ * index on the column can serve it; see ReportIndexAdvisor.
+ *
+ * Since column names are only ever taken from the catalogue and values are always bound as parameters, nothing from
+ * the saved configuration is concatenated into the SQL as-is. The SQL text of a plan never changes, so the parsed statement is reused by
+ * NamedParameterJdbcTemplate and the driver's prepared statement cache on every execution.
+ */
+public final class ReportPlan {
+
+    private static final String TABLE = "mt564_events";
+
+    // primary key of mt564_events, in index order
+    private static final List<Mt564EventColumn> KEY = List.of(Mt564EventColumn.EVENT_REFERENCE,
+            Mt564EventColumn.FINANCIAL_INSTRUMENT_ID, Mt564EventColumn.SENDER_BIC);
+
+    private static final String KEYSET_CONDITION = "(event_reference > :after_event_reference"
+            + " OR (event_reference = :after_event_reference AND financial_instrument_id > :after_financial_instrument_id)"
+            + " OR (event_reference = :after_event_reference AND financial_instrument_id = :after_financial_instrument_id"
+            + " AND sender_bic > :after_sender_bic))";
+
+    private final Long reportId;
+    private final List<String> columns;
+    private final List<FilterBinder> filters;
+    private final String sql;
+    private final String pageSql;
+    private final int[] keyPositions;
+
+    private ReportPlan(Long reportId, List<String> columns, List<FilterBinder> filters, String sql, String pageSql,
+                       int[] keyPositions) {
+        this.reportId = reportId;
+        this.columns = columns;
+        this.filters = filters;
+        this.sql = sql;
+        this.pageSql = pageSql;
+        this.keyPositions = keyPositions;
+    }
+
+    /**
+     * @param reportId        id of the saved report (null when validating a report before saving it)
+     * @param selectedColumns the selected column names
+     * @param filterValues    equality filters by column name, as parsed from the saved JSON
+     * @throws RuntimeException if a column is not an mt564_events column or a filter value does not fit its column
+     */
+    public static ReportPlan compile(Long reportId, List<String> selectedColumns, Map<String, Object> filterValues) {
+        List<ReportFilter> filters = new ArrayList<>(filterValues.size());
+        filterValues.forEach((name, value) -> filters.add(ReportFilter.eq(name, value)));
+        return compile(reportId, selectedColumns, filters);
+    }
+
+    /**
+     * @param reportId        id of the saved report (null when validating a report before saving it)
+     * @param selectedColumns the selected column names
+     * @param reportFilters   the filter conditions, all of which must hold
+     * @throws RuntimeException if a column is not an mt564_events column, an operator does not apply to its column or a
+     *                          filter value does not fit its column
+     */
+    public static ReportPlan compile(Long reportId, List<String> selectedColumns, List<ReportFilter> reportFilters) {
+        if (selectedColumns.isEmpty()) {
+            throw new RuntimeException("Report selects no column");
+        }
+        List<String> columns = new ArrayList<>(selectedColumns.size());
+        for (String name : selectedColumns) {
+            columns.add(column(name).getColumnName());
+        }
+
+        List<FilterBinder> filters = new ArrayList<>(reportFilters.size());
+        Set<String> parameterNames = new HashSet<>();
+        for (ReportFilter filter : reportFilters) {
+            Mt564EventColumn column = column(filter.getColumn());
+            String parameter = column.getColumnName();
+            for (int i = 2; !parameterNames.add(parameter); i++) {
+                parameter = column.getColumnName() + "_" + i;
+            }
+            filters.add(FilterBinder.of(column, filter, parameter));
+        }
+
+        StringJoiner conditions = new StringJoiner(" AND ");
+        filters.forEach(filter -> conditions.add(filter.condition()));
+
+        StringBuilder sql = new StringBuilder("SELECT ").append(String.join(", ", columns)).append(" FROM ").append(TABLE);
+        if (!filters.isEmpty()) {
+            sql.append(" WHERE ").append(conditions);
+        }
+
+        // the page query also reads the key columns the report does not select, after the selected ones
+        List<String> pageColumns = new ArrayList<>(columns);
+        int[] keyPositions = new int[KEY.size()];
+        for (int i = 0; i < KEY.size(); i++) {
+            String keyColumn = KEY.get(i).getColumnName();
+            if (!pageColumns.contains(keyColumn)) {
+                pageColumns.add(keyColumn);
+            }
+            keyPositions[i] = pageColumns.indexOf(keyColumn) + 1;
+        }
+        String pageSql = "SELECT " + String.join(", ", pageColumns) + " FROM " + TABLE
+                + " WHERE " + (filters.isEmpty() ? "" : conditions + " AND ") + KEYSET_CONDITION
+                + " ORDER BY event_reference, financial_instrument_id, sender_bic"
+                + " FETCH FIRST :page_rows ROWS ONLY";
+
+        return new ReportPlan(reportId, List.copyOf(columns), List.copyOf(filters), sql.toString(), pageSql, keyPositions);
+    }
+
+    private static Mt564EventColumn column(String name) {
+        Mt564EventColumn column = Mt564EventColumn.byName(name);
+        if (column == null) {
+            throw new RuntimeException("Unknown report column [" + name + "]");
+        }
+        return column;
+    }
+
+    public Long getReportId() {
+        return reportId;
+    }
+
+    /**
+     * The selected columns, by their canonical mt564_events name.
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Keyset page query: the report restricted to the rows after a primary key position, in primary key order, with
+     * the selected columns first and the primary key columns at keyPositions(). Parameters: pageParameters().
+     */
+    public String getPageSql() {
+        return pageSql;
+    }
+
+    /**
+     * 1-based positions of event_reference, financial_instrument_id and sender_bic in the page query.
+     */
+    public int[] keyPositions() {
+        return keyPositions.clone();
+    }
+
+    /**
+     * Parameters of the page query for the rows after the given key (empty strings for the first page), reading at
+     * most the given number of rows.
+     */
+    public MapSqlParameterSource pageParameters(String eventReference, String financialInstrumentId, String senderBic, int rows) {
+        return parameters()
+                .addValue("after_event_reference", eventReference, Types.VARCHAR)
+                .addValue("after_financial_instrument_id", financialInstrumentId, Types.VARCHAR)
+                .addValue("after_sender_bic", senderBic, Types.VARCHAR)
+                .addValue("page_rows", rows, Types.INTEGER);
+    }
+
+    /**
+     * The filter values converted to their column type, by column name, when the report only has equality filters
+     * on distinct columns (the form ColumnarEventStore answers); empty otherwise.
+     */
+    public Optional<Map<String, Object>> equalityFilterValues() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (FilterBinder filter : filters) {
+            if (filter.operator != ReportFilter.Operator.EQ || values.containsKey(filter.column.getColumnName())) {
+                return Optional.empty();
+            }
+            values.put(filter.column.getColumnName(), filter.value);
+        }
+        return Optional.of(values);
+    }
+
+    /**
+     * The compiled filters, in the order of the saved configuration.
+     */
+    List<FilterBinder> filters() {
+        return filters;
+    }
+
+    /**
+     * Fresh parameters for one execution (MapSqlParameterSource is mutable, so it is not shared).
+     */
+    public MapSqlParameterSource parameters() {
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        filters.forEach(filter -> filter.bind(parameters));
+        return parameters;
+    }
+
+    /**
+     * One filter on one column, with its values already converted to the column type and bound with the matching JDBC
+     * type, so that the driver binds a DATE as a DATE rather than a VARCHAR to be cast by the database (which could
+     * also keep the planner from using an index on the column).
+     */
+    static final class FilterBinder {
+
+        private final Mt564EventColumn column;
+        private final ReportFilter.Operator operator;
+        private final String parameter;
+        // EQ value, PREFIX pattern, BETWEEN lower bound
+        private final Object value;
+        // BETWEEN upper bound
+        private final Object upperValue;
+        // IN values
+        private final List<Object> values;
+        private final int sqlType;
+
+        private FilterBinder(Mt564EventColumn column, ReportFilter.Operator operator, String parameter, Object value,
+                             Object upperValue, List<Object> values) {
+            this.column = column;
+            this.operator = operator;
+            this.parameter = parameter;
+            this.value = value;
+            this.upperValue = upperValue;
+            this.values = values;
+            this.sqlType = sqlType(column.getKind());
+        }
+
+        static FilterBinder of(Mt564EventColumn column, ReportFilter filter, String parameter) {
+            ReportFilter.Operator operator = filter.getOperator();
+            if (operator == null) {
+                throw new RuntimeException("Missing filter operator for column [" + column.getColumnName() + "]");
+            }
+            Mt564EventColumn.Kind kind = column.getKind();
+            switch (operator) {
+                case EQ:
+                    return new FilterBinder(column, operator, parameter, convert(column, filter.getValue()), null, null);
+                case IN:
+                    if (filter.getValues() == null) {
+                        throw new RuntimeException("IN filter on column [" + column.getColumnName() + "] has no value");
+                    }
+                    // a NULL in the list never matches, as in SQL
+                    Set<Object> values = new LinkedHashSet<>();
+                    for (Object raw : filter.getValues()) {
+                        Object value = convert(column, raw);
+                        if (value != null) {
+                            values.add(value);
+                        }
+                    }
+                    if (values.isEmpty()) {
+                        throw new RuntimeException("IN filter on column [" + column.getColumnName() + "] has no value");
+                    }
+                    return new FilterBinder(column, operator, parameter, null, null, List.copyOf(values));
+                case BETWEEN:
+                    if (kind != Mt564EventColumn.Kind.INTEGER && kind != Mt564EventColumn.Kind.DATE
+                            && kind != Mt564EventColumn.Kind.DATE_TIME) {
+                        throw new RuntimeException("BETWEEN filter not supported on column [" + column.getColumnName() + "]");
+                    }
+                    if (filter.getFrom() == null && filter.getTo() == null) {
+                        throw new RuntimeException("BETWEEN filter on column [" + column.getColumnName() + "] has no bound");
+                    }
+                    return new FilterBinder(column, operator, parameter, convert(column, filter.getFrom()),
+                            convert(column, filter.getTo()), null);
+                case PREFIX:
+                    if (kind != Mt564EventColumn.Kind.STRING && kind != Mt564EventColumn.Kind.DICTIONARY) {
+                        throw new RuntimeException("PREFIX filter not supported on column [" + column.getColumnName() + "]");
+                    }
+                    if (filter.getValue() == null || filter.getValue().toString().isEmpty()) {
+                        throw new RuntimeException("PREFIX filter on column [" + column.getColumnName() + "] has no value");
+                    }
+                    return new FilterBinder(column, operator, parameter, likePrefix(filter.getValue().toString()), null, null);
+                default:
+                    return new FilterBinder(column, operator, parameter, null, null, null);
+            }
+        }
+
+        Mt564EventColumn column() {
+            return column;
+        }
+
+        ReportFilter.Operator operator() {
+            return operator;
+        }
+
+        String condition() {
+            String name = column.getColumnName();
+            return switch (operator) {
+                case EQ -> name + " = :" + parameter;
+                case IN -> name + " IN (:" + parameter + ")";
+                case BETWEEN -> {
+                    StringJoiner bounds = new StringJoiner(" AND ");
+                    if (value != null) {
+                        bounds.add(name + " >= :" + parameter + "_from");
+                    }
+                    if (upperValue != null) {
+                        bounds.add(name + " <= :" + parameter + "_to");
+                    }
+                    yield bounds.toString();
+                }
+                case PREFIX -> name + " LIKE :" + parameter + " ESCAPE '\\'";
+                case IS_NULL -> name + " IS NULL";
+                case IS_NOT_NULL -> name + " IS NOT NULL";
+            };
+        }
+
+        void bind(MapSqlParameterSource parameters) {
+            switch (operator) {
+                case EQ, PREFIX -> parameters.addValue(parameter, value, operator == ReportFilter.Operator.PREFIX ? Types.VARCHAR : sqlType);
+                case IN -> parameters.addValue(parameter, values, sqlType);
+                case BETWEEN -> {
+                    if (value != null) {
+                        parameters.addValue(parameter + "_from", value, sqlType);
+                    }
+                    if (upperValue != null) {
+                        parameters.addValue(parameter + "_to", upperValue, sqlType);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        private static int sqlType(Mt564EventColumn.Kind kind) {
+            return switch (kind) {
+                case STRING, DICTIONARY -> Types.VARCHAR;
+                case INTEGER -> Types.INTEGER;
+                case BOOLEAN -> Types.BOOLEAN;
+                case DATE -> Types.DATE;
+                case DATE_TIME -> Types.TIMESTAMP;
+            };
+        }
+
+        private static Object convert(Mt564EventColumn column, Object raw) {
+            if (raw == null) {
+                return null;
+            }
+            try {
+                return switch (column.getKind()) {
+                    case STRING, DICTIONARY -> raw.toString();
+                    case INTEGER -> toInt(raw);
+                    case BOOLEAN -> toBoolean(raw);
+                    case DATE -> LocalDate.parse(raw.toString().trim());
+                    case DATE_TIME -> LocalDateTime.parse(raw.toString().trim());
+                };
+            } catch (RuntimeException e) {
+                throw new RuntimeException("Invalid filter value [" + raw + "] for column [" + column.getColumnName() + "]", e);
+            }
+        }
+
+        /**
+         * LIKE pattern matching the values starting with the prefix, with the LIKE wildcards of the prefix escaped.
+         */
+        private static String likePrefix(String prefix) {
+            StringBuilder pattern = new StringBuilder(prefix.length() + 1);
+            for (int i = 0; i < prefix.length(); i++) {
+                char c = prefix.charAt(i);
+                if (c == '%' || c == '_' || c == '\\') {
+                    pattern.append('\\');
+                }
+                pattern.append(c);
+            }
+            return pattern.append('%').toString();
+        }
+        private static Integer toInt(Object raw) {
+            if (raw instanceof Number number) {
+                if (number.doubleValue() != number.intValue()) {
+                    throw new IllegalArgumentException("not an integer");
+                }
+                return number.intValue();
+            }
+            return Integer.valueOf(raw.toString().trim());
+        }
+
+        private static Boolean toBoolean(Object raw) {
+            if (raw instanceof Boolean flag) {
+                return flag;
+            }
+            String text = raw.toString().trim();
+            if (!"true".equalsIgnoreCase(text) && !"false".equalsIgnoreCase(text)) {
+                throw new IllegalArgumentException("not a boolean");
+            }
+            return Boolean.valueOf(text);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+CREATE TABLE mt564_dead_letters (
+    id BIGSERIAL PRIMARY KEY,
+    source VARCHAR(32),
+    message_key VARCHAR(255),
+    payload TEXT,  -- The event as JSON
+    error VARCHAR(2000),
+    attempts INT,
+    created_at TIMESTAMP DEFAULT now()
+);
+
+CREATE INDEX idx_mt564_dead_letters_created_at ON mt564_dead_letters (created_at);
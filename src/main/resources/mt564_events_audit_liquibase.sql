@@ -5,6 +5,12 @@ CREATE TABLE mt564_events_audit (
     version_number INT,
     business_hash VARCHAR(64),
     updated_at TIMESTAMP,
-    snapshot JSONB,  -- Full snapshot of event attributes
+    snapshot JSONB,  -- Full snapshot of event attributes (JSON codec)
+    snapshot_format SMALLINT,  -- 0 / NULL: JSON in snapshot, 1: binary in snapshot_data, 2: no snapshot (diff only)
+    snapshot_data BYTEA,  -- Compact binary snapshot (binary codec)
+    diff_data BYTEA,  -- Changed fields against the previous version (write-time diff capture)
     PRIMARY KEY (event_reference, financial_instrument_id, sender_bic, version_number)
 );
+
+-- Range scans of the delta reports (updated_at between from and to); predecessor lookups use the primary key
+CREATE INDEX idx_mt564_events_audit_updated_at ON mt564_events_audit (updated_at);
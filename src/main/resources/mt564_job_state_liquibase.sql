@@ -0,0 +1,7 @@
+CREATE TABLE mt564_job_state (
+    name VARCHAR(64) PRIMARY KEY,
+    lock_owner VARCHAR(128),  -- Node holding the lease of the job, until locked_until
+    locked_until TIMESTAMP,
+    watermark TIMESTAMP,  -- Greatest updatedAt handled by the last successful run (incremental fetch)
+    generation BIGINT  -- Incremented by writes outside the Kafka partitioning (file ingest), see BusinessHashIndex
+);
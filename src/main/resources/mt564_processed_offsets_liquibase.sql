@@ -0,0 +1,7 @@
+CREATE TABLE mt564_processed_offsets (
+    topic VARCHAR(249) NOT NULL,
+    kafka_partition INT NOT NULL,
+    kafka_offset BIGINT NOT NULL,
+    processed_at TIMESTAMP DEFAULT now(),  -- Commit time of the transaction that processed the record
+    PRIMARY KEY (topic, kafka_partition, kafka_offset)
+);
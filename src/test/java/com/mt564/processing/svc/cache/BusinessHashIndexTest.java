@@ -0,0 +1,183 @@
+package com.mt564.processing.svc.cache;
+
+import com.mt564.processing.svc.config.Mt564EventIdPartitioner;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class BusinessHashIndexTest {
+
+    private static final String TOPIC = "mt564-events";
+    private static final int PARTITIONS = 12;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private SimpleMeterRegistry meterRegistry;
+    private BusinessHashIndex hashIndex;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        hashIndex = new BusinessHashIndex(jdbcTemplate, meterRegistry);
+        ReflectionTestUtils.setField(hashIndex, "enabled", true);
+        ReflectionTestUtils.setField(hashIndex, "maxEntries", 2);
+        hashIndex.registerMetrics();
+    }
+
+    @Test
+    void testFilterChanged_dropsOnlyEventsWithTheIndexedHash() {
+        Mt564EventDto unchanged = dto("EVT1", "DVCA");
+        Mt564EventDto changed = dto("EVT2", "DVCA");
+        hashIndex.recordAfterCommit(List.of(persisted(unchanged, 1), persisted(dto("EVT2", "DVOP"), 1)));
+
+        Mt564EventDto unknown = dto("EVT3", "DVCA");
+        List<Mt564EventDto> remaining = hashIndex.filterChanged(List.of(unchanged, changed, unknown));
+
+        assertEquals(List.of(changed, unknown), remaining);
+        assertEquals(1.0, lookups("hit"));
+        assertEquals(1.0, lookups("changed"));
+        assertEquals(1.0, lookups("miss"));
+    }
+
+    @Test
+    void testRecord_evictsLeastRecentlyUsedBeyondMaxEntries() {
+        Mt564EventDto first = dto("EVT1", "DVCA");
+        Mt564EventDto second = dto("EVT2", "DVCA");
+        Mt564EventDto third = dto("EVT3", "DVCA");
+        hashIndex.recordAfterCommit(List.of(persisted(first, 0), persisted(second, 0)));
+        hashIndex.filterChanged(List.of(first)); // touch EVT1 so EVT2 becomes the eldest
+        hashIndex.recordAfterCommit(List.of(persisted(third, 0)));
+
+        assertEquals(2, hashIndex.size());
+        assertEquals(List.of(second), hashIndex.filterChanged(List.of(first, second, third)));
+        assertEquals(1.0, meterRegistry.counter("mt564.hash_index.evictions").count());
+    }
+
+    @Test
+    void testRecord_neverReplacesANewerVersion() {
+        Mt564EventDto v2 = dto("EVT1", "DVOP");
+        hashIndex.recordAfterCommit(List.of(persisted(v2, 2)));
+        hashIndex.recordAfterCommit(List.of(persisted(dto("EVT1", "DVCA"), 1)));
+
+        assertTrue(hashIndex.filterChanged(List.of(v2)).isEmpty());
+    }
+
+    @Test
+    void testFilterChanged_revertedEventIsCheckedOnceItsPartitionWasConsumedElsewhere() {
+        Mt564EventDto v1 = dto("EVT1", "DVCA");
+        hashIndex.recordAfterCommit(List.of(persisted(v1, 1)));
+        int partition = Mt564EventIdPartitioner.partition(v1, PARTITIONS);
+
+        // the partition moves to another node, which writes v2, and comes back: v1 again is a real change
+        HashIndexRebalanceListener listener = new HashIndexRebalanceListener(hashIndex);
+        Consumer<?, ?> consumer = consumer();
+        listener.onPartitionsRevokedAfterCommit(consumer, List.of(new TopicPartition(TOPIC, partition)));
+        listener.onPartitionsAssigned(consumer, List.of());
+        listener.onPartitionsAssigned(consumer, List.of(new TopicPartition(TOPIC, partition)));
+
+        assertEquals(List.of(v1), hashIndex.filterChanged(List.of(v1)));
+        assertEquals(1.0, lookups("miss"));
+        assertEquals(0, hashIndex.size());
+
+        // the database check found it unchanged: trusted again
+        hashIndex.recordUnchangedAfterCommit(List.of(new Mt564EventHashView(persisted(v1, 1).getId(), v1.getBusinessHash(), 1)));
+        assertTrue(hashIndex.filterChanged(List.of(v1)).isEmpty());
+    }
+
+    @Test
+    void testFilterChanged_partitionKeptAcrossAnEagerRebalanceKeepsItsEntries() {
+        Mt564EventDto kept = dto("EVT1", "DVCA");
+        hashIndex.recordAfterCommit(List.of(persisted(kept, 1)));
+        TopicPartition partition = new TopicPartition(TOPIC, Mt564EventIdPartitioner.partition(kept, PARTITIONS));
+
+        HashIndexRebalanceListener listener = new HashIndexRebalanceListener(hashIndex);
+        Consumer<?, ?> consumer = consumer();
+        listener.onPartitionsAssigned(consumer, List.of(partition));
+        hashIndex.recordAfterCommit(List.of(persisted(kept, 1)));
+        listener.onPartitionsRevokedAfterCommit(consumer, List.of(partition));
+        listener.onPartitionsAssigned(consumer, List.of(partition));
+
+        assertTrue(hashIndex.filterChanged(List.of(kept)).isEmpty());
+
+        // lost rather than revoked: another consumer may have written it
+        listener.onPartitionsLost(consumer, List.of(partition));
+        listener.onPartitionsAssigned(consumer, List.of(partition));
+        assertEquals(List.of(kept), hashIndex.filterChanged(List.of(kept)));
+    }
+
+    @Test
+    void testFilterChanged_entriesAreNotTrustedOnceAWriteOutsideThePartitioningCommitted() {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(BusinessHashIndex.GENERATION_ROW)))
+                .thenReturn(List.of(3L), List.of(3L), List.of(4L));
+        Mt564EventDto v1 = dto("EVT1", "DVCA");
+
+        hashIndex.filterChanged(List.of(v1));
+        hashIndex.recordAfterCommit(List.of(persisted(v1, 1)));
+        assertTrue(hashIndex.filterChanged(List.of(v1)).isEmpty());
+
+        // a file ingest on another node wrote EVT1 meanwhile, it may have moved away from v1
+        assertEquals(List.of(v1), hashIndex.filterChanged(List.of(v1)));
+    }
+
+    @Test
+    void testExternalWriteCreatesTheGenerationRowOnce() {
+        when(jdbcTemplate.update(startsWith("UPDATE"), eq(BusinessHashIndex.GENERATION_ROW))).thenReturn(0, 1);
+
+        hashIndex.externalWriteCommitted();
+        hashIndex.externalWriteCommitted();
+
+        verify(jdbcTemplate, times(1)).update(startsWith("INSERT"), eq(BusinessHashIndex.GENERATION_ROW));
+    }
+
+    @Test
+    void testFilterChanged_disabledIndexKeepsEverything() {
+        ReflectionTestUtils.setField(hashIndex, "enabled", false);
+        Mt564EventDto dto = dto("EVT1", "DVCA");
+        hashIndex.recordAfterCommit(List.of(persisted(dto, 0)));
+
+        assertEquals(List.of(dto), hashIndex.filterChanged(List.of(dto)));
+        assertEquals(0, hashIndex.size());
+    }
+
+    private static Consumer<?, ?> consumer() {
+        Consumer<?, ?> consumer = mock(Consumer.class);
+        List<PartitionInfo> partitions = IntStream.range(0, PARTITIONS)
+                .mapToObj(p -> new PartitionInfo(TOPIC, p, null, null, null))
+                .toList();
+        when(consumer.partitionsFor(TOPIC)).thenReturn(partitions);
+        return consumer;
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.counter("mt564.hash_index.lookups", "result", result).count();
+    }
+
+    private static Mt564EventDto dto(String eventReference, String eventType) {
+        Mt564EventDto dto = new Mt564EventDto();
+        dto.setEventReference(eventReference);
+        dto.setFinancialInstrumentId("ISIN001");
+        dto.setSenderBic("BNPAFRPPXXX");
+        dto.setCorporateActionEventType(eventType);
+        return dto;
+    }
+
+    private static Mt564Event persisted(Mt564EventDto dto, int version) {
+        Mt564Event event = Mt564Event.of(dto);
+        event.setVersionNumber(version);
+        return event;
+    }
+}
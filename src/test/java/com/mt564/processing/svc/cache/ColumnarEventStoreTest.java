@@ -0,0 +1,129 @@
+package com.mt564.processing.svc.cache;
+
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import com.mt564.processing.svc.repository.Mt564EventRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the replica answers like the database for the same report, on the schema generated from the entities.
+ */
+@DataJpaTest
+class ColumnarEventStoreTest {
+
+    private static final List<String> COLUMNS = List.of("event_reference", "sender_bic", "version_number", "record_date",
+            "event_creation_datetime", "market_disclosure_flag", "narrative");
+
+    @Autowired
+    private Mt564EventRepository eventRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ColumnarEventStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ColumnarEventStore(jdbcTemplate, new SimpleMeterRegistry());
+        store.registerMetrics();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        // more events than the initial column capacity, spread over a few codes and dates
+        List<Mt564Event> events = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            events.add(Mt564Event.builder()
+                    .id(Mt564EventId.of("EVT" + i, "ISIN" + (i % 7), "BIC" + (i % 3)))
+                    .businessHash("hash-" + i)
+                    .corporateActionEventType(i % 4 == 0 ? "DVCA" : i % 4 == 1 ? "INTR" : i % 4 == 2 ? "SPLF" : null)
+                    .eventStatusCode(i % 2 == 0 ? "COMP" : "PREU")
+                    .eventCreationDatetime(LocalDateTime.of(2025, 5, 1, 10, 0).plusMinutes(i % 5))
+                    .recordDate(i % 10 == 0 ? null : LocalDate.of(2025, 6, 1).plusDays(i % 3))
+                    .marketDisclosureFlag(i % 5 == 0 ? null : i % 2 == 0)
+                    .narrative("Narrative " + i)
+                    .build());
+        }
+        eventRepository.saveAllAndFlush(events);
+        store.reload();
+    }
+
+    @Test
+    void testReportsMatchTheDatabase() {
+        assertEquals(1500, store.size());
+        assertSameAsDatabase(Map.of("corporate_action_event_type", "DVCA"));
+        assertSameAsDatabase(Map.of("corporate_action_event_type", "DVCA", "sender_bic", "BIC1", "event_status_code", "COMP"));
+        assertSameAsDatabase(Map.of("record_date", "2025-06-02", "market_disclosure_flag", false));
+        assertSameAsDatabase(Map.of("event_creation_datetime", "2025-05-01T10:03:00", "version_number", 0));
+        assertSameAsDatabase(Map.of("financial_instrument_id", "ISIN3", "market_disclosure_flag", true));
+        assertSameAsDatabase(Map.of("corporate_action_event_type", "XXXX"));
+        assertSameAsDatabase(Map.of());
+    }
+
+    @Test
+    void testWriteThroughUpdatesRowsAndIndexes() {
+        Mt564Event updated = eventRepository.findById(Mt564EventId.of("EVT0", "ISIN0", "BIC0")).orElseThrow();
+        updated.setCorporateActionEventType("INTR");
+        updated.setVersionNumber(1);
+        Mt564Event inserted = Mt564Event.builder()
+                .id(Mt564EventId.of("NEW1", "ISIN1", "BIC9"))
+                .versionNumber(0)
+                .corporateActionEventType("DVCA")
+                .build();
+
+        // applied as on commit (the test transaction is rolled back)
+        store.record(List.of(updated, inserted));
+
+        List<Map<String, Object>> dvca = store.query(List.of("event_reference"), Map.of("corporate_action_event_type", "DVCA")).orElseThrow();
+        assertEquals(375, dvca.size());
+        assertTrue(dvca.contains(Map.of("event_reference", "NEW1")));
+        assertFalse(dvca.contains(Map.of("event_reference", "EVT0")));
+
+        // an older version arriving late does not overwrite the newer one
+        Mt564Event stale = Mt564Event.builder().id(updated.getId()).versionNumber(0).corporateActionEventType("DVCA").build();
+        store.record(List.of(stale));
+        assertEquals(375, store.query(List.of("event_reference"), Map.of("corporate_action_event_type", "DVCA")).orElseThrow().size());
+        // keyed by the canonical column name whatever the case of the request, like the rows read from the database
+        assertEquals(Set.of("event_reference"),
+                store.query(List.of("EVENT_REFERENCE"), Map.of("corporate_action_event_type", "DVCA")).orElseThrow().get(0).keySet());
+    }
+
+    @Test
+    void testFallsBackToTheDatabase() {
+        assertTrue(store.query(List.of("no_such_column"), Map.of()).isEmpty());
+        assertTrue(store.query(COLUMNS, Map.of("record_date", "not a date")).isEmpty());
+        ReflectionTestUtils.setField(store, "enabled", false);
+        assertTrue(store.query(COLUMNS, Map.of()).isEmpty());
+    }
+
+    private void assertSameAsDatabase(Map<String, Object> filters) {
+        StringBuilder sql = new StringBuilder("SELECT ").append(String.join(", ", COLUMNS)).append(" FROM mt564_events");
+        if (!filters.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", filters.keySet().stream().map(k -> k + " = :" + k).toList()));
+        }
+        List<List<Object>> expected = new NamedParameterJdbcTemplate(jdbcTemplate)
+                .queryForList(sql.toString(), new MapSqlParameterSource(filters)).stream()
+                .map(row -> new ArrayList<>(row.values()))
+                .sorted(Comparator.comparing(row -> (String) row.get(0)))
+                .map(row -> (List<Object>) row)
+                .toList();
+
+        List<List<Object>> actual = store.query(COLUMNS, filters).orElseThrow().stream()
+                .map(row -> (List<Object>) new ArrayList<>(row.values()))
+                .sorted(Comparator.comparing(row -> (String) row.get(0)))
+                .toList();
+
+        assertEquals(expected, actual, filters.toString());
+    }
+}
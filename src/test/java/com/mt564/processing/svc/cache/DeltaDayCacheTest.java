@@ -0,0 +1,180 @@
+package com.mt564.processing.svc.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.codec.BinarySnapshotCodec;
+import com.mt564.processing.svc.codec.JsonSnapshotCodec;
+import com.mt564.processing.svc.codec.SnapshotCodecs;
+import com.mt564.processing.svc.config.JacksonConfig;
+import com.mt564.processing.svc.model.dto.Mt564EventDelta;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
+import com.mt564.processing.svc.service.EventDeltaReportingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.time.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DeltaDayCacheTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 6, 2);
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private DeltaDayCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = newCache(null);
+    }
+
+    @Test
+    void testOpenDaysAreNotCacheable() {
+        assertTrue(cache.isCacheable(DAY.minusDays(1)));
+        assertFalse(cache.isCacheable(DAY.plusDays(3)));
+        // DAY ended 12 hours before the clock but the settle time is 1 day
+        ReflectionTestUtils.setField(cache, "settleTime", Duration.ofDays(1));
+        assertFalse(cache.isCacheable(DAY.plusDays(1)));
+    }
+
+    @Test
+    void testRangeIsAssembledFromDayBuckets() {
+        Mt564EventAuditRepository auditRepo = mock(Mt564EventAuditRepository.class);
+        List<Mt564EventAudit> table = new ArrayList<>();
+        for (int version = 0; version < 8; version++) {
+            table.add(audit(version, DAY.minusDays(3).atTime(6, 0).plusHours(12L * version)));
+        }
+        when(auditRepo.findByUpdatedAtBetween(any(), any())).thenAnswer(invocation -> inRange(table,
+                invocation.getArgument(0), invocation.getArgument(1)));
+        when(auditRepo.findByIds(any())).thenAnswer(invocation -> byIds(table, invocation.getArgument(0)));
+        EventDeltaReportingService cached = service(auditRepo, cache);
+        EventDeltaReportingService uncached = service(auditRepo, new DeltaDayCache(objectMapper, new SimpleMeterRegistry()));
+
+        LocalDateTime from = DAY.minusDays(3).atTime(12, 0);
+        LocalDateTime to = DAY.plusDays(1).atStartOfDay();
+        List<Mt564EventDelta> expected = uncached.getFieldLevelDeltas(from, to);
+        assertEquals(7, expected.size());
+
+        assertEquals(versions(expected), versions(cached.getFieldLevelDeltas(from, to)));
+        assertEquals(versions(expected), versions(cached.getFieldLevelDeltas(from, to)));
+        // the 3 full days are loaded once, then served from the heap; the partial first day is always computed
+        assertEquals(3, meterRegistry.counter("mt564.delta_cache.lookups", "result", "miss").count());
+        assertEquals(3, meterRegistry.counter("mt564.delta_cache.lookups", "result", "hit").count());
+        assertEquals(6, cache.weight());
+    }
+
+    @Test
+    void testInvalidationDropsTheDayAndDiscardsRacingLoads() {
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<List<Mt564EventDelta>> loader = () -> List.of(delta(loads.incrementAndGet()));
+
+        cache.get(DAY, loader);
+        cache.get(DAY, loader);
+        assertEquals(1, loads.get());
+
+        cache.invalidateAfterCommit(List.of(DAY.atTime(23, 59)));
+        cache.get(DAY, loader);
+        assertEquals(2, loads.get());
+
+        // a write committing while the day is being loaded: the loaded result is returned but not kept
+        cache.invalidate(List.of(DAY));
+        cache.get(DAY, () -> {
+            cache.invalidate(List.of(DAY));
+            return loader.get();
+        });
+        cache.get(DAY, loader);
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void testHeapIsBoundedByDeltaCount() {
+        ReflectionTestUtils.setField(cache, "maxDeltas", 3L);
+        cache.get(DAY.minusDays(2), () -> List.of(delta(1), delta(2)));
+        cache.get(DAY.minusDays(1), () -> List.of(delta(3)));
+        cache.get(DAY.minusDays(2), () -> fail("still cached"));
+        cache.get(DAY, () -> List.of(delta(4)));
+
+        // the least recently used day was evicted
+        assertEquals(3, cache.weight());
+        cache.get(DAY.minusDays(2), () -> fail("still cached"));
+        cache.get(DAY, () -> fail("still cached"));
+        assertEquals(1, meterRegistry.counter("mt564.delta_cache.evictions").count());
+    }
+
+    @Test
+    void testDiskTierSurvivesARestart(@TempDir Path dir) {
+        newCache(dir).get(DAY, () -> List.of(delta(1), delta(2)));
+
+        DeltaDayCache restarted = newCache(dir);
+        List<Mt564EventDelta> deltas = restarted.get(DAY, () -> fail("read from disk"));
+
+        assertEquals(List.of(2, 3), versions(deltas));
+        assertArrayEquals(new Object[]{"old", "new"}, deltas.get(0).getChangedFields().get("narrative"));
+
+        restarted.invalidate(List.of(DAY));
+        assertEquals(1, newCache(dir).get(DAY, () -> List.of(delta(7))).size());
+    }
+
+    private DeltaDayCache newCache(Path diskDir) {
+        DeltaDayCache deltaCache = new DeltaDayCache(objectMapper, meterRegistry);
+        ReflectionTestUtils.setField(deltaCache, "enabled", true);
+        ReflectionTestUtils.setField(deltaCache, "clock", Clock.fixed(DAY.plusDays(2).atTime(12, 0).toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        ReflectionTestUtils.setField(deltaCache, "diskDir", diskDir == null ? "" : diskDir.toString());
+        return deltaCache;
+    }
+
+    private EventDeltaReportingService service(Mt564EventAuditRepository auditRepo, DeltaDayCache deltaCache) {
+        return new EventDeltaReportingService(auditRepo, objectMapper,
+                new SnapshotCodecs(new JsonSnapshotCodec(objectMapper), new BinarySnapshotCodec()), deltaCache);
+    }
+
+    private static List<Integer> versions(List<Mt564EventDelta> deltas) {
+        return deltas.stream().map(Mt564EventDelta::getVersionTo).sorted(Comparator.naturalOrder()).toList();
+    }
+
+    private static List<Mt564EventAudit> inRange(List<Mt564EventAudit> table, LocalDateTime from, LocalDateTime to) {
+        return new ArrayList<>(table.stream()
+                .filter(a -> !a.getUpdatedAt().isBefore(from) && !a.getUpdatedAt().isAfter(to))
+                .toList());
+    }
+
+    private static List<Mt564EventAudit> byIds(List<Mt564EventAudit> table, Collection<Mt564EventAuditId> ids) {
+        return table.stream().filter(a -> ids.contains(a.getId())).toList();
+    }
+
+    private static Mt564EventAudit audit(int version, LocalDateTime updatedAt) {
+        Mt564EventAudit audit = new Mt564EventAudit();
+        audit.setId(new Mt564EventAuditId("EVT1", "ISIN1", "BIC1", version));
+        audit.setUpdatedAt(updatedAt);
+        audit.setSnapshot("{\"narrative\":\"v" + version + "\"}");
+        return audit;
+    }
+
+    private static Mt564EventDelta delta(int version) {
+        return Mt564EventDelta.builder()
+                .eventReference("EVT1")
+                .financialInstrumentId("ISIN1")
+                .senderBic("BIC1")
+                .versionFrom(version)
+                .versionTo(version + 1)
+                .changedFields(new LinkedHashMap<>(Map.of("narrative", new Object[]{"old", "new"})))
+                .timestamp(DAY.atTime(10, 0))
+                .build();
+    }
+}
@@ -0,0 +1,141 @@
+package com.mt564.processing.svc.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.DeltaDayCache;
+import com.mt564.processing.svc.config.JacksonConfig;
+import com.mt564.processing.svc.model.dto.Mt564EventDelta;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import com.mt564.processing.svc.model.entity.Mt564EventField;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
+import com.mt564.processing.svc.service.EventDeltaReportingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BinarySnapshotCodecTest {
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final JsonSnapshotCodec jsonCodec = new JsonSnapshotCodec(objectMapper);
+    private final BinarySnapshotCodec binaryCodec = new BinarySnapshotCodec();
+    private final Mt564EventAuditRepository auditRepository = mock(Mt564EventAuditRepository.class);
+    private final EventDeltaReportingService deltaService = new EventDeltaReportingService(auditRepository, objectMapper,
+            new SnapshotCodecs(jsonCodec, binaryCodec), new DeltaDayCache(objectMapper, new SimpleMeterRegistry()));
+
+    @Test
+    void testRoundTrip() throws IOException {
+        Mt564Event event = event(1, "Dividend payment");
+        event.setLinkEventId(null);
+        event.setNarrative("Zahlung für Aktionäre – 𝄞");
+
+        Object[] values = binaryCodec.decode(encode(binaryCodec, event));
+
+        for (Mt564EventField field : Mt564EventField.values()) {
+            assertEquals(field.get(event), values[field.ordinal()], field.name());
+        }
+    }
+
+    @Test
+    void testLongSnapshotIsDeflated() throws IOException {
+        Mt564Event event = event(1, "Lorem ipsum dolor sit amet. ".repeat(100));
+
+        Mt564EventAudit audit = encode(binaryCodec, event);
+
+        assertEquals(1, audit.getSnapshotData()[1]);
+        assertTrue(audit.getSnapshotData().length < 400);
+        assertEquals(event.getNarrative(), binaryCodec.decode(audit)[Mt564EventField.NARRATIVE.ordinal()]);
+    }
+
+    @Test
+    void testBinarySnapshotIsSeveralTimesSmallerThanJson() throws IOException {
+        Mt564Event event = event(3, "Cash dividend of EUR 0.45 per share");
+
+        int jsonSize = encode(jsonCodec, event).getSnapshot().getBytes().length;
+        int binarySize = encode(binaryCodec, event).getSnapshotData().length;
+
+        assertTrue(binarySize * 3 < jsonSize, "binary " + binarySize + " bytes, json " + jsonSize + " bytes");
+    }
+
+    @Test
+    void testDeltasDoNotDependOnSnapshotFormat() throws IOException {
+        Mt564Event v1 = event(0, "Initial");
+        Mt564Event v2 = event(1, "Amended");
+        v2.setBusinessHash("0f1e2d3c4b5a69788796a5b4c3d2e1f00f1e2d3c4b5a69788796a5b4c3d2e1f0");
+        v2.setRecordDate(null);
+        v2.setMarketDisclosureFlag(false);
+        v2.setEventCreationDatetime(LocalDateTime.of(2025, 5, 30, 10, 15, 30, 500_000_000));
+        v2.setUpdatedAt(LocalDateTime.of(2025, 6, 2, 8, 0));
+
+        Map<String, Object[]> json = changes(encode(jsonCodec, v1), encode(jsonCodec, v2));
+        Map<String, Object[]> binary = changes(encode(binaryCodec, v1), encode(binaryCodec, v2));
+        Map<String, Object[]> mixed = changes(encode(jsonCodec, v1), encode(binaryCodec, v2));
+
+        assertEquals(List.of("versionNumber", "businessHash", "eventCreationDatetime", "recordDate", "narrative",
+                "marketDisclosureFlag", "updatedAt"), new ArrayList<>(json.keySet()));
+        assertDeltasEqual(json, binary);
+        assertDeltasEqual(json, mixed);
+        assertArrayEquals(new Object[]{"2025-06-01", "null"}, binary.get("recordDate"));
+    }
+
+    private Map<String, Object[]> changes(Mt564EventAudit v1, Mt564EventAudit v2) {
+        when(auditRepository.findByUpdatedAtBetween(null, null)).thenReturn(new ArrayList<>(List.of(v1, v2)));
+        List<Mt564EventDelta> deltas = deltaService.getFieldLevelDeltas(null, null);
+        assertEquals(1, deltas.size());
+        return deltas.get(0).getChangedFields();
+    }
+
+    private static void assertDeltasEqual(Map<String, Object[]> expected, Map<String, Object[]> actual) {
+        assertEquals(new ArrayList<>(expected.keySet()), new ArrayList<>(actual.keySet()));
+        expected.forEach((field, values) -> assertArrayEquals(values, actual.get(field), field));
+    }
+
+    private static Mt564EventAudit encode(SnapshotCodec codec, Mt564Event event) throws IOException {
+        Mt564EventAudit audit = Mt564EventAudit.builder()
+                .id(new Mt564EventAuditId("EVT1", "ISIN1", "BIC1", event.getVersionNumber()))
+                .businessHash(event.getBusinessHash())
+                .build();
+        codec.encode(event, audit);
+        return audit;
+    }
+
+    private static Mt564Event event(int version, String narrative) {
+        return Mt564Event.builder()
+                .id(Mt564EventId.of("EVT1", "ISIN1", "BIC1"))
+                .versionNumber(version)
+                .businessHash("b3f1c1f0a6d04f2e9b1d7c3a5e8f9d0c1b2a3f4e5d6c7b8a9f0e1d2c3b4a5968")
+                .relatedMessageReference("REL0001")
+                .corporateActionEventId("CA0001")
+                .corporateActionEventType("DVCA")
+                .mandatoryVoluntaryIndicator("MAND")
+                .eventProcessingStatus("COMP")
+                .eventStatusCode("ACTV")
+                .officialCorporateActionEventId("OFF0001")
+                .linkEventId("LNK0001")
+                .safekeepingAccount("ACC0001")
+                .placeOfSafekeeping("DEUTDEFF")
+                .eventCreationDatetime(LocalDateTime.of(2025, 5, 30, 10, 15, 30))
+                .effectiveDate(LocalDate.of(2025, 6, 3))
+                .recordDate(LocalDate.of(2025, 6, 1))
+                .exDate(LocalDate.of(2025, 5, 31))
+                .announcementDate(LocalDate.of(2025, 5, 20))
+                .responseDeadline(LocalDate.of(2025, 6, 10))
+                .generalMeetingDate(LocalDate.of(2025, 6, 15))
+                .narrative(narrative)
+                .marketDisclosureFlag(true)
+                .createdAt(LocalDateTime.of(2025, 5, 30, 11, 0))
+                .updatedAt(LocalDateTime.of(2025, 6, 1, 9, 30, 12, 123_456_000))
+                .build();
+    }
+}
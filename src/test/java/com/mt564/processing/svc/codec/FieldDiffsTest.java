@@ -0,0 +1,162 @@
+package com.mt564.processing.svc.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.DeltaDayCache;
+import com.mt564.processing.svc.config.JacksonConfig;
+import com.mt564.processing.svc.model.dto.Mt564EventDelta;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
+import com.mt564.processing.svc.service.EventDeltaReportingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class FieldDiffsTest {
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final JsonSnapshotCodec jsonCodec = new JsonSnapshotCodec(objectMapper);
+    private final Mt564EventAuditRepository auditRepository = mock(Mt564EventAuditRepository.class);
+    private final EventDeltaReportingService deltaService = new EventDeltaReportingService(auditRepository, objectMapper,
+            new SnapshotCodecs(jsonCodec, new BinarySnapshotCodec()), new DeltaDayCache(objectMapper, new SimpleMeterRegistry()));
+
+    @Test
+    void testOnlyChangedFieldsAreEncoded() {
+        Mt564Event event = event();
+        Object[] previous = FieldDiffs.capture(event);
+        event.setVersionNumber(1);
+        event.setNarrative(null);
+        event.setExDate(LocalDate.of(2025, 6, 2));
+
+        Map<String, Object[]> diffs = FieldDiffs.decode(FieldDiffs.encode(previous, event));
+
+        assertEquals(List.of("versionNumber", "exDate", "narrative"), new ArrayList<>(diffs.keySet()));
+        assertArrayEquals(new Object[]{"0", "1"}, diffs.get("versionNumber"));
+        assertArrayEquals(new Object[]{"2025-05-31", "2025-06-02"}, diffs.get("exDate"));
+        assertArrayEquals(new Object[]{"Initial", "null"}, diffs.get("narrative"));
+    }
+
+    @Test
+    void testDiffDeltaMatchesSnapshotDelta() throws IOException {
+        Mt564Event event = event();
+        Mt564EventAudit v0 = audit(event, null);
+        Object[] previous = FieldDiffs.capture(event);
+        event.setVersionNumber(1);
+        event.setBusinessHash("hash-1");
+        event.setRecordDate(null);
+        event.setEventCreationDatetime(LocalDateTime.of(2025, 5, 30, 10, 15, 30, 500_000_000));
+        event.setUpdatedAt(LocalDateTime.of(2025, 6, 2, 8, 0));
+        Mt564EventAudit v1 = audit(event, null);
+        Mt564EventAudit v1DiffOnly = audit(event, FieldDiffs.encode(previous, event));
+        v1DiffOnly.setSnapshot(null);
+        v1DiffOnly.setSnapshotFormat(SnapshotFormat.DIFF_ONLY.getId());
+
+        Map<String, Object[]> fromSnapshots = changes(v0, v1);
+        Map<String, Object[]> fromDiff = changes(v0, v1DiffOnly);
+
+        assertEquals(new ArrayList<>(fromSnapshots.keySet()), new ArrayList<>(fromDiff.keySet()));
+        fromSnapshots.forEach((field, values) -> assertArrayEquals(values, fromDiff.get(field), field));
+    }
+
+    @Test
+    void testDiffOnlyVersionsAreRebuiltFromTheirKeyframe() throws IOException {
+        Mt564Event event = event();
+        Mt564EventAudit v0 = audit(event, null);
+        Mt564EventAudit v1 = diffOnly(event, e -> e.setExDate(LocalDate.of(2025, 6, 2)));
+        Mt564EventAudit v2 = diffOnly(event, e -> e.setNarrative(null));
+        Mt564EventAudit v2Full = audit(event, null);
+        when(auditRepository.findKeyframeChain("EVT1", "ISIN1", "BIC1", 2, SnapshotFormat.DIFF_ONLY.getId()))
+                .thenReturn(List.of(v0, v1, v2));
+        // written once app.audit.diff-capture was turned off: a snapshot and no diff
+        event.setVersionNumber(3);
+        event.setRecordDate(null);
+        Mt564EventAudit v3 = audit(event, null);
+
+        // not adjacent: no diff applies between v0 and v2
+        Map<String, Object[]> skipped = changes(v0, v2);
+        assertEquals(new ArrayList<>(changes(v0, v2Full).keySet()), new ArrayList<>(skipped.keySet()));
+        assertArrayEquals(new Object[]{"2025-05-31", "2025-06-02"}, skipped.get("exDate"));
+        assertArrayEquals(new Object[]{"Initial", "null"}, skipped.get("narrative"));
+
+        // v3 has no diff from v2
+        Map<String, Object[]> afterDiffCapture = changes(v2, v3);
+        assertEquals(List.of("versionNumber", "recordDate"), new ArrayList<>(afterDiffCapture.keySet()));
+        assertArrayEquals(new Object[]{"2025-06-01", "null"}, afterDiffCapture.get("recordDate"));
+    }
+
+    @Test
+    void testDiffOnlyVersionWithoutItsChainFailsTheDelta() throws IOException {
+        Mt564Event event = event();
+        Mt564EventAudit v0 = audit(event, null);
+        diffOnly(event, e -> e.setExDate(LocalDate.of(2025, 6, 2)));
+        Mt564EventAudit v2 = diffOnly(event, e -> e.setNarrative(null));
+        // version 1 is missing from the chain
+        when(auditRepository.findKeyframeChain("EVT1", "ISIN1", "BIC1", 2, SnapshotFormat.DIFF_ONLY.getId()))
+                .thenReturn(List.of(v0, v2));
+        when(auditRepository.findByUpdatedAtBetween(null, null)).thenReturn(new ArrayList<>(List.of(v0, v2)));
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> deltaService.getFieldLevelDeltas(null, null));
+        assertInstanceOf(IllegalStateException.class, exception.getCause());
+    }
+
+    /**
+     * Moves the event to its next version through the given change and returns its diff-only audit.
+     */
+    private Mt564EventAudit diffOnly(Mt564Event event, Consumer<Mt564Event> change) {
+        Object[] previous = FieldDiffs.capture(event);
+        event.setVersionNumber(event.getVersionNumber() + 1);
+        change.accept(event);
+        return Mt564EventAudit.builder()
+                .id(new Mt564EventAuditId("EVT1", "ISIN1", "BIC1", event.getVersionNumber()))
+                .businessHash(event.getBusinessHash())
+                .snapshotFormat(SnapshotFormat.DIFF_ONLY.getId())
+                .diffData(FieldDiffs.encode(previous, event))
+                .build();
+    }
+
+    private Map<String, Object[]> changes(Mt564EventAudit v1, Mt564EventAudit v2) {
+        when(auditRepository.findByUpdatedAtBetween(null, null)).thenReturn(new ArrayList<>(List.of(v1, v2)));
+        List<Mt564EventDelta> deltas = deltaService.getFieldLevelDeltas(null, null);
+        assertEquals(1, deltas.size());
+        return deltas.get(0).getChangedFields();
+    }
+
+    private Mt564EventAudit audit(Mt564Event event, byte[] diff) throws IOException {
+        Mt564EventAudit audit = Mt564EventAudit.builder()
+                .id(new Mt564EventAuditId("EVT1", "ISIN1", "BIC1", event.getVersionNumber()))
+                .businessHash(event.getBusinessHash())
+                .diffData(diff)
+                .build();
+        jsonCodec.encode(event, audit);
+        return audit;
+    }
+
+    private static Mt564Event event() {
+        return Mt564Event.builder()
+                .id(Mt564EventId.of("EVT1", "ISIN1", "BIC1"))
+                .versionNumber(0)
+                .businessHash("hash-0")
+                .corporateActionEventType("DVCA")
+                .eventCreationDatetime(LocalDateTime.of(2025, 5, 30, 10, 15, 30))
+                .recordDate(LocalDate.of(2025, 6, 1))
+                .exDate(LocalDate.of(2025, 5, 31))
+                .narrative("Initial")
+                .marketDisclosureFlag(true)
+                .createdAt(LocalDateTime.of(2025, 5, 30, 11, 0))
+                .updatedAt(LocalDateTime.of(2025, 6, 1, 9, 30))
+                .build();
+    }
+}
@@ -0,0 +1,77 @@
+package com.mt564.processing.svc.codec;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventField;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class Mt564EventComparatorTest {
+
+    @Test
+    void testIdenticalDtoHasNoChanges() {
+        Mt564EventDto dto = dto();
+        Mt564Event event = Mt564Event.of(dto);
+
+        assertEquals(0, Mt564EventComparator.diff(event, dto));
+    }
+
+    @Test
+    void testCopyChangedOnlyCallsTheSettersOfChangedFields() {
+        Mt564Event event = spy(Mt564Event.of(dto()));
+        Mt564EventDto dto = dto();
+        dto.setExDate(LocalDate.of(2025, 6, 3));
+        dto.setNarrative(null);
+        dto.setCorporateActionEventType(new String("INTR"));
+
+        int mask = Mt564EventComparator.copyChanged(event, dto);
+
+        assertEquals(Mt564EventComparator.bit(Mt564EventField.BUSINESS_HASH)
+                | Mt564EventComparator.bit(Mt564EventField.CORPORATE_ACTION_EVENT_TYPE)
+                | Mt564EventComparator.bit(Mt564EventField.EX_DATE)
+                | Mt564EventComparator.bit(Mt564EventField.NARRATIVE), mask);
+        assertEquals(LocalDate.of(2025, 6, 3), event.getExDate());
+        assertNull(event.getNarrative());
+        assertEquals(dto.getBusinessHash(), event.getBusinessHash());
+        assertSame(Mt564EventComparator.code("INTR"), event.getCorporateActionEventType());
+        verify(event, never()).setRecordDate(any());
+        verify(event, never()).setUpdatedAt(any());
+        verify(event, never()).setSafekeepingAccount(any());
+    }
+
+    @Test
+    void testValueArraysAreComparedByType() {
+        Object[] v1 = FieldDiffs.capture(Mt564Event.of(dto()));
+        Object[] v2 = v1.clone();
+        v2[Mt564EventField.RECORD_DATE.ordinal()] = LocalDate.of(2025, 6, 1);
+        v2[Mt564EventField.UPDATED_AT.ordinal()] = LocalDateTime.of(2025, 6, 1, 9, 30, 0, 1);
+        v2[Mt564EventField.ANNOUNCEMENT_DATE.ordinal()] = null;
+
+        int mask = Mt564EventComparator.diff(v1, v2);
+
+        assertEquals(Mt564EventComparator.bit(Mt564EventField.UPDATED_AT)
+                | Mt564EventComparator.bit(Mt564EventField.ANNOUNCEMENT_DATE), mask);
+    }
+
+    private static Mt564EventDto dto() {
+        return Mt564EventDto.builder()
+                .eventReference("EVT1")
+                .financialInstrumentId("ISIN1")
+                .senderBic("BIC1")
+                .corporateActionEventType("DVCA")
+                .mandatoryVoluntaryIndicator("MAND")
+                .eventCreationDatetime(LocalDateTime.of(2025, 5, 30, 10, 15, 30))
+                .recordDate(LocalDate.of(2025, 6, 1))
+                .exDate(LocalDate.of(2025, 5, 31))
+                .announcementDate(LocalDate.of(2025, 5, 20))
+                .narrative("Initial")
+                .marketDisclosureFlag(true)
+                .updatedAt(LocalDateTime.of(2025, 6, 1, 9, 30))
+                .build();
+    }
+}
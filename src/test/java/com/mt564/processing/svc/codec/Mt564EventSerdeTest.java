@@ -0,0 +1,122 @@
+package com.mt564.processing.svc.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.apache.kafka.common.errors.SerializationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Mt564EventSerdeTest {
+
+    private static final String TOPIC = "mt564-events";
+
+    private final Mt564EventSerializer serializer = new Mt564EventSerializer();
+    private final Mt564EventDeserializer deserializer = new Mt564EventDeserializer();
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    void testBinaryRoundTripKeepsEveryFieldAndNull() throws Exception {
+        Mt564EventDto event = fullEvent();
+        Mt564EventDto sparse = Mt564EventDto.builder().eventReference("EVT2").senderBic("BIC1")
+                .recordDate(LocalDate.of(1969, 12, 31)).marketDisclosureFlag(false).build();
+
+        for (Mt564EventDto original : new Mt564EventDto[]{event, sparse}) {
+            byte[] data = serializer.serialize(TOPIC, original);
+            assertEquals(Mt564EventBinaryFormat.MAGIC, data[0]);
+            Mt564EventDto decoded = deserializer.deserialize(TOPIC, data);
+            assertEquals(objectMapper.writeValueAsString(original), objectMapper.writeValueAsString(decoded));
+            assertEquals(original.getBusinessHash(), decoded.getBusinessHash());
+        }
+        assertNull(deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, null)));
+    }
+
+    @Test
+    void testJsonRecordsAreStillRead() throws Exception {
+        Mt564EventDto event = fullEvent();
+        try (JsonSerializer<Mt564EventDto> json = new JsonSerializer<>()) {
+            byte[] data = json.serialize(TOPIC, event);
+            assertEquals(objectMapper.writeValueAsString(event),
+                    objectMapper.writeValueAsString(deserializer.deserialize(TOPIC, data)));
+        }
+    }
+
+    @Test
+    void testBinaryIsLessThanHalfOfJson() throws Exception {
+        Mt564EventDto event = fullEvent();
+        int binary = serializer.serialize(TOPIC, event).length;
+        int json = objectMapper.writeValueAsBytes(event).length;
+
+        assertTrue(binary * 2 < json, "binary " + binary + " bytes, json " + json + " bytes");
+    }
+
+    @Test
+    void testCorruptedOrNewerRecordsAreRejected() {
+        byte[] data = serializer.serialize(TOPIC, fullEvent());
+
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(TOPIC, Arrays.copyOf(data, data.length / 2)));
+        byte[] newer = data.clone();
+        newer[1] = 2;
+        assertThrows(SerializationException.class, () -> deserializer.deserialize(TOPIC, newer));
+    }
+
+    @Test
+    void testFieldsAppendedByANewerProducerAreSkipped() throws Exception {
+        Mt564EventDto event = fullEvent();
+        byte[] data = serializer.serialize(TOPIC, event);
+        int known = data[2];
+        int bitmapLength = (known + 7) / 8;
+
+        // the same event written with two more fields, a string and a date-time, both set
+        BinaryWriter newer = new BinaryWriter();
+        newer.writeBytes(data, 0, 2);
+        newer.writeVarInt(known + 2);
+        newer.writeBytes(data, 3, bitmapLength);
+        for (int i = bitmapLength; i < (known + 9) / 8; i++) {
+            newer.writeByte(0);
+        }
+        newer.writeBytes(data, 3 + bitmapLength, data.length - 3 - bitmapLength);
+        newer.writeString("appended");
+        newer.writeSignedVarLong(1_750_000_000_000L);
+
+        assertEquals(objectMapper.writeValueAsString(event),
+                objectMapper.writeValueAsString(deserializer.deserialize(TOPIC, newer.toByteArray())));
+    }
+
+    private static Mt564EventDto fullEvent() {
+        return Mt564EventDto.builder()
+                .eventReference("CORP2025060100001")
+                .financialInstrumentId("US0378331005")
+                .senderBic("DEUTDEFFXXX")
+                .relatedMessageReference("RELA2025053100007")
+                .corporateActionEventId("CAEV0001")
+                .corporateActionEventType("DVCA")
+                .mandatoryVoluntaryIndicator("MAND")
+                .eventProcessingStatus("COMP")
+                .eventStatusCode("ENTL")
+                .officialCorporateActionEventId("OFFI-2025-0001")
+                .linkEventId("LINK0001")
+                .safekeepingAccount("SAFE-123456")
+                .placeOfSafekeeping("DTCYUS33")
+                .eventCreationDatetime(LocalDateTime.of(2025, 5, 30, 9, 15, 0, 123_000_000))
+                .effectiveDate(LocalDate.of(2025, 6, 10))
+                .recordDate(LocalDate.of(2025, 6, 5))
+                .exDate(LocalDate.of(2025, 6, 4))
+                .announcementDate(LocalDate.of(2025, 5, 30))
+                .responseDeadline(LocalDate.of(2025, 6, 3))
+                .generalMeetingDate(LocalDate.of(2025, 6, 20))
+                .narrative("Cash dividend of USD 0.25 per share")
+                .marketDisclosureFlag(true)
+                .createdAt(LocalDateTime.of(2025, 6, 1, 8, 0))
+                .updatedAt(LocalDateTime.of(2025, 6, 1, 8, 30, 15))
+                .build();
+    }
+}
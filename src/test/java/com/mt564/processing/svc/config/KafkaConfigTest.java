@@ -0,0 +1,78 @@
+package com.mt564.processing.svc.config;
+
+import com.mt564.processing.svc.cache.BusinessHashIndex;
+import com.mt564.processing.svc.codec.Mt564EventDeserializer;
+import com.mt564.processing.svc.codec.Mt564EventSerializer;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class KafkaConfigTest {
+
+    private final KafkaConfig config = new KafkaConfig();
+
+    @Test
+    void testListenerRunsOneConsumerPerPartitionAtMost() {
+        @SuppressWarnings("unchecked")
+        ConsumerFactory<String, Mt564EventDto> consumerFactory = mock(ConsumerFactory.class);
+        BusinessHashIndex hashIndex = mock(BusinessHashIndex.class);
+        assertEquals(12, ReflectionTestUtils.getField(config.kafkaBatchListenerContainerFactory(consumerFactory, hashIndex), "concurrency"));
+
+        ReflectionTestUtils.setField(config, "concurrency", 4);
+        assertEquals(4, ReflectionTestUtils.getField(config.kafkaBatchListenerContainerFactory(consumerFactory, hashIndex), "concurrency"));
+
+        assertEquals(ContainerProperties.AckMode.MANUAL,
+                config.kafkaBatchListenerContainerFactory(consumerFactory, hashIndex).getContainerProperties().getAckMode());
+
+        ReflectionTestUtils.setField(config, "concurrency", 32);
+        assertEquals(12, config.listenerConcurrency());
+    }
+
+    @Test
+    void testProducerBatchesCompressesAndPartitionsByEventId() {
+        Map<String, Object> producer = config.producerProperties();
+
+        assertEquals(StringSerializer.class, producer.get(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG));
+        assertEquals(JsonSerializer.class, producer.get(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG));
+        assertEquals(Mt564EventIdPartitioner.class, producer.get(ProducerConfig.PARTITIONER_CLASS_CONFIG));
+        assertEquals(20, producer.get(ProducerConfig.LINGER_MS_CONFIG));
+        assertEquals("lz4", producer.get(ProducerConfig.COMPRESSION_TYPE_CONFIG));
+
+        ReflectionTestUtils.setField(config, "valueFormat", "binary");
+        assertEquals(Mt564EventSerializer.class, config.producerProperties().get(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG));
+    }
+
+    @Test
+    void testFetchesAreSizedForAFullPoll() {
+        ReflectionTestUtils.setField(config, "maxPollRecords", 200);
+        ReflectionTestUtils.setField(config, "avgRecordBytes", 2048);
+        Map<String, Object> consumer = config.consumerProperties();
+
+        assertEquals(ErrorHandlingDeserializer.class, consumer.get(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG));
+        assertEquals(Mt564EventDeserializer.class, consumer.get(ErrorHandlingDeserializer.VALUE_DESERIALIZER_CLASS));
+        assertEquals(200, consumer.get(ConsumerConfig.MAX_POLL_RECORDS_CONFIG));
+        assertEquals(200 * 2048, consumer.get(ConsumerConfig.FETCH_MIN_BYTES_CONFIG));
+        assertEquals(ConsumerConfig.DEFAULT_MAX_PARTITION_FETCH_BYTES, consumer.get(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG));
+
+        // capped at 1 MiB, the partition fetch still holds a full poll
+        ReflectionTestUtils.setField(config, "maxPollRecords", 2000);
+        consumer = config.consumerProperties();
+        assertEquals(1024 * 1024, consumer.get(ConsumerConfig.FETCH_MIN_BYTES_CONFIG));
+        assertEquals(2000 * 2048, consumer.get(ConsumerConfig.MAX_PARTITION_FETCH_BYTES_CONFIG));
+
+        ReflectionTestUtils.setField(config, "fetchMinBytes", 1);
+        assertEquals(1, config.consumerProperties().get(ConsumerConfig.FETCH_MIN_BYTES_CONFIG));
+    }
+}
@@ -0,0 +1,81 @@
+package com.mt564.processing.svc.config;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.apache.kafka.common.Cluster;
+import org.apache.kafka.common.Node;
+import org.apache.kafka.common.PartitionInfo;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Mt564EventIdPartitionerTest {
+
+    private static final String TOPIC = "mt564-events";
+    private static final int PARTITIONS = 12;
+
+    private final Mt564EventIdPartitioner partitioner = new Mt564EventIdPartitioner();
+    private final Cluster cluster = cluster(PARTITIONS);
+
+    @Test
+    void testVersionsOfAnEventShareAPartitionWhateverTheKey() {
+        Mt564EventDto first = event("EVT1", "ISIN1", "BIC1");
+        Mt564EventDto update = event("EVT1", "ISIN1", "BIC1");
+        update.setEventStatusCode("COMP");
+
+        int partition = partition("EVT1", first);
+        assertEquals(partition, partition("other-key", update));
+        assertEquals(partition, partition(null, update));
+        assertEquals(partition, Mt564EventIdPartitioner.partition(first, PARTITIONS));
+    }
+
+    @Test
+    void testEventsOfAReferenceAreSpreadByInstrumentAndSender() {
+        // one reference for many instruments and senders does not pin a partition
+        Set<Integer> used = IntStream.range(0, 200)
+                .mapToObj(i -> partition("EVT1", event("EVT1", "ISIN" + i, "BIC" + i % 3)))
+                .collect(Collectors.toSet());
+        assertEquals(PARTITIONS, used.size());
+    }
+
+    @Test
+    void testEventsAreBalancedAcrossPartitions() {
+        int[] counts = new int[PARTITIONS];
+        int events = 12_000;
+        for (int i = 0; i < events; i++) {
+            counts[partition("EVT" + i, event("EVT" + i, "ISIN" + i % 500, "BIC" + i % 7))]++;
+        }
+        for (int count : counts) {
+            assertTrue(Math.abs(count - events / PARTITIONS) < events / PARTITIONS / 5, "Unbalanced partitions");
+        }
+    }
+
+    @Test
+    void testOtherRecordsArePartitionedByKey() {
+        byte[] key = "EVT1".getBytes(StandardCharsets.UTF_8);
+        int partition = partitioner.partition(TOPIC, "EVT1", key, "payload", null, cluster);
+        assertEquals(partition, partitioner.partition(TOPIC, "EVT1", key, "other payload", null, cluster));
+        assertEquals(0, partitioner.partition(TOPIC, null, null, "payload", null, cluster));
+    }
+
+    private int partition(String key, Mt564EventDto event) {
+        return partitioner.partition(TOPIC, key, key == null ? null : key.getBytes(StandardCharsets.UTF_8), event, null, cluster);
+    }
+
+    private static Mt564EventDto event(String reference, String instrument, String bic) {
+        return Mt564EventDto.builder().eventReference(reference).financialInstrumentId(instrument).senderBic(bic).build();
+    }
+
+    private static Cluster cluster(int partitions) {
+        Node node = new Node(0, "localhost", 9092);
+        List<PartitionInfo> infos = IntStream.range(0, partitions)
+                .mapToObj(p -> new PartitionInfo(TOPIC, p, node, new Node[]{node}, new Node[]{node}))
+                .toList();
+        return new Cluster("cluster", List.of(node), infos, Set.of(), Set.of());
+    }
+}
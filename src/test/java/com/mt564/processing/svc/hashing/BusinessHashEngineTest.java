@@ -0,0 +1,175 @@
+package com.mt564.processing.svc.hashing;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BusinessHashEngineTest {
+
+    @Test
+    void testSha256_matchesLegacyHashForEmptyDto() throws Exception {
+        Mt564EventDto dto = new Mt564EventDto();
+
+        assertEquals(legacyHash(dto), BusinessHashEngine.hash(dto, BusinessHashMode.SHA_256));
+    }
+
+    @Test
+    void testSha256_matchesLegacyHashForFullDto() throws Exception {
+        Mt564EventDto dto = fullDto();
+
+        assertEquals(legacyHash(dto), BusinessHashEngine.hash(dto, BusinessHashMode.SHA_256));
+    }
+
+    @Test
+    void testSha256_matchesLegacyHashForAllTimeFormats() throws Exception {
+        Mt564EventDto dto = fullDto();
+        LocalDateTime[] times = {
+                LocalDateTime.of(2024, 6, 10, 14, 35),
+                LocalDateTime.of(2024, 6, 10, 14, 35, 7),
+                LocalDateTime.of(2024, 6, 10, 0, 0, 0, 120_000_000),
+                LocalDateTime.of(2024, 6, 10, 9, 5, 0, 123_456_000),
+                LocalDateTime.of(2024, 6, 10, 9, 5, 59, 123_456_789),
+                LocalDateTime.of(999, 1, 2, 3, 4),
+                LocalDateTime.of(12024, 1, 2, 3, 4),
+                LocalDateTime.of(-5, 1, 2, 3, 4)
+        };
+        for (LocalDateTime time : times) {
+            dto.setEventCreationDatetime(time);
+            dto.setRecordDate(time.toLocalDate());
+            assertEquals(legacyHash(dto), BusinessHashEngine.hash(dto, BusinessHashMode.SHA_256), time.toString());
+        }
+    }
+
+    @Test
+    void testSha256_matchesLegacyHashForNonAsciiAndLongNarrative() throws Exception {
+        Mt564EventDto dto = fullDto();
+        StringBuilder narrative = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            narrative.append("Dividende brute éligible € ").append(i).append(" 📈 ");
+        }
+        // unpaired surrogates are replaced with '?' by String.getBytes(UTF_8)
+        narrative.append('\ud83d').append("x").append('\udcc8');
+        dto.setNarrative(narrative.toString());
+
+        assertEquals(legacyHash(dto), BusinessHashEngine.hash(dto, BusinessHashMode.SHA_256));
+        assertEquals(legacyHash(dto), new BusinessHashEngine.HashState(7).hash(dto, BusinessHashMode.SHA_256));
+    }
+
+    @Test
+    void testMurmur3_isIndependentOfBufferSize() {
+        Mt564EventDto dto = fullDto();
+        dto.setNarrative("x".repeat(1000));
+
+        String expected = BusinessHashEngine.hash(dto, BusinessHashMode.MURMUR3_128);
+
+        assertEquals(32, expected.length());
+        for (int size = 32; size < 80; size++) {
+            assertEquals(expected, new BusinessHashEngine.HashState(size).hash(dto, BusinessHashMode.MURMUR3_128));
+        }
+        assertNotEquals(expected, BusinessHashEngine.hash(dto, BusinessHashMode.SHA_256));
+    }
+
+    @Test
+    void testMurmur3_knownVector() {
+        Murmur3x64Digest digest = new Murmur3x64Digest();
+        byte[] input = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[16];
+
+        digest.update(input, 0, input.length);
+        digest.digest(out);
+
+        assertEquals(MURMUR_QUICK_BROWN_FOX, HexCodec.encode(out));
+    }
+
+    @Test
+    void testGetBusinessHash_isMemoizedAndResetBySetters() {
+        Mt564EventDto dto = fullDto();
+
+        String first = dto.getBusinessHash();
+        assertSame(first, dto.getBusinessHash());
+
+        dto.setEventStatusCode("PREC");
+        String second = dto.getBusinessHash();
+        assertNotEquals(first, second);
+
+        // key and timestamp attributes are not part of the hash
+        dto.setEventReference("OTHER");
+        dto.setUpdatedAt(LocalDateTime.now());
+        assertSame(second, dto.getBusinessHash());
+    }
+
+    @Test
+    void testHexCodec_parseLong() {
+        assertEquals(0x0123456789abcdefL, HexCodec.parseLong("0123456789abcdef", 0));
+        assertEquals(-1L, HexCodec.parseLong("00ffffffffffffffff", 2));
+        assertThrows(IllegalArgumentException.class, () -> HexCodec.parseLong("0123", 0));
+    }
+
+    private static final String MURMUR_QUICK_BROWN_FOX = "6c1b07bc7bbc4be347939ac4a93c437a";
+
+    private static Mt564EventDto fullDto() {
+        Mt564EventDto dto = new Mt564EventDto();
+        dto.setEventReference("EVT001");
+        dto.setFinancialInstrumentId("ISIN001");
+        dto.setSenderBic("BNPAFRPPXXX");
+        dto.setRelatedMessageReference("REL001");
+        dto.setCorporateActionEventId("CAEV001");
+        dto.setCorporateActionEventType("DVCA");
+        dto.setMandatoryVoluntaryIndicator("MAND");
+        dto.setEventProcessingStatus("COMP");
+        dto.setEventStatusCode("ENTL");
+        dto.setOfficialCorporateActionEventId("OFFI001");
+        dto.setLinkEventId("LINK001");
+        dto.setSafekeepingAccount("SAFE001");
+        dto.setPlaceOfSafekeeping("PSTI001");
+        dto.setEventCreationDatetime(LocalDateTime.of(2024, 6, 10, 14, 35, 0));
+        dto.setEffectiveDate(LocalDate.of(2024, 6, 1));
+        dto.setRecordDate(LocalDate.of(2024, 6, 2));
+        dto.setExDate(LocalDate.of(2024, 6, 3));
+        dto.setAnnouncementDate(LocalDate.of(2024, 6, 4));
+        dto.setResponseDeadline(LocalDate.of(2024, 6, 5));
+        dto.setGeneralMeetingDate(LocalDate.of(2024, 6, 6));
+        dto.setNarrative("Cash dividend");
+        dto.setMarketDisclosureFlag(Boolean.TRUE);
+        return dto;
+    }
+
+    // The implementation Mt564EventDto.getBusinessHash() had before BusinessHashEngine was introduced.
+    private static String legacyHash(Mt564EventDto dto) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        String input = String.join("|",
+                Optional.ofNullable(dto.getRelatedMessageReference()).orElse(""),
+                Optional.ofNullable(dto.getCorporateActionEventId()).orElse(""),
+                Optional.ofNullable(dto.getCorporateActionEventType()).orElse(""),
+                Optional.ofNullable(dto.getMandatoryVoluntaryIndicator()).orElse(""),
+                Optional.ofNullable(dto.getEventProcessingStatus()).orElse(""),
+                Optional.ofNullable(dto.getEventStatusCode()).orElse(""),
+                Optional.ofNullable(dto.getOfficialCorporateActionEventId()).orElse(""),
+                Optional.ofNullable(dto.getLinkEventId()).orElse(""),
+                Optional.ofNullable(dto.getSafekeepingAccount()).orElse(""),
+                Optional.ofNullable(dto.getPlaceOfSafekeeping()).orElse(""),
+                String.valueOf(dto.getEventCreationDatetime()),
+                String.valueOf(dto.getEffectiveDate()),
+                String.valueOf(dto.getRecordDate()),
+                String.valueOf(dto.getExDate()),
+                String.valueOf(dto.getAnnouncementDate()),
+                String.valueOf(dto.getResponseDeadline()),
+                String.valueOf(dto.getGeneralMeetingDate()),
+                Optional.ofNullable(dto.getNarrative()).orElse(""),
+                String.valueOf(dto.getMarketDisclosureFlag())
+        );
+        byte[] hashBytes = digest.digest(input.getBytes(StandardCharsets.UTF_8));
+        StringBuilder hexString = new StringBuilder();
+        for (byte b : hashBytes) {
+            hexString.append(String.format("%02x", b));
+        }
+        return hexString.toString();
+    }
+}
@@ -0,0 +1,182 @@
+package com.mt564.processing.svc.jobs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.BusinessHashIndex;
+import com.mt564.processing.svc.config.JacksonConfig;
+import com.mt564.processing.svc.model.dto.FileIngestReport;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.service.BatchDuplicateCollapser;
+import com.mt564.processing.svc.service.DeadLetterService;
+import com.mt564.processing.svc.service.PartitionedEventProcessingService;
+import com.mt564.processing.svc.service.PoisonRecordIsolator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class Mt564FileIngestJobTest {
+
+    private static final int EVENTS = 200;
+
+    @TempDir
+    Path dir;
+
+    private final ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+    private final PartitionedEventProcessingService eventService = mock(PartitionedEventProcessingService.class);
+    private final BusinessHashIndex hashIndex = mock(BusinessHashIndex.class);
+    private final PoisonRecordIsolator poisonRecordIsolator = mock(PoisonRecordIsolator.class);
+    private final DeadLetterService deadLetterService = mock(DeadLetterService.class);
+    private final List<String> persisted = new ArrayList<>();
+
+    private Mt564FileIngestJob job;
+
+    @BeforeEach
+    void setUp() {
+        job = new Mt564FileIngestJob(objectMapper, eventService, hashIndex,
+                new BatchDuplicateCollapser(new SimpleMeterRegistry()), poisonRecordIsolator, deadLetterService,
+                new SimpleMeterRegistry());
+        // a few events per chunk, several chunks parsed at once
+        ReflectionTestUtils.setField(job, "chunkBytes", 1024);
+        ReflectionTestUtils.setField(job, "parallelism", 3);
+        ReflectionTestUtils.setField(job, "batchSize", 7);
+        when(hashIndex.filterChanged(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        doAnswer(invocation -> {
+            List<Mt564EventDto> batch = invocation.getArgument(0);
+            assertTrue(batch.size() <= 7);
+            batch.forEach(event -> persisted.add(event.getEventReference()));
+            return List.of();
+        }).when(eventService).process(anyList());
+    }
+
+    @Test
+    void testPlainFileIsPersistedInFileOrder() throws IOException {
+        Path file = dir.resolve("feed.ndjson");
+        Files.write(file, feed());
+
+        assertReport(job.ingest(file));
+    }
+
+    @Test
+    void testGzippedFileIsPersistedInFileOrder() throws IOException {
+        Path file = dir.resolve("feed.ndjson.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(file))) {
+            out.write(feed());
+        }
+
+        assertReport(job.ingest(file));
+    }
+
+    @Test
+    void testLineLongerThanAChunkIsKeptWhole() throws IOException {
+        Path file = dir.resolve("feed.ndjson");
+        Mt564EventDto event = event(0);
+        event.setNarrative("x".repeat(5000));
+        Files.write(file, (objectMapper.writeValueAsString(event) + "\n" + objectMapper.writeValueAsString(event(1)))
+                .getBytes(StandardCharsets.UTF_8));
+
+        FileIngestReport report = job.ingest(file);
+
+        assertEquals(List.of("EVT0", "EVT1"), persisted);
+        assertEquals(0, report.getBadLines());
+    }
+
+    @Test
+    void testFailedBatchGoesThroughPoisonIsolation() throws IOException {
+        Path file = dir.resolve("feed.ndjson");
+        Files.write(file, (objectMapper.writeValueAsString(event(0)) + "\n").getBytes(StandardCharsets.UTF_8));
+        doThrow(new IllegalStateException("constraint violation")).when(eventService).process(anyList());
+        when(poisonRecordIsolator.isolate(anyList(), isNull(), any())).thenReturn(1);
+
+        FileIngestReport report = job.ingest(file);
+
+        assertEquals(1, report.getDeadLettered());
+        assertEquals(0, report.getPersisted());
+        verify(poisonRecordIsolator).isolate(argThat(events -> events.size() == 1), isNull(), any(IllegalStateException.class));
+        verify(hashIndex).externalWriteCommitted();
+    }
+
+    @Test
+    void testLatestCopyOfAnEventWinsWhateverItsPositionInTheFile() throws IOException {
+        Path file = dir.resolve("feed.ndjson");
+        Mt564EventDto newer = event(0);
+        newer.setRecordDate(LocalDate.of(2025, 6, 2));
+        newer.setUpdatedAt(LocalDateTime.of(2025, 6, 1, 11, 0));
+        Mt564EventDto older = event(0);
+        older.setUpdatedAt(LocalDateTime.of(2025, 6, 1, 10, 0));
+        List<LocalDate> recordDates = new ArrayList<>();
+        doAnswer(invocation -> {
+            List<Mt564EventDto> batch = invocation.getArgument(0);
+            batch.forEach(event -> recordDates.add(event.getRecordDate()));
+            return List.of();
+        }).when(eventService).process(anyList());
+        // both copies in one chunk
+        ReflectionTestUtils.setField(job, "chunkBytes", 64 * 1024);
+        Files.write(file, (objectMapper.writeValueAsString(newer) + "\n" + objectMapper.writeValueAsString(older))
+                .getBytes(StandardCharsets.UTF_8));
+
+        FileIngestReport report = job.ingest(file);
+
+        assertEquals(List.of(LocalDate.of(2025, 6, 2)), recordDates);
+        assertEquals(2, report.getEvents());
+        assertEquals(1, report.getPersisted());
+    }
+
+    private void assertReport(FileIngestReport report) {
+        assertEquals(IntStream.range(0, EVENTS).mapToObj(i -> "EVT" + i).toList(), persisted);
+        assertEquals(EVENTS, report.getEvents());
+        assertEquals(EVENTS, report.getPersisted());
+        assertEquals(1, report.getBadLines());
+        assertEquals(1, report.getDeadLettered());
+        assertTrue(report.getChunks().size() > 10);
+        // one generation of the hash index per batch of 7
+        verify(hashIndex, times(report.getChunks().stream().mapToInt(chunk -> (int) (chunk.getEvents() + 6) / 7).sum()))
+                .externalWriteCommitted();
+        assertEquals(feed().length, report.getChunks().stream().mapToLong(FileIngestReport.Chunk::getBytes).sum());
+        verify(deadLetterService).record(eq(Mt564FileIngestJob.DEAD_LETTER_SOURCE), startsWith("feed.ndjson"),
+                eq("{\"eventReference\": broken"), any(), eq(1));
+    }
+
+    /**
+     * EVENTS events, with a blank line, a CRLF line, an invalid line and no line feed after the last line.
+     */
+    private byte[] feed() {
+        StringBuilder feed = new StringBuilder();
+        try {
+            for (int i = 0; i < EVENTS; i++) {
+                feed.append(objectMapper.writeValueAsString(event(i))).append(i == 50 ? "\r\n" : "\n");
+                if (i == 20) {
+                    feed.append("\n");
+                }
+                if (i == 120) {
+                    feed.append("{\"eventReference\": broken\n");
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        feed.setLength(feed.length() - 1);
+        return feed.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Mt564EventDto event(int i) {
+        return Mt564EventDto.builder().eventReference("EVT" + i).financialInstrumentId("ISIN" + i).senderBic("BIC1")
+                .corporateActionEventType("DVCA").recordDate(LocalDate.of(2025, 6, 1)).build();
+    }
+}
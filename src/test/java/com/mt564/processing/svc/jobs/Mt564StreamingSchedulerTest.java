@@ -0,0 +1,269 @@
+package com.mt564.processing.svc.jobs;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.service.DeadLetterService;
+import com.mt564.processing.svc.service.JobStateService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class Mt564StreamingSchedulerTest {
+
+    @SuppressWarnings("unchecked")
+    private final KafkaTemplate<String, Mt564EventDto> kafkaTemplate = mock(KafkaTemplate.class);
+    private final DeadLetterService deadLetterService = mock(DeadLetterService.class);
+    private final JobStateService jobStateService = mock(JobStateService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private Mt564StreamingScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = spy(new Mt564StreamingScheduler(mock(WebClient.class), kafkaTemplate, deadLetterService,
+                jobStateService, meterRegistry));
+        ReflectionTestUtils.setField(scheduler, "kafkaTopic", "mt564-events");
+        ReflectionTestUtils.setField(scheduler, "maxInFlight", 4);
+        ReflectionTestUtils.setField(scheduler, "sendRetries", 2);
+        ReflectionTestUtils.setField(scheduler, "retryBackoff", Duration.ofMillis(1));
+    }
+
+    @Test
+    void testSendsInFlightAreBoundedAndUpstreamFollowsAcks() throws Exception {
+        List<CompletableFuture<SendResult<String, Mt564EventDto>>> pending = new CopyOnWriteArrayList<>();
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenAnswer(invocation -> {
+            CompletableFuture<SendResult<String, Mt564EventDto>> future = new CompletableFuture<>();
+            pending.add(future);
+            return future;
+        });
+        int[] requested = {0};
+        Flux<Mt564EventDto> events = Flux.range(0, 20).map(Mt564StreamingSchedulerTest::event)
+                .doOnRequest(n -> requested[0] += (int) Math.min(n, 1000));
+
+        CompletableFuture<Mt564StreamingScheduler.IngestRun> run = scheduler.publish(events).toFuture();
+
+        assertEquals(4, pending.size());
+        assertEquals(4, requested[0]);
+        for (int acked = 0; acked < 20; acked++) {
+            pending.get(acked).complete(null);
+            // one more event is requested and sent per acknowledgement, never more than 4 unacknowledged
+            assertEquals(Math.min(20, acked + 5), pending.size());
+            assertTrue(pending.size() - (acked + 1) <= 4);
+        }
+
+        Mt564StreamingScheduler.IngestRun stats = run.get(5, TimeUnit.SECONDS);
+        assertEquals(20, stats.received.get());
+        assertEquals(20, stats.sent.get());
+        assertEquals(20, meterRegistry.counter("mt564.ingest.events", "result", "sent").count());
+        verifyNoInteractions(deadLetterService);
+    }
+
+    @Test
+    void testFailedSendIsRetriedThenDeadLettered() throws Exception {
+        // EVT0 fails once then succeeds, EVT1 always fails, EVT2 is rejected by the producer
+        when(kafkaTemplate.send(anyString(), eq("EVT0"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("expired")))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(anyString(), eq("EVT1"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new TimeoutException("expired")));
+        when(kafkaTemplate.send(anyString(), eq("EVT2"), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RecordTooLargeException("too large")));
+
+        Mt564StreamingScheduler.IngestRun stats = scheduler.publish(Flux.range(0, 3).map(Mt564StreamingSchedulerTest::event))
+                .toFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, stats.sent.get());
+        assertEquals(2, stats.deadLettered.get());
+        assertEquals(3, stats.retries.get());
+        verify(kafkaTemplate, times(2)).send(anyString(), eq("EVT0"), any());
+        verify(kafkaTemplate, times(3)).send(anyString(), eq("EVT1"), any());
+        verify(kafkaTemplate, times(1)).send(anyString(), eq("EVT2"), any());
+        verify(deadLetterService).record(eq(Mt564StreamingScheduler.DEAD_LETTER_SOURCE), eq("EVT1"), any(),
+                any(TimeoutException.class), eq(3));
+        verify(deadLetterService).record(eq(Mt564StreamingScheduler.DEAD_LETTER_SOURCE), eq("EVT2"), any(),
+                any(RecordTooLargeException.class), eq(1));
+    }
+
+    @Test
+    void testSendThrowingBeforeReturningItsFutureIsNotLeftInFlight() throws Exception {
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenThrow(new TimeoutException("metadata not available"));
+
+        Mt564StreamingScheduler.IngestRun stats = scheduler.publish(Flux.range(0, 2).map(Mt564StreamingSchedulerTest::event))
+                .toFuture().get(5, TimeUnit.SECONDS);
+
+        assertEquals(2, stats.deadLettered.get());
+        verify(kafkaTemplate, times(6)).send(anyString(), anyString(), any());
+        assertEquals(0, meterRegistry.get("mt564.ingest.in_flight").gauge().value());
+    }
+
+    @Test
+    void testUpstreamFailureWaitsForTheEventsInFlight() {
+        CompletableFuture<SendResult<String, Mt564EventDto>> pending = new CompletableFuture<>();
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(pending);
+
+        CompletableFuture<Mt564StreamingScheduler.IngestRun> run = scheduler.publish(
+                Flux.concat(Flux.range(0, 2).map(Mt564StreamingSchedulerTest::event), Flux.error(new IllegalStateException("reset"))))
+                .toFuture();
+
+        assertFalse(run.isDone());
+        pending.complete(null);
+        assertTrue(run.isCompletedExceptionally());
+        assertEquals(2, meterRegistry.counter("mt564.ingest.events", "result", "sent").count());
+    }
+
+    @Test
+    void testRunWhileOneIsInFlightIsSkipped() {
+        Sinks.Many<Mt564EventDto> feed = Sinks.many().unicast().onBackpressureBuffer();
+        doReturn(feed.asFlux()).when(scheduler).fetch(any());
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+
+        scheduler.fetchAndStreamEvents();
+        scheduler.fetchAndStreamEvents();
+        verify(scheduler, times(1)).fetch(any());
+        assertEquals(1, meterRegistry.counter("mt564.ingest.runs.skipped").count());
+
+        feed.tryEmitComplete();
+        verify(scheduler, timeout(5000).times(1)).fetch(any());
+        // the next run after completion starts normally
+        doReturn(Flux.empty()).when(scheduler).fetch(any());
+        awaitIdle();
+        scheduler.fetchAndStreamEvents();
+        verify(scheduler, times(2)).fetch(any());
+    }
+
+    @Test
+    void testRunsWhileOneIsInFlightAreQueuedAsOne() {
+        ReflectionTestUtils.setField(scheduler, "overlap", "queue");
+        Sinks.Many<Mt564EventDto> feed = Sinks.many().unicast().onBackpressureBuffer();
+        doReturn(feed.asFlux()).doReturn(Flux.empty()).when(scheduler).fetch(any());
+
+        scheduler.fetchAndStreamEvents();
+        scheduler.fetchAndStreamEvents();
+        scheduler.fetchAndStreamEvents();
+        verify(scheduler, times(1)).fetch(any());
+
+        feed.tryEmitComplete();
+        verify(scheduler, timeout(5000).times(2)).fetch(any());
+        awaitIdle();
+        verify(scheduler, times(2)).fetch(any());
+    }
+
+    @Test
+    void testRunIsSkippedWhenAnotherNodeHoldsTheLock() {
+        ReflectionTestUtils.setField(scheduler, "clusterLock", true);
+        when(jobStateService.tryLock(eq(Mt564StreamingScheduler.JOB_NAME), any())).thenReturn(false);
+
+        scheduler.fetchAndStreamEvents();
+
+        verify(scheduler, never()).fetch(any());
+        verify(jobStateService, never()).unlock(any());
+        assertEquals(1, meterRegistry.counter("mt564.ingest.runs.skipped").count());
+    }
+
+    @Test
+    void testLeaseIsReleasedWhenTheRunCannotStart() {
+        ReflectionTestUtils.setField(scheduler, "incremental", true);
+        ReflectionTestUtils.setField(scheduler, "clusterLock", true);
+        when(jobStateService.tryLock(eq(Mt564StreamingScheduler.JOB_NAME), any())).thenReturn(true);
+        when(jobStateService.watermark(Mt564StreamingScheduler.JOB_NAME)).thenThrow(new IllegalStateException("db down"));
+
+        scheduler.fetchAndStreamEvents();
+
+        verify(scheduler, never()).fetch(any());
+        verify(jobStateService).unlock(Mt564StreamingScheduler.JOB_NAME);
+        // no heartbeat left renewing the lease
+        verify(jobStateService, after(100).times(1)).tryLock(eq(Mt564StreamingScheduler.JOB_NAME), any());
+    }
+
+    @Test
+    void testRunIsAbortedWhenTheLeaseCannotBeRenewed() {
+        ReflectionTestUtils.setField(scheduler, "incremental", true);
+        ReflectionTestUtils.setField(scheduler, "clusterLock", true);
+        ReflectionTestUtils.setField(scheduler, "lease", Duration.ofMillis(300));
+        when(jobStateService.tryLock(eq(Mt564StreamingScheduler.JOB_NAME), any())).thenReturn(true, false);
+        when(jobStateService.watermark(Mt564StreamingScheduler.JOB_NAME)).thenReturn(Optional.empty());
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Sinks.Many<Mt564EventDto> feed = Sinks.many().unicast().onBackpressureBuffer();
+        doReturn(feed.asFlux().doOnCancel(() -> cancelled.set(true))).when(scheduler).fetch(any());
+
+        scheduler.fetchAndStreamEvents();
+
+        awaitIdle();
+        assertTrue(cancelled.get());
+        verify(jobStateService, times(2)).tryLock(eq(Mt564StreamingScheduler.JOB_NAME), any());
+        verify(jobStateService).unlock(Mt564StreamingScheduler.JOB_NAME);
+        verify(jobStateService, never()).advanceWatermark(any(), any());
+    }
+
+    @Test
+    void testIncrementalRunSendsTheWatermarkAndAdvancesIt() {
+        ReflectionTestUtils.setField(scheduler, "incremental", true);
+        ReflectionTestUtils.setField(scheduler, "clusterLock", true);
+        LocalDateTime watermark = LocalDateTime.of(2025, 6, 1, 12, 0);
+        when(jobStateService.tryLock(eq(Mt564StreamingScheduler.JOB_NAME), any())).thenReturn(true);
+        when(jobStateService.watermark(Mt564StreamingScheduler.JOB_NAME)).thenReturn(Optional.of(watermark));
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        Mt564EventDto older = event(0);
+        older.setUpdatedAt(watermark.plusMinutes(5));
+        Mt564EventDto newer = event(1);
+        newer.setUpdatedAt(watermark.plusMinutes(9));
+        doReturn(Flux.just(newer, older)).when(scheduler).fetch(any());
+
+        scheduler.fetchAndStreamEvents();
+
+        verify(scheduler).fetch(watermark.minusMinutes(1));
+        verify(jobStateService, timeout(5000)).advanceWatermark(Mt564StreamingScheduler.JOB_NAME, watermark.plusMinutes(9));
+        verify(jobStateService, timeout(5000)).unlock(Mt564StreamingScheduler.JOB_NAME);
+    }
+
+    @Test
+    void testFailedIncrementalRunKeepsTheWatermark() {
+        ReflectionTestUtils.setField(scheduler, "incremental", true);
+        when(jobStateService.watermark(Mt564StreamingScheduler.JOB_NAME)).thenReturn(Optional.empty());
+        when(kafkaTemplate.send(anyString(), anyString(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        Mt564EventDto received = event(0);
+        received.setUpdatedAt(LocalDateTime.of(2025, 6, 1, 12, 0));
+        doReturn(Flux.concat(Flux.just(received), Flux.error(new IllegalStateException("reset")))).when(scheduler).fetch(any());
+
+        scheduler.fetchAndStreamEvents();
+
+        verify(scheduler).fetch(null);
+        awaitIdle();
+        verify(jobStateService, never()).advanceWatermark(any(), any());
+    }
+
+    private void awaitIdle() {
+        AtomicBoolean running = (AtomicBoolean) ReflectionTestUtils.getField(scheduler, "running");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (running.get()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Ingest run did not complete");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static Mt564EventDto event(int i) {
+        return Mt564EventDto.builder().eventReference("EVT" + i).financialInstrumentId("ISIN1").senderBic("BIC1").build();
+    }
+}
@@ -0,0 +1,113 @@
+package com.mt564.processing.svc.processor;
+
+import com.mt564.processing.svc.cache.BusinessHashIndex;
+import com.mt564.processing.svc.codec.Mt564EventDeserializer;
+import com.mt564.processing.svc.codec.Mt564EventSerializer;
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.service.BatchDuplicateCollapser;
+import com.mt564.processing.svc.service.DeadLetterService;
+import com.mt564.processing.svc.service.PartitionedEventProcessingService;
+import com.mt564.processing.svc.service.PoisonRecordIsolator;
+import com.mt564.processing.svc.service.ProcessedOffsetLedger;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class Mt564EventsKafkaBatchProcessorTest {
+
+    private static final String TOPIC = "mt564-events";
+
+    private final PartitionedEventProcessingService eventService = mock(PartitionedEventProcessingService.class);
+    private final BusinessHashIndex hashIndex = mock(BusinessHashIndex.class);
+    private final DeadLetterService deadLetterService = mock(DeadLetterService.class);
+    private final Acknowledgment acknowledgment = mock(Acknowledgment.class);
+
+    private final ErrorHandlingDeserializer<Mt564EventDto> deserializer = new ErrorHandlingDeserializer<>(new Mt564EventDeserializer());
+    private final byte[] corrupt = Arrays.copyOf(new Mt564EventSerializer().serialize(TOPIC, event("EVT2")), 10);
+
+    private Mt564EventsKafkaBatchProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        processor = new Mt564EventsKafkaBatchProcessor(eventService, hashIndex,
+                new BatchDuplicateCollapser(new SimpleMeterRegistry()), mock(ProcessedOffsetLedger.class),
+                mock(PoisonRecordIsolator.class), deadLetterService);
+        ReflectionTestUtils.setField(processor, "ledgerEnabled", false);
+        when(hashIndex.filterChanged(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void testUnreadableRecordsAreDeadLetteredAndTheRestProcessed() {
+        Mt564EventDto good = event("EVT1");
+
+        processor.consumeBatch(List.of(record(0, new Mt564EventSerializer().serialize(TOPIC, good)), record(1, corrupt)), acknowledgment);
+
+        verify(deadLetterService).store(eq(Mt564EventsKafkaBatchProcessor.DEAD_LETTER_SOURCE), eq(TOPIC + "-0@1"),
+                aryEq(corrupt), any(SerializationException.class), eq(1));
+        verify(eventService).process(argThat(events -> events.size() == 1
+                && events.get(0).getEventReference().equals("EVT1")), isNull());
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void testStaleCopyIsNotWrittenWhenTheLatestCopyIsUnchanged() {
+        Mt564EventDto older = event("EVT1");
+        older.setNarrative("Dividend 0.10");
+        older.setUpdatedAt(LocalDateTime.of(2025, 6, 1, 10, 0));
+        Mt564EventDto newer = event("EVT1");
+        newer.setNarrative("Dividend 0.12");
+        newer.setUpdatedAt(LocalDateTime.of(2025, 6, 1, 11, 0));
+        // the index already holds the state of the newer copy
+        when(hashIndex.filterChanged(anyList())).thenAnswer(invocation -> ((List<Mt564EventDto>) invocation.getArgument(0))
+                .stream().filter(event -> event != newer).toList());
+
+        processor.consumeBatch(List.of(new ConsumerRecord<>(TOPIC, 0, 0, "EVT1", older),
+                new ConsumerRecord<>(TOPIC, 0, 1, "EVT1", newer)), acknowledgment);
+
+        verify(hashIndex).filterChanged(List.of(newer));
+        verifyNoInteractions(eventService);
+        verify(acknowledgment).acknowledge();
+    }
+
+    @Test
+    void testBatchIsNotAcknowledgedWhenTheDeadLetterCannotBeStored() {
+        doThrow(new IllegalStateException("dead letter table unavailable"))
+                .when(deadLetterService).store(any(), any(), any(), any(), anyInt());
+
+        assertThrows(IllegalStateException.class, () -> processor.consumeBatch(List.of(record(0, corrupt)), acknowledgment));
+
+        verifyNoInteractions(eventService);
+        verify(acknowledgment, never()).acknowledge();
+    }
+
+    /**
+     * A record as the container hands it to the listener, its value read by the deserializer of the consumer.
+     */
+    private ConsumerRecord<String, Mt564EventDto> record(long offset, byte[] data) {
+        RecordHeaders headers = new RecordHeaders();
+        Mt564EventDto value = deserializer.deserialize(TOPIC, headers, data);
+        return new ConsumerRecord<>(TOPIC, 0, offset, 0L, TimestampType.CREATE_TIME, 0, data.length, "EVT" + offset,
+                value, headers, Optional.empty());
+    }
+
+    private static Mt564EventDto event(String reference) {
+        return Mt564EventDto.builder().eventReference(reference).financialInstrumentId("ISIN1").senderBic("BIC1").build();
+    }
+}
@@ -0,0 +1,98 @@
+package com.mt564.processing.svc.repository;
+
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Covers the PostgreSQL ON CONFLICT flavour of the JDBC batch upsert, which H2 cannot run, against a mocked template.
+ */
+class JdbcMt564EventStorePostgresTest {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate = mock(NamedParameterJdbcTemplate.class);
+    private JdbcMt564EventStore eventStore;
+
+    @BeforeEach
+    void setUp() {
+        eventStore = new JdbcMt564EventStore(jdbcTemplate);
+        ReflectionTestUtils.setField(eventStore, "dialect", "postgres");
+        ReflectionTestUtils.setField(eventStore, "batchSize", 500);
+        eventStore.init();
+    }
+
+    @Test
+    void testUpsertIsGuardedByExpectedVersion() {
+        Mt564Event event = event("hash-1", 3);
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class))).thenReturn(new int[]{1});
+
+        eventStore.saveEvents(List.of(event));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<SqlParameterSource[]> batch = ArgumentCaptor.forClass(SqlParameterSource[].class);
+        verify(jdbcTemplate).batchUpdate(sql.capture(), batch.capture());
+        assertTrue(sql.getValue().startsWith("INSERT INTO mt564_events ("));
+        assertTrue(sql.getValue().contains("ON CONFLICT (event_reference, financial_instrument_id, sender_bic) DO UPDATE SET "
+                + "version_number = EXCLUDED.version_number"));
+        assertTrue(sql.getValue().endsWith(" WHERE mt564_events.version_number = :expectedVersion"));
+        assertEquals(3, batch.getValue()[0].getValue("expectedVersion"));
+        assertEquals(4, batch.getValue()[0].getValue("versionNumber"));
+        assertEquals(4, event.getVersionNumber());
+        verify(jdbcTemplate, never()).query(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+    }
+
+    @Test
+    void testSkippedRowIsRejected() {
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class))).thenReturn(new int[]{0});
+
+        assertThrows(OptimisticLockingFailureException.class, () -> eventStore.saveEvents(List.of(event("hash-1", 3))));
+    }
+
+    @Test
+    void testSuccessNoInfoIsVerifiedByReadingBack() {
+        Mt564Event event = event("hash-1", 3);
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{Statement.SUCCESS_NO_INFO});
+        doReturn(List.of(new Mt564EventHashView(event.getId(), "hash-1", 4)))
+                .when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+
+        eventStore.saveEvents(List.of(event));
+
+        assertEquals(4, event.getVersionNumber());
+    }
+
+    @Test
+    void testSuccessNoInfoOnSkippedRowIsRejected() {
+        Mt564Event event = event("hash-1", 3);
+        when(jdbcTemplate.batchUpdate(anyString(), any(SqlParameterSource[].class)))
+                .thenReturn(new int[]{Statement.SUCCESS_NO_INFO});
+        // a concurrent writer moved the row to version 7, the guarded upsert left it untouched
+        doReturn(List.of(new Mt564EventHashView(event.getId(), "hash-other", 7)))
+                .when(jdbcTemplate).query(anyString(), any(SqlParameterSource.class), any(RowMapper.class));
+
+        assertThrows(OptimisticLockingFailureException.class, () -> eventStore.saveEvents(List.of(event)));
+        assertEquals(3, event.getVersionNumber());
+    }
+
+    private static Mt564Event event(String hash, Integer version) {
+        return Mt564Event.builder()
+                .id(Mt564EventId.of("REF1", "ISIN1", "BICAAAAA"))
+                .versionNumber(version)
+                .businessHash(hash)
+                .build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.mt564.processing.svc.repository;
+
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the H2 MERGE flavour of the JDBC batch upsert against the schema generated from the entities.
+ */
+@DataJpaTest
+@Import(JdbcMt564EventStore.class)
+@TestPropertySource(properties = {"app.persistence.mode=jdbc", "app.persistence.jdbc-batch-size=2"})
+class JdbcMt564EventStoreTest {
+
+    @Autowired
+    private JdbcMt564EventStore eventStore;
+
+    @Autowired
+    private Mt564EventAuditRepository auditRepository;
+
+    @Test
+    void testInsertThenUpdateIncrementsVersion() {
+        Mt564Event first = event("REF1", "hash-1");
+        Mt564Event second = event("REF2", "hash-2");
+        Mt564Event third = event("REF3", "hash-3");
+
+        List<Mt564Event> inserted = eventStore.saveEvents(List.of(first, second, third));
+
+        assertEquals(3, inserted.size());
+        inserted.forEach(e -> assertEquals(0, e.getVersionNumber()));
+
+        Mt564Event loaded = eventStore.findAllByIdIn(List.of(first.getId())).get(0);
+        assertEquals("hash-1", loaded.getBusinessHash());
+        assertEquals(LocalDate.of(2025, 6, 1), loaded.getRecordDate());
+        assertEquals("Narrative REF1", loaded.getNarrative());
+        assertNotNull(loaded.getCreatedAt());
+
+        loaded.setBusinessHash("hash-1b");
+        loaded.setNarrative("Changed");
+        eventStore.saveEvents(List.of(loaded));
+
+        assertEquals(1, loaded.getVersionNumber());
+        Mt564EventHashView view = eventStore.findHashViewsByIdIn(List.of(first.getId(), second.getId())).stream()
+                .filter(v -> v.getId().equals(first.getId()))
+                .findFirst().orElseThrow();
+        assertEquals("hash-1b", view.getBusinessHash());
+        assertEquals(1, view.getVersionNumber());
+        assertEquals("Changed", eventStore.findAllByIdIn(List.of(first.getId())).get(0).getNarrative());
+    }
+
+    @Test
+    void testStaleVersionIsRejected() {
+        eventStore.saveEvents(List.of(event("REF1", "hash-1")));
+        Mt564Event loaded = eventStore.findAllByIdIn(List.of(Mt564EventId.of("REF1", "ISIN1", "BICAAAAA"))).get(0);
+        loaded.setVersionNumber(5);
+        loaded.setBusinessHash("hash-stale");
+
+        assertThrows(OptimisticLockingFailureException.class, () -> eventStore.saveEvents(List.of(loaded)));
+        assertEquals("hash-1", eventStore.findHashViewsByIdIn(List.of(loaded.getId())).get(0).getBusinessHash());
+    }
+
+    @Test
+    void testSaveAudits() {
+        eventStore.saveAudits(List.of(Mt564EventAudit.builder()
+                .id(new Mt564EventAuditId("REF1", "ISIN1", "BICAAAAA", 0))
+                .businessHash("hash-1")
+                .updatedAt(LocalDateTime.now())
+                .snapshot("{\"narrative\":\"Narrative REF1\"}")
+                .build()));
+
+        Mt564EventAudit audit = auditRepository.findById(new Mt564EventAuditId("REF1", "ISIN1", "BICAAAAA", 0)).orElseThrow();
+        assertEquals("hash-1", audit.getBusinessHash());
+        assertEquals("{\"narrative\":\"Narrative REF1\"}", audit.getSnapshot());
+    }
+
+    private static Mt564Event event(String reference, String hash) {
+        return Mt564Event.builder()
+                .id(Mt564EventId.of(reference, "ISIN1", "BICAAAAA"))
+                .businessHash(hash)
+                .corporateActionEventType("DVCA")
+                .eventCreationDatetime(LocalDateTime.of(2025, 5, 30, 10, 15, 30))
+                .recordDate(LocalDate.of(2025, 6, 1))
+                .narrative("Narrative " + reference)
+                .marketDisclosureFlag(Boolean.TRUE)
+                .build();
+    }
+}
@@ -0,0 +1,109 @@
+package com.mt564.processing.svc.repository;
+
+import com.mt564.processing.svc.codec.SnapshotFormat;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class Mt564EventAuditRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 6, 1, 0, 0);
+
+    @Autowired
+    private Mt564EventAuditRepository auditRepository;
+
+    @Test
+    void testFindPageAfterWalksTheKeyOrder() {
+        auditRepository.saveAll(List.of(
+                audit("EVT2", "ISIN1", 0, T0.plusHours(1)),
+                audit("EVT1", "ISIN2", 0, T0.plusHours(1)),
+                audit("EVT1", "ISIN1", 1, T0.plusHours(2)),
+                audit("EVT1", "ISIN1", 0, T0.plusHours(1)),
+                audit("EVT1", "ISIN1", 2, T0.plusDays(5))));
+
+        List<Mt564EventAudit> first = auditRepository.findPageAfter(T0, T0.plusDays(1), "", "", "", -1, PageRequest.of(0, 2));
+        assertEquals(List.of("EVT1/ISIN1/0", "EVT1/ISIN1/1"), keys(first));
+
+        Mt564EventAuditId last = first.get(1).getId();
+        List<Mt564EventAudit> second = auditRepository.findPageAfter(T0, T0.plusDays(1), last.getEventReference(),
+                last.getFinancialInstrumentId(), last.getSenderBic(), last.getVersionNumber(), PageRequest.of(0, 2));
+        // version 2 of EVT1/ISIN1 is outside the range
+        assertEquals(List.of("EVT1/ISIN2/0", "EVT2/ISIN1/0"), keys(second));
+    }
+
+    @Test
+    void testFindByIdsReadsOnlyTheRequestedVersions() {
+        auditRepository.saveAll(List.of(
+                audit("EVT1", "ISIN1", 0, T0.minusDays(9)),
+                audit("EVT1", "ISIN1", 1, T0.minusDays(3)),
+                audit("EVT1", "ISIN1", 2, T0.plusHours(1)),
+                audit("EVT1", "ISIN2", 0, T0.minusDays(1)),
+                audit("EVT2", "ISIN1", 0, T0.plusHours(2)),
+                audit("EVT3", "ISIN1", 0, T0.minusDays(1))));
+
+        List<Mt564EventAudit> predecessors = auditRepository.findByIds(List.of(
+                new Mt564EventAuditId("EVT1", "ISIN1", "BIC1", 1),
+                new Mt564EventAuditId("EVT1", "ISIN2", "BIC1", 0),
+                new Mt564EventAuditId("EVT2", "ISIN1", "BIC1", 4)));
+
+        assertEquals(List.of("EVT1/ISIN1/1", "EVT1/ISIN2/0"), keys(predecessors).stream().sorted().toList());
+    }
+
+    @Test
+    void testFindLatestBeforeSkipsMissingVersions() {
+        auditRepository.saveAll(List.of(
+                audit("EVT1", "ISIN1", 0, T0.minusDays(9)),
+                audit("EVT1", "ISIN1", 1, T0.minusDays(3)),
+                audit("EVT1", "ISIN1", 4, T0.plusHours(1)),
+                audit("EVT1", "ISIN2", 2, T0.minusDays(1))));
+
+        assertEquals("EVT1/ISIN1/1", keys(List.of(auditRepository.findLatestBefore("EVT1", "ISIN1", "BIC1", 4).orElseThrow())).get(0));
+        assertTrue(auditRepository.findLatestBefore("EVT1", "ISIN1", "BIC1", 0).isEmpty());
+    }
+
+    @Test
+    void testFindKeyframeChainStartsAtTheNearestKeyframe() {
+        auditRepository.saveAll(List.of(
+                audit("EVT1", "ISIN1", 0, T0),
+                diffOnly(audit("EVT1", "ISIN1", 1, T0)),
+                audit("EVT1", "ISIN1", 2, T0),
+                diffOnly(audit("EVT1", "ISIN1", 3, T0)),
+                diffOnly(audit("EVT1", "ISIN1", 4, T0)),
+                diffOnly(audit("EVT1", "ISIN1", 5, T0)),
+                audit("EVT1", "ISIN2", 4, T0)));
+
+        List<Mt564EventAudit> chain = auditRepository.findKeyframeChain("EVT1", "ISIN1", "BIC1", 4, SnapshotFormat.DIFF_ONLY.getId());
+
+        assertEquals(List.of("EVT1/ISIN1/2", "EVT1/ISIN1/3", "EVT1/ISIN1/4"), keys(chain));
+    }
+
+    private static Mt564EventAudit diffOnly(Mt564EventAudit audit) {
+        audit.setSnapshot(null);
+        audit.setSnapshotFormat(SnapshotFormat.DIFF_ONLY.getId());
+        audit.setDiffData(new byte[]{1, 0});
+        return audit;
+    }
+
+    private static List<String> keys(List<Mt564EventAudit> audits) {
+        return audits.stream()
+                .map(a -> a.getId().getEventReference() + "/" + a.getId().getFinancialInstrumentId() + "/" + a.getId().getVersionNumber())
+                .toList();
+    }
+
+    private static Mt564EventAudit audit(String ref, String isin, int version, LocalDateTime updatedAt) {
+        return Mt564EventAudit.builder()
+                .id(new Mt564EventAuditId(ref, isin, "BIC1", version))
+                .updatedAt(updatedAt)
+                .snapshot("{}")
+                .build();
+    }
+}
@@ -0,0 +1,89 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchDuplicateCollapserTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 6, 1, 10, 0);
+
+    private SimpleMeterRegistry meterRegistry;
+    private BatchDuplicateCollapser collapser;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        collapser = new BatchDuplicateCollapser(meterRegistry);
+    }
+
+    @Test
+    void testBatchWithoutDuplicatesIsReturnedAsIs() {
+        List<Mt564EventDto> batch = List.of(event("EVT1", "A", T0, T0), event("EVT2", "A", T0, T0));
+
+        assertSame(batch, collapser.collapse(batch));
+        assertEquals(0, count("identical") + count("superseded"));
+    }
+
+    @Test
+    void testIdenticalCopiesAreDropped() {
+        Mt564EventDto first = event("EVT1", "A", T0, T0);
+        Mt564EventDto other = event("EVT2", "A", T0, T0);
+        List<Mt564EventDto> result = collapser.collapse(List.of(first, other, event("EVT1", "A", T0, T0.plusHours(1))));
+
+        assertEquals(List.of(first, other), result);
+        assertEquals(1, count("identical"));
+        assertEquals(0, count("superseded"));
+    }
+
+    @Test
+    void testLatestUpdatedAtWinsAndKeepsFirstPosition() {
+        Mt564EventDto older = event("EVT1", "OLD", T0, T0);
+        Mt564EventDto newer = event("EVT1", "NEW", T0, T0.plusHours(1));
+        Mt564EventDto other = event("EVT2", "A", T0, T0);
+
+        assertEquals(List.of(newer, other), collapser.collapse(List.of(older, other, newer)));
+        assertEquals(List.of(newer, other), collapser.collapse(List.of(newer, other, older)));
+        assertEquals(2, count("superseded"));
+    }
+
+    @Test
+    void testLatestEventCreationPolicy() {
+        ReflectionTestUtils.setField(collapser, "policy", BatchDuplicateCollapser.DuplicatePolicy.LATEST_EVENT_CREATION);
+        Mt564EventDto createdLater = event("EVT1", "B", T0.plusDays(1), T0);
+        Mt564EventDto updatedLater = event("EVT1", "A", T0, T0.plusDays(2));
+
+        assertEquals(List.of(createdLater), collapser.collapse(List.of(createdLater, updatedLater)));
+    }
+
+    @Test
+    void testLastInBatchPolicy() {
+        ReflectionTestUtils.setField(collapser, "policy", BatchDuplicateCollapser.DuplicatePolicy.LAST_IN_BATCH);
+        Mt564EventDto newer = event("EVT1", "NEW", T0, T0.plusHours(1));
+        Mt564EventDto lastReceived = event("EVT1", "OLD", T0, T0);
+
+        assertEquals(List.of(lastReceived), collapser.collapse(List.of(newer, lastReceived)));
+    }
+
+    private double count(String kind) {
+        return meterRegistry.counter("mt564.batch.duplicates", "kind", kind).count();
+    }
+
+    private static Mt564EventDto event(String reference, String narrative, LocalDateTime created, LocalDateTime updated) {
+        Mt564EventDto dto = new Mt564EventDto();
+        dto.setEventReference(reference);
+        dto.setFinancialInstrumentId("FI1");
+        dto.setSenderBic("BIC1");
+        dto.setNarrative(narrative);
+        dto.setEventCreationDatetime(created);
+        dto.setUpdatedAt(updated);
+        return dto;
+    }
+}
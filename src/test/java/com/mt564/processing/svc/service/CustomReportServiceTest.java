@@ -2,18 +2,23 @@ package com.mt564.processing.svc.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.ColumnarEventStore;
 import com.mt564.processing.svc.model.entity.CustomReportConfig;
 import com.mt564.processing.svc.repository.CustomReportConfigRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 
+import java.sql.Types;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
@@ -23,8 +28,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class CustomReportServiceTest {
@@ -35,6 +39,9 @@ class CustomReportServiceTest {
     @Mock
     private NamedParameterJdbcTemplate jdbcTemplate;
 
+    @Mock
+    private ColumnarEventStore columnarStore;
+
     @InjectMocks
     private CustomReportService customReportService;
 
@@ -73,11 +80,11 @@ class CustomReportServiceTest {
 
         List<Map<String, Object>> expectedResults = List.of(mockRow);
 
-        String expectedQueryString = "SELECT event_reference, financial_instrument_id, sender_bic, record_date, ex_date FROM mt564_event WHERE corporate_action_event_type = :corporate_action_event_type";
+        String expectedQueryString = "SELECT event_reference, financial_instrument_id, sender_bic, record_date, ex_date FROM mt564_events WHERE corporate_action_event_type = :corporate_action_event_type";
 
         Map<String, Object> filterParams = Map.of("corporate_action_event_type", "DIV");
 
-        when(jdbcTemplate.queryForList(anyString(), any(MapSqlParameterSource.class)))
+        when(jdbcTemplate.query(anyString(), any(MapSqlParameterSource.class), any(RowMapper.class)))
                 .thenReturn(expectedResults);
 
         List<Map<String, Object>> result = customReportService.executeReport(reportId);
@@ -86,7 +93,57 @@ class CustomReportServiceTest {
         assertEquals("EVT123", result.get(0).get("event_reference"));
 
         verify(configRepository).findById(reportId);
-        verify(jdbcTemplate).queryForList(matches(expectedQueryString), any(MapSqlParameterSource.class));
+        verify(jdbcTemplate).query(matches(expectedQueryString), any(MapSqlParameterSource.class), any(RowMapper.class));
+    }
+
+    @Test
+    void testExecuteReport_planIsCompiledOnce() {
+        when(configRepository.findById(1L)).thenReturn(Optional.of(sampleConfig));
+        when(jdbcTemplate.query(anyString(), any(MapSqlParameterSource.class), any(RowMapper.class))).thenReturn(List.of());
+
+        customReportService.executeReport(1L);
+        customReportService.executeReport(1L);
+        customReportService.executeReport(1L);
+
+        verify(configRepository, times(1)).findById(1L);
+        verify(jdbcTemplate, times(3)).query(anyString(), any(MapSqlParameterSource.class), any(RowMapper.class));
+    }
+
+    @Test
+    void testExecuteReport_typedFilterBinding() {
+        CustomReportConfig config = CustomReportConfig.builder()
+                .id(3L)
+                .selectedColumns(" event_reference , EX_DATE")
+                .filterConditions("{\"record_date\":\"2024-05-01\",\"version_number\":2,\"market_disclosure_flag\":\"true\"}")
+                .build();
+        when(configRepository.findById(3L)).thenReturn(Optional.of(config));
+        when(jdbcTemplate.query(anyString(), any(MapSqlParameterSource.class), any(RowMapper.class))).thenReturn(List.of());
+
+        customReportService.executeReport(3L);
+
+        ArgumentCaptor<MapSqlParameterSource> parameters = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(eq("SELECT event_reference, ex_date FROM mt564_events WHERE record_date = :record_date"
+                + " AND version_number = :version_number AND market_disclosure_flag = :market_disclosure_flag"), parameters.capture(),
+                any(RowMapper.class));
+        assertEquals(LocalDate.of(2024, 5, 1), parameters.getValue().getValue("record_date"));
+        assertEquals(Types.DATE, parameters.getValue().getSqlType("record_date"));
+        assertEquals(2, parameters.getValue().getValue("version_number"));
+        assertEquals(Boolean.TRUE, parameters.getValue().getValue("market_disclosure_flag"));
+    }
+
+    @Test
+    void testExecuteReport_unknownColumnIsRejected() {
+        CustomReportConfig config = CustomReportConfig.builder()
+                .id(4L)
+                .selectedColumns("event_reference,1; DROP TABLE mt564_events")
+                .filterConditions("{}")
+                .build();
+        when(configRepository.findById(4L)).thenReturn(Optional.of(config));
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> customReportService.executeReport(4L));
+
+        assertEquals("Unknown report column [1; DROP TABLE mt564_events]", ex.getMessage());
+        verifyNoInteractions(jdbcTemplate);
     }
 
     @Test
@@ -119,4 +176,53 @@ class CustomReportServiceTest {
 
         assertEquals("Invalid filter JSON", ex.getMessage());
     }
+
+    @Test
+    void testExecuteReport_typedFiltersCompileToSargablePredicates() {
+        CustomReportConfig config = CustomReportConfig.builder()
+                .id(5L)
+                .selectedColumns("event_reference,record_date")
+                .filterConditions("[{\"column\":\"corporate_action_event_type\",\"operator\":\"IN\",\"values\":[\"DVCA\",\"INTR\",\"DVCA\"]},"
+                        + "{\"column\":\"record_date\",\"operator\":\"BETWEEN\",\"from\":\"2025-06-01\",\"to\":\"2025-06-30\"},"
+                        + "{\"column\":\"ex_date\",\"operator\":\"BETWEEN\",\"from\":\"2025-05-01\"},"
+                        + "{\"column\":\"safekeeping_account\",\"operator\":\"PREFIX\",\"value\":\"ACC_1%\"},"
+                        + "{\"column\":\"response_deadline\",\"operator\":\"IS_NULL\"},"
+                        + "{\"column\":\"record_date\",\"operator\":\"EQ\",\"value\":\"2025-06-15\"}]")
+                .build();
+        when(configRepository.findById(5L)).thenReturn(Optional.of(config));
+        when(jdbcTemplate.query(anyString(), any(MapSqlParameterSource.class), any(RowMapper.class))).thenReturn(List.of());
+
+        customReportService.executeReport(5L);
+
+        ArgumentCaptor<MapSqlParameterSource> parameters = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).query(eq("SELECT event_reference, record_date FROM mt564_events"
+                + " WHERE corporate_action_event_type IN (:corporate_action_event_type)"
+                + " AND record_date >= :record_date_from AND record_date <= :record_date_to"
+                + " AND ex_date >= :ex_date_from"
+                + " AND safekeeping_account LIKE :safekeeping_account ESCAPE '\\'"
+                + " AND response_deadline IS NULL"
+                + " AND record_date = :record_date_2"), parameters.capture(), any(RowMapper.class));
+        assertEquals(List.of("DVCA", "INTR"), parameters.getValue().getValue("corporate_action_event_type"));
+        assertEquals(LocalDate.of(2025, 6, 30), parameters.getValue().getValue("record_date_to"));
+        assertEquals(Types.DATE, parameters.getValue().getSqlType("ex_date_from"));
+        assertEquals("ACC\\_1\\%%", parameters.getValue().getValue("safekeeping_account"));
+        assertEquals(LocalDate.of(2025, 6, 15), parameters.getValue().getValue("record_date_2"));
+        // only equality reports can be answered by the columnar replica
+        verifyNoInteractions(columnarStore);
+    }
+
+    @Test
+    void testExecuteReport_operatorNotApplicableToColumnIsRejected() {
+        CustomReportConfig config = CustomReportConfig.builder()
+                .id(6L)
+                .selectedColumns("event_reference")
+                .filterConditions("[{\"column\":\"narrative\",\"operator\":\"BETWEEN\",\"from\":\"a\",\"to\":\"b\"}]")
+                .build();
+        when(configRepository.findById(6L)).thenReturn(Optional.of(config));
+
+        RuntimeException ex = assertThrows(RuntimeException.class, () -> customReportService.executeReport(6L));
+
+        assertEquals("BETWEEN filter not supported on column [narrative]", ex.getMessage());
+        verifyNoInteractions(jdbcTemplate);
+    }
 }
@@ -0,0 +1,180 @@
+package com.mt564.processing.svc.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.ColumnarEventStore;
+import com.mt564.processing.svc.model.dto.ReportCursor;
+import com.mt564.processing.svc.model.dto.ReportPage;
+import com.mt564.processing.svc.model.entity.CustomReportConfig;
+import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventId;
+import com.mt564.processing.svc.repository.CustomReportConfigRepository;
+import com.mt564.processing.svc.repository.Mt564EventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Streams and pages saved reports against the schema generated from the entities.
+ */
+@DataJpaTest
+class CustomReportStreamingTest {
+
+    @Autowired
+    private Mt564EventRepository eventRepository;
+
+    @Autowired
+    private CustomReportConfigRepository configRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private CustomReportService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CustomReportService(configRepository, new NamedParameterJdbcTemplate(jdbcTemplate), objectMapper,
+                mock(ColumnarEventStore.class));
+        List<Mt564Event> events = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            events.add(Mt564Event.builder()
+                    .id(Mt564EventId.of("EVT" + (i % 10), "ISIN" + (i / 10), i % 2 == 0 ? "BICA" : "BICB"))
+                    .businessHash("hash-" + i)
+                    .corporateActionEventType(i % 3 == 0 ? "DVCA" : "INTR")
+                    .recordDate(i % 4 == 0 ? null : LocalDate.of(2025, 6, 1).plusDays(i % 4))
+                    .narrative(i == 3 ? "Say \"hello\", world" : "Narrative " + i)
+                    .eventCreationDatetime(LocalDateTime.of(2025, 5, 1, 10, 0))
+                    .build());
+        }
+        eventRepository.saveAllAndFlush(events);
+    }
+
+    @Test
+    void testStreamCsvQuotesFieldsAndRendersNullsAsEmpty() {
+        Long id = saveReport("event_reference,narrative,record_date,event_creation_datetime", "{\"corporate_action_event_type\":\"DVCA\"}");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = service.streamReport(id, ReportFormat.CSV, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\r\n");
+        assertEquals(17, rows);
+        assertEquals(18, lines.length);
+        assertEquals("event_reference,narrative,record_date,event_creation_datetime", lines[0]);
+        assertTrue(List.of(lines).contains("EVT3,\"Say \"\"hello\"\", world\",2025-06-04,2025-05-01T10:00"));
+        assertTrue(List.of(lines).contains("EVT0,Narrative 0,,2025-05-01T10:00"));
+    }
+
+    @Test
+    void testStreamNdjsonWritesOneObjectPerRow() throws Exception {
+        Long id = saveReport("event_reference,financial_instrument_id,sender_bic,narrative", "{\"sender_bic\":\"BICB\"}");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = service.streamReport(id, ReportFormat.NDJSON, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(25, rows);
+        assertEquals(25, lines.length);
+        for (String line : lines) {
+            JsonNode row = objectMapper.readTree(line);
+            assertEquals("BICB", row.get("sender_bic").asText());
+            assertEquals(4, row.size());
+        }
+    }
+
+    @Test
+    void testPagesConcatenateToTheWholeReportInKeyOrder() {
+        // the report selects a single key column, the page query reads the others to build the token
+        Long id = saveReport("narrative,event_reference", "{\"corporate_action_event_type\":\"INTR\"}");
+        List<Map<String, Object>> all = service.executeReport(id);
+
+        List<Map<String, Object>> paged = new ArrayList<>();
+        String token = null;
+        int pages = 0;
+        do {
+            ReportPage page = service.pageReport(id, token, 7);
+            assertTrue(page.getRows().size() <= 7);
+            paged.addAll(page.getRows());
+            token = page.getContinuationToken();
+            pages++;
+        } while (token != null);
+
+        assertEquals(33, all.size());
+        assertEquals(5, pages);
+        assertEquals(List.of("narrative", "event_reference"), List.copyOf(paged.get(0).keySet()));
+        assertEquals(all.size(), paged.size());
+        assertEquals(valuesOf(all), valuesOf(paged));
+        List<String> references = paged.stream().map(row -> row.get("event_reference").toString()).toList();
+        assertEquals(references.stream().sorted().toList(), references);
+    }
+
+    @Test
+    void testPageRejectsTokenOfAnotherReport() {
+        Long id = saveReport("event_reference", "{}");
+        String foreign = new ReportCursor(id + 1, "EVT1", "ISIN1", "BICA").toToken();
+
+        assertThrows(IllegalArgumentException.class, () -> service.pageReport(id, foreign, 10));
+        assertThrows(IllegalArgumentException.class, () -> service.pageReport(id, "not-a-token", 10));
+    }
+
+    @Test
+    void testTypedFiltersRunOnTheDatabase() {
+        Long id = saveReport("event_reference,financial_instrument_id,sender_bic",
+                "[{\"column\":\"financial_instrument_id\",\"operator\":\"IN\",\"values\":[\"ISIN1\",\"ISIN3\"]},"
+                        + "{\"column\":\"record_date\",\"operator\":\"BETWEEN\",\"from\":\"2025-06-02\",\"to\":\"2025-06-03\"},"
+                        + "{\"column\":\"narrative\",\"operator\":\"PREFIX\",\"value\":\"Narrative 1\"}]");
+
+        List<Map<String, Object>> rows = service.executeReport(id);
+
+        // ISIN1 is i in 10..19, record_date in [06-02, 06-03] is i % 4 in {1, 2}
+        assertEquals(Set.of(List.of("EVT0", "ISIN1", "BICA"), List.of("EVT3", "ISIN1", "BICB"), List.of("EVT4", "ISIN1", "BICA"),
+                List.of("EVT7", "ISIN1", "BICB"), List.of("EVT8", "ISIN1", "BICA")), valuesOf(rows));
+
+        Long nulls = saveReport("event_reference", "[{\"column\":\"record_date\",\"operator\":\"IS_NULL\"},"
+                + "{\"column\":\"narrative\",\"operator\":\"PREFIX\",\"value\":\"Narrative_\"}]");
+        assertEquals(List.of(), service.executeReport(nulls));
+    }
+
+    private static Set<List<Object>> valuesOf(List<Map<String, Object>> rows) {
+        Set<List<Object>> values = new HashSet<>();
+        rows.forEach(row -> values.add(new ArrayList<>(row.values())));
+        return values;
+    }
+
+    @Test
+    void testExecutedRowsAreKeyedByTheCanonicalColumnNames() {
+        // the database reports the labels of unquoted columns in upper case
+        Long id = saveReport("EVENT_REFERENCE,Sender_Bic", "{\"corporate_action_event_type\":\"DVCA\"}");
+
+        List<Map<String, Object>> rows = service.executeReport(id);
+
+        assertEquals(17, rows.size());
+        rows.forEach(row -> assertEquals(List.of("event_reference", "sender_bic"), List.copyOf(row.keySet())));
+    }
+
+    private Long saveReport(String columns, String filters) {
+        CustomReportConfig config = new CustomReportConfig();
+        config.setReportName("report");
+        config.setSelectedColumns(columns);
+        config.setFilterConditions(filters);
+        config.setCreatedAt(LocalDateTime.now());
+        return configRepository.saveAndFlush(config).getId();
+    }
+}
@@ -1,20 +1,30 @@
 package com.mt564.processing.svc.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.DeltaDayCache;
+import com.mt564.processing.svc.codec.BinarySnapshotCodec;
+import com.mt564.processing.svc.config.JacksonConfig;
+import com.mt564.processing.svc.codec.JsonSnapshotCodec;
+import com.mt564.processing.svc.codec.SnapshotCodecs;
+import com.mt564.processing.svc.model.dto.DeltaCursor;
 import com.mt564.processing.svc.model.dto.Mt564EventDelta;
 import com.mt564.processing.svc.model.entity.Mt564EventAudit;
 import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
 import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.time.LocalDateTime;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 class EventDeltaReportingServiceTest {
@@ -24,6 +34,8 @@ class EventDeltaReportingServiceTest {
 
     private ObjectMapper objectMapper;
 
+    private DeltaDayCache deltaCache;
+
     @InjectMocks
     private EventDeltaReportingService deltaReportingService;
 
@@ -31,7 +43,9 @@ class EventDeltaReportingServiceTest {
     void setUp() {
         MockitoAnnotations.openMocks(this);
         objectMapper = new ObjectMapper();
-        deltaReportingService = new EventDeltaReportingService(auditRepo, objectMapper);
+        deltaCache = new DeltaDayCache(new JacksonConfig().objectMapper(), new SimpleMeterRegistry());
+        deltaReportingService = new EventDeltaReportingService(auditRepo, objectMapper,
+                new SnapshotCodecs(new JsonSnapshotCodec(objectMapper), new BinarySnapshotCodec()), deltaCache);
     }
 
     @Test
@@ -112,4 +126,114 @@ class EventDeltaReportingServiceTest {
             deltaReportingService.getFieldLevelDeltas(from, to);
         });
     }
+
+    @Test
+    void testStreamFieldLevelDeltas_matchesListVariantAndResumes() {
+        LocalDateTime from = LocalDateTime.now().minusDays(1);
+        LocalDateTime to = LocalDateTime.now();
+        List<Mt564EventAudit> table = new ArrayList<>();
+        for (String ref : List.of("EVT1", "EVT2", "EVT3")) {
+            for (int version = 0; version < 3; version++) {
+                Mt564EventAudit audit = new Mt564EventAudit();
+                audit.setId(new Mt564EventAuditId(ref, "ISIN", "BIC", version));
+                audit.setUpdatedAt(from.plusMinutes(version));
+                audit.setSnapshot("{\"field\":\"" + ref + "-" + version + "\"}");
+                table.add(audit);
+            }
+        }
+        ReflectionTestUtils.setField(deltaReportingService, "streamPageSize", 2);
+        when(auditRepo.findByUpdatedAtBetween(from, to)).thenReturn(new ArrayList<>(table));
+        when(auditRepo.findPageAfter(eq(from), eq(to), anyString(), anyString(), anyString(), anyInt(), any()))
+                .thenAnswer(invocation -> keysetPage(table, invocation.getArgument(2), invocation.getArgument(5),
+                        invocation.getArgument(6, Pageable.class).getPageSize()));
+
+        List<Mt564EventDelta> all = new ArrayList<>();
+        assertNull(deltaReportingService.streamFieldLevelDeltas(from, to, null, 100, all::add));
+        assertEquals(6, all.size());
+        assertEquals(deltaReportingService.getFieldLevelDeltas(from, to).size(), all.size());
+
+        // same report in slices of 4 deltas, resumed through the continuation token
+        List<Mt564EventDelta> resumed = new ArrayList<>();
+        DeltaCursor cursor = deltaReportingService.streamFieldLevelDeltas(from, to, null, 4, resumed::add);
+        assertEquals(4, resumed.size());
+        cursor = DeltaCursor.fromToken(cursor.toToken());
+        assertNull(deltaReportingService.streamFieldLevelDeltas(cursor.getFrom(), cursor.getTo(), cursor, 4, resumed::add));
+        assertEquals(all.stream().map(d -> d.getEventReference() + d.getVersionTo()).toList(),
+                resumed.stream().map(d -> d.getEventReference() + d.getVersionTo()).toList());
+    }
+
+    @Test
+    void testSingleChangeInWindowIsDiffedAgainstPredecessor() {
+        LocalDateTime from = LocalDateTime.now().minusDays(1);
+        LocalDateTime to = LocalDateTime.now();
+
+        Mt564EventAudit before = audit("EVT004", "ISIN004", 3, from.minusDays(30), "{\"field1\":\"old\"}");
+        Mt564EventAudit inWindow = audit("EVT004", "ISIN004", 4, from.plusHours(1), "{\"field1\":\"new\"}");
+
+        when(auditRepo.findByUpdatedAtBetween(from, to)).thenReturn(new ArrayList<>(List.of(inWindow)));
+        when(auditRepo.findPageAfter(eq(from), eq(to), anyString(), anyString(), anyString(), anyInt(), any()))
+                .thenReturn(List.of(inWindow), List.of());
+        // read by primary key, the version right before the first one in the window
+        when(auditRepo.findByIds(List.of(new Mt564EventAuditId("EVT004", "ISIN004", "BIC", 3)))).thenReturn(List.of(before));
+
+        List<Mt564EventDelta> deltas = deltaReportingService.getFieldLevelDeltas(from, to);
+
+        assertEquals(1, deltas.size());
+        assertEquals(3, deltas.get(0).getVersionFrom());
+        assertEquals(4, deltas.get(0).getVersionTo());
+        assertArrayEquals(new Object[]{"old", "new"}, deltas.get(0).getChangedFields().get("field1"));
+
+        List<Mt564EventDelta> streamed = new ArrayList<>();
+        assertNull(deltaReportingService.streamFieldLevelDeltas(from, to, null, 10, streamed::add));
+        assertEquals(1, streamed.size());
+        assertEquals(3, streamed.get(0).getVersionFrom());
+    }
+
+    @Test
+    void testMissingPredecessorVersionFallsBackToTheLatestVersionBefore() {
+        LocalDateTime from = LocalDateTime.now().minusDays(1);
+        LocalDateTime to = LocalDateTime.now();
+
+        Mt564EventAudit before = audit("EVT006", "ISIN006", 2, from.minusDays(30), "{\"field1\":\"old\"}");
+        Mt564EventAudit inWindow = audit("EVT006", "ISIN006", 4, from.plusHours(1), "{\"field1\":\"new\"}");
+
+        when(auditRepo.findByUpdatedAtBetween(from, to)).thenReturn(new ArrayList<>(List.of(inWindow)));
+        // version 3 was never audited
+        when(auditRepo.findByIds(any())).thenReturn(List.of());
+        when(auditRepo.findLatestBefore("EVT006", "ISIN006", "BIC", 4)).thenReturn(Optional.of(before));
+
+        List<Mt564EventDelta> deltas = deltaReportingService.getFieldLevelDeltas(from, to);
+
+        assertEquals(1, deltas.size());
+        assertEquals(2, deltas.get(0).getVersionFrom());
+        assertEquals(4, deltas.get(0).getVersionTo());
+    }
+
+    @Test
+    void testInitialVersionsNeedNoPredecessorQuery() {
+        LocalDateTime from = LocalDateTime.now().minusDays(1);
+        LocalDateTime to = LocalDateTime.now();
+        when(auditRepo.findByUpdatedAtBetween(from, to))
+                .thenReturn(new ArrayList<>(List.of(audit("EVT005", "ISIN005", 0, from, "{}"))));
+
+        assertTrue(deltaReportingService.getFieldLevelDeltas(from, to).isEmpty());
+        verify(auditRepo, never()).findByIds(any());
+    }
+
+    private static Mt564EventAudit audit(String ref, String isin, int version, LocalDateTime updatedAt, String snapshot) {
+        Mt564EventAudit audit = new Mt564EventAudit();
+        audit.setId(new Mt564EventAuditId(ref, isin, "BIC", version));
+        audit.setUpdatedAt(updatedAt);
+        audit.setSnapshot(snapshot);
+        return audit;
+    }
+
+    // simulates the keyset query: all rows share financialInstrumentId and senderBic
+    private static List<Mt564EventAudit> keysetPage(List<Mt564EventAudit> table, String ref, int version, int size) {
+        return table.stream()
+                .filter(a -> a.getId().getEventReference().compareTo(ref) > 0
+                        || (a.getId().getEventReference().equals(ref) && a.getId().getVersionNumber() > version))
+                .limit(size)
+                .toList();
+    }
 }
@@ -0,0 +1,82 @@
+package com.mt564.processing.svc.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.DeltaDayCache;
+import com.mt564.processing.svc.codec.BinarySnapshotCodec;
+import com.mt564.processing.svc.codec.JsonSnapshotCodec;
+import com.mt564.processing.svc.codec.SnapshotCodecs;
+import com.mt564.processing.svc.config.JacksonConfig;
+import com.mt564.processing.svc.model.dto.Mt564EventDelta;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.model.entity.Mt564EventAuditId;
+import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Streams field-level deltas through several keyset pages of the audit table generated from the entities, on the
+ * EntityManager of the test transaction like a request with open-in-view.
+ */
+@DataJpaTest
+class EventDeltaStreamingTest {
+
+    private static final LocalDateTime FROM = LocalDateTime.of(2025, 6, 1, 0, 0);
+    private static final LocalDateTime TO = FROM.plusDays(1);
+
+    @Autowired
+    private Mt564EventAuditRepository auditRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    private EventDeltaReportingService service;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper objectMapper = new JacksonConfig().objectMapper();
+        service = new EventDeltaReportingService(auditRepository, objectMapper,
+                new SnapshotCodecs(new JsonSnapshotCodec(objectMapper), new BinarySnapshotCodec()),
+                new DeltaDayCache(objectMapper, new SimpleMeterRegistry()));
+        ReflectionTestUtils.setField(service, "streamPageSize", 2);
+
+        List<Mt564EventAudit> audits = new ArrayList<>();
+        for (int event = 0; event < 4; event++) {
+            // version 0 before the window: the predecessor of the first version in it
+            for (int version = 0; version < 4; version++) {
+                audits.add(Mt564EventAudit.builder()
+                        .id(new Mt564EventAuditId("EVT" + event, "ISIN1", "BIC1", version))
+                        .updatedAt(version == 0 ? FROM.minusDays(1) : FROM.plusHours(version))
+                        .snapshot("{\"narrative\":\"v" + version + "\"}")
+                        .build());
+            }
+        }
+        auditRepository.saveAllAndFlush(audits);
+        entityManager.clear();
+    }
+
+    @Test
+    void testStreamedPagesAreNotKeptInThePersistenceContext() {
+        List<Mt564EventDelta> deltas = new ArrayList<>();
+
+        assertNull(service.streamFieldLevelDeltas(FROM, TO, null, 100, deltas::add));
+
+        // 12 rows in the window, read in 6 pages of 2, each diffed against the version before it
+        assertEquals(12, deltas.size());
+        assertEquals(List.of(0, 1, 2), deltas.stream().filter(d -> d.getEventReference().equals("EVT3"))
+                .map(Mt564EventDelta::getVersionFrom).toList());
+        assertArrayEquals(new Object[]{"v0", "v1"}, deltas.get(0).getChangedFields().get("narrative"));
+        assertEquals(0, entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+    }
+}
@@ -0,0 +1,71 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.repository.Mt564JobStateRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs outside a test transaction, so that every call commits as it does between nodes.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class JobStateServiceTest {
+
+    private static final String JOB = "test-job";
+
+    @Autowired
+    private Mt564JobStateRepository jobStateRepository;
+
+    @AfterEach
+    void tearDown() {
+        jobStateRepository.deleteAll();
+    }
+
+    @Test
+    void testLeaseIsHeldByOneNodeUntilReleasedOrExpired() throws InterruptedException {
+        JobStateService node1 = new JobStateService(jobStateRepository);
+        JobStateService node2 = new JobStateService(jobStateRepository);
+        assertNotEquals(node1.getOwner(), node2.getOwner());
+
+        assertTrue(node1.tryLock(JOB, Duration.ofMinutes(5)));
+        assertFalse(node2.tryLock(JOB, Duration.ofMinutes(5)));
+        // the holder renews its lease
+        assertTrue(node1.tryLock(JOB, Duration.ofMinutes(5)));
+
+        node1.unlock(JOB);
+        assertTrue(node2.tryLock(JOB, Duration.ofMillis(1)));
+        // a release by another node is ignored
+        node1.unlock(JOB);
+        Thread.sleep(10);
+        // an expired lease is taken over
+        assertTrue(node1.tryLock(JOB, Duration.ofMinutes(5)));
+        assertFalse(node2.tryLock(JOB, Duration.ofMinutes(5)));
+    }
+
+    @Test
+    void testWatermarkOnlyMovesForward() {
+        JobStateService node = new JobStateService(jobStateRepository);
+        LocalDateTime watermark = LocalDateTime.of(2025, 6, 1, 12, 0);
+        assertEquals(Optional.empty(), node.watermark(JOB));
+
+        node.advanceWatermark(JOB, watermark);
+        node.advanceWatermark(JOB, watermark.minusHours(1));
+        assertEquals(Optional.of(watermark), node.watermark(JOB));
+
+        node.advanceWatermark(JOB, watermark.plusHours(1));
+        assertEquals(Optional.of(watermark.plusHours(1)), node.watermark(JOB));
+        // the lease and the watermark share the row
+        assertTrue(node.tryLock(JOB, Duration.ofMinutes(5)));
+        assertEquals(Optional.of(watermark.plusHours(1)), node.watermark(JOB));
+    }
+}
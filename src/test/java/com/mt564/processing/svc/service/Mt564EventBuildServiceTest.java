@@ -1,16 +1,31 @@
 package com.mt564.processing.svc.service;
 
+import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.BusinessHashIndex;
+import com.mt564.processing.svc.cache.ColumnarEventStore;
+import com.mt564.processing.svc.cache.DeltaDayCache;
+import com.mt564.processing.svc.codec.BinarySnapshotCodec;
+import com.mt564.processing.svc.codec.FieldDiffs;
+import com.mt564.processing.svc.codec.JsonSnapshotCodec;
+import com.mt564.processing.svc.codec.SnapshotCodecs;
+import com.mt564.processing.svc.codec.SnapshotFormat;
 import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import com.mt564.processing.svc.model.dto.Mt564EventHashView;
 import com.mt564.processing.svc.model.entity.Mt564Event;
+import com.mt564.processing.svc.model.entity.Mt564EventAudit;
+import com.mt564.processing.svc.repository.JpaMt564EventStore;
 import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
 import com.mt564.processing.svc.repository.Mt564EventRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -29,13 +44,24 @@ class Mt564EventBuildServiceTest {
     @Mock
     private ObjectMapper objectMapper;
 
+    @Mock
+    private BusinessHashIndex hashIndex;
+
+    @Mock
+    private DeltaDayCache deltaCache;
+
+    @Mock
+    private ColumnarEventStore columnarStore;
+
     @InjectMocks
     private Mt564EventBuildService buildService;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        buildService = new Mt564EventBuildService(eventRepository, auditRepository, objectMapper);
+        buildService = new Mt564EventBuildService(new JpaMt564EventStore(eventRepository, auditRepository),
+                new SnapshotCodecs(new JsonSnapshotCodec(objectMapper), new BinarySnapshotCodec()), hashIndex,
+                deltaCache, columnarStore);
     }
 
     @Test
@@ -49,7 +75,7 @@ class Mt564EventBuildServiceTest {
         Mt564Event event = Mt564Event.of(dto);
         event.setVersionNumber(1);
 
-        when(eventRepository.findAllById(any())).thenReturn(Collections.emptyList());
+        when(eventRepository.findHashViewsByIdIn(any())).thenReturn(Collections.emptyList());
         when(eventRepository.saveAll(any())).thenReturn(List.of(event));
         when(auditRepository.saveAllAndFlush(any())).thenReturn(null);
 
@@ -57,6 +83,28 @@ class Mt564EventBuildServiceTest {
 
         verify(eventRepository, times(1)).saveAll(any());
         verify(auditRepository, times(1)).saveAllAndFlush(any());
+        verify(hashIndex).recordAfterCommit(List.of(event));
+    }
+
+    @Test
+    void testProcessDailyEvents_failsWhenTheAuditSnapshotCannotBeEncoded() throws Exception {
+        Mt564EventDto dto = new Mt564EventDto();
+        dto.setEventReference("EVT1");
+        dto.setFinancialInstrumentId("FI1");
+        dto.setSenderBic("BIC1");
+
+        Mt564Event event = Mt564Event.of(dto);
+        event.setVersionNumber(0);
+
+        when(eventRepository.findHashViewsByIdIn(any())).thenReturn(Collections.emptyList());
+        when(eventRepository.saveAll(any())).thenReturn(List.of(event));
+        when(objectMapper.writeValueAsString(any())).thenThrow(new JsonMappingException(null, "cannot serialize"));
+
+        // the transaction rolls the event back rather than committing a version without its audit
+        assertThrows(UncheckedIOException.class, () -> buildService.processDailyEvents(List.of(dto)));
+
+        verify(auditRepository, never()).saveAllAndFlush(any());
+        verify(hashIndex, never()).recordAfterCommit(any());
     }
 
     @Test
@@ -71,15 +119,51 @@ class Mt564EventBuildServiceTest {
         existing.setBusinessHash("HASH1"); // different from dto
         existing.setVersionNumber(1);
 
-        when(eventRepository.findAllById(any())).thenReturn(List.of(existing));
+        when(eventRepository.findHashViewsByIdIn(any())).thenReturn(List.of(hashView(existing)));
+        when(eventRepository.findAllByIdIn(any())).thenReturn(List.of(existing));
         when(eventRepository.saveAll(any())).thenReturn(List.of(existing));
 
         buildService.processDailyEvents(List.of(dto));
 
+        verify(eventRepository).findAllByIdIn(any());
         verify(eventRepository).saveAll(any());
         verify(auditRepository).saveAllAndFlush(any());
     }
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void testProcessDailyEvents_capturesFieldDiffOnUpdate() {
+        ReflectionTestUtils.setField(buildService, "diffCapture", true);
+        Mt564EventDto dto = new Mt564EventDto();
+        dto.setEventReference("EVT1");
+        dto.setFinancialInstrumentId("FI1");
+        dto.setSenderBic("BIC1");
+        dto.setNarrative("Amended");
+
+        Mt564Event existing = Mt564Event.of(dto);
+        existing.setNarrative("Initial");
+        existing.setBusinessHash("HASH1");
+        existing.setVersionNumber(0);
+
+        when(eventRepository.findHashViewsByIdIn(any())).thenReturn(List.of(hashView(existing)));
+        when(eventRepository.findAllByIdIn(any())).thenReturn(List.of(existing));
+        when(eventRepository.saveAll(any())).thenAnswer(invocation -> {
+            existing.setVersionNumber(1);
+            return List.of(existing);
+        });
+
+        buildService.processDailyEvents(List.of(dto));
+
+        ArgumentCaptor<List<Mt564EventAudit>> audits = ArgumentCaptor.forClass(List.class);
+        verify(auditRepository).saveAllAndFlush(audits.capture());
+        Mt564EventAudit audit = audits.getValue().get(0);
+        assertEquals(SnapshotFormat.DIFF_ONLY.getId(), audit.getSnapshotFormat());
+        assertNull(audit.getSnapshot());
+        Map<String, Object[]> diffs = FieldDiffs.decode(audit.getDiffData());
+        assertArrayEquals(new Object[]{"Initial", "Amended"}, diffs.get("narrative"));
+        assertArrayEquals(new Object[]{"0", "1"}, diffs.get("versionNumber"));
+    }
+
     @Test
     void testProcessDailyEvents_skipsUnchangedEvent() {
         Mt564EventDto dto = new Mt564EventDto();
@@ -91,10 +175,12 @@ class Mt564EventBuildServiceTest {
         Mt564Event existing = Mt564Event.of(dto);
         existing.setBusinessHash(dto.getBusinessHash()); // same as dto
 
-        when(eventRepository.findAllById(any())).thenReturn(List.of(existing));
+        when(eventRepository.findHashViewsByIdIn(any())).thenReturn(List.of(hashView(existing)));
 
         buildService.processDailyEvents(List.of(dto));
 
+        // unchanged events are never loaded as full entities
+        verify(eventRepository, never()).findAllByIdIn(any());
         verify(eventRepository, never()).saveAll(any());
         verify(auditRepository, never()).saveAllAndFlush(any());
     }
@@ -110,6 +196,10 @@ class Mt564EventBuildServiceTest {
         assertTrue(result);
     }
 
+    private static Mt564EventHashView hashView(Mt564Event event) {
+        return new Mt564EventHashView(event.getId(), event.getBusinessHash(), event.getVersionNumber());
+    }
+
     private boolean buildServiceTest_hasChanged(Mt564EventDto dto, Mt564Event entity) {
         return !dto.getBusinessHash().equals(entity.getBusinessHash());
     }
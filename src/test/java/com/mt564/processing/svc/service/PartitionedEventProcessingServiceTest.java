@@ -0,0 +1,144 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class PartitionedEventProcessingServiceTest {
+
+    @Mock
+    private Mt564EventBuildService buildService;
+
+    private PartitionedEventProcessingService service;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        service = new PartitionedEventProcessingService(buildService);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "partitions", 4);
+        ReflectionTestUtils.setField(service, "threads", 4);
+        ReflectionTestUtils.setField(service, "chunkSize", 10);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testSmallBatchIsProcessedInOneCall() {
+        List<Mt564EventDto> events = events(5);
+
+        List<PartitionedEventProcessingService.PartitionResult> results = service.process(events);
+
+        assertEquals(1, results.size());
+        verify(buildService, times(1)).processDailyEvents(events);
+    }
+
+    @Test
+    void testEveryChunkRecordsTheOffsetsOfItsEvents() {
+        ProcessedOffsetLedger.ConsumedOffsets offsets = mock(ProcessedOffsetLedger.ConsumedOffsets.class);
+
+        List<Mt564EventDto> events = events(100);
+        service.process(events, offsets);
+
+        verify(buildService, times(chunks(PartitionedEventProcessingService.partition(events, 4))))
+                .processDailyEvents(anyList(), same(offsets));
+        verify(buildService, never()).processDailyEvents(anyList());
+    }
+
+    @Test
+    void testEveryKeyIsProcessedByExactlyOnePartition() {
+        Map<String, String> keyToThread = new ConcurrentHashMap<>();
+        Set<String> processed = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            List<Mt564EventDto> chunk = invocation.getArgument(0);
+            assertTrue(chunk.size() <= 10);
+            chunk.forEach(dto -> {
+                assertTrue(processed.add(dto.getEventReference()));
+                keyToThread.put(dto.getEventReference(), Thread.currentThread().getName());
+            });
+            return null;
+        }).when(buildService).processDailyEvents(anyList());
+
+        List<Mt564EventDto> events = events(100);
+        List<PartitionedEventProcessingService.PartitionResult> results = service.process(events);
+
+        assertEquals(100, processed.size());
+        assertEquals(100, results.stream().mapToInt(PartitionedEventProcessingService.PartitionResult::getProcessedEvents).sum());
+        assertTrue(results.stream().noneMatch(PartitionedEventProcessingService.PartitionResult::isFailed));
+        // all the chunks of a partition run on one thread, one after the other
+        List<List<Mt564EventDto>> partitioned = PartitionedEventProcessingService.partition(events, 4);
+        for (List<Mt564EventDto> partition : partitioned) {
+            assertEquals(1, partition.stream().map(dto -> keyToThread.get(dto.getEventReference())).distinct().count());
+        }
+        verify(buildService, times(chunks(partitioned))).processDailyEvents(anyList());
+    }
+
+    @Test
+    void testDuplicateKeysLandInTheSamePartition() {
+        List<Mt564EventDto> events = new ArrayList<>(events(50));
+        events.addAll(events(50));
+
+        List<List<Mt564EventDto>> partitioned = PartitionedEventProcessingService.partition(events, 4);
+
+        assertEquals(100, partitioned.stream().mapToInt(List::size).sum());
+        for (List<Mt564EventDto> partition : partitioned) {
+            partition.forEach(dto -> assertEquals(2,
+                    partition.stream().filter(other -> other.getEventReference().equals(dto.getEventReference())).count()));
+        }
+    }
+
+    @Test
+    void testFailuresAreAggregatedAfterAllPartitionsComplete() {
+        List<Mt564EventDto> events = events(100);
+        List<List<Mt564EventDto>> partitioned = PartitionedEventProcessingService.partition(events, 4);
+        String poisoned = partitioned.get(0).get(0).getEventReference();
+        doAnswer(invocation -> {
+            List<Mt564EventDto> chunk = invocation.getArgument(0);
+            if (chunk.stream().anyMatch(dto -> dto.getEventReference().equals(poisoned))) {
+                throw new IllegalStateException("boom");
+            }
+            return null;
+        }).when(buildService).processDailyEvents(any());
+
+        RuntimeException exception = assertThrows(RuntimeException.class, () -> service.process(events));
+
+        assertTrue(exception.getMessage().contains("1 of 4 partitions"));
+        assertEquals(1, exception.getSuppressed().length);
+        // the other partitions still ran all their chunks, the failed one stopped at its first
+        int otherChunks = chunks(partitioned.subList(1, 4));
+        assertTrue(otherChunks > 0);
+        verify(buildService, times(otherChunks + 1)).processDailyEvents(any());
+    }
+
+    private static int chunks(List<List<Mt564EventDto>> partitioned) {
+        return partitioned.stream().mapToInt(p -> (p.size() + 9) / 10).sum();
+    }
+
+    private static List<Mt564EventDto> events(int count) {
+        List<Mt564EventDto> events = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Mt564EventDto dto = new Mt564EventDto();
+            dto.setEventReference("REF" + i);
+            dto.setFinancialInstrumentId("ISIN" + i);
+            dto.setSenderBic("BICAAAAA");
+            events.add(dto);
+        }
+        return events;
+    }
+}
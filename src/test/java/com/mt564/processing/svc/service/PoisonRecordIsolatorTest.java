@@ -0,0 +1,110 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PoisonRecordIsolatorTest {
+
+    private final Mt564EventBuildService buildService = mock(Mt564EventBuildService.class);
+    private final DeadLetterService deadLetterService = mock(DeadLetterService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private PoisonRecordIsolator isolator;
+    private final List<String> committed = new ArrayList<>();
+    private final AtomicInteger transactions = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        isolator = new PoisonRecordIsolator(buildService, new BatchDuplicateCollapser(meterRegistry), deadLetterService,
+                mock(PlatformTransactionManager.class), meterRegistry);
+        // a transaction holding an event with a null instrument fails as a whole
+        doAnswer(invocation -> {
+            List<Mt564EventDto> events = invocation.getArgument(0);
+            transactions.incrementAndGet();
+            if (events.stream().anyMatch(e -> e.getFinancialInstrumentId() == null)) {
+                throw new DataIntegrityViolationException("NULL not allowed for column FINANCIAL_INSTRUMENT_ID");
+            }
+            events.forEach(e -> committed.add(e.getEventReference()));
+            return null;
+        }).when(buildService).processDailyEvents(anyList(), any());
+    }
+
+    @Test
+    void testPoisonEventsAreDeadLetteredAndTheRestCommitted() {
+        List<Mt564EventDto> events = IntStream.range(0, 64).mapToObj(i -> event("EVT" + i, i == 13 || i == 50 ? null : "ISIN1"))
+                .collect(Collectors.toList());
+
+        int poison = isolator.isolate(events, null, new DataIntegrityViolationException("batch failed"));
+
+        assertEquals(2, poison);
+        assertEquals(62, committed.size());
+        assertFalse(committed.contains("EVT13") || committed.contains("EVT50"));
+        verify(deadLetterService).store(eq(PoisonRecordIsolator.DEAD_LETTER_SOURCE), eq("EVT13"), any(),
+                any(DataIntegrityViolationException.class), eq(7));
+        verify(deadLetterService).store(eq(PoisonRecordIsolator.DEAD_LETTER_SOURCE), eq("EVT50"), any(),
+                any(DataIntegrityViolationException.class), eq(7));
+        // 2 transactions per level of the paths of the poison events (log2(64) = 6 levels)
+        assertTrue(transactions.get() <= 2 * 2 * 6, "Too many transactions: " + transactions.get());
+        assertEquals(2, meterRegistry.counter("mt564.consumer.poison", "result", "dead_lettered").count());
+    }
+
+    @Test
+    void testFailureToStoreADeadLetterIsThrownBack() {
+        List<Mt564EventDto> events = List.of(event("EVT1", "ISIN1"), event("EVT2", null));
+        IllegalStateException unavailable = new IllegalStateException("dead letter table unavailable");
+        doThrow(unavailable).when(deadLetterService).store(any(), any(), any(), any(), anyInt());
+
+        // the batch is not acknowledged, so that the poison event is delivered again rather than lost
+        assertSame(unavailable, assertThrows(IllegalStateException.class,
+                () -> isolator.isolate(events, null, new DataIntegrityViolationException("batch failed"))));
+        // the original batch and the half holding only EVT2
+        verify(deadLetterService).store(eq(PoisonRecordIsolator.DEAD_LETTER_SOURCE), eq("EVT2"), any(),
+                any(DataIntegrityViolationException.class), eq(2));
+        assertEquals(0, meterRegistry.counter("mt564.consumer.poison", "result", "dead_lettered").count());
+    }
+
+    @Test
+    void testCopiesOfAnEventAreNeverSplit() {
+        List<Mt564EventDto> events = List.of(event("EVT1", "ISIN1"), event("EVT2", "ISIN1"), event("EVT1", "ISIN1"));
+
+        assertEquals(0, isolator.isolate(events, null, new DataIntegrityViolationException("batch failed")));
+
+        assertEquals(Set.of("EVT1", "EVT2"), Set.copyOf(committed));
+        assertEquals(2, committed.size());
+    }
+
+    @Test
+    void testTransientFailuresAreThrownBack() {
+        List<Mt564EventDto> events = List.of(event("EVT1", "ISIN1"), event("EVT2", "ISIN1"));
+        CannotAcquireLockException lock = new CannotAcquireLockException("lock timeout");
+        RuntimeException batchFailure = new RuntimeException("Processing failed for 1 of 2 partitions");
+        batchFailure.addSuppressed(lock);
+
+        assertSame(batchFailure, assertThrows(RuntimeException.class, () -> isolator.isolate(events, null, batchFailure)));
+
+        doThrow(lock).when(buildService).processDailyEvents(anyList(), any());
+        assertSame(lock, assertThrows(RuntimeException.class,
+                () -> isolator.isolate(events, null, new DataIntegrityViolationException("batch failed"))));
+        verifyNoInteractions(deadLetterService);
+    }
+
+    private static Mt564EventDto event(String reference, String instrument) {
+        return Mt564EventDto.builder().eventReference(reference).financialInstrumentId(instrument).senderBic("BIC1").build();
+    }
+}
@@ -0,0 +1,101 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.Mt564EventDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs outside a test transaction, so that the ledger is written by the transactions of the test itself.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ProcessedOffsetLedgerTest {
+
+    private static final String TOPIC = "mt564-events";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private ProcessedOffsetLedger ledger;
+    private TransactionTemplate transaction;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new ProcessedOffsetLedger(jdbcTemplate, new SimpleMeterRegistry());
+        transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM mt564_processed_offsets");
+    }
+
+    @Test
+    void testRecordsOfCommittedEventsAreSkippedWhenDelivered() {
+        // EVT1 is delivered twice, its copies are processed together
+        List<ConsumerRecord<String, Mt564EventDto>> batch = List.of(
+                record(0, 10, "EVT1"), record(0, 11, "EVT2"), record(0, 12, "EVT1"), record(1, 5, "EVT3"));
+        ProcessedOffsetLedger.ConsumedOffsets offsets = ledger.track(batch);
+        assertEquals(batch, offsets.getRecords());
+
+        transaction.executeWithoutResult(status -> offsets.record(List.of(event("EVT1"), event("EVT3"))));
+        // the transaction of EVT2 rolls back
+        assertThrows(IllegalStateException.class, () -> transaction.executeWithoutResult(status -> {
+            offsets.record(List.of(event("EVT2")));
+            throw new IllegalStateException("boom");
+        }));
+
+        List<ConsumerRecord<String, Mt564EventDto>> pending = ledger.track(batch).getRecords();
+        assertEquals(List.of(batch.get(1)), pending);
+    }
+
+    @Test
+    void testRowsBelowTheFirstDeliveredOffsetAreDropped() {
+        ProcessedOffsetLedger.ConsumedOffsets offsets = ledger.track(List.of(record(0, 10, "EVT1"), record(1, 10, "EVT2")));
+        transaction.executeWithoutResult(status -> offsets.record(List.of(event("EVT1"), event("EVT2"))));
+
+        ledger.track(List.of(record(0, 11, "EVT4")));
+
+        assertEquals(List.of(1), jdbcTemplate.queryForList("SELECT kafka_partition FROM mt564_processed_offsets", Integer.class));
+    }
+
+    @Test
+    void testOffsetsAreRecordedOnceAndInATransactionOnly() {
+        List<ConsumerRecord<String, Mt564EventDto>> batch = List.of(record(0, 10, "EVT1"));
+        ProcessedOffsetLedger.ConsumedOffsets first = ledger.track(batch);
+        ProcessedOffsetLedger.ConsumedOffsets second = ledger.track(batch);
+
+        assertThrows(IllegalStateException.class, () -> first.record(List.of(event("EVT1"))));
+
+        transaction.executeWithoutResult(status -> first.record(List.of(event("EVT1"))));
+        // a second consumer that processed the same record cannot commit
+        assertThrows(DuplicateKeyException.class,
+                () -> transaction.executeWithoutResult(status -> second.record(List.of(event("EVT1")))));
+    }
+
+    private static ConsumerRecord<String, Mt564EventDto> record(int partition, long offset, String reference) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, reference, event(reference));
+    }
+
+    private static Mt564EventDto event(String reference) {
+        return Mt564EventDto.builder().eventReference(reference).financialInstrumentId("ISIN1").senderBic("BIC1").build();
+    }
+}
@@ -0,0 +1,114 @@
+package com.mt564.processing.svc.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mt564.processing.svc.cache.ColumnarEventStore;
+import com.mt564.processing.svc.model.dto.IndexAdvice;
+import com.mt564.processing.svc.model.dto.ReportFilter;
+import com.mt564.processing.svc.model.entity.CustomReportConfig;
+import com.mt564.processing.svc.repository.CustomReportConfigRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs outside a test transaction, since creating an index commits on H2.
+ */
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReportIndexAdvisorTest {
+
+    @Autowired
+    private CustomReportConfigRepository configRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private ReportIndexAdvisor advisor;
+
+    @BeforeEach
+    void setUp() {
+        CustomReportService service = new CustomReportService(configRepository, new NamedParameterJdbcTemplate(jdbcTemplate),
+                new ObjectMapper(), mock(ColumnarEventStore.class));
+        advisor = new ReportIndexAdvisor(configRepository, service, jdbcTemplate);
+        saveReport("{\"corporate_action_event_type\":\"DVCA\",\"event_reference\":\"EVT1\"}");
+        saveReport("[{\"column\":\"record_date\",\"operator\":\"BETWEEN\",\"from\":\"2025-06-01\"},"
+                + "{\"column\":\"corporate_action_event_type\",\"operator\":\"IN\",\"values\":[\"DVCA\",\"INTR\"]},"
+                + "{\"column\":\"event_reference\",\"operator\":\"PREFIX\",\"value\":\"EVT\"}]");
+        saveReport("[{\"column\":\"record_date\",\"operator\":\"EQ\",\"value\":\"2025-06-01\"},"
+                + "{\"column\":\"record_date\",\"operator\":\"IS_NULL\"},"
+                + "{\"column\":\"ex_date\",\"operator\":\"IS_NULL\"},"
+                + "{\"column\":\"market_disclosure_flag\",\"operator\":\"EQ\",\"value\":true},"
+                + "{\"column\":\"corporate_action_event_type\",\"operator\":\"IS_NOT_NULL\"}]");
+        saveReport("{\"no_such_column\":\"x\"}");
+    }
+
+    @AfterEach
+    void tearDown() {
+        configRepository.deleteAll();
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_mt564_events_corporate_action_event_type");
+        jdbcTemplate.execute("DROP INDEX IF EXISTS idx_mt564_events_record_date");
+    }
+
+    @Test
+    void testAdviseRanksColumnsFilteredOnByEnoughReports() {
+        List<IndexAdvice> advice = advisor.advise();
+
+        assertEquals(List.of("corporate_action_event_type", "event_reference", "record_date"),
+                advice.stream().map(IndexAdvice::getColumn).toList());
+        assertEquals(List.of(2, 2, 2), advice.stream().map(IndexAdvice::getReports).toList());
+        assertEquals(Set.of(ReportFilter.Operator.EQ, ReportFilter.Operator.IN), advice.get(0).getOperators());
+        assertEquals("CREATE INDEX IF NOT EXISTS idx_mt564_events_record_date ON mt564_events (record_date)", advice.get(2).getDdl());
+        // the primary key already leads with event_reference
+        assertEquals(List.of(false, true, false), advice.stream().map(IndexAdvice::isIndexed).toList());
+    }
+
+    @Test
+    void testIsNullFiltersAndIfNotExistsOnlyWhereTheDatabaseSupportsThem() {
+        ReflectionTestUtils.setField(advisor, "minReports", 1);
+
+        List<IndexAdvice> h2 = advisor.advise();
+        List<IndexAdvice> oracle = advisor.advise(new ReportIndexAdvisor.ExistingIndexes("Oracle"));
+
+        // ex_date is only filtered on with IS_NULL, which an Oracle B-tree index cannot serve
+        assertTrue(h2.stream().anyMatch(advice -> advice.getColumn().equals("ex_date")));
+        assertEquals(List.of("corporate_action_event_type", "event_reference", "record_date"),
+                oracle.stream().map(IndexAdvice::getColumn).toList());
+        assertEquals(Set.of(ReportFilter.Operator.BETWEEN, ReportFilter.Operator.EQ), oracle.get(2).getOperators());
+        assertEquals("CREATE INDEX idx_mt564_events_record_date ON mt564_events (record_date)", oracle.get(2).getDdl());
+    }
+
+    @Test
+    void testProvisionCreatesTheMissingIndexesOnce() {
+        ReflectionTestUtils.setField(advisor, "autoCreate", true);
+
+        List<IndexAdvice> created = advisor.provision();
+
+        assertEquals(List.of("idx_mt564_events_corporate_action_event_type", "idx_mt564_events_record_date"),
+                created.stream().map(IndexAdvice::getIndexName).toList());
+        assertTrue(advisor.advise().stream().allMatch(IndexAdvice::isIndexed));
+        assertEquals(List.of(), advisor.provision());
+    }
+
+    private void saveReport(String filters) {
+        CustomReportConfig config = new CustomReportConfig();
+        config.setReportName("report");
+        config.setSelectedColumns("event_reference");
+        config.setFilterConditions(filters);
+        config.setCreatedAt(LocalDateTime.now());
+        configRepository.save(config);
+    }
+}
@@ -0,0 +1,123 @@
+package com.mt564.processing.svc.service;
+
+import com.mt564.processing.svc.model.dto.ReportJobStatus;
+import com.mt564.processing.svc.repository.Mt564EventAuditRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReportJobServiceTest {
+
+    private static final LocalDateTime LATEST = LocalDateTime.of(2025, 6, 1, 12, 0);
+
+    @TempDir
+    Path spoolDir;
+
+    private final CustomReportService customReportService = mock(CustomReportService.class);
+    private final Mt564EventAuditRepository auditRepository = mock(Mt564EventAuditRepository.class);
+
+    private ReportJobService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new ReportJobService(customReportService, auditRepository, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "spoolDir", spoolDir.toString());
+        service.init();
+        when(auditRepository.findMaxUpdatedAt()).thenReturn(LATEST);
+        when(auditRepository.countByUpdatedAtGreaterThanEqual(LATEST.minusMinutes(5))).thenReturn(10L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void testResultIsSpooledAndReusedUntilTheDataChanges() throws Exception {
+        when(customReportService.streamReport(eq(1L), eq(ReportFormat.CSV), any())).thenAnswer(invocation -> {
+            OutputStream out = invocation.getArgument(2);
+            out.write("event_reference\r\nEVT1\r\n".getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        ReportJobStatus first = awaitTerminal(service.submit(1L, ReportFormat.CSV).getJobId());
+        assertEquals(ReportJobStatus.State.DONE, first.getState());
+        assertEquals(1, first.getRows());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(service.resultFile(first.getJobId()).orElseThrow()))) {
+            assertEquals("event_reference\r\nEVT1\r\n", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+
+        // unchanged data: the completed job is returned
+        assertEquals(first.getJobId(), service.submit(1L, ReportFormat.CSV).getJobId());
+        verify(customReportService, times(1)).streamReport(eq(1L), eq(ReportFormat.CSV), any());
+
+        // a write committed since: a new job runs
+        when(auditRepository.countByUpdatedAtGreaterThanEqual(LATEST.minusMinutes(5))).thenReturn(11L);
+        ReportJobStatus second = awaitTerminal(service.submit(1L, ReportFormat.CSV).getJobId());
+        assertNotEquals(first.getJobId(), second.getJobId());
+        verify(customReportService, times(2)).streamReport(eq(1L), eq(ReportFormat.CSV), any());
+    }
+
+    @Test
+    void testJobsOfAReportAreLimitedAndCoalesced() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(customReportService.streamReport(eq(2L), any(), any())).thenAnswer(invocation -> {
+            release.await(10, TimeUnit.SECONDS);
+            return 0L;
+        });
+
+        String running = service.submit(2L, ReportFormat.CSV).getJobId();
+        assertEquals(running, service.submit(2L, ReportFormat.CSV).getJobId());
+        assertThrows(IllegalStateException.class, () -> service.submit(2L, ReportFormat.NDJSON));
+
+        release.countDown();
+        assertEquals(ReportJobStatus.State.DONE, awaitTerminal(running).getState());
+        assertEquals(ReportJobStatus.State.DONE, awaitTerminal(service.submit(2L, ReportFormat.NDJSON).getJobId()).getState());
+    }
+
+    @Test
+    void testFailedJobReportsTheErrorAndLeavesNoFile() throws Exception {
+        when(customReportService.streamReport(eq(3L), any(), any())).thenThrow(new RuntimeException("connection reset"));
+
+        ReportJobStatus failed = awaitTerminal(service.submit(3L, ReportFormat.NDJSON).getJobId());
+
+        assertEquals(ReportJobStatus.State.FAILED, failed.getState());
+        assertEquals("connection reset", failed.getError());
+        assertTrue(service.resultFile(failed.getJobId()).isEmpty());
+        try (var files = Files.list(spoolDir)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    private ReportJobStatus awaitTerminal(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (System.currentTimeMillis() < deadline) {
+            ReportJobStatus status = service.status(jobId).orElseThrow();
+            if (status.getState() == ReportJobStatus.State.DONE || status.getState() == ReportJobStatus.State.FAILED) {
+                return status;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("Job " + jobId + " did not complete");
+    }
+}